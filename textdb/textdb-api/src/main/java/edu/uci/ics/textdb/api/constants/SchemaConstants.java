@@ -19,4 +19,7 @@ public class SchemaConstants {
     
     public static final String _ID = "_id";
     public static final Attribute _ID_ATTRIBUTE = new Attribute(_ID, AttributeType._ID_TYPE);
+    
+    public static final String SCORE = "_score";
+    public static final Attribute SCORE_ATTRIBUTE = new Attribute(SCORE, AttributeType.DOUBLE);
 }
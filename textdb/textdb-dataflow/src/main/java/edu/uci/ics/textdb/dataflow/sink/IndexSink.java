@@ -9,7 +9,11 @@ import edu.uci.ics.textdb.storage.RelationManager;
 
 /**
  * IndexSink is a sink that writes tuples into an index.
- * 
+ *
+ * The tuples are inserted in batches by DataWriter's "addTuple" (see {@link DataWriter#INSERT_BATCH_SIZE}).
+ * With more than one worker, the input operator is still read by one thread,
+ *   and the batches are inserted by DataWriter's pool of worker threads that share the table's IndexWriter.
+ *
  * @author zuozhi
  */
 public class IndexSink extends AbstractSink {
@@ -18,9 +22,24 @@ public class IndexSink extends AbstractSink {
     private boolean isAppend = false;
 
     public IndexSink(String tableName, boolean isAppend) throws DataFlowException {
+        this(tableName, isAppend, 1, -1);
+    }
+
+    /**
+     * @param tableName, the table to write the tuples to
+     * @param isAppend, if false, the data in the table is cleared first
+     * @param numWorkers, the number of threads that insert the tuples
+     * @param ramBufferSizeMB, the RAM buffer size of the IndexWriter, Lucene's default is used if it's not positive
+     * @throws DataFlowException
+     */
+    public IndexSink(String tableName, boolean isAppend, int numWorkers, double ramBufferSizeMB) throws DataFlowException {
         try {
             RelationManager relationManager = RelationManager.getRelationManager();
             this.dataWriter = relationManager.getTableDataWriter(tableName);
+            this.dataWriter.setNumInsertWorkers(numWorkers);
+            if (ramBufferSizeMB > 0) {
+                this.dataWriter.setRAMBufferSizeMB(ramBufferSizeMB);
+            }
             this.isAppend = isAppend;
         } catch (StorageException e) {
             throw new DataFlowException(e);
@@ -36,8 +55,14 @@ public class IndexSink extends AbstractSink {
         }
     }
 
+    @Override
+    public void processTuples() throws TextDBException {
+        super.processTuples();
+        dataWriter.flushTuples();
+    }
+
     protected void processOneTuple(Tuple nextTuple) throws TextDBException {
-        dataWriter.insertTuple(nextTuple);
+        dataWriter.addTuple(nextTuple);
     }
 
     public void close() throws TextDBException {
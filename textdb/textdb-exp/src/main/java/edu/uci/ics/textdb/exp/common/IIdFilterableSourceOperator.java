@@ -0,0 +1,35 @@
+package edu.uci.ics.textdb.exp.common;
+
+import java.util.Collection;
+
+import edu.uci.ics.textdb.api.dataflow.ISourceOperator;
+
+/**
+ * IIdFilterableSourceOperator is a source operator that can read only the documents of its table with given _IDs.
+ *
+ * Join computes the _IDs of its inner tuples before it opens its outer operator,
+ *   and if the tuples are joined on their _IDs, it pushes them down to the outer source (a semi-join),
+ *   so the documents that can't be joined are never read.
+ */
+public interface IIdFilterableSourceOperator extends ISourceOperator {
+
+    /**
+     * Filtering the documents changes the results of a source that only returns some of its documents,
+     *   (for example, the top K documents of its table, or the first N documents with a limit or an offset),
+     *   since the source would return some of the documents that pass the filter instead.
+     * 
+     * @return true if the source returns the same results for the documents with the _IDs when they are filtered
+     */
+    boolean canFilterIds();
+
+    /**
+     * Sets the _IDs of the documents to read.
+     * The source ignores the _IDs if it can't filter them (see {@link #canFilterIds()}),
+     *   since the operators after it don't depend on the filter.
+     * It must be called before the operator is opened, and after its limit and offset are set.
+     *
+     * @param ids, the _IDs of the documents to read, or null to read all the documents
+     */
+    void setIdFilter(Collection<String> ids);
+
+}
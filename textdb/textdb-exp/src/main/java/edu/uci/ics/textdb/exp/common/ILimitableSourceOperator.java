@@ -0,0 +1,22 @@
+package edu.uci.ics.textdb.exp.common;
+
+import edu.uci.ics.textdb.api.dataflow.ISourceOperator;
+
+/**
+ * ILimitableSourceOperator is a source operator that can stop reading its table early
+ *   if only the first tuples of its output are needed.
+ * 
+ * LogicalPlan computes the number of tuples that the operators after a source can consume
+ *   (for example, because of a limit or a sampler), and pushes it down to the source before the plan is opened.
+ */
+public interface ILimitableSourceOperator extends ISourceOperator {
+
+    /**
+     * Sets the maximum number of tuples the source returns.
+     * It must be called before the operator is opened.
+     * 
+     * @param limit, the maximum number of tuples to return
+     */
+    void setLimit(int limit);
+
+}
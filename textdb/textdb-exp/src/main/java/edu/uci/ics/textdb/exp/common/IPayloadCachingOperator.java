@@ -0,0 +1,23 @@
+package edu.uci.ics.textdb.exp.common;
+
+import edu.uci.ics.textdb.api.dataflow.IOperator;
+import edu.uci.ics.textdb.exp.utils.PayloadCache;
+
+/**
+ * IPayloadCachingOperator is an operator that generates the payload of its input tuples 
+ *   if the input doesn't contain the payload.
+ * 
+ * LogicalPlan sets the same PayloadCache to all these operators of a plan before the plan is opened,
+ *   so that a field is analyzed only once by the plan, no matter how many operators match it.
+ */
+public interface IPayloadCachingOperator extends IOperator {
+
+    /**
+     * Sets the cache of the payloads, null means no cache.
+     * It must be called before the operator is opened.
+     * 
+     * @param payloadCache
+     */
+    void setPayloadCache(PayloadCache payloadCache);
+
+}
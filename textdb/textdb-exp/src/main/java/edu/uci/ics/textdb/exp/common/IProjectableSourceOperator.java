@@ -0,0 +1,24 @@
+package edu.uci.ics.textdb.exp.common;
+
+import java.util.Collection;
+
+import edu.uci.ics.textdb.api.dataflow.ISourceOperator;
+
+/**
+ * IProjectableSourceOperator is a source operator that can read only a subset of its table's attributes.
+ * 
+ * LogicalPlan computes the attributes that the operators after a source actually need,
+ *   and pushes them down to the source before the plan is opened.
+ */
+public interface IProjectableSourceOperator extends ISourceOperator {
+
+    /**
+     * Sets the attributes to read from the table. The attributes needed by the source itself 
+     *   (for example, the attributes to match on) are always read.
+     * It must be called before the operator is opened.
+     * 
+     * @param attributeNames, the names of the attributes to read, or null to read all the attributes
+     */
+    void setProjectedAttributeNames(Collection<String> attributeNames);
+
+}
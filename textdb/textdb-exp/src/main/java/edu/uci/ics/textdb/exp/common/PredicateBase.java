@@ -21,6 +21,7 @@ import edu.uci.ics.textdb.exp.keywordmatcher.KeywordSourcePredicate;
 import edu.uci.ics.textdb.exp.nlp.entity.NlpEntityPredicate;
 import edu.uci.ics.textdb.exp.nlp.sentiment.NlpSentimentPredicate;
 import edu.uci.ics.textdb.exp.projection.ProjectionPredicate;
+import edu.uci.ics.textdb.exp.regexmatcher.MultiRegexPredicate;
 import edu.uci.ics.textdb.exp.regexmatcher.RegexPredicate;
 import edu.uci.ics.textdb.exp.regexmatcher.RegexSourcePredicate;
 import edu.uci.ics.textdb.exp.regexsplit.RegexSplitPredicate;
@@ -54,6 +55,7 @@ import edu.uci.ics.textdb.exp.source.scan.ScanSourcePredicate;
         @Type(value = KeywordSourcePredicate.class, name = "KeywordSource"), 
         @Type(value = RegexPredicate.class, name = "RegexMatcher"), 
         @Type(value = RegexSourcePredicate.class, name = "RegexSource"), 
+        @Type(value = MultiRegexPredicate.class, name = "MultiRegexMatcher"), 
         
         @Type(value = JoinDistancePredicate.class, name = "JoinDistance"),
         @Type(value = SimilarityJoinPredicate.class, name = "SimilarityJoin"),
@@ -29,6 +29,7 @@ public class PropertyNameConstants {
     public static final String FILE_PATH = "filePath";
     public static final String LIMIT = "limit";
     public static final String OFFSET = "offset";
+    public static final String TOP_K = "topK";
     public static final String ADD_SPANS = "addSpans";
     
     // related to keyword matcher
@@ -43,6 +44,7 @@ public class PropertyNameConstants {
     public static final String REGEX = "regex";
     public static final String REGEX_IGNORE_CASE = "regexIgnoreCase";
     public static final String REGEX_USE_INDEX = "regexUseIndex";
+    public static final String REGEX_LIST = "regexes";
     
     // related to fuzzy token matcher
     public static final String FUZZY_TOKEN_QUERY = "query";
@@ -60,6 +62,10 @@ public class PropertyNameConstants {
     public static final String SAMPLE_SIZE = "sampleSize";
     public static final String SAMPLE_TYPE = "sampleType";
     
+    // related to scan source
+    public static final String SCAN_NUM_WORKERS = "numWorkers";
+    public static final String SCAN_KEEP_ORDER = "keepOrder";
+    
     // related to file source
     public static final String FILE_MAX_DEPTH = "maxDepth";
     public static final String FILE_RECURSIVE = "recursive";
@@ -70,6 +76,7 @@ public class PropertyNameConstants {
     public static final String OUTER_ATTRIBUTE_NAME = "outerAttribute";
     public static final String SPAN_DISTANCE = "spanDistance";
     public static final String JOIN_SIMILARITY_THRESHOLD = "similarityThreshold";
+    public static final String JOIN_SIMILARITY_MEASURE = "similarityMeasure";
 
     
 }
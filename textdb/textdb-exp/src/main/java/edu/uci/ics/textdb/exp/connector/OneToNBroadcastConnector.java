@@ -4,6 +4,7 @@ import java.util.ArrayList;
 
 import edu.uci.ics.textdb.api.dataflow.IConnector;
 import edu.uci.ics.textdb.api.dataflow.IOperator;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.tuple.Tuple;
@@ -13,11 +14,22 @@ import edu.uci.ics.textdb.api.tuple.Tuple;
  * The tuples from the input operator will be broadcast to every output operator.
  * 
  * It is required that all output operators need to be opened prior to calling getNextTuple().
+ * 
+ * The tuples are cached in a ring buffer until every output that is not closed has read them,
+ *   so the memory used depends on how far the outputs are apart, not on the number of input tuples.
+ *   An output that is not opened yet still needs all the tuples.
+ * If an output is ahead of the slowest output by more than the capacity of the buffer,
+ *   the oldest tuples of the buffer are spilled to a temporary file (see {@link TupleSpillFile}),
+ *   and the slower outputs read them from the file.
+ *   The outputs are pulled by one thread, so the fast output can't wait for the slow ones.
+ * 
  * @author Zuozhi Wang (zuozhiw)
  *
  */
 public class OneToNBroadcastConnector implements IConnector {
     
+    public static final int DEFAULT_BUFFER_CAPACITY = 10000;
+    
     private static final int PRE_OPEN = -2;
     private static final int OPENED = 0;
     private static final int CLOSED = -1;
@@ -26,15 +38,22 @@ public class OneToNBroadcastConnector implements IConnector {
     
     // A list of all output operators
     private ArrayList<IOperator> outputOperatorList;
-    // A list to maintain cursors of all operators
+    // A list to maintain cursors of all operators, the position of the last tuple read by each operator
     private ArrayList<Integer> outputCursorList;
     // A list to maintain operators' status (pre-open, opened or closed)
     private ArrayList<Integer> outputStatusList;
     private boolean inputOperatorOpened;
     
     private IOperator inputOperator;
-    // an in-memory list to cache tuples from input tuple, see getNextTuple() for more details
-    private ArrayList<Tuple> inputTupleList;
+    // the number of tuples read from the input operator, which is the position of the next input tuple
+    private int inputTupleCount = 0;
+    // a ring buffer to cache tuples from input operator, see getNextTuple() for more details
+    private TupleRingBuffer tupleBuffer;
+    // the position of the first tuple in tupleBuffer
+    private int bufferStartPosition = 0;
+    // the tuples before bufferStartPosition that some outputs haven't read, null if there are no such tuples
+    private TupleSpillFile spillFile = null;
+    private long spilledTupleCount = 0;
     // indicates if the input operator's tuples are all consumed
     boolean inputAllConsumed = false;
     
@@ -43,7 +62,7 @@ public class OneToNBroadcastConnector implements IConnector {
      * @param outputOperatorNumber, the number of output operators this connector has
      */
     public OneToNBroadcastConnector(int outputOperatorNumber) {        
-        this.inputTupleList = new ArrayList<>();
+        this.tupleBuffer = new TupleRingBuffer(DEFAULT_BUFFER_CAPACITY);
         inputOperatorOpened = false;
         this.outputOperatorNumber = outputOperatorNumber;
         initializeOutputOperators();
@@ -88,31 +107,89 @@ public class OneToNBroadcastConnector implements IConnector {
     /*
      * This returns the nextTuple of the operator corresponding to the index.
      * A cursor will be maintained for each operator. 
-     * Tuples from input operators are cached in an in-memory list.
-     * A new tuple will be fetched from input operator whenever a cursor exceeds the list size.
+     * Tuples from input operators are cached in a ring buffer, or in the spill file if the buffer is full.
+     * A new tuple will be fetched from input operator whenever a cursor reaches the last tuple read.
+     * The tuples read by all the outputs are released from the buffer.
      */
     private Tuple getNextTuple(int outputOperatorIndex) throws TextDBException {
-        int currentPosition = outputCursorList.get(outputOperatorIndex);
+        int nextPosition = outputCursorList.get(outputOperatorIndex) + 1;
         
-        if (currentPosition + 1 < inputTupleList.size()) {
-            int nextPosition = currentPosition + 1;
-            outputCursorList.set(outputOperatorIndex, nextPosition);
-            return inputTupleList.get(nextPosition);
+        Tuple nextTuple;
+        if (nextPosition < inputTupleCount) {
+            if (nextPosition >= bufferStartPosition) {
+                nextTuple = tupleBuffer.get(nextPosition - bufferStartPosition);
+            } else if (spillFile != null && nextPosition >= spillFile.getStartPosition()) {
+                nextTuple = spillFile.read(outputOperatorIndex, nextPosition);
+            } else {
+                // the output was closed and opened again, after the other outputs read these tuples
+                throw new DataFlowException("the tuples of output " + outputOperatorIndex 
+                        + " are released after it was closed");
+            }
         } else {
             if (inputAllConsumed) {
                 return null;
             }
-            Tuple nextInputTuple = inputOperator.getNextTuple();
-            if (nextInputTuple == null) {
+            nextTuple = inputOperator.getNextTuple();
+            if (nextTuple == null) {
                 inputAllConsumed = true;
                 return null;
-            } else {
-                inputTupleList.add(nextInputTuple);
-                int nextPosition = currentPosition + 1;
-                outputCursorList.set(outputOperatorIndex, nextPosition);
-                return nextInputTuple;
             }
+            addToBuffer(nextTuple);
         }
+        outputCursorList.set(outputOperatorIndex, nextPosition);
+        releaseReadTuples();
+        return nextTuple;
+    }
+    
+    /*
+     * Adds a new input tuple to the buffer, the oldest tuple is spilled to disk if the buffer is full.
+     */
+    private void addToBuffer(Tuple inputTuple) throws TextDBException {
+        if (tupleBuffer.isFull()) {
+            if (spillFile == null) {
+                spillFile = new TupleSpillFile(bufferStartPosition, outputOperatorNumber);
+            }
+            spillFile.append(tupleBuffer.removeFirst());
+            bufferStartPosition++;
+            spilledTupleCount++;
+        }
+        tupleBuffer.addLast(inputTuple);
+        inputTupleCount++;
+    }
+    
+    /*
+     * Releases the tuples that all the outputs (except the closed ones) have read, 
+     *   and deletes the spill file if no output needs it.
+     */
+    private void releaseReadTuples() {
+        int minNextPosition = inputTupleCount;
+        for (int i = 0; i < outputOperatorNumber; i++) {
+            if (outputStatusList.get(i) != CLOSED) {
+                minNextPosition = Math.min(minNextPosition, outputCursorList.get(i) + 1);
+            }
+        }
+        while (bufferStartPosition < minNextPosition && ! tupleBuffer.isEmpty()) {
+            tupleBuffer.removeFirst();
+            bufferStartPosition++;
+        }
+        if (spillFile != null && minNextPosition >= spillFile.getEndPosition()) {
+            spillFile.close();
+            spillFile = null;
+        }
+    }
+    
+    private void clearBuffer() {
+        tupleBuffer.clear();
+        if (spillFile != null) {
+            spillFile.close();
+            spillFile = null;
+        }
+        for (int i = 0; i < outputOperatorNumber; i++) {
+            outputCursorList.set(i, -1);
+        }
+        inputTupleCount = 0;
+        bufferStartPosition = 0;
+        inputAllConsumed = false;
     }
     
     private void openInputOperator(int outputOperatorIndex) throws TextDBException {
@@ -127,8 +204,15 @@ public class OneToNBroadcastConnector implements IConnector {
         outputStatusList.set(outputOperatorIndex, CLOSED);
         boolean isAllClosed = isAllOutputOperatorClosed();
         if (isAllClosed) {
-            inputOperator.close();
+            try {
+                inputOperator.close();
+            } finally {
+                // the input operator is read again if it's opened again
+                clearBuffer();
+            }
             inputOperatorOpened = false;
+        } else {
+            releaseReadTuples();
         }
     }
     
@@ -143,6 +227,35 @@ public class OneToNBroadcastConnector implements IConnector {
     public IOperator getInputOperator() {
         return this.inputOperator;
     }
+    
+    /**
+     * Sets the maximum number of tuples cached in memory, the default is DEFAULT_BUFFER_CAPACITY.
+     * If an output is ahead of the slowest output by more tuples, the tuples are spilled to disk.
+     * It must be set before the output operators are opened.
+     * 
+     * @param bufferCapacity
+     */
+    public void setBufferCapacity(int bufferCapacity) {
+        this.tupleBuffer = new TupleRingBuffer(bufferCapacity);
+    }
+    
+    public int getBufferCapacity() {
+        return this.tupleBuffer.getCapacity();
+    }
+    
+    /**
+     * @return the number of tuples cached in memory
+     */
+    public int getBufferedTupleCount() {
+        return this.tupleBuffer.size();
+    }
+    
+    /**
+     * @return the total number of tuples spilled to disk because the buffer was full
+     */
+    public long getSpilledTupleCount() {
+        return this.spilledTupleCount;
+    }
 
     private boolean isAllOutputOperatorClosed() {
         return outputStatusList.stream().reduce(CLOSED, (a, b) -> (a == b ? CLOSED : OPENED)) == -1;
@@ -0,0 +1,107 @@
+package edu.uci.ics.textdb.exp.connector;
+
+import edu.uci.ics.textdb.api.tuple.Tuple;
+
+/**
+ * TupleRingBuffer is a FIFO buffer of tuples with a fixed capacity,
+ *   the tuples are added at the end, removed from the front, and can be read at any index.
+ *
+ * The array grows with the number of tuples, up to the capacity,
+ *   so a large capacity doesn't allocate memory until it's used.
+ */
+class TupleRingBuffer {
+
+    private static final int INITIAL_ARRAY_SIZE = 16;
+
+    private final int capacity;
+
+    private Tuple[] tuples;
+    // the array index of the first tuple
+    private int head = 0;
+    private int size = 0;
+
+    TupleRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.tuples = new Tuple[Math.min(capacity, INITIAL_ARRAY_SIZE)];
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Adds a tuple at the end, the buffer must not be full.
+     *
+     * @param tuple
+     */
+    void addLast(Tuple tuple) {
+        if (isFull()) {
+            throw new IllegalStateException("the buffer is full");
+        }
+        if (size == tuples.length) {
+            grow();
+        }
+        tuples[(head + size) % tuples.length] = tuple;
+        size++;
+    }
+
+    /**
+     * Removes the first tuple, the buffer must not be empty.
+     *
+     * @return the removed tuple
+     */
+    Tuple removeFirst() {
+        if (isEmpty()) {
+            throw new IllegalStateException("the buffer is empty");
+        }
+        Tuple tuple = tuples[head];
+        // release the reference, so the tuple can be garbage collected
+        tuples[head] = null;
+        head = (head + 1) % tuples.length;
+        size--;
+        return tuple;
+    }
+
+    /**
+     * @param index, the index from the first tuple
+     * @return the tuple at the index
+     */
+    Tuple get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        return tuples[(head + index) % tuples.length];
+    }
+
+    void clear() {
+        while (! isEmpty()) {
+            removeFirst();
+        }
+        head = 0;
+    }
+
+    private void grow() {
+        Tuple[] newTuples = new Tuple[(int) Math.min((long) capacity, 2L * tuples.length)];
+        for (int i = 0; i < size; i++) {
+            newTuples[i] = tuples[(head + i) % tuples.length];
+        }
+        tuples = newTuples;
+        head = 0;
+    }
+
+}
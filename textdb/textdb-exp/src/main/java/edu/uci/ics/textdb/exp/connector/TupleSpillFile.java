@@ -0,0 +1,169 @@
+package edu.uci.ics.textdb.exp.connector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.exp.utils.TupleCodec;
+
+/**
+ * TupleSpillFile keeps the tuples of OneToNBroadcastConnector that don't fit in its buffer
+ *   in a temporary file (see {@link TupleCodec}), until the slowest outputs read them.
+ *
+ * The tuples are appended in the order of their positions in the input, starting from the start position.
+ * Every output reads the file with its own reader, in the order of the positions,
+ *   so the readers only move forward, and skip the tuples the output doesn't need without decoding them.
+ * The temporary file is deleted when the spill file is closed.
+ */
+class TupleSpillFile {
+
+    private final File file;
+    private final DataOutputStream output;
+    // true if some tuples are written after the output is flushed
+    private boolean outputDirty = false;
+    private final ByteArrayOutputStream tupleBytes = new ByteArrayOutputStream();
+
+    // the schema of the tuples, the schema of the first tuple appended
+    private Schema schema;
+    private final int startPosition;
+    private int endPosition;
+
+    // the reader of each output, null if the output hasn't read from the file
+    private final DataInputStream[] readers;
+    // the position of the next tuple of each reader
+    private final int[] readerPositions;
+
+    /**
+     * @param startPosition, the position of the first tuple appended
+     * @param outputNumber, the number of outputs that read the file
+     * @throws DataFlowException
+     */
+    TupleSpillFile(int startPosition, int outputNumber) throws DataFlowException {
+        this.startPosition = startPosition;
+        this.endPosition = startPosition;
+        this.readers = new DataInputStream[outputNumber];
+        this.readerPositions = new int[outputNumber];
+        try {
+            file = File.createTempFile("textdb-connector-", ".spill");
+            file.deleteOnExit();
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        } catch (IOException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
+    int getStartPosition() {
+        return startPosition;
+    }
+
+    /**
+     * @return the position after the last tuple appended
+     */
+    int getEndPosition() {
+        return endPosition;
+    }
+
+    /**
+     * Appends the tuple at the end position.
+     *
+     * @param tuple
+     * @throws DataFlowException
+     */
+    void append(Tuple tuple) throws DataFlowException {
+        if (schema == null) {
+            schema = tuple.getSchema();
+        }
+        try {
+            // the length is written before the tuple, so the readers can skip it
+            tupleBytes.reset();
+            TupleCodec.writeTuple(new DataOutputStream(tupleBytes), tuple);
+            output.writeInt(tupleBytes.size());
+            tupleBytes.writeTo(output);
+        } catch (IOException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+        outputDirty = true;
+        endPosition++;
+    }
+
+    /**
+     * Reads the tuple at a position for an output.
+     * The positions read by the same output must be increasing.
+     *
+     * @param outputIndex
+     * @param position, from the start position (inclusive) to the end position (exclusive)
+     * @return the tuple
+     * @throws DataFlowException
+     */
+    Tuple read(int outputIndex, int position) throws DataFlowException {
+        if (position < startPosition || position >= endPosition) {
+            throw new DataFlowException("position " + position + " is not in the spill file");
+        }
+        try {
+            if (outputDirty) {
+                output.flush();
+                outputDirty = false;
+            }
+            DataInputStream reader = readers[outputIndex];
+            if (reader == null || readerPositions[outputIndex] > position) {
+                closeReader(outputIndex);
+                reader = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                readers[outputIndex] = reader;
+                readerPositions[outputIndex] = startPosition;
+            }
+            while (readerPositions[outputIndex] < position) {
+                int length = reader.readInt();
+                while (length > 0) {
+                    int skipped = reader.skipBytes(length);
+                    if (skipped <= 0) {
+                        throw new EOFException();
+                    }
+                    length -= skipped;
+                }
+                readerPositions[outputIndex]++;
+            }
+            reader.readInt();
+            readerPositions[outputIndex]++;
+            return TupleCodec.readTuple(reader, schema);
+        } catch (IOException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
+    private void closeReader(int outputIndex) {
+        if (readers[outputIndex] != null) {
+            try {
+                readers[outputIndex].close();
+            } catch (IOException e) {
+                // the file is deleted anyway
+            }
+            readers[outputIndex] = null;
+        }
+    }
+
+    /**
+     * Closes the file and deletes it.
+     */
+    void close() {
+        for (int i = 0; i < readers.length; i++) {
+            closeReader(i);
+        }
+        try {
+            output.close();
+        } catch (IOException e) {
+            // the file is deleted anyway
+        }
+        file.delete();
+    }
+
+}
@@ -0,0 +1,187 @@
+package edu.uci.ics.textdb.exp.dictionarymatcher;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * AhoCorasickAutomaton finds all the occurrences of a set of patterns in a text
+ *   in one pass over the text, regardless of the number of patterns.
+ *
+ * The automaton is case-insensitive: the patterns and the text are lower-cased character by character,
+ *   so the offsets of an occurrence are the offsets in the original text.
+ *
+ * The automaton is built once and is immutable, it can be shared by multiple threads.
+ *
+ * The transitions of a state are stored in a sorted char array (looked up with a binary search),
+ *   so the memory used is proportional to the total length of the patterns.
+ */
+public class AhoCorasickAutomaton {
+
+    /**
+     * MatchListener is notified of every occurrence of a pattern.
+     */
+    public interface MatchListener {
+
+        /**
+         * @param patternIndex, the index of the pattern in the collection the automaton is built from
+         * @param start, the start offset of the occurrence in the text (inclusive)
+         * @param end, the end offset of the occurrence in the text (exclusive)
+         */
+        void onMatch(int patternIndex, int start, int end);
+    }
+
+    private static final int ROOT = 0;
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final List<String> patterns;
+
+    // the transitions of every state: the characters in ascending order, and the next states
+    private final char[][] transitionChars;
+    private final int[][] transitionStates;
+    // the state to go to if there's no transition for a character
+    private final int[] failureStates;
+    // the nearest state in the failure chain (excluding the state itself) that has an output, -1 if there's none
+    private final int[] outputLinks;
+    // the indexes of the patterns that end at every state
+    private final int[][] outputs;
+    // the length of the patterns that end at every state (the depth of the state)
+    private final int[] depths;
+
+    /**
+     * Builds the automaton. Empty patterns never match.
+     *
+     * @param patterns
+     */
+    public AhoCorasickAutomaton(Collection<String> patterns) {
+        this.patterns = new ArrayList<>(patterns);
+
+        // build the trie of the lower-cased patterns
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> trieOutputs = new ArrayList<>();
+        List<Integer> trieDepths = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        trieOutputs.add(null);
+        trieDepths.add(0);
+
+        for (int i = 0; i < this.patterns.size(); i++) {
+            String pattern = this.patterns.get(i);
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            int state = ROOT;
+            for (int j = 0; j < pattern.length(); j++) {
+                char c = Character.toLowerCase(pattern.charAt(j));
+                Integer nextState = trie.get(state).get(c);
+                if (nextState == null) {
+                    nextState = trie.size();
+                    trie.add(new TreeMap<>());
+                    trieOutputs.add(null);
+                    trieDepths.add(j + 1);
+                    trie.get(state).put(c, nextState);
+                }
+                state = nextState;
+            }
+            if (trieOutputs.get(state) == null) {
+                trieOutputs.set(state, new ArrayList<>());
+            }
+            trieOutputs.get(state).add(i);
+        }
+
+        int numStates = trie.size();
+        transitionChars = new char[numStates][];
+        transitionStates = new int[numStates][];
+        outputs = new int[numStates][];
+        depths = new int[numStates];
+        for (int state = 0; state < numStates; state++) {
+            TreeMap<Character, Integer> transitions = trie.get(state);
+            transitionChars[state] = new char[transitions.size()];
+            transitionStates[state] = new int[transitions.size()];
+            int k = 0;
+            for (Character c : transitions.keySet()) {
+                transitionChars[state][k] = c;
+                transitionStates[state][k] = transitions.get(c);
+                k++;
+            }
+            List<Integer> stateOutputs = trieOutputs.get(state);
+            outputs[state] = stateOutputs == null ? NO_OUTPUT : stateOutputs.stream().mapToInt(i -> i).toArray();
+            depths[state] = trieDepths.get(state);
+        }
+
+        // compute the failure states and output links in breadth-first order
+        failureStates = new int[numStates];
+        outputLinks = new int[numStates];
+        outputLinks[ROOT] = -1;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int nextState : transitionStates[ROOT]) {
+            failureStates[nextState] = ROOT;
+            outputLinks[nextState] = -1;
+            queue.add(nextState);
+        }
+        while (! queue.isEmpty()) {
+            int state = queue.poll();
+            for (int k = 0; k < transitionChars[state].length; k++) {
+                char c = transitionChars[state][k];
+                int nextState = transitionStates[state][k];
+
+                int failureState = failureStates[state];
+                while (failureState != ROOT && getTransition(failureState, c) < 0) {
+                    failureState = failureStates[failureState];
+                }
+                int failureTransition = getTransition(failureState, c);
+                failureStates[nextState] = failureTransition < 0 ? ROOT : failureTransition;
+
+                int failure = failureStates[nextState];
+                outputLinks[nextState] = outputs[failure].length > 0 ? failure : outputLinks[failure];
+                queue.add(nextState);
+            }
+        }
+    }
+
+    /*
+     * Returns the next state of a state and a character, -1 if there's no transition.
+     */
+    private int getTransition(int state, char c) {
+        int k = Arrays.binarySearch(transitionChars[state], c);
+        return k < 0 ? -1 : transitionStates[state][k];
+    }
+
+    /**
+     * Finds all the occurrences of the patterns in the text, including the overlapping ones.
+     * The occurrences are reported in the order of their end offsets.
+     *
+     * @param text
+     * @param listener
+     */
+    public void search(String text, MatchListener listener) {
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int nextState;
+            while ((nextState = getTransition(state, c)) < 0 && state != ROOT) {
+                state = failureStates[state];
+            }
+            state = nextState < 0 ? ROOT : nextState;
+
+            int end = i + 1;
+            for (int outputState = outputs[state].length > 0 ? state : outputLinks[state]; outputState >= 0;
+                    outputState = outputLinks[outputState]) {
+                for (int patternIndex : outputs[outputState]) {
+                    listener.onMatch(patternIndex, end - depths[outputState], end);
+                }
+            }
+        }
+    }
+
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    public int getNumPatterns() {
+        return patterns.size();
+    }
+
+}
@@ -1,303 +1,121 @@
 package edu.uci.ics.textdb.exp.dictionarymatcher;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.List;
 
 import edu.uci.ics.textdb.api.constants.ErrorMessages;
-import edu.uci.ics.textdb.api.dataflow.IOperator;
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.schema.Attribute;
+import edu.uci.ics.textdb.api.schema.AttributeType;
 import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
-import edu.uci.ics.textdb.exp.keywordmatcher.KeywordPredicate;
-import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatcher;
+import edu.uci.ics.textdb.api.utils.Utils;
+import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
+import edu.uci.ics.textdb.exp.common.IPayloadCachingOperator;
+import edu.uci.ics.textdb.exp.utils.DataflowUtils;
+import edu.uci.ics.textdb.exp.utils.PayloadCache;
 
-public class DictionaryMatcher implements IOperator {
+/**
+ * DictionaryMatcher matches all the entries of a dictionary against every input tuple.
+ *
+ * All the entries are matched in one pass over a tuple (see {@code DictionaryTupleMatcher}),
+ *   and one result tuple is returned for every entry that matches an input tuple,
+ *   with the spans of the entry.
+ *
+ * @author Zuozhi Wang
+ *
+ */
+public class DictionaryMatcher extends AbstractSingleInputOperator implements IPayloadCachingOperator {
 
-    private DictionaryPredicate predicate;
+    private final DictionaryPredicate predicate;
 
-    private IOperator inputOperator;
-    private DictionaryTupleCacheOperator cacheOperator;
-    private KeywordPredicate keywordPredicate;
-    private KeywordMatcher keywordMatcher;
+    private DictionaryTupleMatcher dictionaryTupleMatcher;
 
-    private Schema outputSchema;
+    private Schema inputSchema;
+    // the schema of the input tuples with the payload
+    private Schema payloadSchema;
 
-    String currentDictionaryEntry;
+    private PayloadCache payloadCache;
 
-    private int resultCursor;
-    private int limit;
-    private int offset;
-
-    private int cursor = CLOSED;
+    // the result tuples of the other matching entries of the last input tuple, that are not returned yet
+    private final ArrayDeque<Tuple> pendingResultTuples = new ArrayDeque<>();
 
     public DictionaryMatcher(DictionaryPredicate predicate) {
         this.predicate = predicate;
-
-        this.resultCursor = -1;
-        this.limit = Integer.MAX_VALUE;
-        this.offset = 0;
     }
 
     @Override
-    public void open() throws DataFlowException {
-        if (cursor != CLOSED) {
-            return;
+    protected void setUp() throws TextDBException {
+        if (predicate.getDictionary().getDictionaryEntries().isEmpty()) {
+            throw new DataFlowException("Dictionary is empty");
         }
-        try {
-            if (inputOperator == null) {
-                throw new DataFlowException(ErrorMessages.INPUT_OPERATOR_NOT_SPECIFIED);
-            }
-
-            predicate.getDictionary().resetCursor();
-            currentDictionaryEntry = predicate.getDictionary().getNextEntry();
-            if (currentDictionaryEntry == null) {
-                throw new DataFlowException("Dictionary is empty");
-            }
-
-            keywordPredicate = new KeywordPredicate(currentDictionaryEntry,
-                    predicate.getAttributeNames(),
-                    predicate.getAnalyzerString(), predicate.getKeywordMatchingType(), predicate.getSpanListName());
-
-            keywordMatcher = new KeywordMatcher(keywordPredicate);
-            
-            cacheOperator = new DictionaryTupleCacheOperator();
-            cacheOperator.setInputOperator(inputOperator);
-            
-            keywordMatcher.setInputOperator(cacheOperator);
+        dictionaryTupleMatcher = new DictionaryTupleMatcher(predicate);
 
-            cacheOperator.openAll();
-            keywordMatcher.open();
-            outputSchema = keywordMatcher.getOutputSchema();
-
-        } catch (Exception e) {
-            throw new DataFlowException(e.getMessage(), e);
+        inputSchema = inputOperator.getOutputSchema();
+        payloadSchema = inputSchema;
+        if (!inputSchema.containsField(SchemaConstants.PAYLOAD)) {
+            payloadSchema = Utils.addAttributeToSchema(inputSchema, SchemaConstants.PAYLOAD_ATTRIBUTE);
+        }
+        if (inputSchema.containsField(predicate.getSpanListName())) {
+            throw new DataFlowException(ErrorMessages.DUPLICATE_ATTRIBUTE(predicate.getSpanListName(), inputSchema));
         }
-        cursor = OPENED;
+        outputSchema = Utils.addAttributeToSchema(payloadSchema,
+                new Attribute(predicate.getSpanListName(), AttributeType.LIST));
     }
 
     @Override
-    public Tuple getNextTuple() throws TextDBException {
-        if (cursor == CLOSED) {
-            throw new DataFlowException(ErrorMessages.OPERATOR_NOT_OPENED);
-        }
-        if (resultCursor >= limit + offset - 1) {
-            return null;
+    protected Tuple computeNextMatchingTuple() throws TextDBException {
+        if (! pendingResultTuples.isEmpty()) {
+            return pendingResultTuples.poll();
         }
 
-        Tuple sourceTuple;
-        while (true) {
-            // If there's result from current keywordMatcher, return it.
-            if ((sourceTuple = keywordMatcher.getNextTuple()) != null) {
-                resultCursor++;
-                if (resultCursor >= offset) {
-                    return sourceTuple;
-                }
-                continue;
-            }
-            // If all results from current keywordMatcher are consumed,
-            // advance to next dictionary entry, and
-            // return null if reach the end of dictionary.
-            if ((currentDictionaryEntry = predicate.getDictionary().getNextEntry()) == null) {
-                return null;
-            }
+        Tuple inputTuple = null;
+        Tuple resultTuple = null;
 
-            // Update the KeywordMatcher with the new dictionary entry.
-            keywordMatcher.close();
-            
-            keywordPredicate = new KeywordPredicate(currentDictionaryEntry,
-                    predicate.getAttributeNames(),
-                    predicate.getAnalyzerString(), predicate.getKeywordMatchingType(),
-                    predicate.getSpanListName());
-            keywordMatcher = new KeywordMatcher(keywordPredicate);
-            keywordMatcher.setInputOperator(cacheOperator);
+        while ((inputTuple = inputOperator.getNextTuple()) != null) {
+            resultTuple = processOneInputTuple(inputTuple);
 
-            keywordMatcher.open();
-        }
-    }
-
-    @Override
-    public void close() throws DataFlowException {
-        if (cursor == CLOSED) {
-            return;
-        }
-        try {
-            if (keywordMatcher != null) {
-                keywordMatcher.close();
-            }
-            if (cacheOperator != null) {
-                cacheOperator.closeAll();
+            if (resultTuple != null) {
+                break;
             }
-        } catch (Exception e) {
-            throw new DataFlowException(e.getMessage(), e);
         }
-        cursor = CLOSED;
+        return resultTuple;
     }
-    
-    
+
     /**
-     * The purpose of this operator is to "cache" the tuples from input operator
-     *   in an in-memory list.
-     * 
-     * The DictionaryMatcher uses a new KeywordMatcher for each entry in the dictionary,
-     *   each keyword matcher would have to get all the tuples from the input operators again and again.
-     * 
-     * This operator caches the tuples in the list, so that the tuples don't have to be produced 
-     *   from the input operator again and again for multiple keyword mathchers.
-     *   
-     * This operators relies on a few assumptions in the implementation of DictionaryMatcher:
-     *   - At any time, only ONE operator (KeywordMatcher) is connected to this cache operator.
-     *   - Multiple operators (KeywordMatchers) are connected to this operator sequentially.
-     *   
-     * @author Zuozhi Wang
-     *
+     * Returns the result tuple of the first entry that matches the input tuple,
+     *   the result tuples of the other matching entries are returned by the next calls of getNextTuple.
      */
-    private class DictionaryTupleCacheOperator implements IOperator {
-        
-        private IOperator inputOperator;
-        private Schema outputSchema;
-        
-        private ArrayList<Tuple> inputTupleList = new ArrayList<>();
-        
-        private boolean isOpen = false;
-        private boolean inputAllConsumed = false;
-        private int cachedTupleCursor = 0;
-        
-        /*
-         * openAll() is the actual "open" function for this cache operator.
-         * It will open this operator and its input operator.
-         * 
-         * It's the caller's responsibility to make sure openAll() is called before everything.
-         */
-        public void openAll() throws TextDBException {
-            if (isOpen) {
-                return;
-            }
-            if (inputOperator == null) {
-                throw new DataFlowException(ErrorMessages.INPUT_OPERATOR_NOT_SPECIFIED);
-            }
-            inputOperator.open();
-            outputSchema = inputOperator.getOutputSchema();
-            isOpen = true;
-        }
-
-        /*
-         * When the child operator (KeywordMatcher) calls "open()", we don't want to open the input operator again,
-         * so open() is served as an indicator that a new operator (KeywordMatcher) is connected to this operator.
-         */
-        @Override
-        public void open() throws TextDBException {
-            if (! isOpen) {
-                throw new DataFlowException(ErrorMessages.OPERATOR_NOT_OPENED);
-            }
-            // reset the cursor
-            cachedTupleCursor = 0;
-        }
-
-        @Override
-        public Tuple getNextTuple() throws TextDBException {
-            if (! isOpen) {
-                throw new DataFlowException(ErrorMessages.OPERATOR_NOT_OPENED);
-            }
-            // if cursor's next value exceeds the cache's size
-            if (cachedTupleCursor + 1 >= inputTupleList.size()) {
-                // if the input operator has been fully consumed, return null
-                if (inputAllConsumed) {
-                    return null;
-                // else, get the next tuple from input operator, 
-                // add it to tuple list, and advance cursor
-                } else {
-                    Tuple tuple = inputOperator.getNextTuple();
-                    if (tuple == null) {
-                        inputAllConsumed = true;
-                    } else {
-                        inputTupleList.add(tuple);
-                        cachedTupleCursor++;
-                    }
-                    return tuple;
-                }
-            // if we can get the tuple from the cache, retrieve it and advance cursor
-            } else {
-                Tuple tuple = inputTupleList.get(cachedTupleCursor);
-                cachedTupleCursor++;
-                return tuple;
-            }
-        }
-        
-        /*
-         * closeAll() is the actual "close" function for this cache operator.
-         * It will close this operator and its input operator, and clear the cache
-         * 
-         * It's the caller's responsibility to make sure closeAll() is called after everything.
-         */
-        public void closeAll() throws TextDBException {
-            if (! isOpen) {
-                return;
-            }
-            inputAllConsumed = true;
-            isOpen = false;
-            cachedTupleCursor = 0;
-            inputTupleList = new ArrayList<>();
-            inputOperator.close();
+    @Override
+    public Tuple processOneInputTuple(Tuple inputTuple) throws TextDBException {
+        if (!inputSchema.containsField(SchemaConstants.PAYLOAD)) {
+            inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(),
+                    DataflowUtils.generatePayloadFromTuple(inputTuple, predicate.getAnalyzerString(), payloadCache),
+                    payloadSchema);
         }
 
-        /*
-         * When the child operator (KeywordMatcher) calls "close()", we don't want to close the input operator immediately,
-         * because there might be some tuples that are still not fetched from input operator.
-         * 
-         */
-        @Override
-        public void close() throws TextDBException {
-            if (! isOpen) {
-                throw new DataFlowException(ErrorMessages.OPERATOR_NOT_OPENED);
-            }
-            // reset the cursor
-            cachedTupleCursor = 0;
-        }
-        
-        @Override
-        public Schema getOutputSchema() {
-            return this.outputSchema;
-        }
-        
-        public void setInputOperator(IOperator inputOperator) {
-            this.inputOperator = inputOperator;
+        List<List<Span>> entryMatchingResults = dictionaryTupleMatcher.computeEntryMatchingSpans(inputTuple);
+        for (List<Span> matchingResults : entryMatchingResults) {
+            pendingResultTuples.add(DataflowUtils.getSpanTuple(inputTuple.getFields(), matchingResults, outputSchema));
         }
-        
+        return pendingResultTuples.poll();
     }
-    
-    
 
     @Override
-    public Schema getOutputSchema() {
-        return outputSchema;
-    }
-
-    public void setLimit(int limit) {
-        this.limit = limit;
-    }
-
-    public int getLimit() {
-        return this.limit;
-    }
-
-    public void setOffset(int offset) {
-        this.offset = offset;
-    }
-
-    public int getOffset() {
-        return this.offset;
-    }
-
-    public void setInputOperator(IOperator inputOperator) {
-        this.inputOperator = inputOperator;
-    }
-
-    public IOperator getInputOperator() {
-        return inputOperator;
+    protected void cleanUp() {
+        pendingResultTuples.clear();
     }
 
     public DictionaryPredicate getPredicate() {
         return this.predicate;
     }
 
+    @Override
+    public void setPayloadCache(PayloadCache payloadCache) {
+        this.payloadCache = payloadCache;
+    }
+
 }
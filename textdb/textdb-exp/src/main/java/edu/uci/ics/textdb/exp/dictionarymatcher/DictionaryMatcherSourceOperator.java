@@ -2,46 +2,59 @@
 package edu.uci.ics.textdb.exp.dictionarymatcher;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.TermsQuery;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
 
 import edu.uci.ics.textdb.api.constants.ErrorMessages;
-import edu.uci.ics.textdb.api.dataflow.ISourceOperator;
+import edu.uci.ics.textdb.api.dataflow.IOperator;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
-import edu.uci.ics.textdb.api.field.ListField;
 import edu.uci.ics.textdb.api.schema.Attribute;
 import edu.uci.ics.textdb.api.schema.AttributeType;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.Utils;
-import edu.uci.ics.textdb.exp.keywordmatcher.KeywordSourcePredicate;
-import edu.uci.ics.textdb.exp.source.scan.ScanBasedSourceOperator;
-import edu.uci.ics.textdb.exp.source.scan.ScanSourcePredicate;
+import edu.uci.ics.textdb.exp.common.IIdFilterableSourceOperator;
+import edu.uci.ics.textdb.exp.common.IProjectableSourceOperator;
 import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatcherSourceOperator;
 import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatchingType;
+import edu.uci.ics.textdb.exp.keywordmatcher.KeywordPredicate;
+import edu.uci.ics.textdb.exp.source.scan.ScanBasedSourceOperator;
+import edu.uci.ics.textdb.exp.source.scan.ScanSourcePredicate;
 import edu.uci.ics.textdb.exp.utils.DataflowUtils;
+import edu.uci.ics.textdb.storage.DataReader;
+import edu.uci.ics.textdb.storage.RelationManager;
 
 /**
  * @author Sudeep (inkudo)
  * @author Zuozhi Wang (zuozhi)
  * 
  */
-public class DictionaryMatcherSourceOperator implements ISourceOperator {
+public class DictionaryMatcherSourceOperator implements IProjectableSourceOperator, IIdFilterableSourceOperator {
 
-    private ISourceOperator indexSource;
-    
-    private KeywordMatcherSourceOperator keywordSource;
+    // the operator that produces the candidate tuples:
+    // a scan source for substring matching, or a data reader of a disjunctive query of all the entries
+    private IOperator indexSource;
+
+    private DictionaryTupleMatcher dictionaryTupleMatcher;
 
     private Schema inputSchema;
     private Schema outputSchema;
 
-    private Tuple sourceTuple;
-    private String currentDictionaryEntry;
-
     private final DictionarySourcePredicate predicate;
+    
+    // the attributes to read from the table, null means all the attributes
+    private Collection<String> projectedAttributeNames;
+    // the _IDs of the documents to read, null means all the documents
+    private Collection<String> idFilter;
 
     private int resultCursor;
     private int limit;
@@ -67,52 +80,121 @@ public class DictionaryMatcherSourceOperator implements ISourceOperator {
     @Override
     public void open() throws DataFlowException {
         try {
-            currentDictionaryEntry = predicate.getDictionary().getNextEntry();
-            if (currentDictionaryEntry == null) {
+            if (predicate.getDictionary().getDictionaryEntries().isEmpty()) {
                 throw new DataFlowException("Dictionary is empty");
             }
+            dictionaryTupleMatcher = new DictionaryTupleMatcher(predicate);
 
             if (predicate.getKeywordMatchingType() == KeywordMatchingType.SUBSTRING_SCANBASED) {
                 // For Substring matching, create a scan source operator.
-                indexSource = new ScanBasedSourceOperator(new ScanSourcePredicate(predicate.getTableName()));
-                indexSource.open();
-
-                // Substring matching's output schema needs to contains span
-                // list.
-                inputSchema = indexSource.getOutputSchema();
-                outputSchema = inputSchema;
-                if (inputSchema.containsField(predicate.getSpanListName())) {
-                    throw new DataFlowException(ErrorMessages.DUPLICATE_ATTRIBUTE(
-                            predicate.getSpanListName(), inputSchema));
-                }
-                outputSchema = Utils.addAttributeToSchema(outputSchema, 
-                        new Attribute(predicate.getSpanListName(), AttributeType.LIST));
-
-
+                ScanBasedSourceOperator scanSource = new ScanBasedSourceOperator(
+                        new ScanSourcePredicate(predicate.getTableName()));
+                scanSource.setProjectedAttributeNames(
+                        DataflowUtils.getProjectedAttributeNames(projectedAttributeNames, predicate.getAttributeNames()));
+                scanSource.setIdFilter(idFilter);
+                indexSource = scanSource;
             } else {
                 // For other keyword matching types (conjunction and phrase),
-                // create keyword matcher based on index.
-
-                keywordSource = new KeywordMatcherSourceOperator(new KeywordSourcePredicate(
-                        currentDictionaryEntry,
-                        predicate.getAttributeNames(),
-                        predicate.getAnalyzerString(),
-                        predicate.getKeywordMatchingType(),
-                        predicate.getTableName(),
-                        predicate.getSpanListName()));
-                keywordSource.open();
+                // read the documents that match any of the entries with one query,
+                // every document is read (with its payload) only once.
+                DataReader dataReader = RelationManager.getRelationManager().getTableDataReader(
+                        predicate.getTableName(), createDictionaryQuery());
+                dataReader.setPayloadAdded(true);
+                dataReader.setProjectedAttributeNames(
+                        DataflowUtils.getProjectedAttributeNames(projectedAttributeNames, predicate.getAttributeNames()));
+                dataReader.setIdFilter(idFilter);
+                indexSource = dataReader;
+            }
+            indexSource.open();
 
-                // Other keyword matching types uses a KeywordMatcher, so the
-                // output schema is the same as keywordMatcher's schema
-                inputSchema = keywordSource.getOutputSchema();
-                outputSchema = keywordSource.getOutputSchema();
+            inputSchema = indexSource.getOutputSchema();
+            if (inputSchema.containsField(predicate.getSpanListName())) {
+                throw new DataFlowException(ErrorMessages.DUPLICATE_ATTRIBUTE(
+                        predicate.getSpanListName(), inputSchema));
             }
+            outputSchema = Utils.addAttributeToSchema(inputSchema, 
+                    new Attribute(predicate.getSpanListName(), AttributeType.LIST));
 
         } catch (Exception e) {
             throw new DataFlowException(e.getMessage(), e);
         }
     }
 
+    /*
+     * Creates a disjunction of the keyword queries of all the dictionary entries.
+     * 
+     * For conjunction matching, the entries with a single token are looked up with one TermsQuery,
+     *   which has no limit on the number of terms.
+     * The queries of the other entries are grouped into nested disjunctions, 
+     *   so that no BooleanQuery exceeds the max clause count, which is shared by all the queries.
+     */
+    private Query createDictionaryQuery() throws TextDBException {
+        Schema tableSchema = RelationManager.getRelationManager().getTableDataStore(predicate.getTableName()).getSchema();
+        Collection<String> dictionaryEntries = predicate.getDictionary().getDictionaryEntries();
+
+        List<Term> singleTokenTerms = new ArrayList<>();
+        List<Query> entryQueries = new ArrayList<>();
+        for (String entry : dictionaryEntries) {
+            if (predicate.getKeywordMatchingType() == KeywordMatchingType.CONJUNCTION_INDEXBASED
+                    && addSingleTokenTerms(entry, tableSchema, singleTokenTerms)) {
+                continue;
+            }
+            KeywordPredicate entryPredicate = new KeywordPredicate(entry, predicate.getAttributeNames(),
+                    predicate.getAnalyzerString(), predicate.getKeywordMatchingType(), predicate.getSpanListName());
+            entryQueries.add(KeywordMatcherSourceOperator.createLuceneQueryObject(entryPredicate, tableSchema));
+        }
+        if (! singleTokenTerms.isEmpty()) {
+            entryQueries.add(new TermsQuery(singleTokenTerms));
+        }
+        return createDisjunction(entryQueries);
+    }
+
+    /*
+     * Adds the terms of the conjunction query of an entry if the entry has a single token:
+     *   the entry itself for a STRING attribute, and the token for a TEXT attribute.
+     * Returns false if the entry has more or less tokens.
+     */
+    private boolean addSingleTokenTerms(String entry, Schema tableSchema, List<Term> terms) {
+        HashSet<String> entryTokens = new HashSet<>(DataflowUtils.tokenizeQuery(predicate.getAnalyzerString(), entry));
+        if (entryTokens.size() != 1) {
+            return false;
+        }
+        String token = entryTokens.iterator().next().toLowerCase();
+        for (String attributeName : predicate.getAttributeNames()) {
+            AttributeType attributeType = tableSchema.getAttribute(attributeName).getAttributeType();
+            if (attributeType == AttributeType.STRING) {
+                terms.add(new Term(attributeName, entry));
+            } else if (attributeType == AttributeType.TEXT) {
+                terms.add(new Term(attributeName, token));
+            } else {
+                // the query of the entry reports the unsupported type
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Creates a disjunction of the queries, the queries are grouped into nested disjunctions
+     *   if there are more queries than the max clause count of BooleanQuery.
+     */
+    private static Query createDisjunction(List<Query> queries) {
+        int maxClauseCount = Math.max(2, BooleanQuery.getMaxClauseCount());
+        while (queries.size() > maxClauseCount) {
+            List<Query> groupQueries = new ArrayList<>();
+            for (int i = 0; i < queries.size(); i += maxClauseCount) {
+                groupQueries.add(createDisjunction(queries.subList(i, Math.min(i + maxClauseCount, queries.size()))));
+            }
+            queries = groupQueries;
+        }
+
+        BooleanQuery.Builder disjunctionBuilder = new BooleanQuery.Builder();
+        for (Query query : queries) {
+            disjunctionBuilder.add(query, BooleanClause.Occur.SHOULD);
+        }
+        return disjunctionBuilder.build();
+    }
+
     /**
      * @about Gets the next matched tuple. <br>
      *        Returns the tuple with results in spanList. <br>
@@ -122,13 +204,13 @@ public class DictionaryMatcherSourceOperator implements ISourceOperator {
      * 
      *        DictionaryOperatorType.SCAN: <br>
      *        Scan the tuples using ScanSourceOperator. <br>
-     *        For each tuple, loop through the dictionary and find results. <br>
-     *        We assume the dictionary is smaller than the data at the source
-     *        operator, we treat the data source as the outer relation to reduce
-     *        the number of disk IOs. <br>
+     *        For each tuple, find the occurrences of all the dictionary entries 
+     *        in one pass over every field, using an Aho-Corasick automaton. <br>
      * 
      *        DictionaryOperatorType.KEYWORD_BASIC, KEYWORD_PHRASE: <br>
-     *        Use KeywordMatcher to find results. <br>
+     *        Read the documents that match any of the entries with one 
+     *        disjunctive index query, and verify all the entries against 
+     *        the payload of every document. <br>
      * 
      *        KEYWORD_BASIC corresponds to KeywordOperatorType.BASIC, which
      *        performs keyword search on the document. The input query is
@@ -139,70 +221,27 @@ public class DictionaryMatcherSourceOperator implements ISourceOperator {
      *        tokenized. The order of the tokens does matter. Stopwords are
      *        treated as placeholders to indicate an arbitary token. <br>
      * 
+     *        One result tuple is returned for every matching document, 
+     *        with the spans of all the entries that match the document. <br>
+     * 
      */
     @Override
     public Tuple getNextTuple() throws TextDBException {
         if (resultCursor >= limit + offset - 1) {
             return null;
         }
-        if (predicate.getKeywordMatchingType() == KeywordMatchingType.PHRASE_INDEXBASED
-                || predicate.getKeywordMatchingType() == KeywordMatchingType.CONJUNCTION_INDEXBASED) {
-            // For each dictionary entry,
-            // get all result from KeywordMatcher.
-
-            while (true) {
-                // If there's result from current keywordMatcher, return it.
-                if ((sourceTuple = keywordSource.getNextTuple()) != null) {
-                    resultCursor++;
-                    if (resultCursor >= offset) {
-                        return sourceTuple;
-                    }
-                    continue;
-                }
-                // If all results from current keywordMatcher are consumed,
-                // advance to next dictionary entry, and
-                // return null if reach the end of dictionary.
-                if ((currentDictionaryEntry = predicate.getDictionary().getNextEntry()) == null) {
-                    return null;
-                }
-
-                // Construct a new KeywordMatcher with the new dictionary entry.
-                KeywordMatchingType keywordMatchingType;
-                if (predicate.getKeywordMatchingType() == KeywordMatchingType.PHRASE_INDEXBASED) {
-                    keywordMatchingType = KeywordMatchingType.PHRASE_INDEXBASED;
-                } else {
-                    keywordMatchingType = KeywordMatchingType.CONJUNCTION_INDEXBASED;
-                }
-
-                keywordSource.close();
-
-                KeywordSourcePredicate keywordSourcePredicate = new KeywordSourcePredicate(currentDictionaryEntry,
-                        predicate.getAttributeNames(),
-                        predicate.getAnalyzerString(), keywordMatchingType,
-                        predicate.getTableName(),
-                        predicate.getSpanListName());
-
-                keywordSource = new KeywordMatcherSourceOperator(keywordSourcePredicate);
-                keywordSource.open();
+        Tuple sourceTuple;
+        while ((sourceTuple = indexSource.getNextTuple()) != null) {
+            List<Span> matchingResults = dictionaryTupleMatcher.computeMatchingSpans(sourceTuple);
+            if (matchingResults.isEmpty()) {
+                continue;
             }
-        }
-        // Substring matching (based on scan)
-        else {
-            Tuple sourceTuple;
-            Tuple resultTuple = null;
-            while ((sourceTuple = indexSource.getNextTuple()) != null) {
-                sourceTuple = DataflowUtils.getSpanTuple(sourceTuple.getFields(), new ArrayList<Span>(), outputSchema);
-
-                resultTuple = computeMatchingResult(currentDictionaryEntry, sourceTuple);
-                if (resultTuple != null) {
-                    resultCursor++;
-                }
-                if (resultTuple != null && resultCursor >= offset) {
-                    break;
-                }
+            resultCursor++;
+            if (resultCursor >= offset) {
+                return DataflowUtils.getSpanTuple(sourceTuple.getFields(), matchingResults, outputSchema);
             }
-            return resultTuple;
         }
+        return null;
     }
 
     public void setLimit(int limit) {
@@ -221,76 +260,12 @@ public class DictionaryMatcherSourceOperator implements ISourceOperator {
         return this.offset;
     }
 
-    /*
-     * Advance the cursor of dictionary. if reach the end of the dictionary,
-     * advance the cursor of tuples and reset dictionary
-     */
-    private void advanceDictionaryCursor() throws TextDBException {
-        if ((currentDictionaryEntry = predicate.getDictionary().getNextEntry()) != null) {
-            return;
-        }
-        predicate.getDictionary().resetCursor();
-        currentDictionaryEntry = predicate.getDictionary().getNextEntry();
-    }
-
-    /*
-     * Match the key against the Tuple. if there's no match, returns the
-     * original Tuple object, if there's a match, return a new Tuple
-     * with span list added
-     */
-    private Tuple computeMatchingResult(String key, Tuple sourceTuple) throws TextDBException {
-
-        List<String> attributeNames = predicate.getAttributeNames();
-        List<Span> matchingResults = new ArrayList<>();
-
-        for (String attributeName : attributeNames) {
-            String fieldValue = sourceTuple.getField(attributeName).getValue().toString();
-            AttributeType attributeType = inputSchema.getAttribute(attributeName).getAttributeType();
-
-            // if attribute type is not TEXT, then key needs to match the
-            // fieldValue exactly
-            if (attributeType != AttributeType.TEXT) {
-                if (fieldValue.equals(key)) {
-                    matchingResults.add(new Span(attributeName, 0, fieldValue.length(), key, fieldValue));
-                }
-            }
-            // if attribute type is TEXT, then key can match a substring of
-            // fieldValue
-            else {
-                String regex = key.toLowerCase();
-                Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-                Matcher matcher = pattern.matcher(fieldValue.toLowerCase());
-                while (matcher.find()) {
-                    int start = matcher.start();
-                    int end = matcher.end();
-
-                    matchingResults.add(new Span(attributeName, start, end, key, fieldValue.substring(start, end)));
-                }
-            }
-        }
-
-        advanceDictionaryCursor();
-
-        if (matchingResults.size() == 0) {
-            return null;
-        }
-
-        ListField<Span> spanListField = sourceTuple.getField(predicate.getSpanListName());
-        List<Span> spanList = spanListField.getValue();
-        spanList.addAll(matchingResults);
-
-        return sourceTuple;
-    }
-
     /**
      * @about Closes the operator
      */
     @Override
     public void close() throws DataFlowException {
         try {
-            if (keywordSource != null) {
-                keywordSource.close();
-            }
             if (indexSource != null) {
                 indexSource.close();
             }
@@ -304,6 +279,26 @@ public class DictionaryMatcherSourceOperator implements ISourceOperator {
     public Schema getOutputSchema() {
         return outputSchema;
     }
+    
+    @Override
+    public void setProjectedAttributeNames(Collection<String> attributeNames) {
+        this.projectedAttributeNames = attributeNames;
+    }
+    
+    /**
+     * The _IDs can't be filtered if the results have a limit or an offset.
+     */
+    @Override
+    public boolean canFilterIds() {
+        return this.limit == Integer.MAX_VALUE && this.offset == 0;
+    }
+    
+    @Override
+    public void setIdFilter(Collection<String> ids) {
+        if (canFilterIds()) {
+            this.idFilter = ids;
+        }
+    }
 
     public DictionaryPredicate getPredicate() {
         return this.predicate;
@@ -0,0 +1,397 @@
+package edu.uci.ics.textdb.exp.dictionarymatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.analysis.Analyzer;
+
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.schema.AttributeType;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatchingType;
+import edu.uci.ics.textdb.exp.utils.DataflowUtils;
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+
+/**
+ * DictionaryTupleMatcher finds the spans of all the entries of a dictionary in a tuple.
+ * The spans are returned for every matching entry, or merged into one list, in the order of the entries.
+ *
+ * All the entries are compiled once, and every field of a tuple is walked once,
+ *   so the cost of matching a tuple depends on the number of its tokens, not on the number of entries:
+ *
+ * For substring matching, the entries are found with an Aho-Corasick automaton of the entries.
+ *
+ * For conjunction matching, every token of the field looks up the entries that contain it,
+ *   an entry matches once all its distinct tokens are found in the field.
+ *
+ * For phrase matching, the entries are tokenized into a trie of token sequences,
+ *   an edge of the trie is a token and its position gap to the previous token (stopwords are placeholders).
+ *   The trie is walked from every token of the field, following the token positions in the payload.
+ *
+ * For conjunction and phrase matching, the entries are tokenized by the analyzer of the predicate,
+ *   and the tuple must contain the payload.
+ *
+ * It's used by both DictionaryMatcher and DictionaryMatcherSourceOperator,
+ *   so that the two operators find the same spans.
+ */
+class DictionaryTupleMatcher {
+
+    private final DictionaryPredicate predicate;
+
+    private final List<String> dictionaryEntries;
+    // entry -> the index of the entry, used by matching on STRING attributes (which must match exactly)
+    private final HashMap<String, Integer> dictionaryEntryIndexes;
+
+    // the entries that have matched in the current field
+    private final List<Integer> matchedEntryIndexes = new ArrayList<>();
+
+    // the automaton of all the dictionary entries, used by substring matching on TEXT attributes
+    private AhoCorasickAutomaton dictionaryAutomaton;
+    // the end offset of the last span of every entry in the current field, 0 if the entry hasn't matched yet
+    private int[] lastSpanEnds;
+
+    // the distinct tokens of every entry, used by conjunction matching
+    private String[][] entryTokens;
+    // token -> the indexes of the entries that contain the token
+    private HashMap<String, List<Integer>> tokenEntryIndexes;
+    // the number of distinct tokens of every entry that are found in the current field
+    private int[] numFoundTokens;
+
+    // the trie of the token sequences of all the entries, used by phrase matching
+    private TokenTrieNode phraseTrie;
+    // the position of the last token of the last match of every entry in the current field, -1 if there's none
+    private int[] lastMatchEndPositions;
+
+    DictionaryTupleMatcher(DictionaryPredicate predicate) throws DataFlowException {
+        this.predicate = predicate;
+
+        // duplicate entries would only produce duplicate spans
+        this.dictionaryEntries = new ArrayList<>(new LinkedHashSet<>(predicate.getDictionary().getDictionaryEntries()));
+        this.dictionaryEntryIndexes = new HashMap<>();
+        for (int i = 0; i < dictionaryEntries.size(); i++) {
+            dictionaryEntryIndexes.put(dictionaryEntries.get(i), i);
+        }
+
+        if (predicate.getKeywordMatchingType() == KeywordMatchingType.SUBSTRING_SCANBASED) {
+            dictionaryAutomaton = new AhoCorasickAutomaton(dictionaryEntries);
+            lastSpanEnds = new int[dictionaryEntries.size()];
+        } else if (predicate.getKeywordMatchingType() == KeywordMatchingType.CONJUNCTION_INDEXBASED) {
+            compileConjunctionEntries(LuceneAnalyzerConstants.getLuceneAnalyzer(predicate.getAnalyzerString()));
+        } else if (predicate.getKeywordMatchingType() == KeywordMatchingType.PHRASE_INDEXBASED) {
+            compilePhraseEntries(LuceneAnalyzerConstants.getLuceneAnalyzer(predicate.getAnalyzerString()));
+        } else {
+            throw new DataFlowException("DictionaryMatcher: keyword matching type "
+                    + predicate.getKeywordMatchingType() + " is not supported");
+        }
+    }
+
+    private void compileConjunctionEntries(Analyzer luceneAnalyzer) {
+        entryTokens = new String[dictionaryEntries.size()][];
+        tokenEntryIndexes = new HashMap<>();
+        numFoundTokens = new int[dictionaryEntries.size()];
+
+        for (int i = 0; i < dictionaryEntries.size(); i++) {
+            LinkedHashSet<String> tokens = new LinkedHashSet<>();
+            for (Span tokenSpan : DataflowUtils.generatePayload("", dictionaryEntries.get(i), luceneAnalyzer)) {
+                tokens.add(tokenSpan.getKey());
+            }
+            entryTokens[i] = tokens.toArray(new String[tokens.size()]);
+            for (String token : tokens) {
+                List<Integer> entryIndexes = tokenEntryIndexes.get(token);
+                if (entryIndexes == null) {
+                    entryIndexes = new ArrayList<>();
+                    tokenEntryIndexes.put(token, entryIndexes);
+                }
+                entryIndexes.add(i);
+            }
+        }
+    }
+
+    private void compilePhraseEntries(Analyzer luceneAnalyzer) {
+        phraseTrie = new TokenTrieNode();
+        lastMatchEndPositions = new int[dictionaryEntries.size()];
+
+        for (int i = 0; i < dictionaryEntries.size(); i++) {
+            lastMatchEndPositions[i] = -1;
+            List<Span> tokenSpans = DataflowUtils.generatePayload("", dictionaryEntries.get(i), luceneAnalyzer);
+            if (tokenSpans.isEmpty()) {
+                continue;
+            }
+            TokenTrieNode node = phraseTrie;
+            int previousPosition = tokenSpans.get(0).getTokenOffset();
+            for (Span tokenSpan : tokenSpans) {
+                node = node.getOrAddChild(tokenSpan.getTokenOffset() - previousPosition, tokenSpan.getKey());
+                previousPosition = tokenSpan.getTokenOffset();
+            }
+            node.entryIndexes.add(i);
+        }
+    }
+
+    /**
+     * Computes the spans of all the dictionary entries in a tuple.
+     *
+     * @param tuple
+     * @return the merged list of spans, empty if no entry matches the tuple
+     * @throws DataFlowException
+     */
+    List<Span> computeMatchingSpans(Tuple tuple) throws DataFlowException {
+        List<Span> matchingResults = new ArrayList<>();
+        for (List<Span> spans : computeEntryMatchingSpans(tuple)) {
+            matchingResults.addAll(spans);
+        }
+        return matchingResults;
+    }
+
+    /**
+     * Computes the spans of every dictionary entry that matches a tuple.
+     *
+     * @param tuple
+     * @return the list of spans of every matching entry, in the order of the entries,
+     *   empty if no entry matches the tuple
+     * @throws DataFlowException
+     */
+    List<List<Span>> computeEntryMatchingSpans(Tuple tuple) throws DataFlowException {
+        // entry index -> the spans of the entry
+        TreeMap<Integer, List<Span>> entrySpans = new TreeMap<>();
+
+        if (predicate.getKeywordMatchingType() == KeywordMatchingType.SUBSTRING_SCANBASED) {
+            computeSubstringMatchingSpans(tuple, entrySpans);
+        } else {
+            computeKeywordMatchingSpans(tuple, entrySpans);
+        }
+
+        return new ArrayList<>(entrySpans.values());
+    }
+
+    private void computeKeywordMatchingSpans(Tuple tuple, Map<Integer, List<Span>> entrySpans)
+            throws DataFlowException {
+        // group the payload by attribute, the spans of an attribute are in the order of their positions
+        HashMap<String, List<Span>> fieldPayloads = new HashMap<>();
+        for (String attributeName : predicate.getAttributeNames()) {
+            fieldPayloads.put(attributeName, new ArrayList<>());
+        }
+        ListField<Span> payloadField = tuple.getField(SchemaConstants.PAYLOAD);
+        for (Span span : payloadField.getValue()) {
+            List<Span> fieldPayload = fieldPayloads.get(span.getAttributeName());
+            if (fieldPayload != null) {
+                fieldPayload.add(span);
+            }
+        }
+
+        for (String attributeName : predicate.getAttributeNames()) {
+            AttributeType attributeType = tuple.getSchema().getAttribute(attributeName).getAttributeType();
+            String fieldValue = tuple.getField(attributeName).getValue().toString();
+
+            // types other than TEXT and STRING: throw Exception for now
+            if (attributeType != AttributeType.STRING && attributeType != AttributeType.TEXT) {
+                throw new DataFlowException("DictionaryMatcher: Fields other than STRING and TEXT are not supported yet");
+            }
+
+            // for STRING type, an entry should match the fieldValue completely
+            if (attributeType == AttributeType.STRING) {
+                Integer entryIndex = dictionaryEntryIndexes.get(fieldValue);
+                if (entryIndex != null) {
+                    addSpan(entrySpans, entryIndex, new Span(attributeName, 0, fieldValue.length(), fieldValue, fieldValue));
+                }
+            }
+
+            if (attributeType == AttributeType.TEXT) {
+                if (predicate.getKeywordMatchingType() == KeywordMatchingType.CONJUNCTION_INDEXBASED) {
+                    matchConjunctionEntries(fieldPayloads.get(attributeName), entrySpans);
+                } else {
+                    matchPhraseEntries(attributeName, fieldValue, fieldPayloads.get(attributeName), entrySpans);
+                }
+            }
+        }
+    }
+
+    /*
+     * Finds the entries whose tokens are all present in the field,
+     * the spans of an entry are all the spans of its tokens, in the order of the payload.
+     */
+    private void matchConjunctionEntries(List<Span> fieldPayload, Map<Integer, List<Span>> entrySpans) {
+        // token -> the indexes of the spans of the token in the field payload
+        HashMap<String, List<Integer>> tokenSpanIndexes = new HashMap<>();
+        for (int i = 0; i < fieldPayload.size(); i++) {
+            String token = fieldPayload.get(i).getKey();
+            if (! tokenEntryIndexes.containsKey(token)) {
+                continue;
+            }
+            List<Integer> spanIndexes = tokenSpanIndexes.get(token);
+            if (spanIndexes == null) {
+                spanIndexes = new ArrayList<>();
+                tokenSpanIndexes.put(token, spanIndexes);
+            }
+            spanIndexes.add(i);
+        }
+
+        List<Integer> touchedEntryIndexes = new ArrayList<>();
+        for (String token : tokenSpanIndexes.keySet()) {
+            for (int entryIndex : tokenEntryIndexes.get(token)) {
+                numFoundTokens[entryIndex]++;
+                if (numFoundTokens[entryIndex] == 1) {
+                    touchedEntryIndexes.add(entryIndex);
+                }
+                if (numFoundTokens[entryIndex] == entryTokens[entryIndex].length) {
+                    matchedEntryIndexes.add(entryIndex);
+                }
+            }
+        }
+
+        for (int entryIndex : matchedEntryIndexes) {
+            List<Integer> spanIndexes = new ArrayList<>();
+            for (String token : entryTokens[entryIndex]) {
+                spanIndexes.addAll(tokenSpanIndexes.get(token));
+            }
+            Collections.sort(spanIndexes);
+            for (int spanIndex : spanIndexes) {
+                addSpan(entrySpans, entryIndex, fieldPayload.get(spanIndex));
+            }
+        }
+
+        for (int entryIndex : touchedEntryIndexes) {
+            numFoundTokens[entryIndex] = 0;
+        }
+        matchedEntryIndexes.clear();
+    }
+
+    /*
+     * Finds the occurrences of the phrase entries in the field by walking the trie from every token.
+     * The occurrences of the same entry don't overlap, the leftmost ones are kept.
+     */
+    private void matchPhraseEntries(String attributeName, String fieldValue, List<Span> fieldPayload,
+            Map<Integer, List<Span>> entrySpans) {
+        // position -> the spans at the position
+        HashMap<Integer, List<Span>> positionSpans = new HashMap<>();
+        for (Span span : fieldPayload) {
+            List<Span> spans = positionSpans.get(span.getTokenOffset());
+            if (spans == null) {
+                spans = new ArrayList<>(1);
+                positionSpans.put(span.getTokenOffset(), spans);
+            }
+            spans.add(span);
+        }
+
+        for (Span firstSpan : fieldPayload) {
+            HashMap<String, TokenTrieNode> firstTokens = phraseTrie.children.get(0);
+            TokenTrieNode node = firstTokens == null ? null : firstTokens.get(firstSpan.getKey());
+            if (node != null) {
+                walkPhraseTrie(node, firstSpan, firstSpan, attributeName, fieldValue, positionSpans, entrySpans);
+            }
+        }
+
+        for (int entryIndex : matchedEntryIndexes) {
+            lastMatchEndPositions[entryIndex] = -1;
+        }
+        matchedEntryIndexes.clear();
+    }
+
+    private void walkPhraseTrie(TokenTrieNode node, Span firstSpan, Span lastSpan, String attributeName,
+            String fieldValue, Map<Integer, List<Span>> positionSpans, Map<Integer, List<Span>> entrySpans) {
+        for (int entryIndex : node.entryIndexes) {
+            if (firstSpan.getTokenOffset() <= lastMatchEndPositions[entryIndex]) {
+                continue;
+            }
+            if (lastMatchEndPositions[entryIndex] == -1) {
+                matchedEntryIndexes.add(entryIndex);
+            }
+            lastMatchEndPositions[entryIndex] = lastSpan.getTokenOffset();
+            addSpan(entrySpans, entryIndex, new Span(attributeName, firstSpan.getStart(), lastSpan.getEnd(),
+                    dictionaryEntries.get(entryIndex), fieldValue.substring(firstSpan.getStart(), lastSpan.getEnd())));
+        }
+        for (Map.Entry<Integer, HashMap<String, TokenTrieNode>> gapChildren : node.children.entrySet()) {
+            List<Span> nextSpans = positionSpans.get(lastSpan.getTokenOffset() + gapChildren.getKey());
+            if (nextSpans == null) {
+                continue;
+            }
+            for (Span nextSpan : nextSpans) {
+                TokenTrieNode child = gapChildren.getValue().get(nextSpan.getKey());
+                if (child != null) {
+                    walkPhraseTrie(child, firstSpan, nextSpan, attributeName, fieldValue, positionSpans, entrySpans);
+                }
+            }
+        }
+    }
+
+    private void computeSubstringMatchingSpans(Tuple tuple, Map<Integer, List<Span>> entrySpans) {
+        for (String attributeName : predicate.getAttributeNames()) {
+            String fieldValue = tuple.getField(attributeName).getValue().toString();
+            AttributeType attributeType = tuple.getSchema().getAttribute(attributeName).getAttributeType();
+
+            // if attribute type is not TEXT, then an entry needs to match the
+            // fieldValue exactly
+            if (attributeType != AttributeType.TEXT) {
+                Integer entryIndex = dictionaryEntryIndexes.get(fieldValue);
+                if (entryIndex != null) {
+                    addSpan(entrySpans, entryIndex, new Span(attributeName, 0, fieldValue.length(), fieldValue, fieldValue));
+                }
+            }
+            // if attribute type is TEXT, then an entry can match a substring of
+            // fieldValue (case insensitive)
+            else {
+                dictionaryAutomaton.search(fieldValue, (entryIndex, start, end) -> {
+                    // the occurrences of the same entry don't overlap, the leftmost ones are kept
+                    if (start < lastSpanEnds[entryIndex]) {
+                        return;
+                    }
+                    if (lastSpanEnds[entryIndex] == 0) {
+                        matchedEntryIndexes.add(entryIndex);
+                    }
+                    lastSpanEnds[entryIndex] = end;
+                    String key = dictionaryEntries.get(entryIndex);
+                    addSpan(entrySpans, entryIndex,
+                            new Span(attributeName, start, end, key, fieldValue.substring(start, end)));
+                });
+                for (int entryIndex : matchedEntryIndexes) {
+                    lastSpanEnds[entryIndex] = 0;
+                }
+                matchedEntryIndexes.clear();
+            }
+        }
+    }
+
+    private static void addSpan(Map<Integer, List<Span>> entrySpans, int entryIndex, Span span) {
+        List<Span> spans = entrySpans.get(entryIndex);
+        if (spans == null) {
+            spans = new ArrayList<>();
+            entrySpans.put(entryIndex, spans);
+        }
+        spans.add(span);
+    }
+
+    /*
+     * A node of the token trie of the phrase entries.
+     * An edge is labeled by a token and the position gap between the token and the previous token of the entry,
+     *   the gap is larger than 1 if there are stopwords in between, and it's 0 for the first token.
+     */
+    private static class TokenTrieNode {
+        // position gap -> token -> child node
+        private final HashMap<Integer, HashMap<String, TokenTrieNode>> children = new HashMap<>();
+        // the indexes of the entries that end at this node
+        private final List<Integer> entryIndexes = new ArrayList<>(1);
+
+        private TokenTrieNode getOrAddChild(int gap, String token) {
+            HashMap<String, TokenTrieNode> gapChildren = children.get(gap);
+            if (gapChildren == null) {
+                gapChildren = new HashMap<>();
+                children.put(gap, gapChildren);
+            }
+            TokenTrieNode child = gapChildren.get(token);
+            if (child == null) {
+                child = new TokenTrieNode();
+                gapChildren.put(token, child);
+            }
+            return child;
+        }
+    }
+
+}
@@ -15,7 +15,9 @@ import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.Utils;
 import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
+import edu.uci.ics.textdb.exp.common.IPayloadCachingOperator;
 import edu.uci.ics.textdb.exp.utils.DataflowUtils;
+import edu.uci.ics.textdb.exp.utils.PayloadCache;
 
 /**
  *  @author Zuozhi Wang (zuozhiw)
@@ -24,12 +26,14 @@ import edu.uci.ics.textdb.exp.utils.DataflowUtils;
  *  
  *  This class provides token based fuzzy matching.
  */
-public class FuzzyTokenMatcher extends AbstractSingleInputOperator {
+public class FuzzyTokenMatcher extends AbstractSingleInputOperator implements IPayloadCachingOperator {
     
     private final FuzzyTokenPredicate predicate;
     
     private Schema inputSchema;
     
+    private PayloadCache payloadCache;
+    
     public FuzzyTokenMatcher(FuzzyTokenPredicate predicate) {
         this.predicate = predicate;
     }
@@ -57,7 +61,8 @@ public class FuzzyTokenMatcher extends AbstractSingleInputOperator {
             // Therefore, PAYLOAD needs to be checked and added first
             if (!inputSchema.containsField(SchemaConstants.PAYLOAD)) {
                 inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(),
-                        DataflowUtils.generatePayloadFromTuple(inputTuple, predicate.getLuceneAnalyzerStr()), outputSchema);
+                        DataflowUtils.generatePayloadFromTuple(inputTuple, predicate.getLuceneAnalyzerStr(), payloadCache),
+                        outputSchema);
             }
             if (!inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
                 inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(), new ArrayList<Span>(), outputSchema);
@@ -135,4 +140,9 @@ public class FuzzyTokenMatcher extends AbstractSingleInputOperator {
         return this.predicate;
     }
 
+    @Override
+    public void setPayloadCache(PayloadCache payloadCache) {
+        this.payloadCache = payloadCache;
+    }
+
 }
@@ -1,22 +1,27 @@
 package edu.uci.ics.textdb.exp.fuzzytokenmatcher;
 
+import java.util.Collection;
+
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.BooleanClause.Occur;
 
-import edu.uci.ics.textdb.api.dataflow.ISourceOperator;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.StorageException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
+import edu.uci.ics.textdb.exp.common.IIdFilterableSourceOperator;
+import edu.uci.ics.textdb.exp.common.IProjectableSourceOperator;
+import edu.uci.ics.textdb.exp.utils.DataflowUtils;
 import edu.uci.ics.textdb.storage.DataReader;
 import edu.uci.ics.textdb.storage.RelationManager;
 import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
 
-public class FuzzyTokenMatcherSourceOperator extends AbstractSingleInputOperator implements ISourceOperator {
+public class FuzzyTokenMatcherSourceOperator extends AbstractSingleInputOperator 
+        implements IProjectableSourceOperator, IIdFilterableSourceOperator {
     
     private FuzzyTokenSourcePredicate predicate;
 
@@ -32,6 +37,9 @@ public class FuzzyTokenMatcherSourceOperator extends AbstractSingleInputOperator
         this.dataReader = RelationManager.getRelationManager().getTableDataReader(
                 this.predicate.getTableName(), luceneQuery);
         this.dataReader.setPayloadAdded(true);
+        if (predicate.getTopK() != null) {
+            this.dataReader.setTopK(predicate.getTopK());
+        }
         
         // generate FuzzyTokenMatcher
         fuzzyTokenMatcher = new FuzzyTokenMatcher(predicate);
@@ -59,6 +67,27 @@ public class FuzzyTokenMatcherSourceOperator extends AbstractSingleInputOperator
     protected void cleanUp() throws TextDBException {        
     }
     
+    @Override
+    public void setProjectedAttributeNames(Collection<String> attributeNames) {
+        this.dataReader.setProjectedAttributeNames(
+                DataflowUtils.getProjectedAttributeNames(attributeNames, predicate.getAttributeNames()));
+    }
+    
+    /**
+     * The _IDs can't be filtered if only the top K documents are read, or the results have a limit or an offset.
+     */
+    @Override
+    public boolean canFilterIds() {
+        return this.dataReader.getTopK() == 0 && this.limit == Integer.MAX_VALUE && this.offset == 0;
+    }
+    
+    @Override
+    public void setIdFilter(Collection<String> ids) {
+        if (canFilterIds()) {
+            this.dataReader.setIdFilter(ids);
+        }
+    }
+
     public static Query createLuceneQueryObject(FuzzyTokenPredicate predicate) throws DataFlowException {
         try {
             /*
@@ -2,15 +2,35 @@ package edu.uci.ics.textdb.exp.fuzzytokenmatcher;
 
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import edu.uci.ics.textdb.api.dataflow.IOperator;
 import edu.uci.ics.textdb.exp.common.PropertyNameConstants;
 
+/**
+ * FuzzyTokenSourcePredicate is the predicate used by FuzzyTokenMatcherSourceOperator.
+ * 
+ * If "topK" is set, the source is in ranked mode: it only considers the K documents 
+ *   with the highest BM25 scores, returns them in the order of descending scores,
+ *   and adds their scores as a DOUBLE attribute "_score" (see DataReader).
+ * 
+ */
 public class FuzzyTokenSourcePredicate extends FuzzyTokenPredicate {
     
     private final String tableName;
+    private final Integer topK;
 
+    public FuzzyTokenSourcePredicate(
+            String query, 
+            List<String> attributeNames,
+            String luceneAnalyzerStr,
+            Double thresholdRatio,
+            String tableName) {
+        this(query, attributeNames, luceneAnalyzerStr, thresholdRatio, tableName, null);
+    }
+
+    @JsonCreator
     public FuzzyTokenSourcePredicate(
             @JsonProperty(value = PropertyNameConstants.FUZZY_TOKEN_QUERY, required = true)
             String query, 
@@ -21,9 +41,12 @@ public class FuzzyTokenSourcePredicate extends FuzzyTokenPredicate {
             @JsonProperty(value = PropertyNameConstants.FUZZY_TOKEN_THRESHOLD_RATIO, required = true)
             Double thresholdRatio,
             @JsonProperty(value = PropertyNameConstants.TABLE_NAME, required = true)
-            String tableName) {
+            String tableName,
+            @JsonProperty(value = PropertyNameConstants.TOP_K, required = false)
+            Integer topK) {
         super(query, attributeNames, luceneAnalyzerStr, thresholdRatio);
         this.tableName = tableName;
+        this.topK = topK;
     }
     
     @JsonProperty(value = PropertyNameConstants.TABLE_NAME)
@@ -31,6 +54,11 @@ public class FuzzyTokenSourcePredicate extends FuzzyTokenPredicate {
         return this.tableName;
     }
     
+    @JsonProperty(value = PropertyNameConstants.TOP_K)
+    public Integer getTopK() {
+        return this.topK;
+    }
+    
     @Override
     public IOperator newOperator() {
         return new FuzzyTokenMatcherSourceOperator(this);
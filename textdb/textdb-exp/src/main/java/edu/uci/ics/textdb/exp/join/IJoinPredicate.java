@@ -1,5 +1,7 @@
 package edu.uci.ics.textdb.exp.join;
 
+import java.util.List;
+
 import edu.uci.ics.textdb.api.dataflow.IPredicate;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.schema.Schema;
@@ -21,4 +23,52 @@ public interface IJoinPredicate extends IPredicate {
 	String getInnerAttributeName();
 	
 	String getOuterAttributeName();
+	
+	/**
+	 * Indicates whether the predicate can only join two tuples with equal join keys
+	 *   (see {@link #getJoinKey(Tuple)}). If so, Join builds a hash table on the keys of
+	 *   the inner tuples, and only joins an outer tuple with the inner tuples of the same key,
+	 *   instead of trying all the pairs of tuples.
+	 * 
+	 * @return false by default
+	 */
+	default boolean hasJoinKey() {
+		return false;
+	}
+	
+	/**
+	 * Gets the join key of an inner or outer tuple, it's only called if {@link #hasJoinKey()} is true.
+	 * The keys are compared by equals and hashCode.
+	 * 
+	 * @param tuple
+	 * @return the join key, or null if the tuple can't be joined with any tuple
+	 */
+	default Object getJoinKey(Tuple tuple) {
+		return null;
+	}
+	
+	/**
+	 * Indicates whether the join key of a tuple (see {@link #getJoinKey(Tuple)}) is the value of its _ID.
+	 * If so, Join reads the inner tuples before it opens the outer operator, and pushes their _IDs down
+	 *   to the outer operator if it's a source that can skip the other documents 
+	 *   (see {@link edu.uci.ics.textdb.exp.common.IIdFilterableSourceOperator}).
+	 * 
+	 * @return false by default
+	 */
+	default boolean hasIdJoinKey() {
+		return false;
+	}
+	
+	/**
+	 * Builds an index on the inner tuples to find the candidates of an outer tuple,
+	 *   it's only called if {@link #hasJoinKey()} is false.
+	 * Join only joins an outer tuple with its candidates, instead of all the inner tuples.
+	 * 
+	 * @param innerTuples
+	 * @return the index, or null if the predicate can't filter the pairs of tuples (the default)
+	 * @throws DataFlowException
+	 */
+	default JoinCandidateIndex createCandidateIndex(List<Tuple> innerTuples) throws DataFlowException {
+		return null;
+	}
 }
\ No newline at end of file
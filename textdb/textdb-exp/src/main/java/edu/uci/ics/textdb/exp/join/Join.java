@@ -1,7 +1,12 @@
 package edu.uci.ics.textdb.exp.join;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import edu.uci.ics.textdb.api.constants.ErrorMessages;
 import edu.uci.ics.textdb.api.dataflow.IOperator;
@@ -9,6 +14,8 @@ import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.exp.common.IIdFilterableSourceOperator;
+import edu.uci.ics.textdb.exp.utils.TupleCodec;
 
 
 /**
@@ -31,6 +38,27 @@ import edu.uci.ics.textdb.api.tuple.Tuple;
  * Join requires two operators to share ID attribute and attribute to join.
  * For other attributes, join will perform an intersection on them.
  * 
+ * If the predicate only joins the tuples with equal join keys (see {@link IJoinPredicate#hasJoinKey()}),
+ * for example the same ID, Join builds a hash table on the join keys of the inner tuples,
+ * and each outer tuple is only joined with the inner tuples of the same key.
+ * Otherwise each outer tuple is joined with the candidates found by the index of the predicate
+ * (see {@link IJoinPredicate#createCandidateIndex(List)}), or with all the inner tuples.
+ * 
+ * If the join keys are the IDs (see {@link IJoinPredicate#hasIdJoinKey()}), and the outer operator
+ * is a source that can filter its documents by IDs (see {@link IIdFilterableSourceOperator}),
+ * Join reads the inner tuples when it's opened, and pushes their IDs down to the outer source
+ * before opening it, so the outer source only reads the documents that can be joined.
+ * 
+ * The inner tuples are kept in memory. If the predicate has join keys and the inner tuples 
+ * exceed the memory budget, the inner and outer tuples are hash-partitioned to temporary files
+ * by their join keys, and the partitions are joined one by one. The results are then returned
+ * in the order of the partitions, instead of the order of the outer tuples.
+ * The number of partitions is derived from the size of the inner tuples, so each partition is expected
+ * to fit in the memory budget. An inner partition that still exceeds the budget is partitioned again
+ * (with its outer partition) using a different hash seed. If that doesn't split it, for example
+ * when most of its tuples have the same join key, its inner tuples are loaded in chunks within the budget,
+ * and its outer tuples are read again for each chunk.
+ * 
  * Join assumes two tuples are the same if their ID are same.
  * If some attribute values of two tuples are different, if the attribute is the 
  * join attribute, the tuple is discarded. If the attribute is not join attribute,
@@ -41,16 +69,49 @@ import edu.uci.ics.textdb.api.tuple.Tuple;
  *
  */
 public class Join implements IOperator {
+    
+    public static final long DEFAULT_MEMORY_BUDGET_BYTES = 256L << 20;
+    // the maximum number of partitions the tuples (or a partition of them) are spilled into at once
+    public static final int MAX_SPILL_PARTITIONS = 256;
+    // the maximum number of times a partition is partitioned again
+    public static final int MAX_SPILL_DEPTH = 8;
+    // the IDs of the inner tuples are not pushed down to the outer source if there are more of them
+    public static final int MAX_PUSHED_DOWN_IDS = 100000;
 
     private IOperator innerOperator;
     private IOperator outerOperator;
     private IJoinPredicate joinPredicate;
     
     private List<Tuple> innerTupleList = null;
-    // Cursor to maintain the position of tuple to be obtained from innerTupleList.
+    // The inner tuples grouped by their join keys, null if the predicate has no join keys.
+    private HashMap<Object, List<Tuple>> innerTupleMap = null;
+    // The index to find the inner candidates if the predicate has no join keys, null if the predicate has no index.
+    private JoinCandidateIndex candidateIndex = null;
+    // The inner tuples that may be joined with the current outer tuple.
+    private List<Tuple> currentInnerCandidates = null;
+    // Cursor to maintain the position of tuple to be obtained from currentInnerCandidates.
     private Integer innerTupleListCursor = 0;
     private Tuple currentOuterTuple;
+    private Schema innerOperatorSchema;
+    private Schema outerOperatorSchema;
     private Schema outputSchema;
+    
+    // the maximum estimated memory of the inner tuples (see TupleCodec.estimateMemorySize)
+    private long memoryBudgetBytes = DEFAULT_MEMORY_BUDGET_BYTES;
+    // the partitions of the inner and outer tuples on disk, null if the inner tuples fit in the memory budget
+    private SpillPartitions innerPartitions = null;
+    private SpillPartitions outerPartitions = null;
+    // the levels of the partitions being joined, the partitions of the top level are partitioned from
+    //   the partition being joined in the level below it, and the first level is innerPartitions and outerPartitions
+    private ArrayDeque<SpillLevel> spillLevels = null;
+    // the maximum estimated memory of the inner tuples loaded at the same time
+    private long maxInnerTuplesMemorySize = 0;
+    
+    // if the IDs of the inner tuples are pushed down to the outer source when it's possible
+    private boolean idFilterPushDown = true;
+    // the IDs of the inner tuples collected while they are loaded, null if they are not pushed down
+    private Set<String> innerIds = null;
+    private boolean idFilterPushedDown = false;
 
     private int cursor = CLOSED;
     
@@ -83,10 +144,21 @@ public class Join implements IOperator {
         
         // generate output schema from schema of inner and outer operator
         innerOperator.open();
-        Schema innerOperatorSchema = innerOperator.getOutputSchema();
+        innerOperatorSchema = innerOperator.getOutputSchema();
+        
+        idFilterPushedDown = false;
+        maxInnerTuplesMemorySize = 0;
+        if (canPushDownIdFilter()) {
+            // load the inner tuples first, and only read the outer documents with the same IDs
+            innerIds = new HashSet<>();
+            loadInnerTuples();
+            ((IIdFilterableSourceOperator) outerOperator).setIdFilter(innerIds);
+            idFilterPushedDown = innerIds != null;
+            innerIds = null;
+        }
         
         outerOperator.open();
-        Schema outerOperatorSchema = outerOperator.getOutputSchema();
+        outerOperatorSchema = outerOperator.getOutputSchema();
         
         this.outputSchema = joinPredicate.generateOutputSchema(innerOperatorSchema, outerOperatorSchema);
 
@@ -108,20 +180,14 @@ public class Join implements IOperator {
     	
         // load all tuples from inner operator into memory in the first time
     	if (innerTupleList == null) {
-    	    innerTupleList = new ArrayList<>();
-    	    Tuple tuple;
-            while ((tuple = innerOperator.getNextTuple()) != null) {
-                innerTupleList.add(tuple);
-            }
+    	    loadInnerTuples();
+    	}
+    	if (innerPartitions != null && outerPartitions == null) {
+    	    spillOuterTuples();
     	}
     	
-    	// load the first outer tuple
-    	currentOuterTuple = outerOperator.getNextTuple();
-    	
-    	// return null if either
-    	//   inner tuple list is empty, or
-    	//   all outer tuples have been consumed
-    	if (innerTupleList.isEmpty() || currentOuterTuple == null) {
+    	// return null if inner tuple list is empty
+    	if (innerPartitions == null && innerTupleList.isEmpty()) {
     	    return null;
     	}
 
@@ -146,6 +212,275 @@ public class Join implements IOperator {
             throw new DataFlowException(e.getMessage(), e);
         }
     }
+    
+    /*
+     * Loads all the inner tuples, and builds the hash table on their join keys
+     *   if the predicate has join keys.
+     * 
+     * If the predicate has join keys, and the inner tuples exceed the memory budget,
+     *   the inner and outer tuples are partitioned to disk by their join keys instead,
+     *   and the partitions are joined one by one (see getNextOuterTuple).
+     */
+    private void loadInnerTuples() throws TextDBException {
+        innerTupleList = new ArrayList<>();
+        long innerTuplesMemorySize = 0;
+        Tuple tuple;
+        while ((tuple = innerOperator.getNextTuple()) != null) {
+            collectInnerId(tuple);
+            innerTupleList.add(tuple);
+            innerTuplesMemorySize += TupleCodec.estimateMemorySize(tuple);
+            maxInnerTuplesMemorySize = Math.max(maxInnerTuplesMemorySize, innerTuplesMemorySize);
+            if (innerTuplesMemorySize > memoryBudgetBytes && joinPredicate.hasJoinKey()) {
+                spillInnerTuples();
+                return;
+            }
+        }
+        buildHashTable();
+    }
+    
+    private boolean canPushDownIdFilter() {
+        return idFilterPushDown && joinPredicate.hasJoinKey() && joinPredicate.hasIdJoinKey()
+                && outerOperator instanceof IIdFilterableSourceOperator
+                && ((IIdFilterableSourceOperator) outerOperator).canFilterIds();
+    }
+    
+    /*
+     * Adds the ID of an inner tuple to the IDs pushed down to the outer source, 
+     *   if they are being collected. The IDs are not pushed down if there are too many of them.
+     */
+    private void collectInnerId(Tuple innerTuple) {
+        if (innerIds == null) {
+            return;
+        }
+        Object joinKey = joinPredicate.getJoinKey(innerTuple);
+        if (joinKey != null) {
+            innerIds.add(joinKey.toString());
+        }
+        if (innerIds.size() > MAX_PUSHED_DOWN_IDS) {
+            innerIds = null;
+        }
+    }
+    
+    private void buildHashTable() throws TextDBException {
+        innerTupleMap = null;
+        candidateIndex = null;
+        if (joinPredicate.hasJoinKey()) {
+            innerTupleMap = new HashMap<>();
+            for (Tuple innerTuple : innerTupleList) {
+                Object joinKey = joinPredicate.getJoinKey(innerTuple);
+                // a tuple without a join key can't be joined
+                if (joinKey != null) {
+                    innerTupleMap.computeIfAbsent(joinKey, key -> new ArrayList<>()).add(innerTuple);
+                }
+            }
+        } else {
+            candidateIndex = joinPredicate.createCandidateIndex(innerTupleList);
+        }
+    }
+    
+    /*
+     * Spills the loaded inner tuples and the rest of the inner tuples to disk,
+     *   the outer tuples are partitioned after the outer operator is opened (see spillOuterTuples).
+     * The inner tuples are first written to one run, since their size is only known once they are all read,
+     *   then the run is partitioned into enough partitions for each of them to fit in the memory budget.
+     * The tuples without join keys are dropped, since they can't be joined.
+     * The partitions are only kept if all the tuples are added, otherwise their files are deleted right away.
+     */
+    private void spillInnerTuples() throws TextDBException {
+        SpillPartitions run = new SpillPartitions(innerOperatorSchema, 1, 0);
+        try {
+            for (Tuple innerTuple : innerTupleList) {
+                addToPartitions(run, innerTuple);
+            }
+            innerTupleList = new ArrayList<>();
+            Tuple tuple;
+            while ((tuple = innerOperator.getNextTuple()) != null) {
+                collectInnerId(tuple);
+                addToPartitions(run, tuple);
+            }
+            run.finishAdding();
+            innerPartitions = partition(run, 0, getNumSpillPartitions(run.getPartitionMemorySize(0)), 1);
+        } finally {
+            run.close();
+        }
+    }
+    
+    /*
+     * Partitions all the outer tuples to disk, in the same way as the inner tuples.
+     */
+    private void spillOuterTuples() throws TextDBException {
+        SpillPartitions partitions = new SpillPartitions(outerOperatorSchema, 
+                innerPartitions.getNumPartitions(), innerPartitions.getSeed());
+        try {
+            Tuple tuple;
+            while ((tuple = outerOperator.getNextTuple()) != null) {
+                addToPartitions(partitions, tuple);
+            }
+            partitions.finishAdding();
+        } catch (RuntimeException e) {
+            partitions.close();
+            throw e;
+        }
+        outerPartitions = partitions;
+        
+        innerTupleMap = new HashMap<>();
+        spillLevels = new ArrayDeque<>();
+        spillLevels.push(new SpillLevel(innerPartitions, outerPartitions, innerPartitions.getNumTuples(), 1));
+    }
+    
+    private void addToPartitions(SpillPartitions partitions, Tuple tuple) throws DataFlowException {
+        Object joinKey = joinPredicate.getJoinKey(tuple);
+        if (joinKey != null) {
+            partitions.add(joinKey, tuple);
+        }
+    }
+    
+    /*
+     * Partitions the tuples of one partition into new partitions, using the hash seed of the new partitions.
+     * The new partitions are only returned if all the tuples are added, otherwise their files are deleted right away.
+     */
+    private SpillPartitions partition(SpillPartitions partitions, int partition, int numPartitions, int seed) 
+            throws TextDBException {
+        SpillPartitions newPartitions = new SpillPartitions(partitions.getSchema(), numPartitions, seed);
+        try {
+            partitions.openPartition(partition);
+            Tuple tuple;
+            while ((tuple = partitions.getNextTuple()) != null) {
+                addToPartitions(newPartitions, tuple);
+            }
+            newPartitions.finishAdding();
+        } catch (RuntimeException e) {
+            newPartitions.close();
+            throw e;
+        }
+        return newPartitions;
+    }
+    
+    /*
+     * Gets the number of partitions of the tuples of an estimated memory size, so each partition is expected to
+     *   take half of the memory budget, which leaves room for the partitions that are larger than the average.
+     */
+    private int getNumSpillPartitions(long memorySize) {
+        long numPartitions = 2 * (memorySize / Math.max(1, memoryBudgetBytes) + 1);
+        return (int) Math.min(MAX_SPILL_PARTITIONS, numPartitions);
+    }
+    
+    /*
+     * A partition is partitioned again if its inner tuples exceed the memory budget, unless it has one inner tuple,
+     *   partitioning it didn't split its inner tuples last time (for example, if they all have the same join key),
+     *   or it's partitioned too many times already.
+     */
+    private boolean needsPartitioning(SpillLevel level, int partition) {
+        return level.innerPartitions.getPartitionMemorySize(partition) > memoryBudgetBytes
+                && level.innerPartitions.getPartitionSize(partition) > 1
+                && level.innerPartitions.getPartitionSize(partition) < level.numInnerTuples
+                && level.depth < MAX_SPILL_DEPTH;
+    }
+    
+    /*
+     * Partitions the inner and outer tuples of a partition again, with the next hash seed.
+     */
+    private SpillLevel partitionAgain(SpillLevel level, int partition) throws TextDBException {
+        SpillPartitions newInnerPartitions = partition(level.innerPartitions, partition, 
+                getNumSpillPartitions(level.innerPartitions.getPartitionMemorySize(partition)), 
+                level.innerPartitions.getSeed() + 1);
+        SpillPartitions newOuterPartitions;
+        try {
+            newOuterPartitions = partition(level.outerPartitions, partition, 
+                    newInnerPartitions.getNumPartitions(), newInnerPartitions.getSeed());
+        } catch (RuntimeException e) {
+            newInnerPartitions.close();
+            throw e;
+        }
+        return new SpillLevel(newInnerPartitions, newOuterPartitions, 
+                level.innerPartitions.getPartitionSize(partition), level.depth + 1);
+    }
+    
+    /*
+     * Loads the next inner tuples of the partition being read, until they exceed the memory budget,
+     *   and builds the hash table on them.
+     * It returns false if all the inner tuples of the partition are already loaded.
+     */
+    private boolean loadInnerChunk(SpillPartitions partitions) throws TextDBException {
+        innerTupleList = new ArrayList<>();
+        long innerTuplesMemorySize = 0;
+        Tuple tuple;
+        while (innerTuplesMemorySize <= memoryBudgetBytes && (tuple = partitions.getNextTuple()) != null) {
+            innerTupleList.add(tuple);
+            innerTuplesMemorySize += TupleCodec.estimateMemorySize(tuple);
+        }
+        maxInnerTuplesMemorySize = Math.max(maxInnerTuplesMemorySize, innerTuplesMemorySize);
+        if (innerTupleList.isEmpty()) {
+            return false;
+        }
+        buildHashTable();
+        return true;
+    }
+    
+    /*
+     * Gets the next outer tuple from the outer operator, or from the outer partitions if the tuples are spilled.
+     * When the outer tuples of a partition are all read, they are read again with the next chunk of 
+     *   the inner tuples of the partition, or the inner tuples of the next partition are loaded.
+     * A partition that is partitioned again is joined through the level of its new partitions,
+     *   its tuples are all read by then, so the level below moves on to its next partition afterwards.
+     */
+    private Tuple getNextOuterTuple() throws TextDBException {
+        if (innerPartitions == null) {
+            return outerOperator.getNextTuple();
+        }
+        while (! spillLevels.isEmpty()) {
+            SpillLevel level = spillLevels.peek();
+            if (level.currentPartition >= 0) {
+                Tuple outerTuple = level.outerPartitions.getNextTuple();
+                if (outerTuple != null) {
+                    return outerTuple;
+                }
+                if (loadInnerChunk(level.innerPartitions)) {
+                    level.outerPartitions.openPartition(level.currentPartition);
+                    continue;
+                }
+            }
+            level.currentPartition++;
+            if (level.currentPartition >= level.innerPartitions.getNumPartitions()) {
+                spillLevels.pop();
+                level.close();
+                continue;
+            }
+            int partition = level.currentPartition;
+            // skip the partition if either side is empty
+            if (level.innerPartitions.getPartitionSize(partition) == 0 
+                    || level.outerPartitions.getPartitionSize(partition) == 0) {
+                continue;
+            }
+            if (needsPartitioning(level, partition)) {
+                spillLevels.push(partitionAgain(level, partition));
+                continue;
+            }
+            level.innerPartitions.openPartition(partition);
+            loadInnerChunk(level.innerPartitions);
+            level.outerPartitions.openPartition(partition);
+        }
+        return null;
+    }
+    
+    /*
+     * Gets the inner tuples that may be joined with the outer tuple:
+     *   the inner tuples with the same join key, the candidates found by the index of the predicate,
+     *   or all the inner tuples if the predicate has neither.
+     */
+    private List<Tuple> getInnerCandidates(Tuple outerTuple) {
+        if (candidateIndex != null) {
+            return candidateIndex.getCandidates(outerTuple);
+        }
+        if (innerTupleMap == null) {
+            return innerTupleList;
+        }
+        Object joinKey = joinPredicate.getJoinKey(outerTuple);
+        if (joinKey == null) {
+            return Collections.emptyList();
+        }
+        return innerTupleMap.getOrDefault(joinKey, Collections.emptyList());
+    }
 
     /*
      * Called from getNextTuple() method in order to obtain the next tuple 
@@ -154,25 +489,23 @@ public class Join implements IOperator {
      * It returns null if there's no more tuples.
      */
     private Tuple computeNextMatchingTuple() throws Exception {
-        if (innerTupleList.isEmpty()) {
-            return null;
-        }
-        
         Tuple nextTuple = null;
         while (nextTuple == null) {
-            // if reach the end of inner tuple list
-            if (innerTupleListCursor >= innerTupleList.size()) {
+            // if reach the end of the inner tuples of the current outer tuple
+            if (currentOuterTuple == null || innerTupleListCursor >= currentInnerCandidates.size()) {
                 // get next outer tuple
-                currentOuterTuple = outerOperator.getNextTuple();
+                currentOuterTuple = getNextOuterTuple();
                 if (currentOuterTuple == null) {
                     return null;
                 }
+                currentInnerCandidates = getInnerCandidates(currentOuterTuple);
                 // reset cursor if outerTuple is not null
                 innerTupleListCursor = 0;
+                continue;
             }
             // compute next tuple
             nextTuple = joinPredicate.joinTuples(
-                    innerTupleList.get(innerTupleListCursor), currentOuterTuple, outputSchema);
+                    currentInnerCandidates.get(innerTupleListCursor), currentOuterTuple, outputSchema);
             // increment cursor
             innerTupleListCursor++;
         }
@@ -191,10 +524,31 @@ public class Join implements IOperator {
             outerOperator.close();
         } catch (Exception e) {
             throw new DataFlowException(e.getMessage(), e);
+        } finally {
+            // delete the spilled tuples,
+            //   the outer partitions are null if the outer tuples failed to spill after the inner tuples did
+            if (innerPartitions != null) {
+                innerPartitions.close();
+                innerPartitions = null;
+            }
+            if (outerPartitions != null) {
+                outerPartitions.close();
+                outerPartitions = null;
+            }
+            if (spillLevels != null) {
+                for (SpillLevel level : spillLevels) {
+                    level.close();
+                }
+                spillLevels = null;
+            }
         }
         
         // Set the inner tuple list back to null on close.
         innerTupleList = null;
+        innerTupleMap = null;
+        candidateIndex = null;
+        currentInnerCandidates = null;
+        currentOuterTuple = null;
         innerTupleListCursor = 0;
         cursor = CLOSED;
     }
@@ -238,7 +592,84 @@ public class Join implements IOperator {
         return offset;
     }
     
+    /**
+     * Sets the memory budget of the inner tuples, it must be set before the operator is opened.
+     * If the predicate has join keys and the inner tuples exceed the budget, the tuples are spilled to disk.
+     * 
+     * @param memoryBudgetBytes, the maximum estimated memory of the inner tuples in bytes
+     */
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+    
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+    
+    /**
+     * @return true if the inner tuples exceeded the memory budget, and the tuples are spilled to disk
+     */
+    public boolean isSpilledToDisk() {
+        return innerPartitions != null;
+    }
+    
+    /**
+     * @return the maximum estimated memory of the inner tuples loaded at the same time since the operator was opened,
+     *   it exceeds the memory budget by at most one tuple if the predicate has join keys
+     */
+    public long getMaxInnerTuplesMemorySize() {
+        return maxInnerTuplesMemorySize;
+    }
+    
+    /**
+     * Sets if the IDs of the inner tuples are pushed down to the outer source when it's possible,
+     *   the default is true. It must be set before the operator is opened.
+     * 
+     * @param idFilterPushDown
+     */
+    public void setIdFilterPushDown(boolean idFilterPushDown) {
+        this.idFilterPushDown = idFilterPushDown;
+    }
+    
+    public boolean isIdFilterPushDown() {
+        return idFilterPushDown;
+    }
+    
+    /**
+     * @return true if the IDs of the inner tuples were pushed down to the outer source when the operator was opened
+     */
+    public boolean isIdFilterPushedDown() {
+        return idFilterPushedDown;
+    }
+    
     public IJoinPredicate getPredicate() {
         return this.joinPredicate;
     }
+    
+    /*
+     * The inner and outer partitions of one level of spilling, and the partition of them being joined.
+     */
+    private static class SpillLevel {
+        
+        private final SpillPartitions innerPartitions;
+        private final SpillPartitions outerPartitions;
+        // the number of the inner tuples that are partitioned into this level
+        private final int numInnerTuples;
+        // the depth of the level, the first level is 1
+        private final int depth;
+        private int currentPartition = -1;
+        
+        private SpillLevel(SpillPartitions innerPartitions, SpillPartitions outerPartitions, 
+                int numInnerTuples, int depth) {
+            this.innerPartitions = innerPartitions;
+            this.outerPartitions = outerPartitions;
+            this.numInnerTuples = numInnerTuples;
+            this.depth = depth;
+        }
+        
+        private void close() {
+            innerPartitions.close();
+            outerPartitions.close();
+        }
+    }
 }
@@ -0,0 +1,23 @@
+package edu.uci.ics.textdb.exp.join;
+
+import java.util.List;
+
+import edu.uci.ics.textdb.api.tuple.Tuple;
+
+/**
+ * JoinCandidateIndex is an index on the inner tuples of Join built by a join predicate
+ *   (see {@link IJoinPredicate#createCandidateIndex(List)}).
+ * For an outer tuple, it finds the inner tuples that may be joined with it, 
+ *   and the other inner tuples are skipped by Join.
+ */
+public interface JoinCandidateIndex {
+    
+    /**
+     * Gets the inner tuples that may be joined with an outer tuple.
+     * 
+     * @param outerTuple
+     * @return the candidate inner tuples, in the order of the inner tuples
+     */
+    List<Tuple> getCandidates(Tuple outerTuple);
+    
+}
@@ -1,9 +1,11 @@
 package edu.uci.ics.textdb.exp.join;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -182,6 +184,25 @@ public class JoinDistancePredicate extends PredicateBase implements IJoinPredica
         return intersectionSchema;        
     }
 
+    /**
+     * Only the tuples with the same _ID are joined.
+     */
+    @Override
+    public boolean hasJoinKey() {
+        return true;
+    }
+
+    @Override
+    public Object getJoinKey(Tuple tuple) {
+        IField idField = tuple.getField(SchemaConstants._ID);
+        return idField == null ? null : idField.getValue();
+    }
+
+    @Override
+    public boolean hasIdJoinKey() {
+        return true;
+    }
+
     /**
      * This method is called by the Join operator to perform the join on the 
      * tuples passed.
@@ -226,40 +247,55 @@ public class JoinDistancePredicate extends PredicateBase implements IJoinPredica
 	        outerSpanList = spanFieldOfOuterTuple.getValue();
 	    }
 	
-	    Iterator<Span> outerSpanIter = outerSpanList.iterator();
+	    // only the spans of the attribute to be joined are compared
+	    List<Span> innerJoinSpans = innerSpanList.stream()
+	            .filter(span -> span.getAttributeName().equals(this.joinAttributeName)).collect(Collectors.toList());
+	    List<Span> outerJoinSpans = outerSpanList.stream()
+	            .filter(span -> span.getAttributeName().equals(this.joinAttributeName)).collect(Collectors.toList());
+	    if (innerJoinSpans.isEmpty() || outerJoinSpans.isEmpty()) {
+	        return null;
+	    }
 	
-	    // TODO Currently we are using two loops to go over two span lists.
-	    // We can optimize it by sorting the spans based on the start position
-	    // and then doing a "sort merge" of the two lists.
-	    // (Also probably weed out the spans with fields that don't agree with
-	    // the ones specified in the JoinPredicate during "sort merge"?)
-	    while (outerSpanIter.hasNext()) {
-	        Span outerSpan = outerSpanIter.next();
-	        // Check if the field matches the filed over which we want to join.
-	        // If not return null.
-	        if (!outerSpan.getAttributeName().equals(this.joinAttributeName)) {
-	            continue;
+	    /*
+	     * Both span lists are sorted by the start position, and the outer spans are merged with
+	     * a sliding window of the inner spans whose starts are within the threshold.
+	     * The pairs are then sorted back to the order of the lists (outer span first, then inner span),
+	     * which is the order of the joined spans.
+	     */
+	    int threshold = this.getThreshold();
+	    int[] innerOrder = sortByStart(innerJoinSpans);
+	    int[] outerOrder = sortByStart(outerJoinSpans);
+	    List<Long> joinedPairs = new ArrayList<>();
+	    int windowStart = 0;
+	    for (int outerIndex : outerOrder) {
+	        Span outerSpan = outerJoinSpans.get(outerIndex);
+	        while (windowStart < innerOrder.length
+	                && innerJoinSpans.get(innerOrder[windowStart]).getStart() < outerSpan.getStart() - threshold) {
+	            windowStart++;
 	        }
-	        Iterator<Span> innerSpanIter = innerSpanList.iterator();
-	        while (innerSpanIter.hasNext()) {
-	            Span innerSpan = innerSpanIter.next();
-	            if (!innerSpan.getAttributeName().equals(this.joinAttributeName)) {
-	                continue;
+	        for (int i = windowStart; i < innerOrder.length; i++) {
+	            Span innerSpan = innerJoinSpans.get(innerOrder[i]);
+	            if (innerSpan.getStart() > outerSpan.getStart() + threshold) {
+	                break;
 	            }
-	            Integer threshold = this.getThreshold();
-	            if (Math.abs(outerSpan.getStart() - innerSpan.getStart()) <= threshold
-	                    && Math.abs(outerSpan.getEnd() - innerSpan.getEnd()) <= threshold) {
-	                Integer newSpanStartIndex = Math.min(innerSpan.getStart(), outerSpan.getStart());
-	                Integer newSpanEndIndex = Math.max(innerSpan.getEnd(), outerSpan.getEnd());
-	                String attributeName = this.joinAttributeName;
-	                String fieldValue = (String) innerTuple.getField(attributeName).getValue();
-	                String newFieldValue = fieldValue.substring(newSpanStartIndex, newSpanEndIndex);
-	                String spanKey = outerSpan.getKey() + "_" + innerSpan.getKey();
-	                Span newSpan = new Span(attributeName, newSpanStartIndex, newSpanEndIndex, spanKey, newFieldValue);
-	                newJoinSpanList.add(newSpan);
+	            if (Math.abs(outerSpan.getEnd() - innerSpan.getEnd()) <= threshold) {
+	                joinedPairs.add((long) outerIndex * innerJoinSpans.size() + innerOrder[i]);
 	            }
 	        }
 	    }
+	    Collections.sort(joinedPairs);
+	
+	    String fieldValue = (String) innerTuple.getField(this.joinAttributeName).getValue();
+	    for (long joinedPair : joinedPairs) {
+	        Span outerSpan = outerJoinSpans.get((int) (joinedPair / innerJoinSpans.size()));
+	        Span innerSpan = innerJoinSpans.get((int) (joinedPair % innerJoinSpans.size()));
+	        Integer newSpanStartIndex = Math.min(innerSpan.getStart(), outerSpan.getStart());
+	        Integer newSpanEndIndex = Math.max(innerSpan.getEnd(), outerSpan.getEnd());
+	        String newFieldValue = fieldValue.substring(newSpanStartIndex, newSpanEndIndex);
+	        String spanKey = outerSpan.getKey() + "_" + innerSpan.getKey();
+	        Span newSpan = new Span(this.joinAttributeName, newSpanStartIndex, newSpanEndIndex, spanKey, newFieldValue);
+	        newJoinSpanList.add(newSpan);
+	    }
 	
 	    if (newJoinSpanList.isEmpty()) {
 	        return null;
@@ -279,6 +315,18 @@ public class JoinDistancePredicate extends PredicateBase implements IJoinPredica
 	    return new Tuple(outputSchema, outputFields.stream().toArray(IField[]::new));
 	}
 
+	/**
+	 * Gets the indexes of the spans in the order of their start positions.
+	 * 
+	 * @param spanList
+	 * @return the sorted indexes
+	 */
+	private static int[] sortByStart(List<Span> spanList) {
+	    return IntStream.range(0, spanList.size()).boxed()
+	            .sorted(Comparator.comparingInt(i -> spanList.get(i).getStart()))
+	            .mapToInt(Integer::intValue).toArray();
+	}
+	
 	/**
 	 * Used to compare the value's of a field from the inner and outer tuples'.
 	 * 
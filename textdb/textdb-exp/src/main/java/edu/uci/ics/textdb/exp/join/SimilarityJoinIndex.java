@@ -0,0 +1,134 @@
+package edu.uci.ics.textdb.exp.join;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.uci.ics.textdb.api.tuple.Tuple;
+
+/**
+ * SimilarityJoinIndex finds the inner tuples that may have a span value similar to a span value
+ *   of an outer tuple, using prefix filtering.
+ *
+ * The tokens of every span value (see {@link SimilarityMeasure#getTokens(String)}) are sorted in a global order,
+ *   the least frequent tokens (in the inner span values) first.
+ * Two values with a similarity above the threshold must have a common token in their prefixes
+ *   (see {@link SimilarityMeasure#getPrefixLength(String, int, double)}),
+ *   so only the prefix tokens of the inner values are indexed, and only the prefix tokens of the outer values are looked up.
+ * The values too short to be filtered are compared with all the values.
+ *
+ * The candidates are verified by SimilarityJoinPredicate.joinTuples.
+ */
+class SimilarityJoinIndex implements JoinCandidateIndex {
+
+    private final SimilarityMeasure similarityMeasure;
+    private final double threshold;
+    private final String outerJoinAttrName;
+
+    private final List<Tuple> innerTuples;
+
+    // the number of inner span values containing a token
+    private final Map<String, Integer> tokenFrequencies = new HashMap<>();
+    private final Comparator<String> tokenOrder;
+
+    // the indexes of the inner tuples with the token in the prefix of a span value
+    private final Map<String, List<Integer>> prefixTokenIndex = new HashMap<>();
+    // the inner tuples with a span value that can't be filtered
+    private final BitSet unfilteredInnerTuples = new BitSet();
+
+    private long numCandidates = 0;
+
+    /**
+     * @param innerTuples
+     * @param innerJoinAttrName
+     * @param outerJoinAttrName
+     * @param similarityMeasure
+     * @param threshold, the similarity threshold, which must be greater than 0
+     */
+    SimilarityJoinIndex(List<Tuple> innerTuples, String innerJoinAttrName, String outerJoinAttrName,
+            SimilarityMeasure similarityMeasure, double threshold) {
+        this.similarityMeasure = similarityMeasure;
+        this.threshold = threshold;
+        this.outerJoinAttrName = outerJoinAttrName;
+        this.innerTuples = innerTuples;
+
+        List<Set<String>> innerSpanValues = new ArrayList<>();
+        for (Tuple innerTuple : innerTuples) {
+            Set<String> spanValues = SimilarityJoinPredicate.getSpanValues(innerTuple, innerJoinAttrName);
+            innerSpanValues.add(spanValues);
+            for (String spanValue : spanValues) {
+                for (String token : similarityMeasure.getTokens(spanValue)) {
+                    tokenFrequencies.merge(token, 1, Integer::sum);
+                }
+            }
+        }
+        this.tokenOrder = Comparator.<String>comparingInt(token -> tokenFrequencies.getOrDefault(token, 0))
+                .thenComparing(Comparator.naturalOrder());
+
+        for (int i = 0; i < innerTuples.size(); i++) {
+            for (String spanValue : innerSpanValues.get(i)) {
+                List<String> prefixTokens = getPrefixTokens(spanValue);
+                if (prefixTokens == null) {
+                    unfilteredInnerTuples.set(i);
+                    continue;
+                }
+                for (String token : prefixTokens) {
+                    List<Integer> tupleIndexes = prefixTokenIndex.computeIfAbsent(token, key -> new ArrayList<>());
+                    if (tupleIndexes.isEmpty() || tupleIndexes.get(tupleIndexes.size() - 1) != i) {
+                        tupleIndexes.add(i);
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns null if the span value can't be filtered.
+     */
+    private List<String> getPrefixTokens(String spanValue) {
+        List<String> tokens = similarityMeasure.getTokens(spanValue);
+        int prefixLength = similarityMeasure.getPrefixLength(spanValue, tokens.size(), threshold);
+        if (prefixLength < 0) {
+            return null;
+        }
+        tokens.sort(tokenOrder);
+        return tokens.subList(0, prefixLength);
+    }
+
+    @Override
+    public List<Tuple> getCandidates(Tuple outerTuple) {
+        BitSet candidates = (BitSet) unfilteredInnerTuples.clone();
+        for (String spanValue : SimilarityJoinPredicate.getSpanValues(outerTuple, outerJoinAttrName)) {
+            List<String> prefixTokens = getPrefixTokens(spanValue);
+            if (prefixTokens == null) {
+                candidates.set(0, innerTuples.size());
+                break;
+            }
+            for (String token : prefixTokens) {
+                List<Integer> tupleIndexes = prefixTokenIndex.get(token);
+                if (tupleIndexes != null) {
+                    tupleIndexes.forEach(candidates::set);
+                }
+            }
+        }
+
+        List<Tuple> candidateTuples = new ArrayList<>(candidates.cardinality());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            candidateTuples.add(innerTuples.get(i));
+        }
+        numCandidates += candidateTuples.size();
+        return candidateTuples;
+    }
+
+    /**
+     * @return the total number of candidates found for the outer tuples
+     */
+    long getNumCandidates() {
+        return numCandidates;
+    }
+
+}
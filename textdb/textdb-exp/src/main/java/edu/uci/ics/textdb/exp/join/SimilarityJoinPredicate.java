@@ -20,7 +20,6 @@ import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.*;
 import edu.uci.ics.textdb.exp.common.PredicateBase;
 import edu.uci.ics.textdb.exp.common.PropertyNameConstants;
-import info.debatty.java.stringsimilarity.NormalizedLevenshtein;
 
 /**
  *
@@ -32,8 +31,13 @@ import info.debatty.java.stringsimilarity.NormalizedLevenshtein;
  *   (except the _id, spanList and payload field)
  * TODO: this solution for output schema is only temporary
  *
- * Currently the similarity is measured by normalized Levenshtein distance,
- *   which is the Levenshtein distance divided by the length of the longest string
+ * The similarity is measured by normalized Levenshtein distance by default,
+ *   which is the Levenshtein distance divided by the length of the longest string,
+ *   the other measures are in {@link SimilarityMeasure}.
+ *
+ * Join only compares an outer tuple with the inner tuples that may have a similar span value,
+ *   which are found by prefix filtering (see {@link SimilarityJoinIndex}).
+ *   The prefix filtering is not used if a custom similarity function is set.
  *
  * Example of a same-table, different-tuple join, similarity threshold > 0.8
  *
@@ -65,7 +69,10 @@ public class SimilarityJoinPredicate extends PredicateBase implements IJoinPredi
     String innerJoinAttrName;
     String outerJoinAttrName;
     
+    private SimilarityMeasure similarityMeasure;
     private SimilarityFunc similarityFunc;
+    // true if the similarity function is set by setSimilarityFunction
+    private boolean isCustomSimilarityFunc = false;
     
     @FunctionalInterface
     public static interface SimilarityFunc {
@@ -77,6 +84,10 @@ public class SimilarityJoinPredicate extends PredicateBase implements IJoinPredi
         this(joinAttributeName, joinAttributeName, similarityThreshold);
     }
     
+    public SimilarityJoinPredicate(String innerJoinAttrName, String outerJoinAttrName, Double similarityThreshold) {
+        this(innerJoinAttrName, outerJoinAttrName, similarityThreshold, null);
+    }
+    
     @JsonCreator
     public SimilarityJoinPredicate(
             @JsonProperty(value = PropertyNameConstants.INNER_ATTRIBUTE_NAME, required = true)
@@ -84,7 +95,9 @@ public class SimilarityJoinPredicate extends PredicateBase implements IJoinPredi
             @JsonProperty(value = PropertyNameConstants.OUTER_ATTRIBUTE_NAME, required = true)
             String outerJoinAttrName, 
             @JsonProperty(value = PropertyNameConstants.JOIN_SIMILARITY_THRESHOLD, required = true)
-            Double similarityThreshold) {
+            Double similarityThreshold,
+            @JsonProperty(value = PropertyNameConstants.JOIN_SIMILARITY_MEASURE, required = false)
+            SimilarityMeasure similarityMeasure) {
         if (similarityThreshold > 1) {
             similarityThreshold = 1.0;
         } else if (similarityThreshold < 0) {
@@ -94,9 +107,13 @@ public class SimilarityJoinPredicate extends PredicateBase implements IJoinPredi
         this.innerJoinAttrName = innerJoinAttrName;
         this.outerJoinAttrName = outerJoinAttrName;
         
-        // initialize default similarity function to NormalizedLevenshtein
+        // the default similarity measure is NormalizedLevenshtein
         // which is Levenshtein distance / length of longest string
-        this.similarityFunc = ((str1, str2) -> (1.0 - new NormalizedLevenshtein().distance(str1, str2)));
+        if (similarityMeasure == null) {
+            similarityMeasure = SimilarityMeasure.NORMALIZED_LEVENSHTEIN;
+        }
+        this.similarityMeasure = similarityMeasure;
+        this.similarityFunc = similarityMeasure::calculateSimilarity;
     }
     
     @JsonProperty(value = PropertyNameConstants.INNER_ATTRIBUTE_NAME)
@@ -115,6 +132,11 @@ public class SimilarityJoinPredicate extends PredicateBase implements IJoinPredi
     public Double getThreshold() {
         return this.similarityThreshold;
     }
+    
+    @JsonProperty(value = PropertyNameConstants.JOIN_SIMILARITY_MEASURE)
+    public SimilarityMeasure getSimilarityMeasure() {
+        return this.similarityMeasure;
+    }
 
     
     @Override
@@ -173,10 +195,8 @@ public class SimilarityJoinPredicate extends PredicateBase implements IJoinPredi
                 .filter(span -> span.getAttributeName().equals(outerJoinAttrName)).collect(Collectors.toList());
         
         // get a set of span's values (since multiple spans may have the same value)
-        Set<String> innerSpanValueSet = innerRelevantSpanList.stream()
-                .map(span -> span.getValue()).collect(Collectors.toSet());
-        Set<String> outerSpanValueSet = outerRelevantSpanList.stream()
-                .map(span -> span.getValue()).collect(Collectors.toSet());
+        Set<String> innerSpanValueSet = getSpanValues(innerTuple, innerJoinAttrName);
+        Set<String> outerSpanValueSet = getSpanValues(outerTuple, outerJoinAttrName);
 
         // compute the result value set using the similarity function
         Set<String> resultValueSet = new HashSet<>();
@@ -211,6 +231,33 @@ public class SimilarityJoinPredicate extends PredicateBase implements IJoinPredi
     }
     
     
+    /**
+     * Gets the distinct values of the spans of an attribute in a tuple.
+     * 
+     * @param tuple
+     * @param attributeName
+     * @return the set of span values
+     */
+    static Set<String> getSpanValues(Tuple tuple, String attributeName) {
+        ListField<Span> spanListField = tuple.getField(SchemaConstants.SPAN_LIST);
+        return spanListField.getValue().stream()
+                .filter(span -> span.getAttributeName().equals(attributeName))
+                .map(span -> span.getValue()).collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+    
+    /**
+     * Builds the prefix filtering index on the inner tuples, 
+     *   unless a custom similarity function is set or the threshold is 0 (no tuples are joined).
+     */
+    @Override
+    public JoinCandidateIndex createCandidateIndex(List<Tuple> innerTuples) {
+        if (isCustomSimilarityFunc || similarityThreshold == 0) {
+            return null;
+        }
+        return new SimilarityJoinIndex(innerTuples, innerJoinAttrName, outerJoinAttrName, 
+                similarityMeasure, similarityThreshold);
+    }
+    
     private Tuple mergeTuples(Tuple innerTuple, Tuple outerTuple, Schema outputSchema, List<Span> mergeSpanList) {
         List<IField> resultFields = new ArrayList<>();
         for (String attrName : outputSchema.getAttributeNames()) {
@@ -251,6 +298,7 @@ public class SimilarityJoinPredicate extends PredicateBase implements IJoinPredi
     @JsonIgnore
     public void setSimilarityFunction(SimilarityFunc similarityFunc) {
         this.similarityFunc = similarityFunc;
+        this.isCustomSimilarityFunc = true;
     }
     
     @Override
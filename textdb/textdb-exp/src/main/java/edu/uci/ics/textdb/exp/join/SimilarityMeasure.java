@@ -0,0 +1,149 @@
+package edu.uci.ics.textdb.exp.join;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import info.debatty.java.stringsimilarity.NormalizedLevenshtein;
+
+/**
+ * SimilarityMeasure: the measure of similarity between two span values used by SimilarityJoinPredicate. <br>
+ * 
+ * NORMALIZED_LEVENSHTEIN: <br>
+ * 1 - (Levenshtein distance / length of the longest string), it's case sensitive. <br>
+ * 
+ * JACCARD: <br>
+ * The Jaccard similarity of the sets of (lower case) words of the two strings. <br>
+ * 
+ * COSINE: <br>
+ * The cosine similarity of the sets of (lower case) words of the two strings. <br>
+ * 
+ * Every measure also gives the tokens of a string for prefix filtering (see {@link SimilarityJoinIndex}):
+ * if the similarity of two strings is at least the threshold, they have a common token in their prefixes,
+ * when the tokens of both strings are sorted in the same global order. <br>
+ */
+public enum SimilarityMeasure {
+    NORMALIZED_LEVENSHTEIN("normalizedLevenshtein"),
+    
+    JACCARD("jaccard"),
+    
+    COSINE("cosine");
+    
+    // the length of the grams used to filter the strings for NORMALIZED_LEVENSHTEIN
+    static final int GRAM_LENGTH = 2;
+    
+    // the rounding errors of the thresholds only make the prefixes longer
+    private static final double EPSILON = 1e-9;
+    
+    private final String name;
+    
+    private SimilarityMeasure(String name) {
+        this.name = name;
+    }
+    
+    // use the name string instead of enum string in JSON
+    @JsonValue
+    public String getName() {
+        return this.name;
+    }
+    
+    /**
+     * Calculates the similarity of two strings, from 0 to 1.
+     * 
+     * @param str1
+     * @param str2
+     * @return the similarity
+     */
+    public double calculateSimilarity(String str1, String str2) {
+        switch (this) {
+        case JACCARD:
+        case COSINE:
+            Set<String> words1 = new LinkedHashSet<>(getWords(str1));
+            Set<String> words2 = new LinkedHashSet<>(getWords(str2));
+            if (words1.isEmpty() || words2.isEmpty()) {
+                return words1.isEmpty() && words2.isEmpty() && str1.equals(str2) ? 1.0 : 0.0;
+            }
+            int overlap = 0;
+            for (String word : words1) {
+                if (words2.contains(word)) {
+                    overlap++;
+                }
+            }
+            if (this == JACCARD) {
+                return (double) overlap / (words1.size() + words2.size() - overlap);
+            }
+            return overlap / Math.sqrt((double) words1.size() * words2.size());
+        default:
+            return 1.0 - new NormalizedLevenshtein().distance(str1, str2);
+        }
+    }
+    
+    /**
+     * Gets the tokens of a string used for prefix filtering, the tokens are distinct.
+     * 
+     * @param str
+     * @return the list of tokens
+     */
+    List<String> getTokens(String str) {
+        switch (this) {
+        case JACCARD:
+        case COSINE:
+            return new ArrayList<>(new LinkedHashSet<>(getWords(str)));
+        default:
+            // the same gram may occur several times, the occurrences are numbered to make them distinct
+            List<String> grams = new ArrayList<>();
+            Map<String, Integer> gramCounts = new HashMap<>();
+            for (int i = 0; i + GRAM_LENGTH <= str.length(); i++) {
+                String gram = str.substring(i, i + GRAM_LENGTH);
+                int count = gramCounts.merge(gram, 1, Integer::sum);
+                grams.add(count == 1 ? gram : gram + "\u0000" + count);
+            }
+            return grams;
+        }
+    }
+    
+    /**
+     * Gets the number of tokens in the prefix of a string.
+     * 
+     * @param str
+     * @param numTokens, the number of tokens of the string
+     * @param threshold, the similarity threshold, which must be greater than 0
+     * @return the length of the prefix, or -1 if the string can't be filtered, 
+     *   and it must be compared with all the strings
+     */
+    int getPrefixLength(String str, int numTokens, double threshold) {
+        int prefixLength;
+        switch (this) {
+        case JACCARD:
+            prefixLength = numTokens - (int) Math.ceil(threshold * numTokens - EPSILON) + 1;
+            break;
+        case COSINE:
+            prefixLength = numTokens - (int) Math.ceil(threshold * threshold * numTokens - EPSILON) + 1;
+            break;
+        default:
+            // the length of a similar string is at least threshold * (the longest length),
+            // so the edit distance is at most (1 - threshold) * length / threshold,
+            // and an edit changes at most GRAM_LENGTH grams
+            int maxEditDistance = (int) Math.floor((1 - threshold) * str.length() / threshold + EPSILON);
+            prefixLength = GRAM_LENGTH * maxEditDistance + 1;
+            break;
+        }
+        if (numTokens == 0 || prefixLength > numTokens) {
+            return -1;
+        }
+        return Math.max(prefixLength, 1);
+    }
+    
+    private static List<String> getWords(String str) {
+        return Arrays.stream(str.toLowerCase().split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> ! word.isEmpty()).collect(Collectors.toList());
+    }
+    
+}
@@ -0,0 +1,221 @@
+package edu.uci.ics.textdb.exp.join;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.exp.utils.TupleCodec;
+
+/**
+ * SpillPartitions hash-partitions the tuples of one input of Join by their join keys,
+ *   and writes every partition to a temporary file (see {@link TupleCodec}).
+ * Two inputs partitioned into the same number of partitions with the same seed can be joined partition by partition,
+ *   since the tuples with the same key are in the partitions of the same index.
+ * A partition can be partitioned again with a different seed, which spreads its keys over the new partitions.
+ *
+ * The tuples are first added to all the partitions, then the partitions are read one by one.
+ * The temporary files are deleted when the partitions are closed.
+ */
+class SpillPartitions {
+
+    private final Schema schema;
+    // the seed of the hash function of the join keys
+    private final int seed;
+
+    private final File[] partitionFiles;
+    private final DataOutputStream[] partitionOutputs;
+    private final int[] partitionSizes;
+    // the estimated memory of the tuples of each partition (see TupleCodec.estimateMemorySize)
+    private final long[] partitionMemorySizes;
+
+    // the reader of the partition being read, null if no partition is being read
+    private DataInputStream partitionInput;
+    private int remainingTuples = 0;
+
+    SpillPartitions(Schema schema, int numPartitions, int seed) throws DataFlowException {
+        this.schema = schema;
+        this.seed = seed;
+        this.partitionFiles = new File[numPartitions];
+        this.partitionOutputs = new DataOutputStream[numPartitions];
+        this.partitionSizes = new int[numPartitions];
+        this.partitionMemorySizes = new long[numPartitions];
+        try {
+            for (int i = 0; i < numPartitions; i++) {
+                partitionFiles[i] = File.createTempFile("textdb-join-", ".spill");
+                partitionFiles[i].deleteOnExit();
+                partitionOutputs[i] = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(partitionFiles[i])));
+            }
+        } catch (IOException e) {
+            close();
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Adds a tuple to the partition of its join key.
+     *
+     * @param joinKey
+     * @param tuple
+     * @throws DataFlowException
+     */
+    void add(Object joinKey, Tuple tuple) throws DataFlowException {
+        int partition = getPartition(joinKey);
+        try {
+            TupleCodec.writeTuple(partitionOutputs[partition], tuple);
+        } catch (IOException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+        partitionSizes[partition]++;
+        partitionMemorySizes[partition] += TupleCodec.estimateMemorySize(tuple);
+    }
+
+    /**
+     * Finishes adding the tuples, must be called before reading the partitions.
+     *
+     * @throws DataFlowException
+     */
+    void finishAdding() throws DataFlowException {
+        try {
+            for (int i = 0; i < partitionOutputs.length; i++) {
+                partitionOutputs[i].close();
+                partitionOutputs[i] = null;
+            }
+        } catch (IOException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
+    int getPartition(Object joinKey) {
+        // mix the seed into all the bits of the hash code (the finalizer of MurmurHash3),
+        //   so the partitions of different seeds are independent, and the low bits are spread
+        int hash = joinKey.hashCode() ^ (seed * 0x9E3779B9);
+        hash ^= (hash >>> 16);
+        hash *= 0x85EBCA6B;
+        hash ^= (hash >>> 13);
+        hash *= 0xC2B2AE35;
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, partitionFiles.length);
+    }
+
+    Schema getSchema() {
+        return schema;
+    }
+
+    int getSeed() {
+        return seed;
+    }
+
+    int getNumPartitions() {
+        return partitionFiles.length;
+    }
+
+    int getPartitionSize(int partition) {
+        return partitionSizes[partition];
+    }
+
+    long getPartitionMemorySize(int partition) {
+        return partitionMemorySizes[partition];
+    }
+
+    int getNumTuples() {
+        int numTuples = 0;
+        for (int partitionSize : partitionSizes) {
+            numTuples += partitionSize;
+        }
+        return numTuples;
+    }
+
+    /**
+     * Reads all the tuples of a partition.
+     *
+     * @param partition
+     * @return the list of tuples
+     * @throws DataFlowException
+     */
+    List<Tuple> readPartition(int partition) throws DataFlowException {
+        List<Tuple> tuples = new ArrayList<>();
+        openPartition(partition);
+        Tuple tuple;
+        while ((tuple = getNextTuple()) != null) {
+            tuples.add(tuple);
+        }
+        return tuples;
+    }
+
+    /**
+     * Starts reading a partition tuple by tuple (see {@link #getNextTuple()}).
+     *
+     * @param partition
+     * @throws DataFlowException
+     */
+    void openPartition(int partition) throws DataFlowException {
+        closePartitionInput();
+        try {
+            partitionInput = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(partitionFiles[partition])));
+        } catch (IOException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+        remainingTuples = partitionSizes[partition];
+    }
+
+    /**
+     * @return the next tuple of the partition being read, or null if all its tuples are read
+     * @throws DataFlowException
+     */
+    Tuple getNextTuple() throws DataFlowException {
+        if (partitionInput == null || remainingTuples == 0) {
+            closePartitionInput();
+            return null;
+        }
+        try {
+            remainingTuples--;
+            return TupleCodec.readTuple(partitionInput, schema);
+        } catch (IOException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
+    private void closePartitionInput() {
+        if (partitionInput != null) {
+            try {
+                partitionInput.close();
+            } catch (IOException e) {
+                // the file is deleted anyway
+            }
+            partitionInput = null;
+        }
+    }
+
+    /**
+     * Closes the files and deletes them.
+     */
+    void close() {
+        closePartitionInput();
+        for (int i = 0; i < partitionFiles.length; i++) {
+            if (partitionOutputs[i] != null) {
+                try {
+                    partitionOutputs[i].close();
+                } catch (IOException e) {
+                    // the file is deleted anyway
+                }
+                partitionOutputs[i] = null;
+            }
+            if (partitionFiles[i] != null) {
+                partitionFiles[i].delete();
+            }
+        }
+    }
+
+}
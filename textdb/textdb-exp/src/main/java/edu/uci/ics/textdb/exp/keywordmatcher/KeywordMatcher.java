@@ -6,8 +6,6 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import edu.uci.ics.textdb.api.constants.ErrorMessages;
@@ -22,9 +20,12 @@ import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.Utils;
 import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
+import edu.uci.ics.textdb.exp.common.IPayloadCachingOperator;
 import edu.uci.ics.textdb.exp.utils.DataflowUtils;
+import edu.uci.ics.textdb.exp.utils.LiteralStringSearcher;
+import edu.uci.ics.textdb.exp.utils.PayloadCache;
 
-public class KeywordMatcher extends AbstractSingleInputOperator {
+public class KeywordMatcher extends AbstractSingleInputOperator implements IPayloadCachingOperator {
 
     private final KeywordPredicate predicate;
 
@@ -33,6 +34,11 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
     private final ArrayList<String> queryTokenList;
     private final HashSet<String> queryTokenSet;
     private final ArrayList<String> queryTokensWithStopwords;
+    
+    // the case-insensitive searcher of the query, only used in substring matching
+    private final LiteralStringSearcher substringSearcher;
+    
+    private PayloadCache payloadCache;
 
     public KeywordMatcher(KeywordPredicate predicate) {
         this.predicate = predicate;
@@ -44,6 +50,12 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
         
         // TODO: standard analyzer is assumed here, rewrite it to deal with other analyzers
         this.queryTokensWithStopwords = DataflowUtils.tokenizeQueryWithStopwords(predicate.getQuery());
+        
+        if (predicate.getMatchingType() == KeywordMatchingType.SUBSTRING_SCANBASED) {
+            this.substringSearcher = new LiteralStringSearcher(predicate.getQuery(), true);
+        } else {
+            this.substringSearcher = null;
+        }
     }
 
     @Override
@@ -83,25 +95,14 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
         // Therefore, PAYLOAD needs to be checked and added first
         if (!inputSchema.containsField(SchemaConstants.PAYLOAD)) {
             inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(),
-                    DataflowUtils.generatePayloadFromTuple(inputTuple, predicate.getLuceneAnalyzerString()), outputSchema);
+                    DataflowUtils.generatePayloadFromTuple(inputTuple, predicate.getLuceneAnalyzerString(), payloadCache),
+                    outputSchema);
         }
         if (predicate.getSpanListName() != null) {
             inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(), new ArrayList<Span>(), outputSchema);
         }
 
-        List<Span> matchingResults = null;
-        if (this.predicate.getMatchingType() == KeywordMatchingType.CONJUNCTION_INDEXBASED) {
-            matchingResults = computeConjunctionMatchingResult(inputTuple);
-        }
-        if (this.predicate.getMatchingType() == KeywordMatchingType.PHRASE_INDEXBASED) {
-            matchingResults = computePhraseMatchingResult(inputTuple);
-        }
-        if (this.predicate.getMatchingType() == KeywordMatchingType.SUBSTRING_SCANBASED) {
-            matchingResults = computeSubstringMatchingResult(inputTuple);
-        }
-        if (matchingResults == null) {
-            throw new DataFlowException("no matching result is provided");
-        }
+        List<Span> matchingResults = computeMatchingSpans(inputTuple);
         if (matchingResults.isEmpty()) {
             return null;
         }
@@ -117,6 +118,33 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
     protected void cleanUp() {
     }
 
+    /**
+     * Computes the spans of the keyword query in a tuple, without adding them to the tuple.
+     * The matcher doesn't need to be opened, the attribute types are taken from the schema of the tuple.
+     * 
+     * For conjunction and phrase matching, the tuple must contain the payload.
+     * 
+     * @param inputTuple
+     * @return the list of matching spans, empty if the tuple doesn't match
+     * @throws DataFlowException
+     */
+    public List<Span> computeMatchingSpans(Tuple inputTuple) throws DataFlowException {
+        List<Span> matchingResults = null;
+        if (this.predicate.getMatchingType() == KeywordMatchingType.CONJUNCTION_INDEXBASED) {
+            matchingResults = computeConjunctionMatchingResult(inputTuple);
+        }
+        if (this.predicate.getMatchingType() == KeywordMatchingType.PHRASE_INDEXBASED) {
+            matchingResults = computePhraseMatchingResult(inputTuple);
+        }
+        if (this.predicate.getMatchingType() == KeywordMatchingType.SUBSTRING_SCANBASED) {
+            matchingResults = computeSubstringMatchingResult(inputTuple);
+        }
+        if (matchingResults == null) {
+            throw new DataFlowException("no matching result is provided");
+        }
+        return matchingResults;
+    }
+
     private List<Span> computeConjunctionMatchingResult(Tuple inputTuple) throws DataFlowException {
         ListField<Span> payloadField = inputTuple.getField(SchemaConstants.PAYLOAD);
         List<Span> payload = payloadField.getValue();
@@ -124,7 +152,7 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
         List<Span> matchingResults = new ArrayList<>();
 
         for (String attributeName : this.predicate.getAttributeNames()) {
-            AttributeType attributeType = this.inputSchema.getAttribute(attributeName).getAttributeType();
+            AttributeType attributeType = inputTuple.getSchema().getAttribute(attributeName).getAttributeType();
             String fieldValue = inputTuple.getField(attributeName).getValue().toString();
 
             // types other than TEXT and STRING: throw Exception for now
@@ -162,7 +190,7 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
         List<Span> matchingResults = new ArrayList<>();
 
         for (String attributeName : this.predicate.getAttributeNames()) {
-            AttributeType attributeType = this.inputSchema.getAttribute(attributeName).getAttributeType();
+            AttributeType attributeType = inputTuple.getSchema().getAttribute(attributeName).getAttributeType();
             String fieldValue = inputTuple.getField(attributeName).getValue().toString();
 
             // types other than TEXT and STRING: throw Exception for now
@@ -249,7 +277,7 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
         List<Span> matchingResults = new ArrayList<>();
 
         for (String attributeName : this.predicate.getAttributeNames()) {
-            AttributeType attributeType = this.inputSchema.getAttribute(attributeName).getAttributeType();
+            AttributeType attributeType = inputTuple.getSchema().getAttribute(attributeName).getAttributeType();
             String fieldValue = inputTuple.getField(attributeName).getValue().toString();
 
             // types other than TEXT and STRING: throw Exception for now
@@ -264,15 +292,15 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
                 }
             }
 
+            // for TEXT type, the query is searched as a literal string, case-insensitively,
+            // the occurrences don't overlap
             if (attributeType == AttributeType.TEXT) {
-                String regex = predicate.getQuery().toLowerCase();
-                Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-                Matcher matcher = pattern.matcher(fieldValue.toLowerCase());
-                while (matcher.find()) {
-                    int start = matcher.start();
-                    int end = matcher.end();
+                int start = substringSearcher.indexOf(fieldValue, 0);
+                while (start >= 0) {
+                    int end = start + substringSearcher.length();
 
                     matchingResults.add(new Span(attributeName, start, end, predicate.getQuery(), fieldValue.substring(start, end)));
+                    start = substringSearcher.indexOf(fieldValue, end);
                 }
             }
 
@@ -302,4 +330,9 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
         return this.predicate;
     }
 
+    @Override
+    public void setPayloadCache(PayloadCache payloadCache) {
+        this.payloadCache = payloadCache;
+    }
+
 }
@@ -1,6 +1,7 @@
 package edu.uci.ics.textdb.exp.keywordmatcher;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
@@ -14,7 +15,6 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 
 import edu.uci.ics.textdb.api.dataflow.IOperator;
-import edu.uci.ics.textdb.api.dataflow.ISourceOperator;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.StorageException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
@@ -22,6 +22,8 @@ import edu.uci.ics.textdb.api.schema.AttributeType;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
+import edu.uci.ics.textdb.exp.common.IIdFilterableSourceOperator;
+import edu.uci.ics.textdb.exp.common.IProjectableSourceOperator;
 import edu.uci.ics.textdb.exp.utils.DataflowUtils;
 import edu.uci.ics.textdb.storage.DataReader;
 import edu.uci.ics.textdb.storage.RelationManager;
@@ -33,7 +35,8 @@ import edu.uci.ics.textdb.storage.RelationManager;
  * @author Zhenfeng Qi
  *
  */
-public class KeywordMatcherSourceOperator extends AbstractSingleInputOperator implements ISourceOperator {
+public class KeywordMatcherSourceOperator extends AbstractSingleInputOperator 
+        implements IProjectableSourceOperator, IIdFilterableSourceOperator {
 
     private final KeywordPredicate predicate;
 
@@ -41,30 +44,22 @@ public class KeywordMatcherSourceOperator extends AbstractSingleInputOperator im
     private final KeywordMatcher keywordMatcher;
     
     private final Schema inputSchema;
-    
-    private final ArrayList<String> queryTokenList;
-    private final HashSet<String> queryTokenSet;
-    private ArrayList<String> queryTokensWithStopwords;
-    
 
     public KeywordMatcherSourceOperator(KeywordSourcePredicate predicate) 
             throws DataFlowException, StorageException {
         this.predicate = predicate;
         
-        this.queryTokenList = DataflowUtils.tokenizeQuery(predicate.getLuceneAnalyzerString(), predicate.getQuery());
-        this.queryTokenSet = new HashSet<>(this.queryTokenList);
-        
-        // TODO: standard analyzer is assumed here, rewrite it to deal with other analyzers
-        this.queryTokensWithStopwords = DataflowUtils.tokenizeQueryWithStopwords(predicate.getQuery());
-                
         // input schema must be specified before creating query
         this.inputSchema = RelationManager.getRelationManager().getTableDataStore(predicate.getTableName()).getSchema();
         
         // generate dataReader
-        Query luceneQuery = createLuceneQueryObject();
+        Query luceneQuery = createLuceneQueryObject(predicate, inputSchema);
 
         this.dataReader = RelationManager.getRelationManager().getTableDataReader(predicate.getTableName(), luceneQuery);
         this.dataReader.setPayloadAdded(true);
+        if (predicate.getTopK() != null) {
+            this.dataReader.setTopK(predicate.getTopK());
+        }
         
         // generate KeywordMatcher
         keywordMatcher = new KeywordMatcher(predicate);
@@ -105,6 +100,27 @@ public class KeywordMatcherSourceOperator extends AbstractSingleInputOperator im
     public void setInputOperator(IOperator inputOperator) {
     }
 
+    @Override
+    public void setProjectedAttributeNames(Collection<String> attributeNames) {
+        this.dataReader.setProjectedAttributeNames(
+                DataflowUtils.getProjectedAttributeNames(attributeNames, predicate.getAttributeNames()));
+    }
+    
+    /**
+     * The _IDs can't be filtered if only the top K documents are read, or the results have a limit or an offset.
+     */
+    @Override
+    public boolean canFilterIds() {
+        return this.dataReader.getTopK() == 0 && this.limit == Integer.MAX_VALUE && this.offset == 0;
+    }
+    
+    @Override
+    public void setIdFilter(Collection<String> ids) {
+        if (canFilterIds()) {
+            this.dataReader.setIdFilter(ids);
+        }
+    }
+
     public KeywordPredicate getPredicate() {
         return this.predicate;
     }
@@ -115,30 +131,34 @@ public class KeywordMatcherSourceOperator extends AbstractSingleInputOperator im
      * TestConstants.LAST_NAME + ":lin") we provide a list of AttributeFields
      * (Description, Last_name) to search on and a query string (lin)
      *
+     * @param predicate
+     * @param inputSchema, the schema of the table to search on
      * @return Query
      * @throws ParseException
      * @throws DataFlowException
      */
-    private Query createLuceneQueryObject() throws DataFlowException {
+    public static Query createLuceneQueryObject(KeywordPredicate predicate, Schema inputSchema) throws DataFlowException {
         Query query = null;
-        if (this.predicate.getMatchingType() == KeywordMatchingType.CONJUNCTION_INDEXBASED) {
-            query = buildConjunctionQuery();
+        if (predicate.getMatchingType() == KeywordMatchingType.CONJUNCTION_INDEXBASED) {
+            query = buildConjunctionQuery(predicate, inputSchema);
         }
-        if (this.predicate.getMatchingType() == KeywordMatchingType.PHRASE_INDEXBASED) {
-            query = buildPhraseQuery();
+        if (predicate.getMatchingType() == KeywordMatchingType.PHRASE_INDEXBASED) {
+            query = buildPhraseQuery(predicate, inputSchema);
         }
-        if (this.predicate.getMatchingType() == KeywordMatchingType.SUBSTRING_SCANBASED) {
-            query = buildScanQuery();
+        if (predicate.getMatchingType() == KeywordMatchingType.SUBSTRING_SCANBASED) {
+            query = buildScanQuery(predicate, inputSchema);
         }
 
         return query;
     }
 
-    private Query buildConjunctionQuery() throws DataFlowException {
+    private static Query buildConjunctionQuery(KeywordPredicate predicate, Schema inputSchema) throws DataFlowException {
+        HashSet<String> queryTokenSet = new HashSet<>(
+                DataflowUtils.tokenizeQuery(predicate.getLuceneAnalyzerString(), predicate.getQuery()));
         BooleanQuery.Builder booleanQueryBuilder = new BooleanQuery.Builder();
 
-        for (String attributeName : this.predicate.getAttributeNames()) {
-            AttributeType attributeType = this.inputSchema.getAttribute(attributeName).getAttributeType();
+        for (String attributeName : predicate.getAttributeNames()) {
+            AttributeType attributeType = inputSchema.getAttribute(attributeName).getAttributeType();
 
             // types other than TEXT and STRING: throw Exception for now
             if (attributeType != AttributeType.STRING && attributeType != AttributeType.TEXT) {
@@ -164,11 +184,14 @@ public class KeywordMatcherSourceOperator extends AbstractSingleInputOperator im
         return booleanQueryBuilder.build();
     }
 
-    private Query buildPhraseQuery() throws DataFlowException {
+    private static Query buildPhraseQuery(KeywordPredicate predicate, Schema inputSchema) throws DataFlowException {
+        ArrayList<String> queryTokenList = DataflowUtils.tokenizeQuery(predicate.getLuceneAnalyzerString(), predicate.getQuery());
+        // TODO: standard analyzer is assumed here, rewrite it to deal with other analyzers
+        ArrayList<String> queryTokensWithStopwords = DataflowUtils.tokenizeQueryWithStopwords(predicate.getQuery());
         BooleanQuery.Builder booleanQueryBuilder = new BooleanQuery.Builder();
 
-        for (String attributeName : this.predicate.getAttributeNames()) {
-            AttributeType attributeType = this.inputSchema.getAttribute(attributeName).getAttributeType();
+        for (String attributeName : predicate.getAttributeNames()) {
+            AttributeType attributeType = inputSchema.getAttribute(attributeName).getAttributeType();
 
             // types other than TEXT and STRING: throw Exception for now
             if (attributeType != AttributeType.STRING && attributeType != AttributeType.TEXT) {
@@ -203,9 +226,9 @@ public class KeywordMatcherSourceOperator extends AbstractSingleInputOperator im
         return booleanQueryBuilder.build();
     }
 
-    private Query buildScanQuery() throws DataFlowException {
-        for (String attributeName : this.predicate.getAttributeNames()) {
-            AttributeType attributeType = this.inputSchema.getAttribute(attributeName).getAttributeType();
+    private static Query buildScanQuery(KeywordPredicate predicate, Schema inputSchema) throws DataFlowException {
+        for (String attributeName : predicate.getAttributeNames()) {
+            AttributeType attributeType = inputSchema.getAttribute(attributeName).getAttributeType();
 
             // types other than TEXT and STRING: throw Exception for now
             if (attributeType != AttributeType.STRING && attributeType != AttributeType.TEXT) {
@@ -6,12 +6,20 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import edu.uci.ics.textdb.api.dataflow.IOperator;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.exp.common.PropertyNameConstants;
 
 /**
  * KeywordSourcePredicate is the predicate used by KeywordMatcherSourceOperator.
  * This predicate is based on KeywordPredicate, with an additional member "tableName".
  * 
+ * If "topK" is set, the source is in ranked mode: it only considers the K documents 
+ *   with the highest BM25 scores, returns them in the order of descending scores,
+ *   and adds their scores as a DOUBLE attribute "_score" (see DataReader).
+ * Since the keyword matcher still checks every document, fewer than K results may be returned.
+ * "topK" can't be set with SUBSTRING_SCANBASED, since it scans all the documents without scoring them,
+ *   so the "top K" documents would just be the first K documents of the table.
+ * 
  * 
  * @author Zuozhi Wang
  *
@@ -19,6 +27,7 @@ import edu.uci.ics.textdb.exp.common.PropertyNameConstants;
 public class KeywordSourcePredicate extends KeywordPredicate {
     
     private final String tableName;
+    private final Integer topK;
     
     public KeywordSourcePredicate(
             String query,
@@ -28,8 +37,7 @@ public class KeywordSourcePredicate extends KeywordPredicate {
             String tableName,
             String spanListName) {
         
-        super(query, attributeNames, luceneAnalyzerString, matchingType, spanListName, null, null);
-        this.tableName = tableName;
+        this(query, attributeNames, luceneAnalyzerString, matchingType, tableName, spanListName, null, null, null);
     }
     
     //TODO find a way to not write duplicate annotations (for fields declared in superclass)
@@ -50,10 +58,16 @@ public class KeywordSourcePredicate extends KeywordPredicate {
             @JsonProperty(value = PropertyNameConstants.LIMIT, required = false)
             Integer limit,
             @JsonProperty(value = PropertyNameConstants.OFFSET, required = false)
-            Integer offset) {
+            Integer offset,
+            @JsonProperty(value = PropertyNameConstants.TOP_K, required = false)
+            Integer topK) {
         
         super(query, attributeNames, luceneAnalyzerString, matchingType, spanListName, limit, offset);
+        if (topK != null && matchingType == KeywordMatchingType.SUBSTRING_SCANBASED) {
+            throw new DataFlowException("topK is not supported by " + KeywordMatchingType.SUBSTRING_SCANBASED);
+        }
         this.tableName = tableName;
+        this.topK = topK;
     }
     
     @JsonProperty(PropertyNameConstants.TABLE_NAME)
@@ -61,6 +75,11 @@ public class KeywordSourcePredicate extends KeywordPredicate {
         return tableName;
     }
     
+    @JsonProperty(PropertyNameConstants.TOP_K)
+    public Integer getTopK() {
+        return topK;
+    }
+    
     @Override
     public IOperator newOperator() {
         return new KeywordMatcherSourceOperator(this);
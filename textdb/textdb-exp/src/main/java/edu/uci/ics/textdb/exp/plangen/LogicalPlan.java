@@ -7,18 +7,36 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import edu.uci.ics.textdb.api.dataflow.IOperator;
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.dataflow.ISink;
 import edu.uci.ics.textdb.api.engine.Plan;
 import edu.uci.ics.textdb.api.exception.PlanGenException;
+import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
+import edu.uci.ics.textdb.exp.common.ILimitableSourceOperator;
+import edu.uci.ics.textdb.exp.common.IPayloadCachingOperator;
+import edu.uci.ics.textdb.exp.common.IProjectableSourceOperator;
 import edu.uci.ics.textdb.exp.common.PredicateBase;
 import edu.uci.ics.textdb.exp.common.PropertyNameConstants;
 import edu.uci.ics.textdb.exp.connector.OneToNBroadcastConnector;
+import edu.uci.ics.textdb.exp.dictionarymatcher.DictionaryPredicate;
+import edu.uci.ics.textdb.exp.fuzzytokenmatcher.FuzzyTokenPredicate;
 import edu.uci.ics.textdb.exp.join.Join;
+import edu.uci.ics.textdb.exp.keywordmatcher.KeywordPredicate;
+import edu.uci.ics.textdb.exp.nlp.entity.NlpEntityPredicate;
+import edu.uci.ics.textdb.exp.projection.ProjectionOperator;
+import edu.uci.ics.textdb.exp.projection.ProjectionPredicate;
+import edu.uci.ics.textdb.exp.regexmatcher.MultiRegexPredicate;
+import edu.uci.ics.textdb.exp.regexmatcher.RegexPredicate;
+import edu.uci.ics.textdb.exp.sampler.Sampler;
+import edu.uci.ics.textdb.exp.sampler.SamplerPredicate;
+import edu.uci.ics.textdb.exp.sampler.SamplerPredicate.SampleType;
+import edu.uci.ics.textdb.exp.utils.PayloadCache;
 
 /**
  * A graph of operators representing a query plan.
@@ -139,6 +157,9 @@ public class LogicalPlan {
         HashMap<String, IOperator> operatorObjectMap = buildOperators();
         validateOperatorGraph();
         connectOperators(operatorObjectMap);
+        pushDownProjections(operatorObjectMap);
+        pushDownLimits(operatorObjectMap);
+        setPayloadCache(operatorObjectMap);
         ISink sink = findSinkOperator(operatorObjectMap);
         
         Plan queryPlan = new Plan(sink);
@@ -396,6 +417,166 @@ public class LogicalPlan {
         }
     }
      
+    /*
+     * Pushes the attributes that the operators after a source actually need down to the source,
+     *   so that the source doesn't read the other attributes from the table.
+     * 
+     * This function assumes that the operator graph is valid.
+     */
+    private void pushDownProjections(HashMap<String, IOperator> operatorObjectMap) {
+        HashMap<String, Set<String>> requiredAttributesMap = new HashMap<>();
+        for (String vertex : adjacencyList.keySet()) {
+            IOperator operator = operatorObjectMap.get(vertex);
+            if (operator instanceof IProjectableSourceOperator) {
+                Set<String> requiredAttributes = getRequiredOutputAttributes(vertex, requiredAttributesMap);
+                if (requiredAttributes != null) {
+                    ((IProjectableSourceOperator) operator).setProjectedAttributeNames(requiredAttributes);
+                }
+            }
+        }
+    }
+    
+    /*
+     * Returns the attributes of an operator's output that are needed by the operators after it,
+     *   or null if all of them are needed (for example, by the sink).
+     * 
+     * The result of every operator is memoized in requiredAttributesMap.
+     */
+    private Set<String> getRequiredOutputAttributes(String vertex, HashMap<String, Set<String>> requiredAttributesMap) {
+        if (requiredAttributesMap.containsKey(vertex)) {
+            return requiredAttributesMap.get(vertex);
+        }
+        Set<String> requiredAttributes = null;
+        if (! adjacencyList.get(vertex).isEmpty()) {
+            requiredAttributes = new HashSet<>();
+            for (String adjacentVertex : adjacencyList.get(vertex)) {
+                Set<String> inputAttributes = getRequiredInputAttributes(
+                        operatorPredicateMap.get(adjacentVertex), 
+                        getRequiredOutputAttributes(adjacentVertex, requiredAttributesMap));
+                if (inputAttributes == null) {
+                    requiredAttributes = null;
+                    break;
+                }
+                requiredAttributes.addAll(inputAttributes);
+            }
+        }
+        requiredAttributesMap.put(vertex, requiredAttributes);
+        return requiredAttributes;
+    }
+    
+    /*
+     * Returns the attributes an operator needs from its input, given the attributes needed from its output.
+     * null means all the attributes. The operators not listed here need all of their input attributes.
+     */
+    private static Set<String> getRequiredInputAttributes(PredicateBase predicate, Set<String> requiredOutputAttributes) {
+        if (predicate instanceof ProjectionPredicate) {
+            return new HashSet<>(((ProjectionPredicate) predicate).getProjectionFields());
+        }
+        if (predicate instanceof SamplerPredicate) {
+            return requiredOutputAttributes;
+        }
+        List<String> matchingAttributes = null;
+        if (predicate instanceof KeywordPredicate) {
+            matchingAttributes = ((KeywordPredicate) predicate).getAttributeNames();
+        } else if (predicate instanceof RegexPredicate) {
+            matchingAttributes = ((RegexPredicate) predicate).getAttributeNames();
+        } else if (predicate instanceof MultiRegexPredicate) {
+            matchingAttributes = ((MultiRegexPredicate) predicate).getAttributeNames();
+        } else if (predicate instanceof FuzzyTokenPredicate) {
+            matchingAttributes = ((FuzzyTokenPredicate) predicate).getAttributeNames();
+        } else if (predicate instanceof DictionaryPredicate) {
+            matchingAttributes = ((DictionaryPredicate) predicate).getAttributeNames();
+        } else if (predicate instanceof NlpEntityPredicate) {
+            matchingAttributes = ((NlpEntityPredicate) predicate).getAttributeNames();
+        }
+        if (matchingAttributes == null || requiredOutputAttributes == null) {
+            return null;
+        }
+        // a matcher needs the attributes to match on, and passes the other attributes through
+        Set<String> requiredInputAttributes = new HashSet<>(requiredOutputAttributes);
+        requiredInputAttributes.addAll(matchingAttributes);
+        requiredInputAttributes.add(SchemaConstants._ID);
+        return requiredInputAttributes;
+    }
+    
+    /*
+     * Sets one PayloadCache to all the operators of the plan that generate payloads,
+     *   so that the same field of a tuple is analyzed only once by the plan,
+     *   even if it is matched by operators on different branches.
+     */
+    private void setPayloadCache(HashMap<String, IOperator> operatorObjectMap) {
+        PayloadCache payloadCache = new PayloadCache();
+        for (IOperator operator : operatorObjectMap.values()) {
+            if (operator instanceof IPayloadCachingOperator) {
+                ((IPayloadCachingOperator) operator).setPayloadCache(payloadCache);
+            }
+        }
+    }
+    
+    /*
+     * Pushes the number of tuples that the operators after a source can consume down to the source,
+     *   so that the source stops reading the table once it has returned them.
+     * 
+     * This function assumes that the graph is valid.
+     */
+    private void pushDownLimits(HashMap<String, IOperator> operatorObjectMap) {
+        HashMap<String, Integer> outputLimitMap = new HashMap<>();
+        for (String vertex : adjacencyList.keySet()) {
+            IOperator operator = operatorObjectMap.get(vertex);
+            if (operator instanceof ILimitableSourceOperator) {
+                int outputLimit = getOutputLimit(vertex, operatorObjectMap, outputLimitMap);
+                if (outputLimit != Integer.MAX_VALUE) {
+                    ((ILimitableSourceOperator) operator).setLimit(outputLimit);
+                }
+            }
+        }
+    }
+    
+    /*
+     * Returns the number of tuples of an operator's output that can be consumed by the operators after it,
+     *   or Integer.MAX_VALUE if there is no bound (for example, the sink consumes all the tuples).
+     * 
+     * The result of every operator is memoized in outputLimitMap.
+     */
+    private int getOutputLimit(String vertex, HashMap<String, IOperator> operatorObjectMap, 
+            HashMap<String, Integer> outputLimitMap) {
+        if (outputLimitMap.containsKey(vertex)) {
+            return outputLimitMap.get(vertex);
+        }
+        int outputLimit = adjacencyList.get(vertex).isEmpty() ? Integer.MAX_VALUE : 0;
+        for (String adjacentVertex : adjacencyList.get(vertex)) {
+            int inputLimit = getInputLimit(operatorObjectMap.get(adjacentVertex), 
+                    getOutputLimit(adjacentVertex, operatorObjectMap, outputLimitMap));
+            outputLimit = Math.max(outputLimit, inputLimit);
+        }
+        outputLimitMap.put(vertex, outputLimit);
+        return outputLimit;
+    }
+    
+    /*
+     * Returns the number of input tuples an operator can consume, given the number of its output tuples that are consumed.
+     * 
+     * Only the operators that output exactly their first input tuples (in the same order) are bounded.
+     * A filter (for example, a matcher) may have to read all of its input to produce one output tuple,
+     *   and the operators not listed here are assumed to read all of their input.
+     */
+    private static int getInputLimit(IOperator operator, int outputLimit) {
+        if (! (operator instanceof ProjectionOperator || operator instanceof Sampler)) {
+            return Integer.MAX_VALUE;
+        }
+        AbstractSingleInputOperator singleInputOperator = (AbstractSingleInputOperator) operator;
+        long inputLimit = (long) singleInputOperator.getOffset() 
+                + Math.min(outputLimit, singleInputOperator.getLimit());
+        if (operator instanceof Sampler) {
+            SamplerPredicate samplerPredicate = ((Sampler) operator).getPredicate();
+            if (samplerPredicate.getSampleType() != SampleType.FIRST_K_ARRIVAL) {
+                return Integer.MAX_VALUE;
+            }
+            inputLimit = Math.min(inputLimit, samplerPredicate.getSampleSize());
+        }
+        return (int) Math.min(inputLimit, Integer.MAX_VALUE);
+    }
+    
     /*
      * Finds the sink operator in the operator graph.
      * 
@@ -16,6 +16,7 @@ import edu.uci.ics.textdb.exp.keywordmatcher.KeywordSourcePredicate;
 import edu.uci.ics.textdb.exp.nlp.entity.NlpEntityPredicate;
 import edu.uci.ics.textdb.exp.nlp.sentiment.NlpSentimentPredicate;
 import edu.uci.ics.textdb.exp.projection.ProjectionPredicate;
+import edu.uci.ics.textdb.exp.regexmatcher.MultiRegexPredicate;
 import edu.uci.ics.textdb.exp.regexmatcher.RegexPredicate;
 import edu.uci.ics.textdb.exp.regexmatcher.RegexSourcePredicate;
 import edu.uci.ics.textdb.exp.regexsplit.RegexSplitPredicate;
@@ -42,6 +43,7 @@ public class OperatorArityConstants {
         fixedInputArityMap.put(KeywordSourcePredicate.class, 0); 
         fixedInputArityMap.put(RegexPredicate.class, 1); 
         fixedInputArityMap.put(RegexSourcePredicate.class, 0); 
+        fixedInputArityMap.put(MultiRegexPredicate.class, 1); 
 
         fixedInputArityMap.put(JoinDistancePredicate.class, 2);
         fixedInputArityMap.put(SimilarityJoinPredicate.class, 2);
@@ -69,6 +71,7 @@ public class OperatorArityConstants {
         fixedOutputArityMap.put(KeywordSourcePredicate.class, 1); 
         fixedOutputArityMap.put(RegexPredicate.class, 1); 
         fixedOutputArityMap.put(RegexSourcePredicate.class, 1); 
+        fixedOutputArityMap.put(MultiRegexPredicate.class, 1); 
 
         fixedOutputArityMap.put(JoinDistancePredicate.class, 1);
         fixedOutputArityMap.put(SimilarityJoinPredicate.class, 1);
@@ -0,0 +1,394 @@
+package edu.uci.ics.textdb.exp.regexmatcher;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.exp.utils.CompilationCache;
+
+/**
+ * CompiledRegex is a regex compiled by one of the two available regex engines.
+ * Java regex is tried first, and RE2J is used if the regex is not supported by Java regex.
+ * The compiled patterns are shared through the {@link CompilationCache}.
+ *
+ * Java regex is a backtracking engine, which can take exponential time on some regexes
+ *   (for example, "(a+)+b" on a long string of "a"s). To bound the time spent on a field:
+ *   - the regexes with nested variable quantifiers (see {@link #isBacktrackingProne(String)})
+ *     are compiled by RE2J, which takes linear time, if RE2J supports them,
+ *   - a match with Java regex is aborted when it takes more than the time budget of a field,
+ *     then the field is matched again by RE2J if RE2J supports the regex, otherwise the field is skipped.
+ */
+class CompiledRegex {
+
+    // two available regex engines
+    enum RegexEngine {
+        JavaRegex, RE2J
+    }
+
+    public static final long DEFAULT_MATCH_TIME_BUDGET_MILLIS = 1000;
+
+    // the time is checked once every CHECK_TIME_INTERVAL characters read by Java regex
+    private static final int CHECK_TIME_INTERVAL = 1 << 12;
+
+    private final String regex;
+    private final boolean ignoreCase;
+    private final long matchTimeBudgetMillis;
+
+    private final RegexEngine regexEngine;
+    private final com.google.re2j.Pattern re2jPattern;
+    private final java.util.regex.Pattern javaPattern;
+
+    private long numTimedOutFields = 0;
+    private long numSkippedFields = 0;
+
+    /**
+     * @param regex
+     * @param ignoreCase
+     * @throws DataFlowException, if the regex is supported by neither Java regex nor RE2J
+     */
+    CompiledRegex(String regex, boolean ignoreCase) throws DataFlowException {
+        this(regex, ignoreCase, DEFAULT_MATCH_TIME_BUDGET_MILLIS);
+    }
+
+    /**
+     * @param regex
+     * @param ignoreCase
+     * @param matchTimeBudgetMillis, the maximum time of matching a field with Java regex
+     * @throws DataFlowException, if the regex is supported by neither Java regex nor RE2J
+     */
+    CompiledRegex(String regex, boolean ignoreCase, long matchTimeBudgetMillis) throws DataFlowException {
+        this.regex = regex;
+        this.ignoreCase = ignoreCase;
+        this.matchTimeBudgetMillis = matchTimeBudgetMillis;
+
+        java.util.regex.Pattern javaPattern = null;
+        com.google.re2j.Pattern re2jPattern = null;
+        // try RE2J first if the regex may take exponential time with Java regex
+        if (isBacktrackingProne(regex)) {
+            re2jPattern = compileRe2j(regex, ignoreCase);
+        }
+        if (re2jPattern == null) {
+            // try Java Regex first
+            try {
+                javaPattern = CompilationCache.getInstance().getJavaPattern(regex,
+                        ignoreCase ? java.util.regex.Pattern.CASE_INSENSITIVE : 0);
+
+                // if Java Regex fails, try RE2J
+            } catch (java.util.regex.PatternSyntaxException javaException) {
+                re2jPattern = compileRe2j(regex, ignoreCase);
+                // if RE2J also fails, throw exception
+                if (re2jPattern == null) {
+                    throw new DataFlowException(javaException.getMessage(), javaException);
+                }
+            }
+        }
+        this.javaPattern = javaPattern;
+        this.re2jPattern = re2jPattern;
+        this.regexEngine = javaPattern != null ? RegexEngine.JavaRegex : RegexEngine.RE2J;
+    }
+
+    /*
+     * Returns null if the regex is not supported by RE2J.
+     */
+    private static com.google.re2j.Pattern compileRe2j(String regex, boolean ignoreCase) {
+        try {
+            return CompilationCache.getInstance().getRe2jPattern(regex,
+                    ignoreCase ? com.google.re2j.Pattern.CASE_INSENSITIVE : 0);
+        } catch (com.google.re2j.PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks if a regex has a group with a variable quantifier (*, +, {n,} or {n,m})
+     *   that contains another variable quantifier, such as "(a+)+" or "(\w+\s*)*".
+     * Java regex may try an exponential number of ways to split a string among the nested quantifiers.
+     *
+     * The check is lexical, so it works on the syntax of both Java regex and RE2J.
+     * The other causes of backtracking (for example, overlapping alternatives in a group with a quantifier)
+     *   are left to the time budget.
+     *
+     * @param regex
+     * @return true if the regex has nested variable quantifiers
+     */
+    static boolean isBacktrackingProne(String regex) {
+        // for each open group, whether it contains a variable quantifier
+        Deque<Boolean> groupStack = new ArrayDeque<>();
+        groupStack.push(false);
+
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '[') {
+                i = skipCharClass(regex, i);
+            } else if (c == '(') {
+                groupStack.push(false);
+                i++;
+            } else if (c == ')' && groupStack.size() > 1) {
+                boolean groupHasQuantifier = groupStack.pop();
+                i++;
+                int quantifierEnd = skipQuantifier(regex, i);
+                boolean variableQuantifier = isVariableQuantifier(regex.substring(i, quantifierEnd));
+                if (groupHasQuantifier && variableQuantifier) {
+                    return true;
+                }
+                if (groupHasQuantifier || variableQuantifier) {
+                    groupStack.pop();
+                    groupStack.push(true);
+                }
+                i = quantifierEnd;
+            } else {
+                int quantifierEnd = skipQuantifier(regex, i);
+                if (quantifierEnd > i) {
+                    if (isVariableQuantifier(regex.substring(i, quantifierEnd))) {
+                        groupStack.pop();
+                        groupStack.push(true);
+                    }
+                    i = quantifierEnd;
+                } else {
+                    i++;
+                }
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Returns the end of the character class starting at start.
+     */
+    private static int skipCharClass(String regex, int start) {
+        int depth = 0;
+        int i = start;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+                // a ']' at the beginning of a class is a literal
+                int next = i + 1 < regex.length() && regex.charAt(i + 1) == '^' ? i + 2 : i + 1;
+                i = next < regex.length() && regex.charAt(next) == ']' ? next + 1 : next;
+                continue;
+            }
+            i++;
+            if (c == ']' && --depth == 0) {
+                break;
+            }
+        }
+        return i;
+    }
+
+    /*
+     * Returns the end of the quantifier (with its lazy or possessive modifier) starting at start,
+     *   or start if there is no quantifier.
+     */
+    private static int skipQuantifier(String regex, int start) {
+        if (start >= regex.length()) {
+            return start;
+        }
+        char c = regex.charAt(start);
+        int end;
+        if (c == '*' || c == '+' || c == '?') {
+            end = start + 1;
+        } else if (c == '{' && isBoundedRepeat(regex, start)) {
+            end = regex.indexOf('}', start) + 1;
+        } else {
+            return start;
+        }
+        if (end < regex.length() && (regex.charAt(end) == '?' || regex.charAt(end) == '+')) {
+            end++;
+        }
+        return end;
+    }
+
+    /*
+     * Checks if the '{' at start begins a quantifier {n}, {n,} or {n,m}, instead of a literal '{'.
+     */
+    private static boolean isBoundedRepeat(String regex, int start) {
+        int i = start + 1;
+        int numDigits = 0;
+        int numCommas = 0;
+        while (i < regex.length() && regex.charAt(i) != '}') {
+            char c = regex.charAt(i);
+            if (Character.isDigit(c)) {
+                numDigits++;
+            } else if (c == ',' && numDigits > 0 && numCommas == 0) {
+                numCommas++;
+            } else {
+                return false;
+            }
+            i++;
+        }
+        return i < regex.length() && numDigits > 0;
+    }
+
+    private static boolean isVariableQuantifier(String quantifier) {
+        if (quantifier.isEmpty() || quantifier.charAt(0) == '?') {
+            return false;
+        }
+        if (quantifier.charAt(0) != '{') {
+            return true;
+        }
+        String[] bounds = quantifier.substring(1, quantifier.indexOf('}')).split(",", -1);
+        return bounds.length == 2 && (bounds[1].isEmpty() || ! bounds[0].equals(bounds[1]));
+    }
+
+    /**
+     * Creates the prefilter of the regex (see {@link RegexPrefilter}).
+     *
+     * @return the prefilter, or null if the regex can't be prefiltered
+     */
+    RegexPrefilter createPrefilter() {
+        if (! isPrefilterSupported()) {
+            return null;
+        }
+        return RegexPrefilter.create(regex);
+    }
+
+    /*
+     * The prefilter matches the grams by lower-casing the text,
+     * which doesn't cover all the case-insensitive matches of RE2J (for example, "s" and the long s).
+     */
+    boolean isPrefilterSupported() {
+        return regexEngine == RegexEngine.JavaRegex || ! ignoreCase;
+    }
+
+    /**
+     * Finds all the matches of the regex in a field.
+     * The key of the spans is the regex.
+     *
+     * @param fieldValue
+     * @param attributeName
+     * @return the list of spans of the matches, empty if the field is skipped because the match takes too long
+     */
+    List<Span> computeMatchingSpans(String fieldValue, String attributeName) {
+        switch (regexEngine) {
+        case JavaRegex:
+            try {
+                return computeJavaMatchingSpans(fieldValue, attributeName);
+            } catch (MatchTimeoutException e) {
+                numTimedOutFields++;
+                com.google.re2j.Pattern re2jPattern = compileRe2j(regex, ignoreCase);
+                if (re2jPattern == null) {
+                    numSkippedFields++;
+                    return new ArrayList<>();
+                }
+                return computeRe2jMatchingSpans(re2jPattern, fieldValue, attributeName);
+            }
+        case RE2J:
+            return computeRe2jMatchingSpans(re2jPattern, fieldValue, attributeName);
+        }
+        return new ArrayList<>();
+    }
+
+    private List<Span> computeJavaMatchingSpans(String fieldValue, String attributeName) {
+        List<Span> matchingResults = new ArrayList<>();
+        long deadline = System.nanoTime() + matchTimeBudgetMillis * 1000000;
+        java.util.regex.Matcher javaMatcher = this.javaPattern.matcher(new DeadlineCharSequence(fieldValue, deadline));
+        while (javaMatcher.find()) {
+            int start = javaMatcher.start();
+            int end = javaMatcher.end();
+            matchingResults.add(new Span(attributeName, start, end, regex, fieldValue.substring(start, end)));
+        }
+        return matchingResults;
+    }
+
+    private List<Span> computeRe2jMatchingSpans(com.google.re2j.Pattern re2jPattern, String fieldValue,
+            String attributeName) {
+        List<Span> matchingResults = new ArrayList<>();
+        com.google.re2j.Matcher re2jMatcher = re2jPattern.matcher(fieldValue);
+        while (re2jMatcher.find()) {
+            int start = re2jMatcher.start();
+            int end = re2jMatcher.end();
+            matchingResults.add(new Span(attributeName, start, end, regex, fieldValue.substring(start, end)));
+        }
+        return matchingResults;
+    }
+
+    String getRegex() {
+        return regex;
+    }
+
+    boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    RegexEngine getRegexEngine() {
+        return regexEngine;
+    }
+
+    long getMatchTimeBudgetMillis() {
+        return matchTimeBudgetMillis;
+    }
+
+    /**
+     * @return the number of fields whose match with Java regex exceeded the time budget
+     */
+    long getNumTimedOutFields() {
+        return numTimedOutFields;
+    }
+
+    /**
+     * @return the number of fields skipped because the match exceeded the time budget and RE2J doesn't support the regex
+     */
+    long getNumSkippedFields() {
+        return numSkippedFields;
+    }
+
+    /*
+     * Java regex reads the text through charAt, which is used to abort the match after the deadline.
+     */
+    private static class DeadlineCharSequence implements CharSequence {
+        private final String text;
+        private final long deadline;
+        private int numReads = 0;
+
+        private DeadlineCharSequence(String text, long deadline) {
+            this.text = text;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++numReads == CHECK_TIME_INTERVAL) {
+                numReads = 0;
+                if (System.nanoTime() - deadline > 0) {
+                    throw new MatchTimeoutException();
+                }
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    private static class MatchTimeoutException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private MatchTimeoutException() {
+            // the stack trace is not needed
+            super(null, null, false, false);
+        }
+    }
+
+}
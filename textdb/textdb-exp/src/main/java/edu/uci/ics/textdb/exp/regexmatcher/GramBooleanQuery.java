@@ -5,6 +5,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.function.ToDoubleFunction;
 
 import edu.uci.ics.textdb.api.constants.DataConstants;
 
@@ -446,6 +447,113 @@ public class GramBooleanQuery {
         return true;
     }
 
+    /*
+     * cost based optimization with the document frequencies of the grams
+     * ---------------------------------------------------------
+     */
+
+    /**
+     * This function returns all the grams (leaves) in the query tree. <br>
+     */
+    Set<String> getGrams() {
+        Set<String> grams = new HashSet<>();
+        if (this.operator == QueryOp.LEAF) {
+            grams.add(this.leaf);
+        }
+        for (GramBooleanQuery subQuery : this.subQuerySet) {
+            grams.addAll(subQuery.getGrams());
+        }
+        return grams;
+    }
+
+    /**
+     * This function removes the common grams from the conjunctions of a query
+     * tree, and returns the result as a new tree. <br>
+     * A gram is common if the fraction of the documents that contain it is
+     * larger than maxGramFrequency. <br>
+     * A common gram hardly filters any document, but its posting list is
+     * long. Removing a gram from a conjunction only makes the query match more
+     * documents, which are verified by the regex matcher anyway, so the result
+     * is still correct. The most selective gram of a conjunction is always
+     * kept. <br>
+     * 
+     * @param query
+     * @param gramFrequency,
+     *            the fraction of the documents that contain a gram
+     * @param maxGramFrequency
+     * @return new query tree
+     */
+    static GramBooleanQuery dropCommonGrams(GramBooleanQuery query, ToDoubleFunction<String> gramFrequency,
+            double maxGramFrequency) {
+        if (query.operator == QueryOp.OR) {
+            GramBooleanQuery toReturn = new GramBooleanQuery(QueryOp.OR);
+            for (GramBooleanQuery subQuery : query.subQuerySet) {
+                toReturn.subQuerySet.add(dropCommonGrams(subQuery, gramFrequency, maxGramFrequency));
+            }
+            return toReturn;
+        }
+        if (query.operator != QueryOp.AND) {
+            return deepCopy(query);
+        }
+
+        GramBooleanQuery toReturn = new GramBooleanQuery(QueryOp.AND);
+        GramBooleanQuery mostSelectiveLeaf = null;
+        for (GramBooleanQuery subQuery : query.subQuerySet) {
+            if (subQuery.operator != QueryOp.LEAF) {
+                toReturn.subQuerySet.add(dropCommonGrams(subQuery, gramFrequency, maxGramFrequency));
+                continue;
+            }
+            double frequency = gramFrequency.applyAsDouble(subQuery.leaf);
+            if (frequency <= maxGramFrequency) {
+                toReturn.subQuerySet.add(newLeafNode(subQuery.leaf));
+            }
+            if (mostSelectiveLeaf == null || frequency < gramFrequency.applyAsDouble(mostSelectiveLeaf.leaf)) {
+                mostSelectiveLeaf = subQuery;
+            }
+        }
+        if (toReturn.subQuerySet.isEmpty() && mostSelectiveLeaf != null) {
+            toReturn.subQuerySet.add(newLeafNode(mostSelectiveLeaf.leaf));
+        }
+        if (toReturn.subQuerySet.size() == 1) {
+            return toReturn.subQuerySet.iterator().next();
+        }
+        return toReturn;
+    }
+
+    /**
+     * This function estimates the fraction of the documents that match a query
+     * tree (the candidates to be verified by the regex matcher). <br>
+     * The fraction of a conjunction is bounded by its most selective
+     * sub-query, and the fraction of a disjunction is bounded by the sum of its
+     * sub-queries. <br>
+     * 
+     * @param query
+     * @param gramFrequency,
+     *            the fraction of the documents that contain a gram
+     * @return the estimated fraction of the matching documents, between 0 and 1
+     */
+    static double estimateCandidateFraction(GramBooleanQuery query, ToDoubleFunction<String> gramFrequency) {
+        switch (query.operator) {
+        case LEAF:
+            return Math.min(1.0, gramFrequency.applyAsDouble(query.leaf));
+        case AND:
+            double minFraction = 1.0;
+            for (GramBooleanQuery subQuery : query.subQuerySet) {
+                minFraction = Math.min(minFraction, estimateCandidateFraction(subQuery, gramFrequency));
+            }
+            return minFraction;
+        case OR:
+            double sumFraction = 0.0;
+            for (GramBooleanQuery subQuery : query.subQuerySet) {
+                sumFraction += estimateCandidateFraction(subQuery, gramFrequency);
+            }
+            return Math.min(1.0, sumFraction);
+        default:
+            // ANY and NONE are both translated to a scan query
+            return 1.0;
+        }
+    }
+
     /*
      * string representations of the query tree
      * ---------------------------------------------------------
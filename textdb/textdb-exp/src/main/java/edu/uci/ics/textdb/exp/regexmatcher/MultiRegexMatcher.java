@@ -0,0 +1,203 @@
+package edu.uci.ics.textdb.exp.regexmatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.schema.AttributeType;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.utils.Utils;
+import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
+import edu.uci.ics.textdb.exp.dictionarymatcher.AhoCorasickAutomaton;
+import edu.uci.ics.textdb.exp.utils.DataflowUtils;
+
+/**
+ * MultiRegexMatcher matches a list of regexes against every input tuple, and returns the tuples that match any of them,
+ *   instead of running one RegexMatcher for each regex, which reads every tuple and every field once per regex.
+ *
+ * The grams required by all the regexes (see {@link RegexPrefilter}) are found in one pass over each field,
+ *   with one Aho-Corasick automaton, and a regex is only evaluated on the fields that contain its required grams.
+ * Therefore the cost of a large library of regexes mostly depends on the size of the text,
+ *   and the regexes that can't be prefiltered are evaluated on every field.
+ *
+ * One result tuple is returned for every input tuple that matches at least one regex (a disjunction of the regexes,
+ *   unlike a chain of RegexMatchers, which only returns the tuples that match all the regexes),
+ *   the spans are added to the SPAN_LIST attribute, and the key of every span is the regex it matches.
+ *   The spans are ordered by the regex, then by the attribute.
+ */
+public class MultiRegexMatcher extends AbstractSingleInputOperator {
+
+    private final MultiRegexPredicate predicate;
+
+    private List<String> attributeNames;
+    private List<CompiledRegex> compiledRegexes;
+
+    // finds the grams required by all the regexes, null if no regex can be prefiltered
+    private AhoCorasickAutomaton gramAutomaton;
+    // the required grams of every regex (see RegexPrefilter), null for the regexes that can't be prefiltered
+    private int[][][] regexGramConjunctions;
+
+    // the grams found in every attribute of the current tuple
+    private boolean[][] foundGrams;
+    private AhoCorasickAutomaton.MatchListener[] gramListeners;
+    private String[] fieldValues;
+
+    private long numCheckedFields = 0;
+    private long numRegexEvaluations = 0;
+    private long numSkippedRegexEvaluations = 0;
+
+    private Schema inputSchema;
+
+    public MultiRegexMatcher(MultiRegexPredicate predicate) {
+        this.predicate = predicate;
+    }
+
+    @Override
+    protected void setUp() throws DataFlowException {
+        if (predicate.getRegexes().isEmpty()) {
+            throw new DataFlowException("MultiRegexMatcher: the list of regexes is empty");
+        }
+
+        inputSchema = inputOperator.getOutputSchema();
+        outputSchema = inputSchema;
+        if (!this.inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
+            outputSchema = Utils.createSpanSchema(inputSchema);
+        }
+
+        attributeNames = predicate.getAttributeNames();
+        compiledRegexes = new ArrayList<>();
+        for (String regex : new LinkedHashSet<>(predicate.getRegexes())) {
+            compiledRegexes.add(new CompiledRegex(regex, predicate.isIgnoreCase()));
+        }
+
+        LinkedHashMap<String, Integer> gramIndexes = new LinkedHashMap<>();
+        regexGramConjunctions = new int[compiledRegexes.size()][][];
+        for (int i = 0; i < compiledRegexes.size(); i++) {
+            CompiledRegex compiledRegex = compiledRegexes.get(i);
+            if (! compiledRegex.isPrefilterSupported()) {
+                continue;
+            }
+            List<List<String>> gramConjunctions = RegexPrefilter.getRequiredGramConjunctions(compiledRegex.getRegex());
+            if (gramConjunctions != null) {
+                regexGramConjunctions[i] = RegexPrefilter.toGramIndexes(gramConjunctions, gramIndexes);
+            }
+        }
+
+        gramAutomaton = null;
+        if (! gramIndexes.isEmpty()) {
+            gramAutomaton = new AhoCorasickAutomaton(gramIndexes.keySet());
+        }
+        foundGrams = new boolean[attributeNames.size()][gramIndexes.size()];
+        gramListeners = new AhoCorasickAutomaton.MatchListener[attributeNames.size()];
+        for (int i = 0; i < attributeNames.size(); i++) {
+            boolean[] attributeFoundGrams = foundGrams[i];
+            gramListeners[i] = (gramIndex, start, end) -> attributeFoundGrams[gramIndex] = true;
+        }
+        fieldValues = new String[attributeNames.size()];
+    }
+
+    @Override
+    protected Tuple computeNextMatchingTuple() throws TextDBException {
+        Tuple inputTuple = null;
+        Tuple resultTuple = null;
+
+        while ((inputTuple = inputOperator.getNextTuple()) != null) {
+            if (!inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
+                inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(), new ArrayList<Span>(), outputSchema);
+            }
+            resultTuple = processOneInputTuple(inputTuple);
+            if (resultTuple != null) {
+                break;
+            }
+        }
+
+        return resultTuple;
+    }
+
+    @Override
+    public Tuple processOneInputTuple(Tuple inputTuple) throws DataFlowException {
+        if (inputTuple == null) {
+            return null;
+        }
+
+        // scan every field once to find the grams of all the regexes
+        for (int i = 0; i < attributeNames.size(); i++) {
+            String attributeName = attributeNames.get(i);
+            AttributeType attributeType = inputSchema.getAttribute(attributeName).getAttributeType();
+
+            // types other than TEXT and STRING: throw Exception for now
+            if (attributeType != AttributeType.STRING && attributeType != AttributeType.TEXT) {
+                throw new DataFlowException("MultiRegexMatcher: Fields other than STRING and TEXT are not supported yet");
+            }
+
+            fieldValues[i] = inputTuple.getField(attributeName).getValue().toString();
+            if (gramAutomaton != null) {
+                Arrays.fill(foundGrams[i], false);
+                gramAutomaton.search(fieldValues[i], gramListeners[i]);
+            }
+            numCheckedFields++;
+        }
+
+        // evaluate every regex on the fields that contain its required grams
+        List<Span> matchingResults = new ArrayList<>();
+        for (int r = 0; r < compiledRegexes.size(); r++) {
+            for (int i = 0; i < attributeNames.size(); i++) {
+                if (regexGramConjunctions[r] != null
+                        && ! RegexPrefilter.isAnyConjunctionFound(regexGramConjunctions[r], foundGrams[i])) {
+                    numSkippedRegexEvaluations++;
+                    continue;
+                }
+                numRegexEvaluations++;
+                matchingResults.addAll(compiledRegexes.get(r).computeMatchingSpans(fieldValues[i], attributeNames.get(i)));
+            }
+        }
+
+        if (matchingResults.isEmpty()) {
+            return null;
+        }
+
+        ListField<Span> spanListField = inputTuple.getField(SchemaConstants.SPAN_LIST);
+        List<Span> spanList = spanListField.getValue();
+        spanList.addAll(matchingResults);
+
+        return inputTuple;
+    }
+
+    @Override
+    protected void cleanUp() throws DataFlowException {
+    }
+
+    public MultiRegexPredicate getPredicate() {
+        return this.predicate;
+    }
+
+    /**
+     * @return the number of fields scanned for the required grams
+     */
+    public long getNumCheckedFields() {
+        return numCheckedFields;
+    }
+
+    /**
+     * @return the number of times a regex is evaluated on a field
+     */
+    public long getNumRegexEvaluations() {
+        return numRegexEvaluations;
+    }
+
+    /**
+     * @return the number of times a regex is not evaluated on a field, because the field doesn't contain its required grams
+     */
+    public long getNumSkippedRegexEvaluations() {
+        return numSkippedRegexEvaluations;
+    }
+
+}
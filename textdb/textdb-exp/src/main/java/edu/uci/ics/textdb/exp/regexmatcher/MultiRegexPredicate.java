@@ -0,0 +1,74 @@
+package edu.uci.ics.textdb.exp.regexmatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import edu.uci.ics.textdb.api.dataflow.IOperator;
+import edu.uci.ics.textdb.exp.common.PredicateBase;
+import edu.uci.ics.textdb.exp.common.PropertyNameConstants;
+
+/**
+ * This class is the predicate for MultiRegexMatcher.
+ */
+public class MultiRegexPredicate extends PredicateBase {
+
+    private final List<String> regexes;
+    private final List<String> attributeNames;
+    private final Boolean ignoreCase;
+    
+    /*
+     * This constructor is only for internal use.
+     */
+    public MultiRegexPredicate(List<String> regexes, List<String> attributeNames) {
+        this(regexes, attributeNames, null);
+    }
+
+    /**
+     * MultiRegexPredicate is used to create a MultiRegexMatcher, 
+     *   which matches a list of regexes in one pass over the input tuples.
+     * 
+     * @param regexes, the regexes to be used
+     * @param attributeNames, a list of attribute names to match the regexes on
+     * @param ignoreCase, optional, ignores regex case, default false
+     */
+    @JsonCreator
+    public MultiRegexPredicate(
+            @JsonProperty(value = PropertyNameConstants.REGEX_LIST, required = true)
+            List<String> regexes, 
+            @JsonProperty(value = PropertyNameConstants.ATTRIBUTE_NAMES, required = true)
+            List<String> attributeNames,
+            @JsonProperty(value = PropertyNameConstants.REGEX_IGNORE_CASE, required = false)
+            Boolean ignoreCase) {
+        this.regexes = regexes;
+        this.attributeNames = attributeNames;
+        if (ignoreCase == null) {
+            this.ignoreCase = false;
+        } else {
+            this.ignoreCase = ignoreCase;
+        }
+    }
+
+    @JsonProperty(PropertyNameConstants.REGEX_LIST)
+    public List<String> getRegexes() {
+        return new ArrayList<>(this.regexes);
+    }
+
+    @JsonProperty(PropertyNameConstants.ATTRIBUTE_NAMES)
+    public List<String> getAttributeNames() {
+        return new ArrayList<>(this.attributeNames);
+    }
+    
+    @JsonProperty(PropertyNameConstants.REGEX_IGNORE_CASE)
+    public Boolean isIgnoreCase() {
+        return this.ignoreCase;
+    }
+    
+    @Override
+    public IOperator newOperator() {
+        return new MultiRegexMatcher(this);
+    }
+
+}
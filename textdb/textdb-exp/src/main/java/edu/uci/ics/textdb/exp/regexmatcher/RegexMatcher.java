@@ -25,14 +25,11 @@ public class RegexMatcher extends AbstractSingleInputOperator {
     
     private final RegexPredicate predicate;
 
-    // two available regex engines, RegexMatcher will try RE2J first
-    private enum RegexEngine {
-        JavaRegex, RE2J
-    }
-
-    private RegexEngine regexEngine;
-    private com.google.re2j.Pattern re2jPattern;
-    private java.util.regex.Pattern javaPattern;
+    private CompiledRegex compiledRegex;
+    private long matchTimeBudgetMillis = CompiledRegex.DEFAULT_MATCH_TIME_BUDGET_MILLIS;
+    
+    // rejects the fields that can't match the regex before running the regex engine, null if not available
+    private RegexPrefilter prefilter;
     
     private Schema inputSchema;
 
@@ -49,34 +46,8 @@ public class RegexMatcher extends AbstractSingleInputOperator {
             outputSchema = Utils.createSpanSchema(inputSchema);
         }
         
-        // try Java Regex first
-        try {
-            if (this.predicate.isIgnoreCase()) {
-                this.javaPattern = java.util.regex.Pattern.compile(predicate.getRegex(), 
-                        java.util.regex.Pattern.CASE_INSENSITIVE);
-                this.regexEngine = RegexEngine.JavaRegex; 
-            } else {
-                this.javaPattern = java.util.regex.Pattern.compile(predicate.getRegex());
-                this.regexEngine = RegexEngine.JavaRegex; 
-            }
-
-            // if Java Regex fails, try RE2J
-        } catch (java.util.regex.PatternSyntaxException javaException) {
-            try {
-                if (this.predicate.isIgnoreCase()) {
-                    this.re2jPattern = com.google.re2j.Pattern.compile(predicate.getRegex(), 
-                            com.google.re2j.Pattern.CASE_INSENSITIVE);
-                    this.regexEngine = RegexEngine.RE2J;
-                } else {
-                    this.re2jPattern = com.google.re2j.Pattern.compile(predicate.getRegex());
-                    this.regexEngine = RegexEngine.RE2J;                    
-                }
-
-                // if RE2J also fails, throw exception
-            } catch (com.google.re2j.PatternSyntaxException re2jException) {
-                throw new DataFlowException(javaException.getMessage(), javaException);
-            }
-        }
+        compiledRegex = new CompiledRegex(predicate.getRegex(), predicate.isIgnoreCase(), matchTimeBudgetMillis);
+        prefilter = compiledRegex.createPrefilter();
     }
     
     @Override
@@ -126,15 +97,12 @@ public class RegexMatcher extends AbstractSingleInputOperator {
             if (attributeType != AttributeType.STRING && attributeType != AttributeType.TEXT) {
                 throw new DataFlowException("KeywordMatcher: Fields other than STRING and TEXT are not supported yet");
             }
-
-            switch (regexEngine) {
-            case JavaRegex:
-                matchingResults.addAll(javaRegexMatch(fieldValue, attributeName));
-                break;
-            case RE2J:
-                matchingResults.addAll(re2jRegexMatch(fieldValue, attributeName));
-                break;
+            
+            if (prefilter != null && ! prefilter.mayMatch(fieldValue)) {
+                continue;
             }
+
+            matchingResults.addAll(compiledRegex.computeMatchingSpans(fieldValue, attributeName));
         }
 
         if (matchingResults.isEmpty()) {
@@ -148,30 +116,6 @@ public class RegexMatcher extends AbstractSingleInputOperator {
         return inputTuple;
     }
 
-    private List<Span> javaRegexMatch(String fieldValue, String attributeName) {
-        List<Span> matchingResults = new ArrayList<>();
-        java.util.regex.Matcher javaMatcher = this.javaPattern.matcher(fieldValue);
-        while (javaMatcher.find()) {
-            int start = javaMatcher.start();
-            int end = javaMatcher.end();
-            matchingResults.add(
-                    new Span(attributeName, start, end, this.predicate.getRegex(), fieldValue.substring(start, end)));
-        }
-        return matchingResults;
-    }
-
-    private List<Span> re2jRegexMatch(String fieldValue, String attributeName) {
-        List<Span> matchingResults = new ArrayList<>();
-        com.google.re2j.Matcher re2jMatcher = this.re2jPattern.matcher(fieldValue);
-        while (re2jMatcher.find()) {
-            int start = re2jMatcher.start();
-            int end = re2jMatcher.end();
-            matchingResults.add(
-                    new Span(attributeName, start, end, this.predicate.getRegex(), fieldValue.substring(start, end)));
-        }
-        return matchingResults;
-    }
-
     @Override
     protected void cleanUp() throws DataFlowException {        
     }
@@ -180,4 +124,49 @@ public class RegexMatcher extends AbstractSingleInputOperator {
         return this.predicate;
     }
     
+    /**
+     * @return the prefilter of the regex, which counts the fields it checks and rejects, 
+     *   or null if the regex can't be prefiltered (or the matcher is not opened)
+     */
+    public RegexPrefilter getPrefilter() {
+        return this.prefilter;
+    }
+
+    /**
+     * Sets the maximum time of matching the regex on one field, it must be set before the matcher is opened.
+     * A match that exceeds the budget is aborted, and the field is matched again by RE2J if RE2J supports the regex,
+     *   otherwise the field is skipped.
+     *
+     * @param matchTimeBudgetMillis
+     */
+    public void setMatchTimeBudgetMillis(long matchTimeBudgetMillis) {
+        this.matchTimeBudgetMillis = matchTimeBudgetMillis;
+    }
+
+    public long getMatchTimeBudgetMillis() {
+        return this.matchTimeBudgetMillis;
+    }
+
+    /**
+     * @return true if the regex is matched by RE2J (linear time) instead of Java regex (backtracking),
+     *   because it's not supported by Java regex or it may take exponential time with Java regex
+     */
+    public boolean isLinearTimeEngineUsed() {
+        return compiledRegex != null && compiledRegex.getRegexEngine() == CompiledRegex.RegexEngine.RE2J;
+    }
+
+    /**
+     * @return the number of fields whose match exceeded the time budget
+     */
+    public long getNumTimedOutFields() {
+        return compiledRegex == null ? 0 : compiledRegex.getNumTimedOutFields();
+    }
+
+    /**
+     * @return the number of fields skipped because the match exceeded the time budget, and RE2J doesn't support the regex
+     */
+    public long getNumSkippedFields() {
+        return compiledRegex == null ? 0 : compiledRegex.getNumSkippedFields();
+    }
+    
 }
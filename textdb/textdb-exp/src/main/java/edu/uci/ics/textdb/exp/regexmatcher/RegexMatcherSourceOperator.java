@@ -1,37 +1,73 @@
 package edu.uci.ics.textdb.exp.regexmatcher;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 
 import edu.uci.ics.textdb.api.constants.DataConstants;
-import edu.uci.ics.textdb.api.dataflow.ISourceOperator;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.StorageException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
+import edu.uci.ics.textdb.exp.common.IIdFilterableSourceOperator;
+import edu.uci.ics.textdb.exp.common.IProjectableSourceOperator;
+import edu.uci.ics.textdb.exp.utils.DataflowUtils;
 import edu.uci.ics.textdb.storage.DataReader;
 import edu.uci.ics.textdb.storage.RelationManager;
 
-public class RegexMatcherSourceOperator extends AbstractSingleInputOperator implements ISourceOperator {
+/**
+ * RegexMatcherSourceOperator reads the tuples of a table and matches a regex on them.
+ * 
+ * The regex is translated to a boolean query of n-grams (see {@link RegexToGramQueryTranslator}),
+ *   and the document frequencies of the grams in the table decide how the table is read:
+ *   - the grams that appear in most of the documents are removed from the conjunctions of the query,
+ *     because they hardly filter any document, 
+ *   - if the query is still expected to match a large fraction of the documents, 
+ *     the table is scanned instead of using the index.
+ * The choice can be overridden by the useIndex property of the predicate.
+ */
+public class RegexMatcherSourceOperator extends AbstractSingleInputOperator 
+        implements IProjectableSourceOperator, IIdFilterableSourceOperator {
+    
+    // the grams in more than this fraction of the documents are dropped from the conjunctions of the gram query
+    public static final double MAX_GRAM_FREQUENCY = 0.5;
+    // the index is used if the gram query is expected to match at most this fraction of the documents
+    public static final double MAX_INDEX_CANDIDATE_FRACTION = 0.5;
     
     private final RegexSourcePredicate predicate;
 
     private final DataReader dataReader;
     private final RegexMatcher regexMatcher;
     
+    // the estimated fraction of the documents that match the gram query, 1 if the regex can't be translated
+    private double estimatedCandidateFraction = 1.0;
+    private final boolean indexUsed;
+    
     public RegexMatcherSourceOperator(RegexSourcePredicate predicate) throws StorageException, DataFlowException {
         this.predicate = predicate;
         
-        if (this.predicate.isUseIndex()) {
-            this.dataReader = RelationManager.getRelationManager().getTableDataReader(this.predicate.getTableName(), 
-                    createLuceneQuery(this.predicate));
-        } else {
-            this.dataReader = RelationManager.getRelationManager().getTableDataReader(this.predicate.getTableName(), 
-                    new MatchAllDocsQuery());
+        Query luceneQuery = null;
+        if (this.predicate.isUseIndex() == null || this.predicate.isUseIndex()) {
+            luceneQuery = createOptimizedLuceneQuery();
+            if (this.predicate.isUseIndex() == null && estimatedCandidateFraction > MAX_INDEX_CANDIDATE_FRACTION) {
+                luceneQuery = null;
+            }
         }
+        this.indexUsed = luceneQuery != null;
+        if (! this.indexUsed) {
+            luceneQuery = new MatchAllDocsQuery();
+        }
+        this.dataReader = RelationManager.getRelationManager().getTableDataReader(this.predicate.getTableName(), 
+                luceneQuery);
         
         regexMatcher = new RegexMatcher(this.predicate);
         regexMatcher.setInputOperator(dataReader);
@@ -58,8 +94,101 @@ public class RegexMatcherSourceOperator extends AbstractSingleInputOperator impl
     protected void cleanUp() throws TextDBException {
     }
     
+    /**
+     * @return true if the index is used to find the candidate documents, false if the table is scanned
+     */
+    public boolean isIndexUsed() {
+        return this.indexUsed;
+    }
+    
+    /**
+     * @return the estimated fraction of the documents that match the gram query of the regex
+     */
+    public double getEstimatedCandidateFraction() {
+        return this.estimatedCandidateFraction;
+    }
+    
+    @Override
+    public void setProjectedAttributeNames(Collection<String> attributeNames) {
+        this.dataReader.setProjectedAttributeNames(
+                DataflowUtils.getProjectedAttributeNames(attributeNames, predicate.getAttributeNames()));
+    }
+    
+    /**
+     * The _IDs can't be filtered if the results have a limit or an offset.
+     */
+    @Override
+    public boolean canFilterIds() {
+        return this.limit == Integer.MAX_VALUE && this.offset == 0;
+    }
+    
+    @Override
+    public void setIdFilter(Collection<String> ids) {
+        if (canFilterIds()) {
+            this.dataReader.setIdFilter(ids);
+        }
+    }
+
+    /*
+     * Translates the regex to a gram query, drops the common grams, and estimates the fraction of the candidates. 
+     */
+    private Query createOptimizedLuceneQuery() throws StorageException {
+        GramBooleanQuery gramQuery;
+        try {
+            gramQuery = RegexToGramQueryTranslator.translateToGrams(predicate.getRegex(), 
+                    TranslatorUtils.DEFAULT_GRAM_LENGTH);
+        } catch (com.google.re2j.PatternSyntaxException e) {
+            return parseLuceneQuery(predicate, DataConstants.SCAN_QUERY);
+        }
+        
+        Map<String, Double> gramFrequencies = getGramFrequencies(gramQuery.getGrams());
+        gramQuery = GramBooleanQuery.dropCommonGrams(gramQuery, gramFrequencies::get, MAX_GRAM_FREQUENCY);
+        estimatedCandidateFraction = GramBooleanQuery.estimateCandidateFraction(gramQuery, gramFrequencies::get);
+        
+        TranslatorUtils.escapeSpecialCharacters(gramQuery);
+        return parseLuceneQuery(predicate, gramQuery.getLuceneQueryString());
+    }
+    
+    /*
+     * Gets the fraction of the documents that contain each gram (in any of the attributes).
+     * A gram is tokenized by the analyzer of the table in the same way as the query parser does,
+     *   if it has several tokens, the least frequent one is used as the upper bound.
+     */
+    private Map<String, Double> getGramFrequencies(Set<String> grams) throws StorageException {
+        RelationManager relationManager = RelationManager.getRelationManager();
+        String tableName = predicate.getTableName();
+        Analyzer tableAnalyzer = relationManager.getTableAnalyzer(tableName);
+        int numDocuments = relationManager.getTableNumDocuments(tableName);
+        
+        Map<String, Double> gramFrequencies = new HashMap<>();
+        for (String gram : grams) {
+            List<String> tokens = DataflowUtils.tokenizeQuery(tableAnalyzer, gram);
+            if (tokens.isEmpty() || numDocuments == 0) {
+                gramFrequencies.put(gram, tokens.isEmpty() ? 1.0 : 0.0);
+                continue;
+            }
+            long documentFrequency = 0;
+            for (String attributeName : predicate.getAttributeNames()) {
+                int attributeFrequency = Integer.MAX_VALUE;
+                for (String token : tokens) {
+                    attributeFrequency = Math.min(attributeFrequency, 
+                            relationManager.getTermDocumentFrequency(tableName, attributeName, token));
+                }
+                documentFrequency += attributeFrequency;
+            }
+            gramFrequencies.put(gram, Math.min(1.0, (double) documentFrequency / numDocuments));
+        }
+        return gramFrequencies;
+    }
+
+    /**
+     * Creates the gram query of the regex, without using the statistics of the table.
+     * 
+     * @param predicate
+     * @return
+     * @throws StorageException
+     */
     public static Query createLuceneQuery(RegexSourcePredicate predicate) throws StorageException {
-        Query luceneQuery;
         String queryString;
         
         // Try to apply translator. If it fails, use scan query.
@@ -69,6 +198,11 @@ public class RegexMatcherSourceOperator extends AbstractSingleInputOperator impl
             queryString = DataConstants.SCAN_QUERY;
         }
 
+        return parseLuceneQuery(predicate, queryString);
+    }
+    
+    private static Query parseLuceneQuery(RegexSourcePredicate predicate, String queryString) throws StorageException {
+        Query luceneQuery;
         // Try to parse the query string. It if fails, raise an exception.
         try {
             luceneQuery = new MultiFieldQueryParser(
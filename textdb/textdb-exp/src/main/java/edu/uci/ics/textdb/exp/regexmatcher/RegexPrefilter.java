@@ -0,0 +1,257 @@
+package edu.uci.ics.textdb.exp.regexmatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import edu.uci.ics.textdb.exp.dictionarymatcher.AhoCorasickAutomaton;
+
+/**
+ * RegexPrefilter rejects the strings that can't match a regex without running the regex engine.
+ *
+ * The regex is analyzed by {@link RegexToGramQueryTranslator} (the same analysis used to build the
+ *   n-gram index query), which gives a boolean expression of the grams that a matching string must contain.
+ * The prefilter finds all the grams of the expression in a string in one pass (with an Aho-Corasick automaton),
+ *   and a string is rejected if the expression is false.
+ * The grams are matched ignoring the case, so the prefilter never rejects a string that matches the regex,
+ *   no matter whether the regex is case sensitive or not.
+ *
+ * A prefilter is only built for regexes that the analysis understands the same way as the Java regex engine,
+ *   and that require at least one gram (see {@link #create(String)}).
+ *
+ * The prefilter counts the strings it checks and rejects, to show how effective it is.
+ * It keeps the state of the current string, so it must not be shared by several threads.
+ */
+public class RegexPrefilter {
+
+    private final String regex;
+
+    private final AhoCorasickAutomaton gramAutomaton;
+    // the expression in disjunctive normal form:
+    // a string passes the filter if it contains all the grams of at least one conjunction
+    private final int[][] conjunctions;
+
+    // the grams found in the current string
+    private final boolean[] foundGrams;
+    private final AhoCorasickAutomaton.MatchListener gramListener;
+
+    private long numCheckedStrings = 0;
+    private long numRejectedStrings = 0;
+
+    private RegexPrefilter(String regex, List<String> grams, int[][] conjunctions) {
+        this.regex = regex;
+        this.gramAutomaton = new AhoCorasickAutomaton(grams);
+        this.conjunctions = conjunctions;
+        this.foundGrams = new boolean[grams.size()];
+        this.gramListener = (gramIndex, start, end) -> foundGrams[gramIndex] = true;
+    }
+
+    /**
+     * Creates the prefilter of a regex.
+     *
+     * @param regex
+     * @return the prefilter, or null if the regex can't be prefiltered,
+     *   because it doesn't require any gram, or it may be understood differently by the analysis
+     */
+    public static RegexPrefilter create(String regex) {
+        List<List<String>> gramConjunctions = getRequiredGramConjunctions(regex);
+        if (gramConjunctions == null) {
+            return null;
+        }
+        LinkedHashMap<String, Integer> gramIndexes = new LinkedHashMap<>();
+        int[][] conjunctions = toGramIndexes(gramConjunctions, gramIndexes);
+        return new RegexPrefilter(regex, new ArrayList<>(gramIndexes.keySet()), conjunctions);
+    }
+
+    /**
+     * Gets the grams required by a regex, in disjunctive normal form:
+     *   a string that matches the regex contains (ignoring the case) all the grams of at least one of the lists.
+     *
+     * @param regex
+     * @return the lists of grams, or null if the regex can't be prefiltered
+     */
+    static List<List<String>> getRequiredGramConjunctions(String regex) {
+        if (! isSupportedRegex(regex)) {
+            return null;
+        }
+
+        GramBooleanQuery gramQuery;
+        try {
+            gramQuery = RegexToGramQueryTranslator.translateToGrams(regex, TranslatorUtils.DEFAULT_GRAM_LENGTH);
+        } catch (com.google.re2j.PatternSyntaxException e) {
+            // the syntax is only supported by Java regex
+            return null;
+        }
+
+        List<List<String>> gramConjunctions = new ArrayList<>();
+        if (gramQuery.operator == GramBooleanQuery.QueryOp.OR) {
+            for (GramBooleanQuery subQuery : gramQuery.subQuerySet) {
+                List<String> grams = toGramConjunction(subQuery);
+                if (grams == null) {
+                    return null;
+                }
+                gramConjunctions.add(grams);
+            }
+        } else {
+            List<String> grams = toGramConjunction(gramQuery);
+            if (grams == null) {
+                return null;
+            }
+            gramConjunctions.add(grams);
+        }
+        if (gramConjunctions.isEmpty()) {
+            return null;
+        }
+        return gramConjunctions;
+    }
+
+    /*
+     * Converts a LEAF or an AND of LEAFs to the list of its grams,
+     *   returns null for other queries, including ANY (nothing is required).
+     */
+    private static List<String> toGramConjunction(GramBooleanQuery query) {
+        List<String> grams = new ArrayList<>();
+        if (query.operator == GramBooleanQuery.QueryOp.LEAF) {
+            grams.add(query.leaf);
+        } else if (query.operator == GramBooleanQuery.QueryOp.AND) {
+            for (GramBooleanQuery subQuery : query.subQuerySet) {
+                if (subQuery.operator != GramBooleanQuery.QueryOp.LEAF) {
+                    return null;
+                }
+                grams.add(subQuery.leaf);
+            }
+        }
+        if (grams.isEmpty() || grams.stream().anyMatch(gram -> gram.isEmpty())) {
+            return null;
+        }
+        return grams;
+    }
+
+    /**
+     * Converts the lists of grams to the lists of the indexes of the grams,
+     *   the new grams are added to gramIndexes.
+     */
+    static int[][] toGramIndexes(List<List<String>> gramConjunctions, LinkedHashMap<String, Integer> gramIndexes) {
+        int[][] conjunctions = new int[gramConjunctions.size()][];
+        for (int i = 0; i < gramConjunctions.size(); i++) {
+            List<String> grams = gramConjunctions.get(i);
+            conjunctions[i] = new int[grams.size()];
+            for (int j = 0; j < grams.size(); j++) {
+                gramIndexes.putIfAbsent(grams.get(j), gramIndexes.size());
+                conjunctions[i][j] = gramIndexes.get(grams.get(j));
+            }
+        }
+        return conjunctions;
+    }
+
+    /**
+     * @return true if all the grams of at least one of the conjunctions are found
+     */
+    static boolean isAnyConjunctionFound(int[][] conjunctions, boolean[] foundGrams) {
+        for (int[] conjunction : conjunctions) {
+            boolean allGramsFound = true;
+            for (int gramIndex : conjunction) {
+                if (! foundGrams[gramIndex]) {
+                    allGramsFound = false;
+                    break;
+                }
+            }
+            if (allGramsFound) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * The regex is parsed by RE2J for the analysis, but matched by Java regex.
+     * This method rejects the regexes whose meaning may be different in the analysis:
+     *   - the translator lower-cases the whole regex, which changes the meaning of the upper case escapes (\D, \S, \W ...),
+     *     and the length of some strings,
+     *   - some escapes and the nested character classes have different meanings in Java regex and RE2J,
+     *   - the translator handles the characters outside of the BMP as single chars.
+     */
+    private static boolean isSupportedRegex(String regex) {
+        if (regex.toLowerCase().length() != regex.length()) {
+            return false;
+        }
+        boolean inCharClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (Character.isSurrogate(c)) {
+                return false;
+            }
+            if (c == '\\') {
+                if (i + 1 == regex.length()) {
+                    return false;
+                }
+                char escaped = regex.charAt(++i);
+                if (Character.isLetterOrDigit(escaped) && "bBdfnrtwx".indexOf(escaped) < 0) {
+                    return false;
+                }
+            } else if (inCharClass) {
+                if (c == '[' || (c == '&' && i + 1 < regex.length() && regex.charAt(i + 1) == '&')) {
+                    return false;
+                }
+                if (c == ']') {
+                    inCharClass = false;
+                }
+            } else if (c == '[') {
+                inCharClass = true;
+                // a ']' at the beginning of a class may be handled differently by Java regex and RE2J
+                int next = i + 1 < regex.length() && regex.charAt(i + 1) == '^' ? i + 2 : i + 1;
+                if (next < regex.length() && regex.charAt(next) == ']') {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a string may match the regex.
+     *
+     * @param fieldValue
+     * @return false if the string can't match the regex, true otherwise
+     */
+    public boolean mayMatch(String fieldValue) {
+        numCheckedStrings++;
+
+        Arrays.fill(foundGrams, false);
+        gramAutomaton.search(fieldValue, gramListener);
+
+        if (isAnyConjunctionFound(conjunctions, foundGrams)) {
+            return true;
+        }
+        numRejectedStrings++;
+        return false;
+    }
+
+    public String getRegex() {
+        return regex;
+    }
+
+    /**
+     * @return the grams that the prefilter looks for
+     */
+    public List<String> getGrams() {
+        return gramAutomaton.getPatterns();
+    }
+
+    public long getNumCheckedStrings() {
+        return numCheckedStrings;
+    }
+
+    public long getNumRejectedStrings() {
+        return numRejectedStrings;
+    }
+
+    /**
+     * @return the fraction of the checked strings that are rejected, 0 if no string is checked
+     */
+    public double getRejectionRate() {
+        return numCheckedStrings == 0 ? 0 : (double) numRejectedStrings / numCheckedStrings;
+    }
+
+}
@@ -30,7 +30,8 @@ public class RegexSourcePredicate extends RegexPredicate {
      * @param attributeNames, a list of attribute names to match regex on
      * @param ignoreCase, optional, ignores regex case, default false
      * @param tableName, the name of the source table
-     * @param useIndex, optional, use the gram-based regex index query, default true
+     * @param useIndex, optional, true to always use the gram-based regex index query, false to always scan the table,
+     *          by default, the index is used if the query is selective enough (decided by the document frequencies of the grams)
      */
     @JsonCreator
     public RegexSourcePredicate(
@@ -46,11 +47,7 @@ public class RegexSourcePredicate extends RegexPredicate {
             Boolean useIndex) {
         super(regex, attributeNames, ignoreCase);
         this.tableName = tableName;
-        if (useIndex == null) {
-            this.useIndex = true;
-        } else {
-            this.useIndex = useIndex;
-        }
+        this.useIndex = useIndex;
     }
     
     @JsonProperty(PropertyNameConstants.TABLE_NAME)
@@ -58,6 +55,10 @@ public class RegexSourcePredicate extends RegexPredicate {
         return this.tableName;
     }
     
+    /**
+     * @return true if the index must be used, false if the table must be scanned, 
+     *   null if it's chosen automatically
+     */
     @JsonProperty(PropertyNameConstants.REGEX_USE_INDEX)
     public Boolean isUseIndex() {
         return this.useIndex;
@@ -5,6 +5,8 @@ import com.google.re2j.PublicRE2;
 import com.google.re2j.PublicRegexp;
 import com.google.re2j.PublicSimplify;
 
+import edu.uci.ics.textdb.exp.utils.CompilationCache;
+
 /**
  * This class translates a regex to a boolean query of n-grams, according to the
  * <a href='https://swtch.com/~rsc/regexp/regexp4.html'>algorithm</a> described
@@ -43,6 +45,38 @@ public class RegexToGramQueryTranslator {
     public static GramBooleanQuery translate(String regex, int gramLength)
             throws com.google.re2j.PatternSyntaxException {
 
+        GramBooleanQuery gramQuery = translateToGrams(regex, gramLength);
+        TranslatorUtils.escapeSpecialCharacters(gramQuery);
+        return gramQuery;
+    }
+
+    /**
+     * This method translates a regular expression to a boolean expression of
+     * n-grams, without escaping the special characters of lucene in the grams.
+     * <br>
+     * The grams are lower case. Every string that matches the regex contains
+     * (ignoring the case) the grams required by the boolean expression, so it
+     * can also be used to filter out the strings that can't match the regex.
+     * <br>
+     * 
+     * @param regex,
+     *            the regex string to be translated.
+     * @param gramLength
+     * @return GramBooleanQuery, a boolean query of n-grams.
+     */
+    static GramBooleanQuery translateToGrams(String regex, int gramLength)
+            throws com.google.re2j.PatternSyntaxException {
+
+        // the cached query is shared, a copy is returned because the callers may modify it
+        GramBooleanQuery gramQuery = CompilationCache.getInstance().get(CompilationCache.ArtifactType.GRAM_QUERY,
+                regex, Integer.toString(gramLength), () -> analyzeToGrams(regex, gramLength));
+        return GramBooleanQuery.deepCopy(gramQuery);
+    }
+
+    // synchronized because the analysis uses the static TranslatorUtils.GRAM_LENGTH
+    private static synchronized GramBooleanQuery analyzeToGrams(String regex, int gramLength)
+            throws com.google.re2j.PatternSyntaxException {
+
         TranslatorUtils.GRAM_LENGTH = gramLength;
 
         // Since the inverted index relies on lower-case grams, we need to
@@ -57,8 +91,6 @@ public class RegexToGramQueryTranslator {
 
         TranslatorUtils.GRAM_LENGTH = TranslatorUtils.DEFAULT_GRAM_LENGTH;
 
-        TranslatorUtils.escapeSpecialCharacters(regexInfo.match);
-
         return regexInfo.match;
     }
 
@@ -19,6 +19,7 @@ import java.util.regex.Pattern;
 import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.dataflow.ISourceOperator;
 import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
+import edu.uci.ics.textdb.exp.utils.CompilationCache;
 import junit.framework.Assert;
 
 /**
@@ -47,6 +48,7 @@ import junit.framework.Assert;
 public class RegexSplitOperator extends AbstractSingleInputOperator implements ISourceOperator{
 
     private RegexSplitPredicate predicate;
+    private Pattern pattern;
 
     private List<Tuple> outputTupleBuffer;
     private int bufferCursor;
@@ -66,6 +68,7 @@ public class RegexSplitOperator extends AbstractSingleInputOperator implements I
         } else {
             outputSchema = inputSchema;
         }
+        pattern = CompilationCache.getInstance().getJavaPattern(predicate.getRegex(), 0);
     }
 
 
@@ -140,9 +143,6 @@ public class RegexSplitOperator extends AbstractSingleInputOperator implements I
      */
     private List<String> splitText(String strText) throws TextDBException {
         List<String> stringtList = new ArrayList<>();
-        //Create a pattern using regex.
-        Pattern pattern = Pattern.compile(predicate.getRegex());
-        
         // Match the pattern in the text.
         Matcher regexMatcher = pattern.matcher(strText);
         List<Integer> splitIndex = new ArrayList<Integer>();
@@ -1,5 +1,7 @@
 package edu.uci.ics.textdb.exp.source.scan;
 
+import java.util.Collection;
+
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.StorageException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
@@ -9,14 +11,17 @@ import edu.uci.ics.textdb.api.tuple.Tuple;
 import org.apache.lucene.search.MatchAllDocsQuery;
 
 import edu.uci.ics.textdb.api.constants.ErrorMessages;
-import edu.uci.ics.textdb.api.dataflow.ISourceOperator;
+import edu.uci.ics.textdb.exp.common.IIdFilterableSourceOperator;
+import edu.uci.ics.textdb.exp.common.ILimitableSourceOperator;
+import edu.uci.ics.textdb.exp.common.IProjectableSourceOperator;
 import edu.uci.ics.textdb.storage.DataReader;
 import edu.uci.ics.textdb.storage.RelationManager;
 
 /**
  * Created by chenli on 3/28/16.
  */
-public class ScanBasedSourceOperator implements ISourceOperator {
+public class ScanBasedSourceOperator implements IProjectableSourceOperator, ILimitableSourceOperator, 
+        IIdFilterableSourceOperator {
 
     private DataReader dataReader;
     
@@ -28,6 +33,8 @@ public class ScanBasedSourceOperator implements ISourceOperator {
                     predicate.getTableName(), new MatchAllDocsQuery());
             // TODO add an option to set if payload is added in the future.
             this.dataReader.setPayloadAdded(true);
+            this.dataReader.setNumWorkers(predicate.getNumWorkers());
+            this.dataReader.setKeepOrder(predicate.isKeepOrder());
         } catch (StorageException e) {
             throw new DataFlowException(e);
         }
@@ -76,4 +83,33 @@ public class ScanBasedSourceOperator implements ISourceOperator {
     public Schema getOutputSchema() {
         return dataReader.getOutputSchema();
     }
+    
+    @Override
+    public void setProjectedAttributeNames(Collection<String> attributeNames) {
+        dataReader.setProjectedAttributeNames(attributeNames);
+    }
+    
+    @Override
+    public void setLimit(int limit) {
+        dataReader.setLimit(limit);
+    }
+    
+    public int getLimit() {
+        return dataReader.getLimit();
+    }
+    
+    /**
+     * The _IDs can't be filtered if only the first N documents are read.
+     */
+    @Override
+    public boolean canFilterIds() {
+        return dataReader.getLimit() == Integer.MAX_VALUE;
+    }
+    
+    @Override
+    public void setIdFilter(Collection<String> ids) {
+        if (canFilterIds()) {
+            dataReader.setIdFilter(ids);
+        }
+    }
 }
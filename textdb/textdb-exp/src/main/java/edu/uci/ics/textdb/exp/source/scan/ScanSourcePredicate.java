@@ -16,12 +16,29 @@ import edu.uci.ics.textdb.exp.common.PropertyNameConstants;
 public class ScanSourcePredicate extends PredicateBase {
     
     private final String tableName;
+    private final Integer numWorkers;
+    private final Boolean keepOrder;
     
+    public ScanSourcePredicate(String tableName) {
+        this(tableName, null, null);
+    }
+    
+    /**
+     * @param tableName, the name of the table to scan
+     * @param numWorkers, optional, the number of threads that scan the segments of the table in parallel, default 1
+     * @param keepOrder, optional, returns the tuples of a parallel scan in index order, default true
+     */
     @JsonCreator
     public ScanSourcePredicate(
             @JsonProperty(value = PropertyNameConstants.TABLE_NAME, required=true)
-            String tableName) {
+            String tableName,
+            @JsonProperty(value = PropertyNameConstants.SCAN_NUM_WORKERS, required=false)
+            Integer numWorkers,
+            @JsonProperty(value = PropertyNameConstants.SCAN_KEEP_ORDER, required=false)
+            Boolean keepOrder) {
         this.tableName = tableName;
+        this.numWorkers = numWorkers == null ? 1 : numWorkers;
+        this.keepOrder = keepOrder == null ? true : keepOrder;
     }
 
     @JsonProperty(PropertyNameConstants.TABLE_NAME)
@@ -29,6 +46,16 @@ public class ScanSourcePredicate extends PredicateBase {
         return this.tableName;
     }
     
+    @JsonProperty(PropertyNameConstants.SCAN_NUM_WORKERS)
+    public Integer getNumWorkers() {
+        return this.numWorkers;
+    }
+    
+    @JsonProperty(PropertyNameConstants.SCAN_KEEP_ORDER)
+    public Boolean isKeepOrder() {
+        return this.keepOrder;
+    }
+    
     @Override
     public IOperator newOperator() {
         return new ScanBasedSourceOperator(this);
@@ -0,0 +1,187 @@
+package edu.uci.ics.textdb.exp.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * CompilationCache keeps the artifacts compiled from the predicates of the operators
+ *   (regex patterns, gram queries, tokenized queries ...),
+ *   so that the same plan executed again, or the same pattern used by several operators, is compiled only once.
+ *
+ * An artifact is identified by its type, the pattern (the regex or the query),
+ *   and the options of the compilation (the flags, the gram length, the analyzer ...).
+ * The cached artifacts are shared, so they must not be modified,
+ *   the artifacts that are mutable are copied by the methods that fetch them.
+ *
+ * The cache is bounded by the number of artifacts,
+ *   the least recently used artifacts are evicted when the bound is exceeded.
+ * A failed compilation is not cached, the exception is thrown to the caller.
+ *
+ * The cache is thread-safe, and one instance is shared by the whole process (see {@link #getInstance()}).
+ */
+public class CompilationCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private static final CompilationCache instance = new CompilationCache(DEFAULT_MAX_SIZE);
+
+    /**
+     * The types of the cached artifacts.
+     */
+    public enum ArtifactType {
+        JAVA_PATTERN, RE2J_PATTERN, GRAM_QUERY, QUERY_TOKENS
+    }
+
+    /**
+     * Compiles an artifact when it's not in the cache.
+     */
+    @FunctionalInterface
+    public interface Compiler<T, E extends Exception> {
+        T compile() throws E;
+    }
+
+    private final int maxSize;
+
+    // in the access order, the first entry is the least recently used one
+    private final LinkedHashMap<ArtifactKey, Object> artifactMap;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    /**
+     * @param maxSize, the maximum number of cached artifacts
+     */
+    public CompilationCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.artifactMap = new LinkedHashMap<ArtifactKey, Object>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ArtifactKey, Object> eldest) {
+                return size() > CompilationCache.this.maxSize;
+            }
+        };
+    }
+
+    public static CompilationCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Gets a cached artifact, or compiles it and adds it to the cache.
+     *
+     * The compilation is done without holding the lock of the cache,
+     *   so a slow compilation doesn't block the other operators.
+     *
+     * @param type
+     * @param pattern
+     * @param options, the options of the compilation, in any form that identifies them
+     * @param compiler, compiles the artifact if it's not in the cache
+     * @return the artifact
+     * @throws E, if the compilation fails
+     */
+    @SuppressWarnings("unchecked")
+    public <T, E extends Exception> T get(ArtifactType type, String pattern, String options, Compiler<T, E> compiler)
+            throws E {
+        ArtifactKey key = new ArtifactKey(type, pattern, options);
+        synchronized (this) {
+            Object artifact = artifactMap.get(key);
+            if (artifact != null) {
+                hitCount++;
+                return (T) artifact;
+            }
+            missCount++;
+        }
+
+        T artifact = compiler.compile();
+        synchronized (this) {
+            Object previousArtifact = artifactMap.putIfAbsent(key, artifact);
+            return previousArtifact != null ? (T) previousArtifact : artifact;
+        }
+    }
+
+    /**
+     * Gets the Java regex pattern of a regex.
+     *
+     * @param regex
+     * @param flags, the flags of java.util.regex.Pattern
+     * @return the pattern
+     * @throws java.util.regex.PatternSyntaxException, if the regex is not supported by Java regex
+     */
+    public java.util.regex.Pattern getJavaPattern(String regex, int flags) {
+        return get(ArtifactType.JAVA_PATTERN, regex, Integer.toString(flags),
+                () -> java.util.regex.Pattern.compile(regex, flags));
+    }
+
+    /**
+     * Gets the RE2J pattern of a regex.
+     *
+     * @param regex
+     * @param flags, the flags of com.google.re2j.Pattern
+     * @return the pattern
+     * @throws com.google.re2j.PatternSyntaxException, if the regex is not supported by RE2J
+     */
+    public com.google.re2j.Pattern getRe2jPattern(String regex, int flags) {
+        return get(ArtifactType.RE2J_PATTERN, regex, Integer.toString(flags),
+                () -> com.google.re2j.Pattern.compile(regex, flags));
+    }
+
+    public synchronized void clear() {
+        artifactMap.clear();
+    }
+
+    public synchronized int size() {
+        return artifactMap.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the fraction of the lookups that find the artifact in the cache, 0 if there is no lookup
+     */
+    public synchronized double getHitRate() {
+        long numLookups = hitCount + missCount;
+        return numLookups == 0 ? 0 : (double) hitCount / numLookups;
+    }
+
+    private static class ArtifactKey {
+        private final ArtifactType type;
+        private final String pattern;
+        private final String options;
+
+        private ArtifactKey(ArtifactType type, String pattern, String options) {
+            this.type = type;
+            this.pattern = pattern;
+            this.options = options;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, pattern, options);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (! (obj instanceof ArtifactKey)) {
+                return false;
+            }
+            ArtifactKey other = (ArtifactKey) obj;
+            return type == other.type && Objects.equals(pattern, other.pattern) && Objects.equals(options, other.options);
+        }
+    }
+
+}
@@ -3,6 +3,8 @@ package edu.uci.ics.textdb.exp.utils;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -33,6 +35,9 @@ import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
 
 public class DataflowUtils {
     
+    // a standard analyzer that keeps the stopwords, it's thread-safe and shared by all the calls
+    private static final Analyzer standardAnalyzerWithStopwords = new StandardAnalyzer(CharArraySet.EMPTY_SET);
+    
     /**
      * Returns the AttributeType of a field object.
      * 
@@ -71,9 +76,20 @@ public class DataflowUtils {
         return new Tuple(spanSchema, fieldsDuplicate);
     }
     
+    /**
+     * Tokenizes the query string using the analyzer of the given analyzer string.
+     * The tokens are cached in the {@link CompilationCache}.
+     * 
+     * @param luceneAnalyzerStr
+     * @param query
+     * @return ArrayList<String> list of results
+     */
     public static ArrayList<String> tokenizeQuery(String luceneAnalyzerStr, String query) {
         try {
-            return tokenizeQuery(LuceneAnalyzerConstants.getLuceneAnalyzer(luceneAnalyzerStr), query);
+            List<String> tokens = CompilationCache.getInstance().get(CompilationCache.ArtifactType.QUERY_TOKENS,
+                    query, luceneAnalyzerStr, () -> Collections.unmodifiableList(
+                            tokenizeQuery(LuceneAnalyzerConstants.getLuceneAnalyzer(luceneAnalyzerStr), query)));
+            return new ArrayList<>(tokens);
         } catch (DataFlowException e) {
             // TODO: discuss RuntimeException vs. Checked Exception
             throw new RuntimeException(e);
@@ -107,9 +123,7 @@ public class DataflowUtils {
 
     public static ArrayList<String> tokenizeQueryWithStopwords(String query) {
         ArrayList<String> result = new ArrayList<String>();
-        CharArraySet emptyStopwords = new CharArraySet(1, true);
-        Analyzer luceneAnalyzer = new StandardAnalyzer(emptyStopwords);
-        TokenStream tokenStream = luceneAnalyzer.tokenStream(null, new StringReader(query));
+        TokenStream tokenStream = standardAnalyzerWithStopwords.tokenStream(null, new StringReader(query));
         CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
 
         try {
@@ -127,8 +141,6 @@ public class DataflowUtils {
             e.printStackTrace();
         }
 
-        luceneAnalyzer.close();
-
         return result;
     }
     
@@ -208,10 +220,67 @@ public class DataflowUtils {
         return sb.toString();
     }
     
+    /**
+     * Gets the attributes a source operator reads, when the operators after it only need projectedAttributeNames.
+     * The _id and the attributes the source matches on are always read.
+     * 
+     * @param projectedAttributeNames, the attributes needed after the source, null means all the attributes
+     * @param matchingAttributeNames, the attributes the source matches on
+     * @return the attributes to read, null means all the attributes
+     */
+    public static List<String> getProjectedAttributeNames(Collection<String> projectedAttributeNames, 
+            List<String> matchingAttributeNames) {
+        if (projectedAttributeNames == null) {
+            return null;
+        }
+        List<String> attributeNames = new ArrayList<>(projectedAttributeNames);
+        attributeNames.add(SchemaConstants._ID);
+        attributeNames.addAll(matchingAttributeNames);
+        return attributeNames;
+    }
+    
     public static List<Span> generatePayloadFromTuple(Tuple tuple, String luceneAnalyzer) throws DataFlowException {
         return generatePayloadFromTuple(tuple, LuceneAnalyzerConstants.getLuceneAnalyzer(luceneAnalyzer));
     }
 
+    /**
+     * Generates the payload of all the TEXT fields of a tuple, 
+     *   the payload of a field is taken from the cache if the same field has been analyzed before.
+     * 
+     * The payload of a tuple without _id is not cached.
+     * 
+     * @param tuple
+     * @param luceneAnalyzer
+     * @param payloadCache, the cache shared by the operators of a plan, null means no cache
+     * @return
+     * @throws DataFlowException
+     */
+    public static List<Span> generatePayloadFromTuple(Tuple tuple, String luceneAnalyzer, PayloadCache payloadCache) 
+            throws DataFlowException {
+        if (payloadCache == null || ! tuple.getSchema().containsField(SchemaConstants._ID)) {
+            return generatePayloadFromTuple(tuple, luceneAnalyzer);
+        }
+        Analyzer analyzer = LuceneAnalyzerConstants.getLuceneAnalyzer(luceneAnalyzer);
+        String id = tuple.getField(SchemaConstants._ID).getValue().toString();
+        
+        List<Span> tuplePayload = new ArrayList<>();
+        for (Attribute attribute : tuple.getSchema().getAttributes()) {
+            // generate payload only for TEXT field
+            if (attribute.getAttributeType() != AttributeType.TEXT) {
+                continue;
+            }
+            String attributeName = attribute.getAttributeName();
+            String fieldValue = tuple.getField(attributeName).getValue().toString();
+            List<Span> payload = payloadCache.getPayload(id, attributeName, luceneAnalyzer, fieldValue);
+            if (payload == null) {
+                payload = generatePayload(attributeName, fieldValue, analyzer);
+                payloadCache.putPayload(id, attributeName, luceneAnalyzer, fieldValue, payload);
+            }
+            tuplePayload.addAll(payload);
+        }
+        return tuplePayload;
+    }
+
     public static List<Span> generatePayloadFromTuple(Tuple tuple, Analyzer luceneAnalyzer) {
         List<Span> tuplePayload = tuple.getSchema().getAttributes().stream()
                 .filter(attr -> (attr.getAttributeType() == AttributeType.TEXT)) // generate payload only for TEXT field
@@ -0,0 +1,126 @@
+package edu.uci.ics.textdb.exp.utils;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * LiteralStringSearcher finds the occurrences of a literal pattern in strings,
+ *   using the Boyer-Moore-Horspool algorithm.
+ *
+ * The pattern is preprocessed once, and the search scans the original text in place,
+ *   it doesn't allocate anything, and the offsets it returns are the offsets in the original text.
+ *
+ * In the case-insensitive mode, the characters are compared after case folding one by one
+ *   (the same way as {@link String#equalsIgnoreCase}), instead of lowercasing the whole text,
+ *   which could change the length of the text for some characters.
+ *
+ * A searcher is immutable, and can be shared by several threads.
+ */
+public class LiteralStringSearcher {
+
+    // the shifts of the Latin-1 characters are looked up directly,
+    // the shifts of the other characters of the pattern are found by a binary search
+    private static final int DIRECT_SHIFT_TABLE_SIZE = 256;
+
+    private final String pattern;
+    private final boolean ignoreCase;
+
+    // the (case folded) characters of the pattern
+    private final char[] patternChars;
+
+    private final int[] directShiftTable;
+    private final char[] otherShiftChars;
+    private final int[] otherShifts;
+
+    public LiteralStringSearcher(String pattern, boolean ignoreCase) {
+        this.pattern = pattern;
+        this.ignoreCase = ignoreCase;
+
+        int patternLength = pattern.length();
+        this.patternChars = new char[patternLength];
+        for (int i = 0; i < patternLength; i++) {
+            patternChars[i] = foldCase(pattern.charAt(i));
+        }
+
+        // the shift of a character is the distance from its last occurrence in the pattern
+        // (excluding the last character) to the end of the pattern,
+        // the characters not in the pattern have the shift of the pattern length
+        this.directShiftTable = new int[DIRECT_SHIFT_TABLE_SIZE];
+        Arrays.fill(directShiftTable, patternLength);
+        TreeMap<Character, Integer> otherShiftMap = new TreeMap<>();
+        for (int i = 0; i < patternLength - 1; i++) {
+            char c = patternChars[i];
+            if (c < DIRECT_SHIFT_TABLE_SIZE) {
+                directShiftTable[c] = patternLength - 1 - i;
+            } else {
+                otherShiftMap.put(c, patternLength - 1 - i);
+            }
+        }
+        this.otherShiftChars = new char[otherShiftMap.size()];
+        this.otherShifts = new int[otherShiftMap.size()];
+        int index = 0;
+        for (Character c : otherShiftMap.keySet()) {
+            otherShiftChars[index] = c;
+            otherShifts[index] = otherShiftMap.get(c);
+            index++;
+        }
+    }
+
+    /**
+     * Finds the first occurrence of the pattern in the text, starting from fromIndex.
+     * An empty pattern doesn't match anything.
+     *
+     * @param text
+     * @param fromIndex
+     * @return the start offset of the occurrence, or -1 if the pattern is not found
+     */
+    public int indexOf(String text, int fromIndex) {
+        int patternLength = patternChars.length;
+        if (patternLength == 0) {
+            return -1;
+        }
+        int lastStart = text.length() - patternLength;
+        int start = Math.max(fromIndex, 0);
+
+        while (start <= lastStart) {
+            int i = patternLength - 1;
+            char lastChar = foldCase(text.charAt(start + i));
+            while (i >= 0 && foldCase(text.charAt(start + i)) == patternChars[i]) {
+                i--;
+            }
+            if (i < 0) {
+                return start;
+            }
+            start += getShift(lastChar);
+        }
+        return -1;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    public int length() {
+        return patternChars.length;
+    }
+
+    private int getShift(char c) {
+        if (c < DIRECT_SHIFT_TABLE_SIZE) {
+            return directShiftTable[c];
+        }
+        int index = Arrays.binarySearch(otherShiftChars, c);
+        return index >= 0 ? otherShifts[index] : patternChars.length;
+    }
+
+    private char foldCase(char c) {
+        if (! ignoreCase) {
+            return c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+}
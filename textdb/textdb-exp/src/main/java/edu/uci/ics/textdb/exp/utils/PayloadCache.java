@@ -0,0 +1,158 @@
+package edu.uci.ics.textdb.exp.utils;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+import edu.uci.ics.textdb.api.span.Span;
+
+/**
+ * PayloadCache keeps the payloads (the analyzed tokens) of the TEXT fields that are generated by the operators of a plan,
+ *   so that a field is analyzed at most once, even if it's matched by several operators
+ *   (for example, the matchers on different outputs of a OneToNBroadcastConnector).
+ *
+ * A payload is identified by the _id of the tuple, the attribute name, and the lucene analyzer string.
+ * The field value is kept with the payload, and a payload is returned only if the value is the same.
+ *
+ * The cache is bounded by the total number of spans in it,
+ *   the least recently used payloads are evicted when the bound is exceeded.
+ *
+ * The cache is thread-safe.
+ */
+public class PayloadCache {
+
+    public static final int DEFAULT_MAX_NUM_SPANS = 1 << 20;
+
+    private final int maxNumSpans;
+    private int numSpans = 0;
+
+    // in the access order, the first entry is the least recently used one
+    private final LinkedHashMap<PayloadKey, CachedPayload> payloadMap = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    public PayloadCache() {
+        this(DEFAULT_MAX_NUM_SPANS);
+    }
+
+    /**
+     * @param maxNumSpans, the maximum total number of spans of the cached payloads
+     */
+    public PayloadCache(int maxNumSpans) {
+        this.maxNumSpans = maxNumSpans;
+    }
+
+    /**
+     * Gets the cached payload of a field.
+     *
+     * @param id, the _id of the tuple
+     * @param attributeName
+     * @param luceneAnalyzerString
+     * @param fieldValue
+     * @return the payload, or null if it's not in the cache
+     */
+    public synchronized List<Span> getPayload(String id, String attributeName, String luceneAnalyzerString,
+            String fieldValue) {
+        CachedPayload cachedPayload = payloadMap.get(new PayloadKey(id, attributeName, luceneAnalyzerString));
+        if (cachedPayload == null || ! cachedPayload.fieldValue.equals(fieldValue)) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return cachedPayload.payload;
+    }
+
+    /**
+     * Adds the payload of a field to the cache, and evicts the least recently used payloads if necessary.
+     * A payload larger than the bound of the cache is not added.
+     *
+     * @param id, the _id of the tuple
+     * @param attributeName
+     * @param luceneAnalyzerString
+     * @param fieldValue
+     * @param payload
+     */
+    public synchronized void putPayload(String id, String attributeName, String luceneAnalyzerString,
+            String fieldValue, List<Span> payload) {
+        if (payload.size() > maxNumSpans) {
+            return;
+        }
+        CachedPayload previousPayload = payloadMap.put(new PayloadKey(id, attributeName, luceneAnalyzerString),
+                new CachedPayload(fieldValue, Collections.unmodifiableList(payload)));
+        if (previousPayload != null) {
+            numSpans -= previousPayload.payload.size();
+        }
+        numSpans += payload.size();
+
+        Iterator<CachedPayload> iterator = payloadMap.values().iterator();
+        while (numSpans > maxNumSpans) {
+            numSpans -= iterator.next().payload.size();
+            iterator.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        payloadMap.clear();
+        numSpans = 0;
+    }
+
+    public synchronized int size() {
+        return payloadMap.size();
+    }
+
+    public synchronized int getNumSpans() {
+        return numSpans;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private static class PayloadKey {
+        private final String id;
+        private final String attributeName;
+        private final String luceneAnalyzerString;
+
+        private PayloadKey(String id, String attributeName, String luceneAnalyzerString) {
+            this.id = id;
+            this.attributeName = attributeName;
+            this.luceneAnalyzerString = luceneAnalyzerString;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, attributeName, luceneAnalyzerString);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (! (obj instanceof PayloadKey)) {
+                return false;
+            }
+            PayloadKey other = (PayloadKey) obj;
+            return id.equals(other.id) && attributeName.equals(other.attributeName)
+                    && luceneAnalyzerString.equals(other.luceneAnalyzerString);
+        }
+    }
+
+    private static class CachedPayload {
+        private final String fieldValue;
+        private final List<Span> payload;
+
+        private CachedPayload(String fieldValue, List<Span> payload) {
+            this.fieldValue = fieldValue;
+            this.payload = payload;
+        }
+    }
+
+}
@@ -0,0 +1,201 @@
+package edu.uci.ics.textdb.exp.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import edu.uci.ics.textdb.api.field.DateField;
+import edu.uci.ics.textdb.api.field.DoubleField;
+import edu.uci.ics.textdb.api.field.IDField;
+import edu.uci.ics.textdb.api.field.IField;
+import edu.uci.ics.textdb.api.field.IntegerField;
+import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.field.StringField;
+import edu.uci.ics.textdb.api.field.TextField;
+import edu.uci.ics.textdb.api.schema.Attribute;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+
+/**
+ * TupleCodec writes tuples in a compact binary format, and reads them back,
+ *   it's used by the operators that spill tuples to disk.
+ *
+ * The schema is not written, the fields are written in the order of the attributes of the schema,
+ *   and the same schema must be given to read the tuples.
+ * Every field starts with a flag of whether its value is null, so a null value of any type is read back as null.
+ * The strings are written in UTF-8 with their lengths, so there is no limit on the length of a TEXT field.
+ * A LIST field can only contain spans.
+ */
+public class TupleCodec {
+
+    /**
+     * Writes a tuple.
+     *
+     * @param output
+     * @param tuple
+     * @throws IOException
+     */
+    public static void writeTuple(DataOutput output, Tuple tuple) throws IOException {
+        for (Attribute attribute : tuple.getSchema().getAttributes()) {
+            IField field = tuple.getField(attribute.getAttributeName());
+            boolean isNull = field == null || field.getValue() == null;
+            output.writeBoolean(isNull);
+            if (isNull) {
+                continue;
+            }
+            switch (attribute.getAttributeType()) {
+            case _ID_TYPE:
+            case STRING:
+            case TEXT:
+                writeString(output, (String) field.getValue());
+                break;
+            case INTEGER:
+                output.writeInt((Integer) field.getValue());
+                break;
+            case DOUBLE:
+                output.writeDouble((Double) field.getValue());
+                break;
+            case DATE:
+                output.writeLong(((Date) field.getValue()).getTime());
+                break;
+            case LIST:
+                List<?> list = ((ListField<?>) field).getValue();
+                output.writeInt(list.size());
+                for (Object element : list) {
+                    if (! (element instanceof Span)) {
+                        throw new IOException("TupleCodec: only the lists of spans are supported");
+                    }
+                    writeSpan(output, (Span) element);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reads a tuple written by {@link #writeTuple(DataOutput, Tuple)}.
+     *
+     * @param input
+     * @param schema, the schema of the tuple
+     * @return the tuple
+     * @throws IOException
+     */
+    public static Tuple readTuple(DataInput input, Schema schema) throws IOException {
+        List<Attribute> attributes = schema.getAttributes();
+        IField[] fields = new IField[attributes.size()];
+        for (int i = 0; i < attributes.size(); i++) {
+            boolean isNull = input.readBoolean();
+            switch (attributes.get(i).getAttributeType()) {
+            case _ID_TYPE:
+                fields[i] = new IDField(isNull ? null : readString(input));
+                break;
+            case STRING:
+                fields[i] = new StringField(isNull ? null : readString(input));
+                break;
+            case TEXT:
+                fields[i] = new TextField(isNull ? null : readString(input));
+                break;
+            case INTEGER:
+                fields[i] = new IntegerField(isNull ? null : input.readInt());
+                break;
+            case DOUBLE:
+                fields[i] = new DoubleField(isNull ? null : input.readDouble());
+                break;
+            case DATE:
+                fields[i] = new DateField(isNull ? null : new Date(input.readLong()));
+                break;
+            case LIST:
+                if (isNull) {
+                    fields[i] = new ListField<>(null);
+                    break;
+                }
+                int size = input.readInt();
+                List<Span> spanList = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    spanList.add(readSpan(input));
+                }
+                fields[i] = new ListField<>(spanList);
+                break;
+            }
+        }
+        return new Tuple(schema, fields);
+    }
+
+    /**
+     * Estimates the memory used by a tuple in the JVM, roughly.
+     *
+     * @param tuple
+     * @return the estimated number of bytes
+     */
+    public static long estimateMemorySize(Tuple tuple) {
+        long size = 64;
+        for (IField field : tuple.getFields()) {
+            Object value = field.getValue();
+            if (value instanceof String) {
+                size += 64 + 2L * ((String) value).length();
+            } else if (value instanceof List) {
+                size += 64;
+                for (Object element : (List<?>) value) {
+                    size += 96;
+                    if (element instanceof Span) {
+                        Span span = (Span) element;
+                        size += 2L * (length(span.getAttributeName()) + length(span.getKey()) + length(span.getValue()));
+                    }
+                }
+            } else {
+                size += 32;
+            }
+        }
+        return size;
+    }
+
+    private static int length(String str) {
+        return str == null ? 0 : str.length();
+    }
+
+    private static void writeSpan(DataOutput output, Span span) throws IOException {
+        writeString(output, span.getAttributeName());
+        output.writeInt(span.getStart());
+        output.writeInt(span.getEnd());
+        writeString(output, span.getKey());
+        writeString(output, span.getValue());
+        output.writeInt(span.getTokenOffset());
+    }
+
+    private static Span readSpan(DataInput input) throws IOException {
+        String attributeName = readString(input);
+        int start = input.readInt();
+        int end = input.readInt();
+        String key = readString(input);
+        String value = readString(input);
+        int tokenOffset = input.readInt();
+        return new Span(attributeName, start, end, key, value, tokenOffset);
+    }
+
+    // the length is -1 for a null string
+    private static void writeString(DataOutput output, String str) throws IOException {
+        if (str == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInput input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
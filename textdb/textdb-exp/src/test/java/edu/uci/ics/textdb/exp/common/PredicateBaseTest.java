@@ -15,6 +15,7 @@ import edu.uci.ics.textdb.exp.fuzzytokenmatcher.FuzzyTokenPredicate;
 import edu.uci.ics.textdb.exp.fuzzytokenmatcher.FuzzyTokenSourcePredicate;
 import edu.uci.ics.textdb.exp.join.JoinDistancePredicate;
 import edu.uci.ics.textdb.exp.join.SimilarityJoinPredicate;
+import edu.uci.ics.textdb.exp.join.SimilarityMeasure;
 import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatchingType;
 import edu.uci.ics.textdb.exp.keywordmatcher.KeywordPredicate;
 import edu.uci.ics.textdb.exp.keywordmatcher.KeywordSourcePredicate;
@@ -22,6 +23,7 @@ import edu.uci.ics.textdb.exp.nlp.entity.NlpEntityPredicate;
 import edu.uci.ics.textdb.exp.nlp.entity.NlpEntityType;
 import edu.uci.ics.textdb.exp.nlp.sentiment.NlpSentimentPredicate;
 import edu.uci.ics.textdb.exp.projection.ProjectionPredicate;
+import edu.uci.ics.textdb.exp.regexmatcher.MultiRegexPredicate;
 import edu.uci.ics.textdb.exp.regexmatcher.RegexPredicate;
 import edu.uci.ics.textdb.exp.regexmatcher.RegexSourcePredicate;
 import edu.uci.ics.textdb.exp.regexsplit.RegexSplitPredicate;
@@ -95,6 +97,15 @@ public class PredicateBaseTest {
                 0.8,
                 "tableName");
         testPredicate(fuzzyTokenSourcePredicate);
+        
+        FuzzyTokenSourcePredicate rankedFuzzyTokenSourcePredicate = new FuzzyTokenSourcePredicate(
+                "token1 token2 token3",
+                attributeNames,
+                "standard",
+                0.8,
+                "tableName",
+                50);
+        testPredicate(rankedFuzzyTokenSourcePredicate);
     }
     
     @Test
@@ -107,6 +118,10 @@ public class PredicateBaseTest {
     public void testSimilarityJoin() throws Exception {
         SimilarityJoinPredicate similarityJoinPredicate = new SimilarityJoinPredicate("attr1", "attr1", 0.8);
         testPredicate(similarityJoinPredicate);
+        
+        SimilarityJoinPredicate jaccardJoinPredicate = new SimilarityJoinPredicate("attr1", "attr1", 0.8, 
+                SimilarityMeasure.JACCARD);
+        testPredicate(jaccardJoinPredicate);
     }
     
     @Test
@@ -127,6 +142,18 @@ public class PredicateBaseTest {
                 "tableName",
                 "keywordSourceResults");
         testPredicate(keywordSourcePredicate);
+        
+        KeywordSourcePredicate rankedKeywordSourcePredicate = new KeywordSourcePredicate(
+                "keyword",
+                attributeNames,
+                "standard",
+                KeywordMatchingType.CONJUNCTION_INDEXBASED,
+                "tableName",
+                "keywordSourceResults",
+                null,
+                null,
+                50);
+        testPredicate(rankedKeywordSourcePredicate);
     }
     
     @Test
@@ -165,6 +192,15 @@ public class PredicateBaseTest {
         testPredicate(regexSourcePredicate);
     }
     
+    @Test
+    public void testMultiRegexMatcher() throws Exception {
+        MultiRegexPredicate multiRegexPredicate = new MultiRegexPredicate(
+                Arrays.asList("regex1", "regex2"),
+                attributeNames,
+                true);
+        testPredicate(multiRegexPredicate);
+    }
+    
     @Test
     public void testRegexSplit() throws Exception {
         RegexSplitPredicate regexSplitPredicate = new RegexSplitPredicate(
@@ -194,6 +230,9 @@ public class PredicateBaseTest {
     public void testScanSource() throws Exception {
         ScanSourcePredicate scanSourcePredicate = new ScanSourcePredicate("tableName");
         testPredicate(scanSourcePredicate);
+        
+        ScanSourcePredicate parallelScanSourcePredicate = new ScanSourcePredicate("tableName", 4, false);
+        testPredicate(parallelScanSourcePredicate);
     }
     
     @Test
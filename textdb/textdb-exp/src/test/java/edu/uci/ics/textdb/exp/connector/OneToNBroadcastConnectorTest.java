@@ -165,4 +165,90 @@ public class OneToNBroadcastConnectorTest {
     }
 
 
+    /*
+     * This test reads one output to the end before the other outputs, with a buffer of 2 tuples.
+     * The tuples that don't fit in the buffer are spilled to disk, and the other outputs read them from disk.
+     */
+    @Test
+    public void testSpillWhenOneOutputIsAhead() throws Exception {
+        IOperator sourceOperator = new ScanBasedSourceOperator(
+                new ScanSourcePredicate(PEOPLE_TABLE));
+        
+        OneToNBroadcastConnector connector = new OneToNBroadcastConnector(3);
+        connector.setBufferCapacity(2);
+        connector.setInputOperator(sourceOperator);
+        IOperator output1 = connector.getOutputOperator(0);
+        IOperator output2 = connector.getOutputOperator(1);
+        IOperator output3 = connector.getOutputOperator(2);
+
+        output1.open();
+        output2.open();
+        output3.open();
+        
+        List<Tuple> output1Results = new ArrayList<>();
+        Tuple nextTuple = null;
+        while ((nextTuple = output1.getNextTuple()) != null) {
+            output1Results.add(nextTuple);
+            Assert.assertTrue(connector.getBufferedTupleCount() <= 2);
+        }
+        
+        List<Tuple> expectedResults = TestConstants.getSamplePeopleTuples();
+        Assert.assertEquals(expectedResults.size() - 2, connector.getSpilledTupleCount());
+        
+        // output2 and output3 read the tuples alternately from disk, then from the buffer
+        List<Tuple> output2Results = new ArrayList<>();
+        List<Tuple> output3Results = new ArrayList<>();
+        for (int i = 0; i < expectedResults.size(); i++) {
+            output2Results.add(output2.getNextTuple());
+            output3Results.add(output3.getNextTuple());
+        }
+        Assert.assertNull(output2.getNextTuple());
+        Assert.assertNull(output3.getNextTuple());
+        Assert.assertEquals(0, connector.getBufferedTupleCount());
+        
+        output1.close();
+        output2.close();
+        output3.close();
+        
+        Assert.assertEquals(output1Results, output2Results);
+        Assert.assertEquals(output1Results, output3Results);
+        Assert.assertTrue(TestUtils.equals(expectedResults, output1Results));
+    }
+    
+    /*
+     * This test reads two outputs in step, the tuples are released as soon as both outputs read them.
+     */
+    @Test
+    public void testBufferReleasedWhenOutputsReadInStep() throws Exception {
+        IOperator sourceOperator = new ScanBasedSourceOperator(
+                new ScanSourcePredicate(PEOPLE_TABLE));
+        
+        OneToNBroadcastConnector connector = new OneToNBroadcastConnector(2);
+        connector.setBufferCapacity(2);
+        connector.setInputOperator(sourceOperator);
+        IOperator output1 = connector.getOutputOperator(0);
+        IOperator output2 = connector.getOutputOperator(1);
+        
+        output1.open();
+        output2.open();
+        
+        List<Tuple> output1Results = new ArrayList<>();
+        List<Tuple> output2Results = new ArrayList<>();
+        Tuple nextTuple = null;
+        while ((nextTuple = output1.getNextTuple()) != null) {
+            output1Results.add(nextTuple);
+            Assert.assertEquals(1, connector.getBufferedTupleCount());
+            output2Results.add(output2.getNextTuple());
+            Assert.assertEquals(0, connector.getBufferedTupleCount());
+        }
+        Assert.assertNull(output2.getNextTuple());
+        
+        output1.close();
+        output2.close();
+        
+        Assert.assertEquals(0, connector.getSpilledTupleCount());
+        Assert.assertEquals(output1Results, output2Results);
+        Assert.assertTrue(TestUtils.equals(TestConstants.getSamplePeopleTuples(), output1Results));
+    }
+
 }
@@ -0,0 +1,54 @@
+package edu.uci.ics.textdb.exp.dictionarymatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AhoCorasickAutomatonTest {
+    
+    /*
+     * Returns the occurrences as "patternIndex:start-end".
+     */
+    private static List<String> search(AhoCorasickAutomaton automaton, String text) {
+        List<String> occurrences = new ArrayList<>();
+        automaton.search(text, (patternIndex, start, end) -> occurrences.add(patternIndex + ":" + start + "-" + end));
+        return occurrences;
+    }
+    
+    @Test
+    public void testOverlappingPatterns() {
+        AhoCorasickAutomaton automaton = new AhoCorasickAutomaton(Arrays.asList("he", "she", "his", "hers"));
+        
+        List<String> expected = Arrays.asList("1:1-4", "0:2-4", "3:2-6");
+        Assert.assertEquals(expected, search(automaton, "ushers"));
+    }
+    
+    @Test
+    public void testCaseInsensitive() {
+        AhoCorasickAutomaton automaton = new AhoCorasickAutomaton(Arrays.asList("Tall", "angry"));
+        
+        List<String> expected = Arrays.asList("0:0-4", "1:5-10", "0:11-15");
+        Assert.assertEquals(expected, search(automaton, "tALL ANGRY tall"));
+    }
+    
+    @Test
+    public void testRepeatedAndEmptyPatterns() {
+        AhoCorasickAutomaton automaton = new AhoCorasickAutomaton(Arrays.asList("aa", "", "AA"));
+        
+        List<String> expected = Arrays.asList("0:0-2", "2:0-2", "0:1-3", "2:1-3");
+        Assert.assertEquals(expected, search(automaton, "aaa"));
+        Assert.assertEquals(Arrays.asList(), search(automaton, "bab"));
+    }
+    
+    @Test
+    public void testChinese() {
+        AhoCorasickAutomaton automaton = new AhoCorasickAutomaton(Arrays.asList("学院", "北京大学"));
+        
+        List<String> expected = Arrays.asList("1:0-4", "0:7-9");
+        Assert.assertEquals(expected, search(automaton, "北京大学计算机学院"));
+    }
+
+}
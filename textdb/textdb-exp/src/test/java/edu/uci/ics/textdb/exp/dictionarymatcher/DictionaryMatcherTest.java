@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.lucene.search.BooleanQuery;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -28,6 +29,7 @@ import edu.uci.ics.textdb.api.utils.TestUtils;
 import edu.uci.ics.textdb.api.utils.Utils;
 import edu.uci.ics.textdb.exp.dictionarymatcher.Dictionary;
 import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatchingType;
+import edu.uci.ics.textdb.exp.utils.DataflowUtils;
 
 /**
  * @author rajeshyarlagadda
@@ -618,6 +620,172 @@ public class DictionaryMatcherTest {
         Assert.assertTrue(contains);
     }
     
+    /**
+     * Scenario: verifies that every entry of a dictionary with multiple entries
+     * is matched against every tuple using SUBSTRING_SCANBASED,
+     * a tuple that matches two entries is returned once for each entry.
+     */
+
+    @Test
+    public void testMultipleEntriesQueryUsingScan() throws Exception {
+
+        ArrayList<String> names = new ArrayList<String>(Arrays.asList("tall", "angry"));
+        Dictionary dictionary = new Dictionary(names);
+
+        Attribute[] schemaAttributes = new Attribute[TestConstants.ATTRIBUTES_PEOPLE.length + 1];
+        for (int count = 0; count < schemaAttributes.length - 1; count++) {
+            schemaAttributes[count] = TestConstants.ATTRIBUTES_PEOPLE[count];
+        }
+        schemaAttributes[schemaAttributes.length - 1] = RESULTS_ATTRIBUTE;
+        Schema resultSchema = new Schema(schemaAttributes);
+
+        IField[] tallAngry = { new StringField("bruce"), new StringField("john Lee"), new IntegerField(46),
+                new DoubleField(5.50), new DateField(new SimpleDateFormat("MM-dd-yyyy").parse("01-14-1970")),
+                new TextField("Tall Angry") };
+        IField[] whiteAngry = { new StringField("brad lie angelina"), new StringField("pitt"), new IntegerField(44),
+                new DoubleField(6.10), new DateField(new SimpleDateFormat("MM-dd-yyyy").parse("01-12-1972")),
+                new TextField("White Angry") };
+        IField[] linClooney = { new StringField("george lin lin"), new StringField("lin clooney"), new IntegerField(43),
+                new DoubleField(6.06), new DateField(new SimpleDateFormat("MM-dd-yyyy").parse("01-13-1973")),
+                new TextField("Lin Clooney is Short and lin clooney is Angry") };
+        IField[] shortAngry = { new StringField("Mary brown"), new StringField("Lake Forest"), new IntegerField(42),
+                new DoubleField(5.99), new DateField(new SimpleDateFormat("MM-dd-yyyy").parse("01-13-1974")),
+                new TextField("Short angry") };
+        IField[] tallFair = { new StringField("christian john wayne"), new StringField("rock bale"),
+                new IntegerField(42), new DoubleField(5.99),
+                new DateField(new SimpleDateFormat("MM-dd-yyyy").parse("01-13-1974")), new TextField("Tall Fair") };
+
+        List<Tuple> expectedResults = new ArrayList<Tuple>();
+        expectedResults.add(DataflowUtils.getSpanTuple(Arrays.asList(tallAngry), 
+                Arrays.asList(new Span("description", 0, 4, "tall", "Tall")), resultSchema));
+        expectedResults.add(DataflowUtils.getSpanTuple(Arrays.asList(tallFair), 
+                Arrays.asList(new Span("description", 0, 4, "tall", "Tall")), resultSchema));
+        expectedResults.add(DataflowUtils.getSpanTuple(Arrays.asList(tallAngry), 
+                Arrays.asList(new Span("description", 5, 10, "angry", "Angry")), resultSchema));
+        expectedResults.add(DataflowUtils.getSpanTuple(Arrays.asList(whiteAngry), 
+                Arrays.asList(new Span("description", 6, 11, "angry", "Angry")), resultSchema));
+        expectedResults.add(DataflowUtils.getSpanTuple(Arrays.asList(linClooney), 
+                Arrays.asList(new Span("description", 40, 45, "angry", "Angry")), resultSchema));
+        expectedResults.add(DataflowUtils.getSpanTuple(Arrays.asList(shortAngry), 
+                Arrays.asList(new Span("description", 6, 11, "angry", "angry")), resultSchema));
+        List<String> attributeNames = Arrays.asList(TestConstants.FIRST_NAME, TestConstants.LAST_NAME,
+                TestConstants.DESCRIPTION);
+
+        List<Tuple> returnedResults = DictionaryMatcherTestHelper.getQueryResults(PEOPLE_TABLE, dictionary, attributeNames, KeywordMatchingType.SUBSTRING_SCANBASED);
+        boolean contains = TestUtils.equals(expectedResults, returnedResults);
+        Assert.assertTrue(contains);
+    }
+    
+    /**
+     * Scenario: verifies that all the entries of a dictionary are matched
+     * with one index-based lookup using CONJUNCTION_INDEXBASED,
+     * a document that matches two entries is returned once by DictionaryMatcherSourceOperator,
+     * with the spans of both entries.
+     */
+
+    @Test
+    public void testMultipleEntriesQueryUsingKeyword() throws Exception {
+
+        ArrayList<String> names = new ArrayList<String>(Arrays.asList("tall", "angry"));
+        Dictionary dictionary = new Dictionary(names);
+
+        Attribute[] schemaAttributes = new Attribute[TestConstants.ATTRIBUTES_PEOPLE.length + 1];
+        for (int count = 0; count < schemaAttributes.length - 1; count++) {
+            schemaAttributes[count] = TestConstants.ATTRIBUTES_PEOPLE[count];
+        }
+        schemaAttributes[schemaAttributes.length - 1] = RESULTS_ATTRIBUTE;
+        Schema resultSchema = new Schema(schemaAttributes);
+
+        IField[] tallAngry = { new StringField("bruce"), new StringField("john Lee"), new IntegerField(46),
+                new DoubleField(5.50), new DateField(new SimpleDateFormat("MM-dd-yyyy").parse("01-14-1970")),
+                new TextField("Tall Angry") };
+        IField[] whiteAngry = { new StringField("brad lie angelina"), new StringField("pitt"), new IntegerField(44),
+                new DoubleField(6.10), new DateField(new SimpleDateFormat("MM-dd-yyyy").parse("01-12-1972")),
+                new TextField("White Angry") };
+        IField[] linClooney = { new StringField("george lin lin"), new StringField("lin clooney"), new IntegerField(43),
+                new DoubleField(6.06), new DateField(new SimpleDateFormat("MM-dd-yyyy").parse("01-13-1973")),
+                new TextField("Lin Clooney is Short and lin clooney is Angry") };
+        IField[] shortAngry = { new StringField("Mary brown"), new StringField("Lake Forest"), new IntegerField(42),
+                new DoubleField(5.99), new DateField(new SimpleDateFormat("MM-dd-yyyy").parse("01-13-1974")),
+                new TextField("Short angry") };
+        IField[] tallFair = { new StringField("christian john wayne"), new StringField("rock bale"),
+                new IntegerField(42), new DoubleField(5.99),
+                new DateField(new SimpleDateFormat("MM-dd-yyyy").parse("01-13-1974")), new TextField("Tall Fair") };
+
+        List<Tuple> expectedResults = new ArrayList<Tuple>();
+        expectedResults.add(DataflowUtils.getSpanTuple(Arrays.asList(tallAngry), 
+                Arrays.asList(new Span("description", 0, 4, "tall", "Tall", 0), 
+                        new Span("description", 5, 10, "angry", "Angry", 1)), resultSchema));
+        expectedResults.add(DataflowUtils.getSpanTuple(Arrays.asList(tallFair), 
+                Arrays.asList(new Span("description", 0, 4, "tall", "Tall", 0)), resultSchema));
+        expectedResults.add(DataflowUtils.getSpanTuple(Arrays.asList(whiteAngry), 
+                Arrays.asList(new Span("description", 6, 11, "angry", "Angry", 1)), resultSchema));
+        expectedResults.add(DataflowUtils.getSpanTuple(Arrays.asList(linClooney), 
+                Arrays.asList(new Span("description", 40, 45, "angry", "Angry", 8)), resultSchema));
+        expectedResults.add(DataflowUtils.getSpanTuple(Arrays.asList(shortAngry), 
+                Arrays.asList(new Span("description", 6, 11, "angry", "angry", 1)), resultSchema));
+        List<String> attributeNames = Arrays.asList(TestConstants.FIRST_NAME, TestConstants.LAST_NAME,
+                TestConstants.DESCRIPTION);
+
+        // the results of DictionaryMatcher are merged into one tuple per document, 
+        //   the same as the results of DictionaryMatcherSourceOperator
+        List<Tuple> returnedResults = DictionaryMatcherTestHelper.mergeEntryResults(
+                DictionaryMatcherTestHelper.getQueryResults(PEOPLE_TABLE, dictionary, attributeNames, KeywordMatchingType.CONJUNCTION_INDEXBASED));
+        boolean contains = TestUtils.equals(expectedResults, returnedResults);
+        Assert.assertTrue(contains);
+    }
+    
+    /**
+     * Scenario: verifies that all the entries of a dictionary are matched in one pass
+     * over the tokens of a tuple using PHRASE_INDEXBASED, including the entries that 
+     * share a prefix and the entries with stopwords as placeholders.
+     */
+
+    @Test
+    public void testMultipleEntriesQueryUsingPhrase() throws Exception {
+
+        ArrayList<String> names = new ArrayList<String>(Arrays.asList("lin clooney", "lin and is angry", "short"));
+        Dictionary dictionary = new Dictionary(names);
+
+        Attribute[] schemaAttributes = new Attribute[TestConstants.ATTRIBUTES_PEOPLE.length + 1];
+        for (int count = 0; count < schemaAttributes.length - 1; count++) {
+            schemaAttributes[count] = TestConstants.ATTRIBUTES_PEOPLE[count];
+        }
+        schemaAttributes[schemaAttributes.length - 1] = RESULTS_ATTRIBUTE;
+        Schema resultSchema = new Schema(schemaAttributes);
+
+        IField[] shortBrown = { new StringField("tom hanks"), new StringField("cruise"), new IntegerField(45),
+                new DoubleField(5.95), new DateField(new SimpleDateFormat("MM-dd-yyyy").parse("01-13-1971")),
+                new TextField("Short Brown") };
+        IField[] linClooney = { new StringField("george lin lin"), new StringField("lin clooney"), new IntegerField(43),
+                new DoubleField(6.06), new DateField(new SimpleDateFormat("MM-dd-yyyy").parse("01-13-1973")),
+                new TextField("Lin Clooney is Short and lin clooney is Angry") };
+        IField[] shortAngry = { new StringField("Mary brown"), new StringField("Lake Forest"), new IntegerField(42),
+                new DoubleField(5.99), new DateField(new SimpleDateFormat("MM-dd-yyyy").parse("01-13-1974")),
+                new TextField("Short angry") };
+
+        List<Tuple> expectedResults = new ArrayList<Tuple>();
+        expectedResults.add(DataflowUtils.getSpanTuple(Arrays.asList(shortBrown), 
+                Arrays.asList(new Span("description", 0, 5, "short", "Short")), resultSchema));
+        expectedResults.add(DataflowUtils.getSpanTuple(Arrays.asList(linClooney), 
+                Arrays.asList(new Span("lastName", 0, 11, "lin clooney", "lin clooney"), 
+                        new Span("description", 0, 11, "lin clooney", "Lin Clooney"),
+                        new Span("description", 25, 36, "lin clooney", "lin clooney"),
+                        new Span("description", 25, 45, "lin and is angry", "lin clooney is Angry"),
+                        new Span("description", 15, 20, "short", "Short")), resultSchema));
+        expectedResults.add(DataflowUtils.getSpanTuple(Arrays.asList(shortAngry), 
+                Arrays.asList(new Span("description", 0, 5, "short", "Short")), resultSchema));
+        List<String> attributeNames = Arrays.asList(TestConstants.FIRST_NAME, TestConstants.LAST_NAME,
+                TestConstants.DESCRIPTION);
+
+        // the results of DictionaryMatcher are merged into one tuple per document, 
+        //   the same as the results of DictionaryMatcherSourceOperator
+        List<Tuple> returnedResults = DictionaryMatcherTestHelper.mergeEntryResults(
+                DictionaryMatcherTestHelper.getQueryResults(PEOPLE_TABLE, dictionary, attributeNames, KeywordMatchingType.PHRASE_INDEXBASED));
+        boolean contains = TestUtils.equals(expectedResults, returnedResults);
+        Assert.assertTrue(contains);
+    }
+    
     /**
      * Scenario: verifies ITuple returned by DictionaryMatcher and multiple
      * word queries using SCAN OPERATOR in Chinese
@@ -1074,5 +1242,36 @@ public class DictionaryMatcherTest {
         Assert.assertEquals(resultList.size(), 1);
         Assert.assertTrue(TestUtils.containsAll(expectedList, resultList));
     }
+
+    /**
+     * Scenario: verifies that a dictionary with more entries than the max clause count of BooleanQuery
+     * is matched using CONJUNCTION_INDEXBASED and PHRASE_INDEXBASED,
+     * and the max clause count is not changed.
+     */
+    @Test
+    public void testDictionaryLargerThanMaxClauseCount() throws Exception {
+        int maxClauseCount = BooleanQuery.getMaxClauseCount();
+        List<String> attributeNames = Arrays.asList(TestConstants.FIRST_NAME, TestConstants.LAST_NAME,
+                TestConstants.DESCRIPTION);
+        List<String> matchingEntries = Arrays.asList("tall", "lin clooney");
+        
+        // the entries that don't match, with a single token and with multiple tokens
+        ArrayList<String> names = new ArrayList<String>(matchingEntries);
+        for (int i = 0; i < maxClauseCount; i++) {
+            names.add("unknown" + i);
+            names.add("unknown" + i + " entry" + i);
+        }
+        
+        for (KeywordMatchingType matchingType : Arrays.asList(
+                KeywordMatchingType.CONJUNCTION_INDEXBASED, KeywordMatchingType.PHRASE_INDEXBASED)) {
+            List<Tuple> expectedResults = DictionaryMatcherTestHelper.getQueryResults(PEOPLE_TABLE, 
+                    new Dictionary(matchingEntries), attributeNames, matchingType);
+            List<Tuple> returnedResults = DictionaryMatcherTestHelper.getQueryResults(PEOPLE_TABLE, 
+                    new Dictionary(names), attributeNames, matchingType);
+            Assert.assertFalse(expectedResults.isEmpty());
+            Assert.assertTrue(TestUtils.equals(expectedResults, returnedResults));
+        }
+        Assert.assertEquals(maxClauseCount, BooleanQuery.getMaxClauseCount());
+    }
     
 }
\ No newline at end of file
@@ -1,12 +1,17 @@
 package edu.uci.ics.textdb.exp.dictionarymatcher;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.constants.TestConstants;
 import edu.uci.ics.textdb.api.constants.TestConstantsChinese;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.IField;
+import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.TestUtils;
 import edu.uci.ics.textdb.dataflow.utils.DataflowUtils;
@@ -75,9 +80,10 @@ public class DictionaryMatcherTestHelper {
                 matchingType, limit, offset);
         dictionary.resetCursor();
         
-        // if limit and offset are not relevant, the results from scan source and keyword source must be the same
+        // if limit and offset are not relevant, the results from scan source and keyword source must be the same,
+        //   after the results of the entries that match the same document are merged
         if (limit == Integer.MAX_VALUE && offset == 0) {
-            if (TestUtils.equals(scanSourceResults, dictionarySourceResults)) {
+            if (TestUtils.equals(mergeEntryResults(scanSourceResults), dictionarySourceResults)) {
                 return scanSourceResults;
             } else {
                 System.out.println("scan count: " + scanSourceResults.size());
@@ -90,12 +96,16 @@ public class DictionaryMatcherTestHelper {
         // if limit and offset are relevant, then the results can be different (since the order doesn't matter)
         // in this case, we get all the results and test if the whole result set contains both results
         else {
+            List<Tuple> allScanSourceResults = getScanSourceResults(tableName, dictionary, attributeNames,
+                    matchingType, Integer.MAX_VALUE, 0);
+            dictionary.resetCursor();
             List<Tuple> allResults = getDictionarySourceResults(tableName, dictionary, attributeNames,
                     matchingType, Integer.MAX_VALUE, 0);
             dictionary.resetCursor();
             
-            if (scanSourceResults.size() == dictionarySourceResults.size() &&
-                    TestUtils.containsAll(allResults, scanSourceResults) && 
+            if (scanSourceResults.size() == getLimitedResultCount(allScanSourceResults.size(), limit, offset) &&
+                    dictionarySourceResults.size() == getLimitedResultCount(allResults.size(), limit, offset) &&
+                    TestUtils.containsAll(allScanSourceResults, scanSourceResults) && 
                     TestUtils.containsAll(allResults, dictionarySourceResults)) {
                 return scanSourceResults;
             } else {
@@ -104,6 +114,39 @@ public class DictionaryMatcherTestHelper {
         }
     }
     
+    private static int getLimitedResultCount(int resultCount, int limit, int offset) {
+        return Math.max(0, Math.min(limit, resultCount - offset));
+    }
+    
+    /**
+     * Merges the results of DictionaryMatcher (one tuple for every entry that matches a document)
+     *   into the results of DictionaryMatcherSourceOperator (one tuple for every document, with the spans of all the entries).
+     * 
+     * @param entryResults
+     * @return
+     */
+    public static List<Tuple> mergeEntryResults(List<Tuple> entryResults) {
+        // _ID -> the first result tuple of the document
+        LinkedHashMap<Object, Tuple> documentTuples = new LinkedHashMap<>();
+        // _ID -> the spans of all the entries that match the document
+        LinkedHashMap<Object, List<Span>> documentSpans = new LinkedHashMap<>();
+        for (Tuple tuple : entryResults) {
+            Object id = tuple.getField(SchemaConstants._ID).getValue();
+            ListField<Span> spanListField = tuple.getField(RESULTS);
+            documentTuples.putIfAbsent(id, tuple);
+            documentSpans.computeIfAbsent(id, key -> new ArrayList<>()).addAll(spanListField.getValue());
+        }
+        
+        List<Tuple> results = new ArrayList<>();
+        for (Object id : documentTuples.keySet()) {
+            Tuple tuple = documentTuples.get(id);
+            List<IField> fields = new ArrayList<>(tuple.getFields());
+            fields.set(tuple.getSchema().getIndex(RESULTS), new ListField<Span>(documentSpans.get(id)));
+            results.add(new Tuple(tuple.getSchema(), fields));
+        }
+        return results;
+    }
+    
     /**
      * Get the results from a DictionaryMatcher with a ScanSource Operator 
      *   (which scans the table first and then feeds the data into the dictionary matcher)
@@ -378,4 +378,24 @@ public class FuzzyTokenMatcherTest {
         Assert.assertEquals(results.size(), 2);
         Assert.assertTrue(TestUtils.containsAll(expectedResultList, results));
     }
+    
+    @Test
+    public void TestFuzzyTokenMatcherRanked() throws Exception {
+        String query = "Twelve Angry Men Cafe";
+        double threshold = 0.25;
+        ArrayList<String> attributeNames = new ArrayList<>();
+        attributeNames.add(TestConstants.DESCRIPTION);
+        
+        List<Tuple> allResults = FuzzyTokenMatcherTestHelper.getRankedFuzzyTokenSourceResults(
+                PEOPLE_TABLE, query, threshold, attributeNames, 10);
+        List<Tuple> topResults = FuzzyTokenMatcherTestHelper.getRankedFuzzyTokenSourceResults(
+                PEOPLE_TABLE, query, threshold, attributeNames, 1);
+        
+        // the long description has the lowest score of the 4 descriptions with "angry"
+        Assert.assertEquals(4, allResults.size());
+        Assert.assertEquals("Lin Clooney is Short and lin clooney is Angry", 
+                allResults.get(3).getField(TestConstants.DESCRIPTION).getValue());
+        Assert.assertTrue(allResults.get(0).getSchema().containsField(SchemaConstants.SCORE));
+        Assert.assertEquals(allResults.subList(0, 1), topResults);
+    }
 }
@@ -152,5 +152,30 @@ public class FuzzyTokenMatcherTestHelper {
         
         return results;
     }
+    
+    /*
+     * Gets the query results of a FuzzyTokenMatcherSourceOperator in ranked mode
+     */
+    public static List<Tuple> getRankedFuzzyTokenSourceResults(String tableName, String query, double threshold, 
+            List<String> attributeNames, int topK) throws TextDBException {
+        
+        FuzzyTokenSourcePredicate fuzzyTokenSourcePredicate = new FuzzyTokenSourcePredicate(
+                query, attributeNames, RelationManager.getRelationManager().getTableAnalyzerString(tableName), 
+                threshold, tableName, topK);
+        
+        FuzzyTokenMatcherSourceOperator fuzzyTokenSource = new FuzzyTokenMatcherSourceOperator(
+                fuzzyTokenSourcePredicate);
+        
+        Tuple tuple;
+        List<Tuple> results = new ArrayList<>();
+        
+        fuzzyTokenSource.open();
+        while ((tuple = fuzzyTokenSource.getNextTuple()) != null) {
+            results.add(tuple);
+        }
+        fuzzyTokenSource.close();
+        
+        return results;
+    }
 
 }
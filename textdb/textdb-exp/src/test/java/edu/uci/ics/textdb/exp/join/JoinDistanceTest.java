@@ -1,7 +1,10 @@
 package edu.uci.ics.textdb.exp.join;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 import org.junit.After;
@@ -9,8 +12,10 @@ import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.IDField;
 import edu.uci.ics.textdb.api.field.IField;
 import edu.uci.ics.textdb.api.field.IntegerField;
 import edu.uci.ics.textdb.api.field.ListField;
@@ -31,6 +36,11 @@ import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatcherSourceOperator;
 import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatchingType;
 import edu.uci.ics.textdb.exp.projection.ProjectionOperator;
 import edu.uci.ics.textdb.exp.projection.ProjectionPredicate;
+import edu.uci.ics.textdb.exp.regexmatcher.RegexMatcher;
+import edu.uci.ics.textdb.exp.regexmatcher.RegexMatcherSourceOperator;
+import edu.uci.ics.textdb.exp.regexmatcher.RegexSourcePredicate;
+import edu.uci.ics.textdb.exp.source.tuple.TupleSourceOperator;
+import edu.uci.ics.textdb.exp.utils.TupleCodec;
 import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
 import junit.framework.Assert;
 
@@ -892,4 +902,241 @@ public class JoinDistanceTest {
         }
     }
 
+    /*
+     * This case tests that JoinDistancePredicate is only called on the pairs of tuples with the same ID,
+     *   because Join uses a hash table on the IDs of the inner tuples.
+     * 
+     * Test result: every tuple is joined with itself, and the predicate is called once for each outer tuple.
+     */
+    @Test
+    public void testOnlyTuplesWithSameIdAreCompared() throws Exception {
+        List<Tuple> tuples = JoinTestConstants.bookGroup1;
+        JoinTestHelper.insertToTable(BOOK_TABLE, tuples);
+        
+        // the first word of every review
+        RegexMatcher regexMatcherInner = JoinTestHelper.getRegexMatcher(BOOK_TABLE, "^\\w+", JoinTestConstants.REVIEW);
+        RegexMatcher regexMatcherOuter = JoinTestHelper.getRegexMatcher(BOOK_TABLE, "^\\w+", JoinTestConstants.REVIEW);
+        
+        int[] numJoinedPairs = {0};
+        JoinDistancePredicate distancePredicate = new JoinDistancePredicate(JoinTestConstants.REVIEW, 20) {
+            @Override
+            public Tuple joinTuples(Tuple innerTuple, Tuple outerTuple, Schema outputSchema) throws Exception {
+                numJoinedPairs[0]++;
+                return super.joinTuples(innerTuple, outerTuple, outputSchema);
+            }
+        };
+        
+        List<Tuple> resultList = JoinTestHelper.getJoinDistanceResults(regexMatcherInner, regexMatcherOuter, 
+                distancePredicate, Integer.MAX_VALUE, 0);
+        
+        Assert.assertEquals(tuples.size(), resultList.size());
+        Assert.assertEquals(tuples.size(), numJoinedPairs[0]);
+    }
+
+    /*
+     * This case tests the span merge of JoinDistancePredicate on many unsorted spans,
+     *   including the spans of other attributes, which are ignored.
+     * 
+     * Test result: the joined spans are the same, and in the same order, as comparing all the pairs of spans.
+     */
+    @Test
+    public void testJoinManySpans() throws Exception {
+        String text = String.join("", Collections.nCopies(50, "abcdefghij"));
+        Schema schema = new Schema(SchemaConstants._ID_ATTRIBUTE, 
+                new Attribute(JoinTestConstants.TITLE, AttributeType.STRING), new Attribute(JoinTestConstants.REVIEW, AttributeType.TEXT), SchemaConstants.SPAN_LIST_ATTRIBUTE);
+        
+        Random random = new Random(0);
+        List<Span> innerSpans = new ArrayList<>();
+        List<Span> outerSpans = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            for (List<Span> spans : Arrays.asList(innerSpans, outerSpans)) {
+                int start = random.nextInt(text.length() - 10);
+                int end = start + 1 + random.nextInt(10);
+                String attributeName = i % 10 == 0 ? JoinTestConstants.TITLE : JoinTestConstants.REVIEW;
+                spans.add(new Span(attributeName, start, end, "key" + i, text.substring(start, end)));
+            }
+        }
+        IDField id = IDField.newRandomID();
+        Tuple innerTuple = new Tuple(schema, id, new StringField("title"), new TextField(text), 
+                new ListField<>(innerSpans));
+        Tuple outerTuple = new Tuple(schema, id, new StringField("title"), new TextField(text), 
+                new ListField<>(outerSpans));
+        
+        int threshold = 5;
+        List<Span> expectedSpans = new ArrayList<>();
+        for (Span outerSpan : outerSpans) {
+            for (Span innerSpan : innerSpans) {
+                if (outerSpan.getAttributeName().equals(JoinTestConstants.REVIEW) 
+                        && innerSpan.getAttributeName().equals(JoinTestConstants.REVIEW)
+                        && Math.abs(outerSpan.getStart() - innerSpan.getStart()) <= threshold
+                        && Math.abs(outerSpan.getEnd() - innerSpan.getEnd()) <= threshold) {
+                    int start = Math.min(outerSpan.getStart(), innerSpan.getStart());
+                    int end = Math.max(outerSpan.getEnd(), innerSpan.getEnd());
+                    expectedSpans.add(new Span(JoinTestConstants.REVIEW, start, end, 
+                            outerSpan.getKey() + "_" + innerSpan.getKey(), text.substring(start, end)));
+                }
+            }
+        }
+        
+        JoinDistancePredicate distancePredicate = new JoinDistancePredicate(JoinTestConstants.REVIEW, threshold);
+        Schema outputSchema = distancePredicate.generateOutputSchema(schema, schema);
+        Tuple resultTuple = distancePredicate.joinTuples(innerTuple, outerTuple, outputSchema);
+        ListField<Span> resultSpans = resultTuple.getField(SchemaConstants.SPAN_LIST);
+        
+        Assert.assertTrue(expectedSpans.size() > 0);
+        Assert.assertEquals(expectedSpans, resultSpans.getValue());
+    }
+
+    /*
+     * This case tests the join when the inner tuples exceed the memory budget of Join,
+     *   and the tuples are partitioned to disk.
+     * 
+     * Test result: the results are the same as joining the tuples in memory.
+     */
+    @Test
+    public void testJoinSpilledToDisk() throws Exception {
+        JoinTestHelper.insertToTable(BOOK_TABLE, JoinTestConstants.bookGroup1);
+        JoinTestHelper.insertToTable(BOOK_TABLE, JoinTestConstants.bookGroup2);
+        
+        List<Tuple> expectedResults = JoinTestHelper.getJoinDistanceResults(
+                JoinTestHelper.getRegexMatcher(BOOK_TABLE, "\\w+", JoinTestConstants.REVIEW), 
+                JoinTestHelper.getRegexMatcher(BOOK_TABLE, "^\\w+", JoinTestConstants.REVIEW), 
+                new JoinDistancePredicate(JoinTestConstants.REVIEW, 10), Integer.MAX_VALUE, 0);
+        
+        Join join = new Join(new JoinDistancePredicate(JoinTestConstants.REVIEW, 10));
+        join.setInnerInputOperator(JoinTestHelper.getRegexMatcher(BOOK_TABLE, "\\w+", JoinTestConstants.REVIEW));
+        join.setOuterInputOperator(JoinTestHelper.getRegexMatcher(BOOK_TABLE, "^\\w+", JoinTestConstants.REVIEW));
+        // only one inner tuple fits in the memory budget
+        join.setMemoryBudgetBytes(1);
+        
+        Tuple tuple;
+        List<Tuple> resultList = new ArrayList<>();
+        join.open();
+        while ((tuple = join.getNextTuple()) != null) {
+            resultList.add(tuple);
+        }
+        Assert.assertTrue(join.isSpilledToDisk());
+        join.close();
+        
+        Assert.assertEquals(JoinTestConstants.bookGroup1.size() + JoinTestConstants.bookGroup2.size(), 
+                expectedResults.size());
+        Assert.assertTrue(TestUtils.equals(expectedResults, resultList));
+    }
+
+    /*
+     * This case tests the join when the tuples are spilled to disk, and one partition is larger than
+     *   the memory budget: half of the inner tuples have the same ID, so they stay in the same partition
+     *   when it's partitioned again, and they are joined in chunks.
+     * 
+     * Test result: the results are the same as joining the tuples in memory,
+     *   and the inner tuples loaded at the same time don't exceed the memory budget by more than one tuple.
+     */
+    @Test
+    public void testJoinSpilledToDiskWithPartitionLargerThanBudget() throws Exception {
+        Schema schema = new Schema(SchemaConstants._ID_ATTRIBUTE, 
+                new Attribute(JoinTestConstants.TITLE, AttributeType.STRING), 
+                new Attribute(JoinTestConstants.REVIEW, AttributeType.TEXT), SchemaConstants.SPAN_LIST_ATTRIBUTE);
+        String text = "special kind of review";
+        
+        List<Tuple> innerTuples = new ArrayList<>();
+        List<Tuple> outerTuples = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            IDField id = IDField.newRandomID();
+            innerTuples.add(new Tuple(schema, id, new StringField("title"), new TextField(text), 
+                    new ListField<>(Arrays.asList(new Span(JoinTestConstants.REVIEW, 0, 7, "special", "special")))));
+            outerTuples.add(new Tuple(schema, id, new StringField("title"), new TextField(text), 
+                    new ListField<>(Arrays.asList(new Span(JoinTestConstants.REVIEW, 8, 12, "kind", "kind")))));
+        }
+        IDField sameId = IDField.newRandomID();
+        for (int i = 0; i < 200; i++) {
+            innerTuples.add(new Tuple(schema, sameId, new StringField("title"), new TextField(text), 
+                    new ListField<>(Arrays.asList(new Span(JoinTestConstants.REVIEW, 0, 7, "special" + i, "special")))));
+        }
+        outerTuples.add(new Tuple(schema, sameId, new StringField("title"), new TextField(text), 
+                new ListField<>(Arrays.asList(new Span(JoinTestConstants.REVIEW, 8, 12, "kind", "kind")))));
+        
+        long maxTupleMemorySize = innerTuples.stream().mapToLong(TupleCodec::estimateMemorySize).max().getAsLong();
+        long memoryBudgetBytes = 20 * maxTupleMemorySize;
+        
+        List<Tuple> expectedResults = JoinTestHelper.getJoinDistanceResults(
+                new TupleSourceOperator(innerTuples, schema), new TupleSourceOperator(outerTuples, schema), 
+                new JoinDistancePredicate(JoinTestConstants.REVIEW, 10), Integer.MAX_VALUE, 0);
+        
+        Join join = new Join(new JoinDistancePredicate(JoinTestConstants.REVIEW, 10));
+        join.setInnerInputOperator(new TupleSourceOperator(innerTuples, schema));
+        join.setOuterInputOperator(new TupleSourceOperator(outerTuples, schema));
+        join.setMemoryBudgetBytes(memoryBudgetBytes);
+        
+        Tuple tuple;
+        List<Tuple> resultList = new ArrayList<>();
+        join.open();
+        while ((tuple = join.getNextTuple()) != null) {
+            resultList.add(tuple);
+        }
+        Assert.assertTrue(join.isSpilledToDisk());
+        join.close();
+        
+        Assert.assertEquals(400, expectedResults.size());
+        Assert.assertEquals(expectedResults.size(), resultList.size());
+        Assert.assertTrue(TestUtils.equals(expectedResults, resultList));
+        Assert.assertTrue(join.getMaxInnerTuplesMemorySize() <= memoryBudgetBytes + maxTupleMemorySize);
+    }
+
+    /*
+     * Tests that the IDs of the inner tuples are pushed down to the outer source, 
+     *   and the results are the same as without the push down, with and without spilling to disk.
+     */
+    @Test
+    public void testIdFilterPushedDownToOuterSource() throws Exception {
+        JoinTestHelper.insertToTable(BOOK_TABLE, JoinTestConstants.bookGroup1);
+        JoinTestHelper.insertToTable(BOOK_TABLE, JoinTestConstants.bookGroup2);
+        
+        List<Tuple> expectedResults = getIdFilterJoinResults(false, Join.DEFAULT_MEMORY_BUDGET_BYTES, Integer.MAX_VALUE);
+        Assert.assertFalse(expectedResults.isEmpty());
+        Assert.assertTrue(TestUtils.equals(expectedResults, 
+                getIdFilterJoinResults(true, Join.DEFAULT_MEMORY_BUDGET_BYTES, Integer.MAX_VALUE)));
+        Assert.assertTrue(TestUtils.equals(expectedResults, getIdFilterJoinResults(true, 1, Integer.MAX_VALUE)));
+    }
+    
+    /*
+     * Tests that the IDs of the inner tuples are not pushed down to an outer source with a limit,
+     *   since the source would return its first documents that can be joined instead of its first documents.
+     */
+    @Test
+    public void testIdFilterNotPushedDownToOuterSourceWithLimit() throws Exception {
+        JoinTestHelper.insertToTable(BOOK_TABLE, JoinTestConstants.bookGroup1);
+        JoinTestHelper.insertToTable(BOOK_TABLE, JoinTestConstants.bookGroup2);
+        
+        List<Tuple> allResults = getIdFilterJoinResults(false, Join.DEFAULT_MEMORY_BUDGET_BYTES, Integer.MAX_VALUE);
+        for (int outerLimit = 1; outerLimit <= 10; outerLimit++) {
+            List<Tuple> expectedResults = getIdFilterJoinResults(false, Join.DEFAULT_MEMORY_BUDGET_BYTES, outerLimit);
+            Assert.assertTrue(expectedResults.size() <= allResults.size());
+            Assert.assertTrue(TestUtils.equals(expectedResults, 
+                    getIdFilterJoinResults(true, Join.DEFAULT_MEMORY_BUDGET_BYTES, outerLimit)));
+            Assert.assertTrue(TestUtils.equals(expectedResults, getIdFilterJoinResults(true, 1, outerLimit)));
+        }
+    }
+    
+    private static List<Tuple> getIdFilterJoinResults(boolean idFilterPushDown, long memoryBudgetBytes, int outerLimit) 
+            throws TextDBException {
+        Join join = new Join(new JoinDistancePredicate(JoinTestConstants.REVIEW, 20));
+        join.setInnerInputOperator(JoinTestHelper.getKeywordSource(BOOK_TABLE, "special", conjunction));
+        RegexMatcherSourceOperator outerSource = new RegexMatcherSourceOperator(new RegexSourcePredicate(
+                "\\w+", Arrays.asList(JoinTestConstants.REVIEW), BOOK_TABLE));
+        outerSource.setLimit(outerLimit);
+        join.setOuterInputOperator(outerSource);
+        join.setIdFilterPushDown(idFilterPushDown);
+        join.setMemoryBudgetBytes(memoryBudgetBytes);
+        
+        Tuple tuple;
+        List<Tuple> resultList = new ArrayList<>();
+        join.open();
+        Assert.assertEquals(idFilterPushDown && outerLimit == Integer.MAX_VALUE, join.isIdFilterPushedDown());
+        while ((tuple = join.getNextTuple()) != null) {
+            resultList.add(tuple);
+        }
+        join.close();
+        return resultList;
+    }
+
 }
\ No newline at end of file
@@ -229,4 +229,39 @@ public class SimilarityJoinTest {
     }
 
 
+    /*
+     * Tests that the prefix filtering of the similarity join doesn't miss any results:
+     *   the results of every similarity measure should be the same as the results of comparing all the pairs of tuples,
+     *   which is done by Join if a custom similarity function is set.
+     */
+    @Test
+    public void testPrefixFilteringResults() throws TextDBException {
+        JoinTestHelper.insertToTable(JoinTestHelper.BOOK_TABLE, JoinTestConstants.bookGroup1);
+        JoinTestHelper.insertToTable(JoinTestHelper.BOOK_TABLE, JoinTestConstants.bookGroup2);
+        
+        String twoWordsRegex = "\\w+\\s\\w+";
+        
+        for (SimilarityMeasure similarityMeasure : SimilarityMeasure.values()) {
+            for (double threshold : Arrays.asList(0.3, 0.5, 0.8)) {
+                SimilarityJoinPredicate indexedPredicate = new SimilarityJoinPredicate(
+                        JoinTestConstants.REVIEW, JoinTestConstants.REVIEW, threshold, similarityMeasure);
+                List<Tuple> results = JoinTestHelper.getJoinDistanceResults(
+                        JoinTestHelper.getRegexMatcher(JoinTestHelper.BOOK_TABLE, twoWordsRegex, JoinTestConstants.REVIEW), 
+                        JoinTestHelper.getRegexMatcher(JoinTestHelper.BOOK_TABLE, twoWordsRegex, JoinTestConstants.REVIEW), 
+                        indexedPredicate, Integer.MAX_VALUE, 0);
+                
+                SimilarityJoinPredicate nestedLoopPredicate = new SimilarityJoinPredicate(
+                        JoinTestConstants.REVIEW, JoinTestConstants.REVIEW, threshold, similarityMeasure);
+                nestedLoopPredicate.setSimilarityFunction(similarityMeasure::calculateSimilarity);
+                List<Tuple> expectedResults = JoinTestHelper.getJoinDistanceResults(
+                        JoinTestHelper.getRegexMatcher(JoinTestHelper.BOOK_TABLE, twoWordsRegex, JoinTestConstants.REVIEW), 
+                        JoinTestHelper.getRegexMatcher(JoinTestHelper.BOOK_TABLE, twoWordsRegex, JoinTestConstants.REVIEW), 
+                        nestedLoopPredicate, Integer.MAX_VALUE, 0);
+                
+                Assert.assertFalse(expectedResults.isEmpty());
+                Assert.assertTrue(similarityMeasure + " " + threshold, TestUtils.equals(expectedResults, results));
+            }
+        }
+    }
+
 }
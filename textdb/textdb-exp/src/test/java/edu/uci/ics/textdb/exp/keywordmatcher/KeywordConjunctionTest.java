@@ -513,5 +513,36 @@ public class KeywordConjunctionTest {
         boolean contains = TestUtils.equals(expectedResultList, resultList);
         Assert.assertTrue(contains);
     }
+    
+    /**
+     * Verifies the ranked mode of the keyword source: only the top K documents are returned,
+     * in the order of descending BM25 scores, with the score as an attribute.
+     * 
+     * "angry" appears in 4 descriptions, the long description 
+     * "Lin Clooney is Short and lin clooney is Angry" has the lowest score.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testRankedKeywordSource() throws Exception {
+        String query = "angry";
+        ArrayList<String> attributeNames = new ArrayList<>();
+        attributeNames.add(TestConstants.DESCRIPTION);
+        
+        List<Tuple> allResults = KeywordTestHelper.getRankedKeywordSourceResults(
+                PEOPLE_TABLE, query, attributeNames, conjunction, 10);
+        List<Tuple> topResults = KeywordTestHelper.getRankedKeywordSourceResults(
+                PEOPLE_TABLE, query, attributeNames, conjunction, 2);
+        
+        Assert.assertEquals(4, allResults.size());
+        Assert.assertEquals(2, topResults.size());
+        for (int i = 1; i < allResults.size(); i++) {
+            Assert.assertTrue(allResults.get(i - 1).getField(SchemaConstants.SCORE, DoubleField.class).getValue()
+                    >= allResults.get(i).getField(SchemaConstants.SCORE, DoubleField.class).getValue());
+        }
+        Assert.assertEquals("Lin Clooney is Short and lin clooney is Angry", 
+                allResults.get(3).getField(TestConstants.DESCRIPTION).getValue());
+        Assert.assertEquals(allResults.subList(0, 2), topResults);
+    }
 
 }
@@ -11,6 +11,7 @@ import org.junit.Test;
 
 import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.constants.TestConstants;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.field.DateField;
 import edu.uci.ics.textdb.api.field.DoubleField;
 import edu.uci.ics.textdb.api.field.IField;
@@ -198,4 +199,40 @@ public class KeywordSubstringTest {
         Assert.assertTrue(contains);
     }
 
+    /**
+     * Verifies that the query of Substring Matcher is matched as a literal
+     * string, the regex meta characters in it are not interpreted.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testSubstringWithRegexMetaCharacters() throws Exception {
+        // Prepare Query
+        String query = "t.ll";
+        ArrayList<String> attributeNames = new ArrayList<>();
+        attributeNames.add(TestConstants.FIRST_NAME);
+        attributeNames.add(TestConstants.LAST_NAME);
+        attributeNames.add(TestConstants.DESCRIPTION);
+
+        // Perform Query
+        List<Tuple> results = KeywordTestHelper.getScanSourceResults(PEOPLE_TABLE, query, attributeNames, substring, Integer.MAX_VALUE, 0);
+
+        // Perform Check
+        Assert.assertEquals(0, results.size());
+    }
+
+    /**
+     * Verifies that topK can't be set for Substring Matcher, since its documents are not scored.
+     * 
+     * @throws Exception
+     */
+    @Test(expected = DataFlowException.class)
+    public void testSubstringWithTopK() throws Exception {
+        String query = "tall";
+        ArrayList<String> attributeNames = new ArrayList<>();
+        attributeNames.add(TestConstants.DESCRIPTION);
+
+        KeywordTestHelper.getRankedKeywordSourceResults(PEOPLE_TABLE, query, attributeNames, substring, 2);
+    }
+
 }
@@ -146,7 +146,28 @@ public class KeywordTestHelper {
         RelationManager relationManager = RelationManager.getRelationManager();
         KeywordSourcePredicate keywordSourcePredicate = new KeywordSourcePredicate(
                 keywordQuery, attributeNames, relationManager.getTableAnalyzerString(tableName), matchingType, 
-                tableName, SchemaConstants.SPAN_LIST, limit, offset);
+                tableName, SchemaConstants.SPAN_LIST, limit, offset, null);
+        KeywordMatcherSourceOperator keywordSource = new KeywordMatcherSourceOperator(
+                keywordSourcePredicate);
+        
+        Tuple tuple;
+        List<Tuple> results = new ArrayList<>();
+        
+        keywordSource.open();
+        while ((tuple = keywordSource.getNextTuple()) != null) {
+            results.add(tuple);
+        }
+        keywordSource.close();
+        
+        return results;
+    }
+    
+    public static List<Tuple> getRankedKeywordSourceResults(String tableName, String keywordQuery, List<String> attributeNames,
+            KeywordMatchingType matchingType, int topK) throws TextDBException {
+        RelationManager relationManager = RelationManager.getRelationManager();
+        KeywordSourcePredicate keywordSourcePredicate = new KeywordSourcePredicate(
+                keywordQuery, attributeNames, relationManager.getTableAnalyzerString(tableName), matchingType, 
+                tableName, SchemaConstants.SPAN_LIST, null, null, topK);
         KeywordMatcherSourceOperator keywordSource = new KeywordMatcherSourceOperator(
                 keywordSourcePredicate);
         
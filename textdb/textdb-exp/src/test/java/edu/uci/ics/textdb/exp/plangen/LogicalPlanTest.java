@@ -4,9 +4,11 @@ import java.util.Arrays;
 import java.util.HashSet;
 
 import org.junit.AfterClass;
+import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.dataflow.IOperator;
 import edu.uci.ics.textdb.api.dataflow.ISink;
 import edu.uci.ics.textdb.api.engine.Plan;
@@ -26,8 +28,15 @@ import edu.uci.ics.textdb.exp.keywordmatcher.KeywordSourcePredicate;
 import edu.uci.ics.textdb.exp.nlp.entity.NlpEntityOperator;
 import edu.uci.ics.textdb.exp.nlp.entity.NlpEntityPredicate;
 import edu.uci.ics.textdb.exp.nlp.entity.NlpEntityType;
+import edu.uci.ics.textdb.exp.projection.ProjectionOperator;
+import edu.uci.ics.textdb.exp.projection.ProjectionPredicate;
 import edu.uci.ics.textdb.exp.regexmatcher.RegexMatcher;
 import edu.uci.ics.textdb.exp.regexmatcher.RegexPredicate;
+import edu.uci.ics.textdb.exp.source.scan.ScanBasedSourceOperator;
+import edu.uci.ics.textdb.exp.source.scan.ScanSourcePredicate;
+import edu.uci.ics.textdb.exp.sampler.Sampler;
+import edu.uci.ics.textdb.exp.sampler.SamplerPredicate;
+import edu.uci.ics.textdb.exp.sampler.SamplerPredicate.SampleType;
 import edu.uci.ics.textdb.exp.sink.tuple.TupleSink;
 import edu.uci.ics.textdb.exp.sink.tuple.TupleSinkPredicate;
 import edu.uci.ics.textdb.storage.RelationManager;
@@ -91,6 +100,18 @@ public class LogicalPlanTest {
     public static String TUPLE_SINK_ID = "tuple sink";
     
     static {
+        setPredicateIDs();
+    }
+    
+    /*
+     * Some tests change the IDs of the shared predicates, reset them before every test.
+     */
+    @Before
+    public void resetPredicateIDs() {
+        setPredicateIDs();
+    }
+    
+    private static void setPredicateIDs() {
         keywordSourcePredicate.setID(KEYWORD_SOURCE_ID);
         regexPredicate.setID(REGEX_ID);
         fuzzyTokenPredicate.setID(FUZZY_TOKEN_ID);
@@ -199,6 +220,94 @@ public class LogicalPlanTest {
 
     }
 
+    /*
+     * Test that the attributes needed after a source are pushed down to the source.
+     * 
+     * KeywordSource (content) --> RegexMatcher (content) --> Projection (content) --> TupleSink
+     * 
+     * The keyword source doesn't need to read "city" and "location".
+     */
+    @Test
+    public void testProjectionPushDown() throws Exception {
+        KeywordSourcePredicate contentKeywordSourcePredicate = new KeywordSourcePredicate(
+                "irvine",
+                Arrays.asList("content"),
+                LuceneAnalyzerConstants.standardAnalyzerString(),
+                KeywordMatchingType.PHRASE_INDEXBASED,
+                TEST_TABLE,
+                "keywordSourceResults");
+        RegexPredicate contentRegexPredicate = new RegexPredicate("ca(lifornia)?", Arrays.asList("content"));
+        ProjectionPredicate projectionPredicate = new ProjectionPredicate(Arrays.asList("content"));
+        TupleSinkPredicate sinkPredicate = new TupleSinkPredicate();
+        
+        LogicalPlan logicalPlan = new LogicalPlan();
+        logicalPlan.addOperator(contentKeywordSourcePredicate);
+        logicalPlan.addOperator(contentRegexPredicate);
+        logicalPlan.addOperator(projectionPredicate);
+        logicalPlan.addOperator(sinkPredicate);
+        logicalPlan.addLink(new OperatorLink(contentKeywordSourcePredicate.getID(), contentRegexPredicate.getID()));
+        logicalPlan.addLink(new OperatorLink(contentRegexPredicate.getID(), projectionPredicate.getID()));
+        logicalPlan.addLink(new OperatorLink(projectionPredicate.getID(), sinkPredicate.getID()));
+        
+        TupleSink tupleSink = (TupleSink) logicalPlan.buildQueryPlan().getRoot();
+        tupleSink.open();
+        
+        ProjectionOperator projection = (ProjectionOperator) tupleSink.getInputOperator();
+        RegexMatcher regexMatcher = (RegexMatcher) projection.getInputOperator();
+        KeywordMatcherSourceOperator keywordSource = (KeywordMatcherSourceOperator) regexMatcher.getInputOperator();
+        Schema keywordSourceSchema = keywordSource.getOutputSchema();
+        tupleSink.close();
+        
+        Assert.assertTrue(keywordSourceSchema.containsField(SchemaConstants._ID));
+        Assert.assertTrue(keywordSourceSchema.containsField("content"));
+        Assert.assertFalse(keywordSourceSchema.containsField("city"));
+        Assert.assertFalse(keywordSourceSchema.containsField("location"));
+        Assert.assertEquals(new Schema(new Attribute("content", AttributeType.TEXT)), tupleSink.getOutputSchema());
+    }
+
+    /*
+     * Test that the sample size of a first-k sampler is pushed down to the scan source,
+     *   and that a matcher between them stops the push-down.
+     * 
+     * ScanSource --> Sampler --> TupleSink
+     * ScanSource --> RegexMatcher --> Sampler --> TupleSink
+     */
+    @Test
+    public void testLimitPushDown() throws Exception {
+        ScanSourcePredicate scanSourcePredicate = new ScanSourcePredicate(TEST_TABLE);
+        SamplerPredicate samplerPredicate = new SamplerPredicate(5, SampleType.FIRST_K_ARRIVAL);
+        TupleSinkPredicate sinkPredicate = new TupleSinkPredicate();
+        
+        LogicalPlan logicalPlan = new LogicalPlan();
+        logicalPlan.addOperator(scanSourcePredicate);
+        logicalPlan.addOperator(samplerPredicate);
+        logicalPlan.addOperator(sinkPredicate);
+        logicalPlan.addLink(new OperatorLink(scanSourcePredicate.getID(), samplerPredicate.getID()));
+        logicalPlan.addLink(new OperatorLink(samplerPredicate.getID(), sinkPredicate.getID()));
+        
+        TupleSink tupleSink = (TupleSink) logicalPlan.buildQueryPlan().getRoot();
+        Sampler sampler = (Sampler) tupleSink.getInputOperator();
+        ScanBasedSourceOperator scanSource = (ScanBasedSourceOperator) sampler.getInputOperator();
+        Assert.assertEquals(5, scanSource.getLimit());
+        
+        ScanSourcePredicate filteredScanSourcePredicate = new ScanSourcePredicate(TEST_TABLE);
+        RegexPredicate contentRegexPredicate = new RegexPredicate("ca(lifornia)?", Arrays.asList("content"));
+        
+        LogicalPlan filteredLogicalPlan = new LogicalPlan();
+        filteredLogicalPlan.addOperator(filteredScanSourcePredicate);
+        filteredLogicalPlan.addOperator(contentRegexPredicate);
+        filteredLogicalPlan.addOperator(samplerPredicate);
+        filteredLogicalPlan.addOperator(sinkPredicate);
+        filteredLogicalPlan.addLink(new OperatorLink(filteredScanSourcePredicate.getID(), contentRegexPredicate.getID()));
+        filteredLogicalPlan.addLink(new OperatorLink(contentRegexPredicate.getID(), samplerPredicate.getID()));
+        filteredLogicalPlan.addLink(new OperatorLink(samplerPredicate.getID(), sinkPredicate.getID()));
+        
+        TupleSink filteredTupleSink = (TupleSink) filteredLogicalPlan.buildQueryPlan().getRoot();
+        RegexMatcher regexMatcher = (RegexMatcher) ((Sampler) filteredTupleSink.getInputOperator()).getInputOperator();
+        ScanBasedSourceOperator filteredScanSource = (ScanBasedSourceOperator) regexMatcher.getInputOperator();
+        Assert.assertEquals(Integer.MAX_VALUE, filteredScanSource.getLimit());
+    }
+
     /*
      * Test a valid operator graph.
      *                  -> RegexMatcher -->
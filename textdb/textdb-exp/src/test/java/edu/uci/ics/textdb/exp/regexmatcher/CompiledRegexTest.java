@@ -0,0 +1,76 @@
+package edu.uci.ics.textdb.exp.regexmatcher;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.textdb.api.span.Span;
+
+public class CompiledRegexTest {
+
+    private static String repeat(String str, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(str);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testBacktrackingProneRegex() {
+        for (String regex : Arrays.asList("(a+)+b", "(\\w+\\s*)*$", "(?:a*){2,}", "((ab)*c)+", "(x(a|b+))*",
+                "(a{1,3})+")) {
+            Assert.assertTrue(regex, CompiledRegex.isBacktrackingProne(regex));
+        }
+        for (String regex : Arrays.asList("a+b+", "(ab)+", "[(a+)]+", "\\(a+\\)+", "(a{3})+", "(a+)?", "(a+)b*",
+                "a{+}")) {
+            Assert.assertFalse(regex, CompiledRegex.isBacktrackingProne(regex));
+        }
+    }
+
+    @Test
+    public void testBacktrackingProneRegexUsesRE2J() throws Exception {
+        CompiledRegex compiledRegex = new CompiledRegex("(a+)+b", false);
+        Assert.assertEquals(CompiledRegex.RegexEngine.RE2J, compiledRegex.getRegexEngine());
+
+        Assert.assertTrue(compiledRegex.computeMatchingSpans(repeat("a", 100) + "c", "content").isEmpty());
+        Assert.assertEquals(Arrays.asList(new Span("content", 1, 4, "(a+)+b", "aab")),
+                compiledRegex.computeMatchingSpans("xaab", "content"));
+
+        // RE2J doesn't support back references, the regex is matched by Java regex
+        Assert.assertEquals(CompiledRegex.RegexEngine.JavaRegex,
+                new CompiledRegex("(a+)+\\1", false).getRegexEngine());
+    }
+
+    @Test
+    public void testTimedOutMatchIsRerunByRE2J() throws Exception {
+        // the quantifiers are not nested, but Java regex takes polynomial time of a high degree
+        String regex = "a*a*a*a*a*a*a*a*b";
+        CompiledRegex compiledRegex = new CompiledRegex(regex, false, 50);
+        Assert.assertEquals(CompiledRegex.RegexEngine.JavaRegex, compiledRegex.getRegexEngine());
+
+        String fieldValue = repeat("a", 60) + "!ab";
+        List<Span> spans = compiledRegex.computeMatchingSpans(fieldValue, "content");
+
+        Assert.assertEquals(Arrays.asList(new Span("content", 61, 63, regex, "ab")), spans);
+        Assert.assertEquals(1, compiledRegex.getNumTimedOutFields());
+        Assert.assertEquals(0, compiledRegex.getNumSkippedFields());
+    }
+
+    @Test
+    public void testTimedOutFieldIsSkipped() throws Exception {
+        // RE2J doesn't support back references
+        CompiledRegex compiledRegex = new CompiledRegex("(a|a)*\\1b", false, 50);
+
+        long startTime = System.currentTimeMillis();
+        List<Span> spans = compiledRegex.computeMatchingSpans(repeat("a", 40) + "!", "content");
+
+        Assert.assertTrue(spans.isEmpty());
+        Assert.assertTrue(System.currentTimeMillis() - startTime < 5000);
+        Assert.assertEquals(1, compiledRegex.getNumTimedOutFields());
+        Assert.assertEquals(1, compiledRegex.getNumSkippedFields());
+    }
+
+}
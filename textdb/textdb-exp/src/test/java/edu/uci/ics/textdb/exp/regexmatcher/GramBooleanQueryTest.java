@@ -1,6 +1,9 @@
 package edu.uci.ics.textdb.exp.regexmatcher;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -124,4 +127,38 @@ public class GramBooleanQueryTest {
         Assert.assertFalse(query2.equals(query1));
     }
 
+    @Test
+    public void testDropCommonGrams() {
+        // (abc AND bcd AND cde) OR xyz
+        GramBooleanQuery query = GramBooleanQuery.computeDisjunction(
+                GramBooleanQuery.combine(new GramBooleanQuery(GramBooleanQuery.QueryOp.ANY), Arrays.asList("abcde")),
+                GramBooleanQuery.newLeafNode("xyz"));
+        Map<String, Double> gramFrequencies = new HashMap<>();
+        gramFrequencies.put("abc", 0.9);
+        gramFrequencies.put("bcd", 0.1);
+        gramFrequencies.put("cde", 0.6);
+        gramFrequencies.put("xyz", 0.8);
+
+        GramBooleanQuery expectedQuery = GramBooleanQuery.computeDisjunction(
+                GramBooleanQuery.newLeafNode("bcd"), GramBooleanQuery.newLeafNode("xyz"));
+        GramBooleanQuery optimizedQuery = GramBooleanQuery.dropCommonGrams(query, gramFrequencies::get, 0.5);
+
+        Assert.assertEquals(expectedQuery, optimizedQuery);
+        Assert.assertEquals(0.9, GramBooleanQuery.estimateCandidateFraction(optimizedQuery, gramFrequencies::get), 1e-9);
+    }
+
+    @Test
+    public void testKeepMostSelectiveGram() {
+        GramBooleanQuery query = GramBooleanQuery.combine(
+                new GramBooleanQuery(GramBooleanQuery.QueryOp.ANY), Arrays.asList("abcd"));
+        Map<String, Double> gramFrequencies = new HashMap<>();
+        gramFrequencies.put("abc", 0.9);
+        gramFrequencies.put("bcd", 0.7);
+
+        GramBooleanQuery optimizedQuery = GramBooleanQuery.dropCommonGrams(query, gramFrequencies::get, 0.5);
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList("bcd")), optimizedQuery.getGrams());
+        Assert.assertEquals(0.7, GramBooleanQuery.estimateCandidateFraction(query, gramFrequencies::get), 1e-9);
+    }
+
 }
@@ -0,0 +1,141 @@
+package edu.uci.ics.textdb.exp.regexmatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.uci.ics.textdb.api.constants.TestConstants;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.utils.TestUtils;
+import edu.uci.ics.textdb.api.utils.Utils;
+import edu.uci.ics.textdb.exp.source.scan.ScanBasedSourceOperator;
+import edu.uci.ics.textdb.exp.source.scan.ScanSourcePredicate;
+import edu.uci.ics.textdb.exp.utils.DataflowUtils;
+
+public class MultiRegexMatcherTest {
+
+    public static final String TEXT_TABLE = RegexMatcherTestHelper.TEXT_TABLE;
+    public static final String PEOPLE_TABLE = RegexMatcherTestHelper.PEOPLE_TABLE;
+
+    @BeforeClass
+    public static void setUp() throws TextDBException {
+        RegexMatcherTestHelper.writeTestTables();
+    }
+
+    @AfterClass
+    public static void cleanUp() throws TextDBException {
+        RegexMatcherTestHelper.deleteTestTables();
+    }
+
+    private static List<Tuple> getMultiRegexResults(MultiRegexMatcher multiRegexMatcher, String tableName)
+            throws TextDBException {
+        multiRegexMatcher.setInputOperator(new ScanBasedSourceOperator(new ScanSourcePredicate(tableName)));
+
+        List<Tuple> results = new ArrayList<>();
+        Tuple tuple;
+        multiRegexMatcher.open();
+        while ((tuple = multiRegexMatcher.getNextTuple()) != null) {
+            results.add(tuple);
+        }
+        multiRegexMatcher.close();
+        return results;
+    }
+
+    /*
+     * Computes the expected results with Java regex, one regex after another.
+     */
+    private static List<Tuple> getExpectedResults(String tableName, List<String> regexes, List<String> attributeNames,
+            int flags) throws TextDBException {
+        ScanBasedSourceOperator scanSource = new ScanBasedSourceOperator(new ScanSourcePredicate(tableName));
+        scanSource.open();
+        Schema spanSchema = Utils.createSpanSchema(scanSource.getOutputSchema());
+
+        List<Tuple> expectedResults = new ArrayList<>();
+        Tuple tuple;
+        while ((tuple = scanSource.getNextTuple()) != null) {
+            List<Span> spans = new ArrayList<>();
+            for (String regex : regexes) {
+                for (String attributeName : attributeNames) {
+                    String fieldValue = tuple.getField(attributeName).getValue().toString();
+                    Matcher matcher = Pattern.compile(regex, flags).matcher(fieldValue);
+                    while (matcher.find()) {
+                        spans.add(new Span(attributeName, matcher.start(), matcher.end(), regex, matcher.group()));
+                    }
+                }
+            }
+            if (! spans.isEmpty()) {
+                expectedResults.add(DataflowUtils.getSpanTuple(tuple.getFields(), spans, spanSchema));
+            }
+        }
+        scanSource.close();
+        return expectedResults;
+    }
+
+    @Test
+    public void testMultipleRegexes() throws Exception {
+        List<String> regexes = Arrays.asList("test(er|ing|ed|s)?", "follow(-| )?up", "\\[(.)?\\]",
+                "([a-zA-Z])+o[a-z]a[a-z]o", "translat[a-z]+");
+        List<String> attributeNames = Arrays.asList(RegexTestConstantsText.CONTENT);
+        MultiRegexMatcher multiRegexMatcher = new MultiRegexMatcher(new MultiRegexPredicate(regexes, attributeNames));
+
+        List<Tuple> results = getMultiRegexResults(multiRegexMatcher, TEXT_TABLE);
+        List<Tuple> expectedResults = getExpectedResults(TEXT_TABLE, regexes, attributeNames, 0);
+
+        Assert.assertFalse(results.isEmpty());
+        Assert.assertTrue(TestUtils.equals(expectedResults, results));
+
+        // the prefilter skips the regexes whose required grams are not in a field
+        Assert.assertEquals(RegexTestConstantsText.getSampleTextTuples().size(), multiRegexMatcher.getNumCheckedFields());
+        Assert.assertTrue(multiRegexMatcher.getNumSkippedRegexEvaluations() > 0);
+        Assert.assertEquals(regexes.size() * multiRegexMatcher.getNumCheckedFields(),
+                multiRegexMatcher.getNumRegexEvaluations() + multiRegexMatcher.getNumSkippedRegexEvaluations());
+    }
+
+    @Test
+    public void testMultipleRegexesIgnoreCase() throws Exception {
+        List<String> regexes = Arrays.asList("lin", "ANGRY", "g[^\\s]*", "brown|fair");
+        List<String> attributeNames = Arrays.asList(TestConstants.FIRST_NAME, TestConstants.LAST_NAME, TestConstants.DESCRIPTION);
+        MultiRegexMatcher multiRegexMatcher = new MultiRegexMatcher(
+                new MultiRegexPredicate(regexes, attributeNames, true));
+
+        List<Tuple> results = getMultiRegexResults(multiRegexMatcher, PEOPLE_TABLE);
+        List<Tuple> expectedResults = getExpectedResults(PEOPLE_TABLE, regexes, attributeNames,
+                Pattern.CASE_INSENSITIVE);
+
+        Assert.assertFalse(results.isEmpty());
+        Assert.assertTrue(TestUtils.equals(expectedResults, results));
+    }
+
+    @Test
+    public void testSameResultsAsRegexMatcher() throws Exception {
+        String regex = "test(er|ing|ed|s)?";
+        List<String> attributeNames = Arrays.asList(RegexTestConstantsText.CONTENT);
+        MultiRegexMatcher multiRegexMatcher = new MultiRegexMatcher(
+                new MultiRegexPredicate(Arrays.asList(regex), attributeNames));
+
+        List<Tuple> results = getMultiRegexResults(multiRegexMatcher, TEXT_TABLE);
+        List<Tuple> regexMatcherResults = RegexMatcherTestHelper.getScanSourceResults(
+                TEXT_TABLE, regex, attributeNames, Integer.MAX_VALUE, 0);
+
+        Assert.assertTrue(TestUtils.equals(regexMatcherResults, results));
+    }
+
+    @Test(expected = DataFlowException.class)
+    public void testEmptyRegexList() throws Exception {
+        MultiRegexMatcher multiRegexMatcher = new MultiRegexMatcher(
+                new MultiRegexPredicate(new ArrayList<>(), Arrays.asList(RegexTestConstantsText.CONTENT)));
+        getMultiRegexResults(multiRegexMatcher, TEXT_TABLE);
+    }
+
+}
@@ -19,6 +19,8 @@ import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.TestUtils;
 import edu.uci.ics.textdb.api.utils.Utils;
+import edu.uci.ics.textdb.exp.source.scan.ScanBasedSourceOperator;
+import edu.uci.ics.textdb.exp.source.scan.ScanSourcePredicate;
 
 /**
  * Unit tests for RegexMatcher. Integration tests with RegexToGramTranslator.
@@ -247,6 +249,62 @@ public class RegexMatcherTest {
         Assert.assertTrue(TestUtils.equals(expectedResults, exactResults));
     }
 
+    @Test
+    public void testRegexPrefilterStatistics() throws Exception {
+        String query = "follow(-| )?up";
+        ScanBasedSourceOperator scanSource = new ScanBasedSourceOperator(new ScanSourcePredicate(TEXT_TABLE));
+        RegexMatcher regexMatcher = new RegexMatcher(
+                new RegexPredicate(query, Arrays.asList(RegexTestConstantsText.CONTENT)));
+        regexMatcher.setInputOperator(scanSource);
+
+        int numResults = 0;
+        regexMatcher.open();
+        while (regexMatcher.getNextTuple() != null) {
+            numResults++;
+        }
+        regexMatcher.close();
+
+        RegexPrefilter prefilter = regexMatcher.getPrefilter();
+        Assert.assertNotNull(prefilter);
+        Assert.assertEquals(RegexTestConstantsText.getSampleTextTuples().size(), prefilter.getNumCheckedStrings());
+        Assert.assertTrue(prefilter.getNumCheckedStrings() - prefilter.getNumRejectedStrings() >= numResults);
+        Assert.assertTrue(prefilter.getNumRejectedStrings() > 0);
+    }
+
+    @Test
+    public void testIndexChosenForSelectiveRegex() throws Exception {
+        // "brown" is only in one of the six descriptions
+        RegexMatcherSourceOperator regexSource = new RegexMatcherSourceOperator(new RegexSourcePredicate(
+                "brown", Arrays.asList(TestConstants.DESCRIPTION), true, PEOPLE_TABLE, null));
+
+        Assert.assertTrue(regexSource.isIndexUsed());
+        Assert.assertEquals(1.0 / 6, regexSource.getEstimatedCandidateFraction(), 1e-9);
+    }
+
+    @Test
+    public void testScanChosenForCommonGrams() throws Exception {
+        // "angry" is in four of the six descriptions
+        RegexMatcherSourceOperator regexSource = new RegexMatcherSourceOperator(new RegexSourcePredicate(
+                "angry", Arrays.asList(TestConstants.DESCRIPTION), true, PEOPLE_TABLE, null));
+
+        Assert.assertFalse(regexSource.isIndexUsed());
+        Assert.assertEquals(4.0 / 6, regexSource.getEstimatedCandidateFraction(), 1e-9);
+
+        // the choice can be overridden
+        regexSource = new RegexMatcherSourceOperator(new RegexSourcePredicate(
+                "angry", Arrays.asList(TestConstants.DESCRIPTION), true, PEOPLE_TABLE, true));
+        Assert.assertTrue(regexSource.isIndexUsed());
+
+        List<Tuple> results = new ArrayList<>();
+        Tuple tuple;
+        regexSource.open();
+        while ((tuple = regexSource.getNextTuple()) != null) {
+            results.add(tuple);
+        }
+        regexSource.close();
+        Assert.assertEquals(4, results.size());
+    }
+
     @Test
     public void testRegexText3() throws Exception {
         String query = "([a-zA-Z])+o[a-z]a[a-z]o";
@@ -154,7 +154,8 @@ public class RegexMatcherTestHelper {
     
     public static List<Tuple> getRegexSourceResults(String tableName, String regex, List<String> attributeNames,
             int limit, int offset) throws TextDBException {
-        RegexSourcePredicate regexSourcePredicate = new RegexSourcePredicate(regex, attributeNames, tableName);
+        // always use the index, so that the index query is verified against the scan
+        RegexSourcePredicate regexSourcePredicate = new RegexSourcePredicate(regex, attributeNames, null, tableName, true);
         RegexMatcherSourceOperator regexSource = new RegexMatcherSourceOperator(regexSourcePredicate);
         
         regexSource.setLimit(limit);
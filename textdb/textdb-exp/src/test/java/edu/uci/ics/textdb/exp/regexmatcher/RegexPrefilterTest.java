@@ -0,0 +1,87 @@
+package edu.uci.ics.textdb.exp.regexmatcher;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RegexPrefilterTest {
+
+    private static final List<String> TEXTS = Arrays.asList(
+            "Tall Angry", "Short Brown", "White Angry", "Lin Clooney is Short and lin clooney is Angry",
+            "this is a TEST of the testing tool", "follow up", "follow-up email", "a[b]c", "x7yz", "xAbc",
+            "Dr. Smith", "192.168.1.1", "");
+
+    /*
+     * The prefilter must never reject a string that matches the regex.
+     */
+    private static void assertNoFalseNegatives(String regex, int flags) {
+        RegexPrefilter prefilter = RegexPrefilter.create(regex);
+        Pattern pattern = Pattern.compile(regex, flags);
+        if (prefilter == null) {
+            return;
+        }
+        for (String text : TEXTS) {
+            if (pattern.matcher(text).find()) {
+                Assert.assertTrue(regex + " / " + text, prefilter.mayMatch(text));
+            }
+        }
+    }
+
+    @Test
+    public void testRejectStrings() {
+        RegexPrefilter prefilter = RegexPrefilter.create("test(er|ing|ed|s)?");
+        Assert.assertNotNull(prefilter);
+
+        Assert.assertTrue(prefilter.mayMatch("this is a TEST of the testing tool"));
+        Assert.assertFalse(prefilter.mayMatch("Tall Angry"));
+        Assert.assertFalse(prefilter.mayMatch("tes t"));
+
+        Assert.assertEquals(3, prefilter.getNumCheckedStrings());
+        Assert.assertEquals(2, prefilter.getNumRejectedStrings());
+        Assert.assertEquals(2.0 / 3, prefilter.getRejectionRate(), 1e-9);
+    }
+
+    @Test
+    public void testAlternation() {
+        RegexPrefilter prefilter = RegexPrefilter.create("angry|brown");
+        Assert.assertNotNull(prefilter);
+
+        Assert.assertTrue(prefilter.mayMatch("Tall Angry"));
+        Assert.assertTrue(prefilter.mayMatch("Short Brown"));
+        Assert.assertFalse(prefilter.mayMatch("Tall Fair"));
+    }
+
+    @Test
+    public void testRegexWithoutRequiredGrams() {
+        Assert.assertNull(RegexPrefilter.create("g[^\\s]*"));
+        Assert.assertNull(RegexPrefilter.create("a.b"));
+        Assert.assertNull(RegexPrefilter.create("(abc)*"));
+    }
+
+    @Test
+    public void testUnsupportedRegex() {
+        // lower-casing changes the meaning of the upper case escapes
+        Assert.assertNull(RegexPrefilter.create("x\\Dyz"));
+        // Java regex only syntax
+        Assert.assertNull(RegexPrefilter.create("(abc)\\1"));
+        Assert.assertNull(RegexPrefilter.create("abc(?=def)"));
+        // nested character class
+        Assert.assertNull(RegexPrefilter.create("x[[ab]]yz"));
+    }
+
+    @Test
+    public void testNoFalseNegatives() {
+        List<String> regexes = Arrays.asList(
+                "test(er|ing|ed|s)?", "follow(-| )?up", "([a-zA-Z])+o[a-z]a[a-z]o", "\\[(.)?\\]",
+                "lin clooney", "angry|brown", "x\\dyz", "x\\wbc", "dr\\. [A-Z]\\w+",
+                "(?:(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\.){3}", "(?i)TALL", "Short\\b");
+        for (String regex : regexes) {
+            assertNoFalseNegatives(regex, 0);
+            assertNoFalseNegatives(regex, Pattern.CASE_INSENSITIVE);
+        }
+    }
+
+}
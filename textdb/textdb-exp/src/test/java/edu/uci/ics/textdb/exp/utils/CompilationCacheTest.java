@@ -0,0 +1,87 @@
+package edu.uci.ics.textdb.exp.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.textdb.exp.utils.CompilationCache.ArtifactType;
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+
+public class CompilationCacheTest {
+
+    @Test
+    public void testCompiledOnce() {
+        CompilationCache cache = new CompilationCache(10);
+        int[] numCompilations = {0};
+
+        for (int i = 0; i < 3; i++) {
+            String artifact = cache.get(ArtifactType.GRAM_QUERY, "abc", "3", () -> {
+                numCompilations[0]++;
+                return "compiled";
+            });
+            Assert.assertEquals("compiled", artifact);
+        }
+
+        Assert.assertEquals(1, numCompilations[0]);
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(2.0 / 3, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testKeyIncludesTypeAndOptions() {
+        CompilationCache cache = new CompilationCache(10);
+
+        java.util.regex.Pattern pattern = cache.getJavaPattern("t.ll", 0);
+        Assert.assertSame(pattern, cache.getJavaPattern("t.ll", 0));
+        Assert.assertNotSame(pattern, cache.getJavaPattern("t.ll", java.util.regex.Pattern.CASE_INSENSITIVE));
+        cache.getRe2jPattern("t.ll", 0);
+
+        Assert.assertEquals(3, cache.size());
+        Assert.assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedArtifactIsEvicted() {
+        CompilationCache cache = new CompilationCache(2);
+
+        java.util.regex.Pattern pattern1 = cache.getJavaPattern("a", 0);
+        java.util.regex.Pattern pattern2 = cache.getJavaPattern("b", 0);
+        // "a" becomes the most recently used pattern
+        cache.getJavaPattern("a", 0);
+        cache.getJavaPattern("c", 0);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertSame(pattern1, cache.getJavaPattern("a", 0));
+        Assert.assertNotSame(pattern2, cache.getJavaPattern("b", 0));
+    }
+
+    @Test
+    public void testFailedCompilationIsNotCached() {
+        CompilationCache cache = new CompilationCache(10);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.getJavaPattern("(?<name", 0);
+                Assert.fail("the regex is invalid");
+            } catch (java.util.regex.PatternSyntaxException e) {
+            }
+        }
+
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testCachedQueryTokensAreCopied() {
+        String standard = LuceneAnalyzerConstants.standardAnalyzerString();
+
+        List<String> tokens = DataflowUtils.tokenizeQuery(standard, "Tall Angry");
+        tokens.add("modified");
+
+        Assert.assertEquals(Arrays.asList("tall", "angry"), DataflowUtils.tokenizeQuery(standard, "Tall Angry"));
+    }
+
+}
@@ -0,0 +1,69 @@
+package edu.uci.ics.textdb.exp.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LiteralStringSearcherTest {
+
+    @Test
+    public void testCaseSensitiveSearch() {
+        LiteralStringSearcher searcher = new LiteralStringSearcher("lin", false);
+        String text = "Lin Clooney is Short and lin clooney is Angry";
+
+        Assert.assertEquals(25, searcher.indexOf(text, 0));
+        Assert.assertEquals(-1, searcher.indexOf(text, 26));
+    }
+
+    @Test
+    public void testCaseInsensitiveSearch() {
+        LiteralStringSearcher searcher = new LiteralStringSearcher("LIN clooney", true);
+        String text = "Lin Clooney is Short and lin clooney is Angry";
+
+        Assert.assertEquals(0, searcher.indexOf(text, 0));
+        Assert.assertEquals(25, searcher.indexOf(text, 1));
+        Assert.assertEquals(-1, searcher.indexOf(text, 26));
+        Assert.assertEquals(11, searcher.length());
+    }
+
+    @Test
+    public void testNonOverlappingOccurrences() {
+        LiteralStringSearcher searcher = new LiteralStringSearcher("aa", true);
+        String text = "aAaaa";
+
+        int first = searcher.indexOf(text, 0);
+        int second = searcher.indexOf(text, first + searcher.length());
+        int third = searcher.indexOf(text, second + searcher.length());
+
+        Assert.assertEquals(0, first);
+        Assert.assertEquals(2, second);
+        Assert.assertEquals(-1, third);
+        // overlapping occurrences are found if the search starts inside the previous one
+        Assert.assertEquals(1, searcher.indexOf(text, 1));
+    }
+
+    @Test
+    public void testNonLatinCharacters() {
+        LiteralStringSearcher searcher = new LiteralStringSearcher("ΣΟΦΊΑ 北京", true);
+        String text = "Η σοφία 北京 και η ΣΟΦΊΑ 北京";
+
+        Assert.assertEquals(2, searcher.indexOf(text, 0));
+        Assert.assertEquals(17, searcher.indexOf(text, 3));
+    }
+
+    @Test
+    public void testOffsetsOfOriginalText() {
+        // "İ".toLowerCase() has two characters, the offsets must not be shifted by it
+        LiteralStringSearcher searcher = new LiteralStringSearcher("angry", true);
+        String text = "İİ Angry";
+
+        Assert.assertEquals(3, searcher.indexOf(text, 0));
+    }
+
+    @Test
+    public void testEmptyPatternOrText() {
+        Assert.assertEquals(-1, new LiteralStringSearcher("", true).indexOf("tall", 0));
+        Assert.assertEquals(-1, new LiteralStringSearcher("tall", true).indexOf("", 0));
+        Assert.assertEquals(-1, new LiteralStringSearcher("tall", true).indexOf("tal", 0));
+    }
+
+}
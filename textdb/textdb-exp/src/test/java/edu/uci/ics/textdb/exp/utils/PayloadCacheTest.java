@@ -0,0 +1,86 @@
+package edu.uci.ics.textdb.exp.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import edu.uci.ics.textdb.api.field.IDField;
+import edu.uci.ics.textdb.api.field.StringField;
+import edu.uci.ics.textdb.api.field.TextField;
+import edu.uci.ics.textdb.api.schema.Attribute;
+import edu.uci.ics.textdb.api.schema.AttributeType;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+
+public class PayloadCacheTest {
+
+    private static final String STANDARD = LuceneAnalyzerConstants.standardAnalyzerString();
+
+    private static final Schema SCHEMA = new Schema(SchemaConstants._ID_ATTRIBUTE,
+            new Attribute("name", AttributeType.STRING), new Attribute("content", AttributeType.TEXT));
+
+    @Test
+    public void testGeneratePayloadWithCache() throws Exception {
+        PayloadCache payloadCache = new PayloadCache();
+        Tuple tuple = new Tuple(SCHEMA, new IDField("id1"), new StringField("bruce"), new TextField("Tall Angry"));
+
+        List<Span> expectedPayload = DataflowUtils.generatePayloadFromTuple(tuple, STANDARD);
+
+        Assert.assertEquals(expectedPayload, DataflowUtils.generatePayloadFromTuple(tuple, STANDARD, payloadCache));
+        Assert.assertEquals(0, payloadCache.getHitCount());
+        Assert.assertEquals(1, payloadCache.getMissCount());
+
+        Assert.assertEquals(expectedPayload, DataflowUtils.generatePayloadFromTuple(tuple, STANDARD, payloadCache));
+        Assert.assertEquals(1, payloadCache.getHitCount());
+        Assert.assertEquals(1, payloadCache.size());
+        Assert.assertEquals(2, payloadCache.getNumSpans());
+    }
+
+    @Test
+    public void testChangedFieldValueIsNotReturned() throws Exception {
+        PayloadCache payloadCache = new PayloadCache();
+        Tuple tuple1 = new Tuple(SCHEMA, new IDField("id1"), new StringField("bruce"), new TextField("Tall Angry"));
+        Tuple tuple2 = new Tuple(SCHEMA, new IDField("id1"), new StringField("bruce"), new TextField("Short Brown"));
+
+        DataflowUtils.generatePayloadFromTuple(tuple1, STANDARD, payloadCache);
+        List<Span> payload = DataflowUtils.generatePayloadFromTuple(tuple2, STANDARD, payloadCache);
+
+        Assert.assertEquals(DataflowUtils.generatePayloadFromTuple(tuple2, STANDARD), payload);
+        Assert.assertEquals(0, payloadCache.getHitCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedPayloadIsEvicted() {
+        PayloadCache payloadCache = new PayloadCache(4);
+        List<Span> payload = Arrays.asList(new Span("content", 0, 4, "tall", "Tall", 0),
+                new Span("content", 5, 10, "angry", "Angry", 1));
+
+        payloadCache.putPayload("id1", "content", STANDARD, "Tall Angry", payload);
+        payloadCache.putPayload("id2", "content", STANDARD, "Tall Angry", payload);
+        // id1 becomes the most recently used payload
+        Assert.assertNotNull(payloadCache.getPayload("id1", "content", STANDARD, "Tall Angry"));
+        payloadCache.putPayload("id3", "content", STANDARD, "Tall Angry", payload);
+
+        Assert.assertEquals(2, payloadCache.size());
+        Assert.assertEquals(4, payloadCache.getNumSpans());
+        Assert.assertNotNull(payloadCache.getPayload("id1", "content", STANDARD, "Tall Angry"));
+        Assert.assertNull(payloadCache.getPayload("id2", "content", STANDARD, "Tall Angry"));
+        Assert.assertNotNull(payloadCache.getPayload("id3", "content", STANDARD, "Tall Angry"));
+        // the payloads of different analyzers are cached separately
+        Assert.assertNull(payloadCache.getPayload("id1", "content", "3-gram", "Tall Angry"));
+    }
+
+    @Test
+    public void testAnalyzerIsShared() throws Exception {
+        Assert.assertSame(LuceneAnalyzerConstants.getLuceneAnalyzer(STANDARD),
+                LuceneAnalyzerConstants.getLuceneAnalyzer(STANDARD));
+        Assert.assertNotSame(LuceneAnalyzerConstants.getLuceneAnalyzer(STANDARD),
+                LuceneAnalyzerConstants.getLuceneAnalyzer(LuceneAnalyzerConstants.nGramAnalyzerString(3)));
+    }
+
+}
@@ -0,0 +1,88 @@
+package edu.uci.ics.textdb.exp.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import edu.uci.ics.textdb.api.field.DateField;
+import edu.uci.ics.textdb.api.field.DoubleField;
+import edu.uci.ics.textdb.api.field.IDField;
+import edu.uci.ics.textdb.api.field.IntegerField;
+import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.field.StringField;
+import edu.uci.ics.textdb.api.field.TextField;
+import edu.uci.ics.textdb.api.schema.Attribute;
+import edu.uci.ics.textdb.api.schema.AttributeType;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+
+public class TupleCodecTest {
+
+    private static final Schema SCHEMA = new Schema(SchemaConstants._ID_ATTRIBUTE,
+            new Attribute("name", AttributeType.STRING), new Attribute("content", AttributeType.TEXT),
+            new Attribute("age", AttributeType.INTEGER), new Attribute("height", AttributeType.DOUBLE),
+            new Attribute("birthday", AttributeType.DATE), SchemaConstants.SPAN_LIST_ATTRIBUTE);
+
+    @Test
+    public void testWriteAndReadTuples() throws Exception {
+        // a TEXT field longer than the limit of DataOutput.writeUTF
+        String longText = String.join(" ", Collections.nCopies(20000, "tall angry élève"));
+        Tuple tuple1 = new Tuple(SCHEMA, IDField.newRandomID(), new StringField("bruce"), new TextField(longText),
+                new IntegerField(45), new DoubleField(5.5), new DateField(new Date(1234567890L)),
+                new ListField<>(Arrays.asList(new Span("content", 0, 4, "tall", "tall", 0),
+                        new Span("content", 5, 10, null, null))));
+        Tuple tuple2 = new Tuple(SCHEMA, IDField.newRandomID(), new StringField(""), new TextField("short"),
+                new IntegerField(-1), new DoubleField(0.0), new DateField(new Date(0)),
+                new ListField<>(Collections.emptyList()));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        TupleCodec.writeTuple(output, tuple1);
+        TupleCodec.writeTuple(output, tuple2);
+        output.close();
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertEquals(tuple1, TupleCodec.readTuple(input, SCHEMA));
+        Assert.assertEquals(tuple2, TupleCodec.readTuple(input, SCHEMA));
+        Assert.assertEquals(-1, input.read());
+    }
+
+    @Test
+    public void testWriteAndReadNullFields() throws Exception {
+        Tuple tuple = new Tuple(SCHEMA, new IDField(null), new StringField(null), new TextField(null),
+                new IntegerField(null), new DoubleField(null), new DateField(null), new ListField<>(null));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        TupleCodec.writeTuple(output, tuple);
+        output.close();
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertEquals(tuple, TupleCodec.readTuple(input, SCHEMA));
+        Assert.assertEquals(-1, input.read());
+    }
+
+    @Test
+    public void testEstimateMemorySize() {
+        Tuple shortTuple = new Tuple(SCHEMA, IDField.newRandomID(), new StringField("bruce"), new TextField("tall"),
+                new IntegerField(45), new DoubleField(5.5), new DateField(new Date(0)),
+                new ListField<>(Collections.emptyList()));
+        Tuple longTuple = new Tuple(SCHEMA, IDField.newRandomID(), new StringField("bruce"),
+                new TextField(String.join(" ", Collections.nCopies(1000, "tall"))),
+                new IntegerField(45), new DoubleField(5.5), new DateField(new Date(0)),
+                new ListField<>(Collections.nCopies(100, new Span("content", 0, 4, "tall", "tall"))));
+
+        Assert.assertTrue(TupleCodec.estimateMemorySize(shortTuple) > 0);
+        Assert.assertTrue(TupleCodec.estimateMemorySize(longTuple) > TupleCodec.estimateMemorySize(shortTuple) + 10000);
+    }
+
+}
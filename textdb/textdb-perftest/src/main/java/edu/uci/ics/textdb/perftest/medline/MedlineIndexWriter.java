@@ -84,7 +84,30 @@ public class MedlineIndexWriter {
      * @throws TextDBException
      */
     public static Plan getMedlineIndexPlan(String filePath, String tableName) throws TextDBException {
-        IndexSink medlineIndexSink = new IndexSink(tableName, false);
+        return getMedlineIndexPlan(filePath, tableName, 1, -1);
+    }
+    
+    /**
+     * This function generates a plan that reads a file using
+     * FileSourceOperator, then writes index to the table using IndexSink 
+     * with multiple worker threads.
+     * 
+     * the table must be pre-created (it must already exist)
+     * 
+     * @param filePath,
+     *            path of the file to be read
+     * @param tableName,
+     *            table name of the table to be written into (must already exist)
+     * @param numWorkers,
+     *            number of threads that write the index
+     * @param ramBufferSizeMB,
+     *            RAM buffer size of the index writer, the default is used if it's not positive
+     * @return the plan to write a Medline index
+     * @throws TextDBException
+     */
+    public static Plan getMedlineIndexPlan(String filePath, String tableName, int numWorkers, double ramBufferSizeMB) 
+            throws TextDBException {
+        IndexSink medlineIndexSink = new IndexSink(tableName, false, numWorkers, ramBufferSizeMB);
         ISourceOperator fileSourceOperator = new FileSourceOperator(filePath, (s -> recordToTuple(s)),
                 RelationManager.getRelationManager().getTableSchema(tableName));
         medlineIndexSink.setInputOperator(fileSourceOperator);
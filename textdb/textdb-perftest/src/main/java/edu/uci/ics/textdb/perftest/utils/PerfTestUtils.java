@@ -38,6 +38,10 @@ public class PerfTestUtils {
     public static String resultFolder = getResourcePath("/perftest-files/results");
     public static String queryFolder = getResourcePath("/perftest-files/queries");
     
+    // index writing uses one thread per core and a larger RAM buffer than Lucene's default
+    public static final int INDEX_WRITER_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final double INDEX_RAM_BUFFER_SIZE_MB = 256;
+    
     public static String getResourcePath(String resourcePath) {
         return Utils.getResourcePath(resourcePath, TextdbProject.TEXTDB_PERFTEST);
     }
@@ -213,13 +217,15 @@ public class PerfTestUtils {
             relationManager.deleteTable(tableName);
             relationManager.createTable(tableName, getTrigramIndexPath(tableName), 
                     MedlineIndexWriter.SCHEMA_MEDLINE, LuceneAnalyzerConstants.nGramAnalyzerString(3));
-            Engine.getEngine().evaluate(MedlineIndexWriter.getMedlineIndexPlan(fileFolder + fileName, tableName));
+            Engine.getEngine().evaluate(MedlineIndexWriter.getMedlineIndexPlan(fileFolder + fileName, tableName,
+                    INDEX_WRITER_THREADS, INDEX_RAM_BUFFER_SIZE_MB));
             
         } else if (indexType.equalsIgnoreCase("standard")) {
             relationManager.deleteTable(tableName);
             relationManager.createTable(tableName, getIndexPath(tableName), 
                     MedlineIndexWriter.SCHEMA_MEDLINE, LuceneAnalyzerConstants.standardAnalyzerString());
-            Engine.getEngine().evaluate(MedlineIndexWriter.getMedlineIndexPlan(fileFolder + fileName, tableName));
+            Engine.getEngine().evaluate(MedlineIndexWriter.getMedlineIndexPlan(fileFolder + fileName, tableName,
+                    INDEX_WRITER_THREADS, INDEX_RAM_BUFFER_SIZE_MB));
         } else {
             System.out.println("Index is not successfully written.");
             System.out.println("IndexType has to be either \"standard\" or \"trigram\"  ");
@@ -16,6 +16,10 @@ import edu.uci.ics.textdb.api.utils.Utils;
 /**
  * CatalogConstants stores the schema and the initial tuples of the catalog manager
  * 
+ * The catalog is kept in memory by CatalogManager and persisted in CATALOG_LOG_FILE.
+ * The Lucene indexes in TABLE_CATALOG_DIRECTORY and SCHEMA_CATALOG_DIRECTORY are only read once,
+ *   to migrate a catalog that was written before the log file was introduced.
+ * 
  * 
  * ============================================
  * 
@@ -51,6 +55,9 @@ public class CatalogConstants {
 
     public static final String TABLE_CATALOG_DIRECTORY = Paths.get(Utils.getTextdbHomePath(), "catalog", "table").toString();
     public static final String SCHEMA_CATALOG_DIRECTORY = Paths.get(Utils.getTextdbHomePath(), "catalog", "schema").toString();
+    
+    // The log file that persists the in-memory catalog, see CatalogManager
+    public static final String CATALOG_LOG_FILE = Paths.get(Utils.getTextdbHomePath(), "catalog", "catalog.log").toString();
 
     // Schema for the "table catalog" table
     public static final String TABLE_NAME = "tableName";
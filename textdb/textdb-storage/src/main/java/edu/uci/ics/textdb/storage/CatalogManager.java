@@ -0,0 +1,270 @@
+package edu.uci.ics.textdb.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.uci.ics.textdb.api.exception.StorageException;
+import edu.uci.ics.textdb.api.schema.Attribute;
+import edu.uci.ics.textdb.api.schema.AttributeType;
+import edu.uci.ics.textdb.api.schema.Schema;
+
+/**
+ * CatalogManager keeps the system catalog (the directory, schema and lucene analyzer of every table) in memory,
+ *   so that looking up a table's information is a hash lookup.
+ *
+ * The catalog is persisted in a compact append-only log file.
+ * Every "createTable" appends one CREATE record, and every "deleteTable" appends one DELETE record.
+ * The log is replayed once when the CatalogManager is constructed.
+ * If the log contains records of deleted tables, it's compacted to one CREATE record per live table.
+ *
+ * Record format (java.io.DataOutput):
+ *   CREATE: byte 'C', UTF tableName, UTF tableDirectory, UTF luceneAnalyzer, int numAttributes,
+ *             (UTF attributeName, UTF attributeType) for each attribute
+ *   DELETE: byte 'D', UTF tableName
+ *
+ * CatalogManager is only accessible inside the storage package, it's used by RelationManager.
+ *
+ */
+class CatalogManager {
+
+    private static final byte CREATE_RECORD = 'C';
+    private static final byte DELETE_RECORD = 'D';
+
+    /**
+     * TableInfo is the catalog entry of one table.
+     */
+    static class TableInfo {
+        private final String tableName;
+        private final String tableDirectory;
+        private final Schema tableSchema;
+        private final String luceneAnalyzerString;
+
+        TableInfo(String tableName, String tableDirectory, Schema tableSchema, String luceneAnalyzerString) {
+            this.tableName = tableName;
+            this.tableDirectory = tableDirectory;
+            this.tableSchema = tableSchema;
+            this.luceneAnalyzerString = luceneAnalyzerString;
+        }
+
+        String getTableName() {
+            return tableName;
+        }
+
+        String getTableDirectory() {
+            return tableDirectory;
+        }
+
+        Schema getTableSchema() {
+            return tableSchema;
+        }
+
+        String getLuceneAnalyzerString() {
+            return luceneAnalyzerString;
+        }
+    }
+
+    private final Path logFilePath;
+    private final ConcurrentHashMap<String, TableInfo> tableInfoMap = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the catalog from the log file. A missing log file is an empty catalog.
+     *
+     * @param logFile, the path of the catalog log file
+     * @throws StorageException
+     */
+    CatalogManager(String logFile) throws StorageException {
+        this.logFilePath = Paths.get(logFile);
+        try {
+            int numRecords = replayLog();
+            if (numRecords > tableInfoMap.size()) {
+                compactLog();
+            }
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns if the catalog log file exists on the disk.
+     */
+    boolean logExists() {
+        return Files.exists(logFilePath);
+    }
+
+    /**
+     * Gets the catalog entry of a table, returns null if the table doesn't exist.
+     *
+     * @param tableName, the name of the table, must be in lower case
+     */
+    TableInfo getTableInfo(String tableName) {
+        return tableInfoMap.get(tableName);
+    }
+
+    /**
+     * Gets the catalog entries of all the tables.
+     */
+    Collection<TableInfo> getAllTableInfo() {
+        return Collections.unmodifiableCollection(tableInfoMap.values());
+    }
+
+    /**
+     * Adds a table to the catalog. The CREATE record is written to the log before the table becomes visible.
+     *
+     * @param tableInfo
+     * @throws StorageException
+     */
+    synchronized void addTable(TableInfo tableInfo) throws StorageException {
+        if (tableInfoMap.containsKey(tableInfo.getTableName())) {
+            throw new StorageException(String.format("Table %s already exists.", tableInfo.getTableName()));
+        }
+        try {
+            appendToLog(encodeCreateRecord(tableInfo));
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+        tableInfoMap.put(tableInfo.getTableName(), tableInfo);
+    }
+
+    /**
+     * Removes a table from the catalog. If the table doesn't exist, it won't do anything.
+     *
+     * @param tableName, the name of the table, must be in lower case
+     * @throws StorageException
+     */
+    synchronized void removeTable(String tableName) throws StorageException {
+        if (! tableInfoMap.containsKey(tableName)) {
+            return;
+        }
+        try {
+            appendToLog(encodeDeleteRecord(tableName));
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+        tableInfoMap.remove(tableName);
+    }
+
+    /*
+     * Replays the log into the in-memory map, and returns the number of records in the log.
+     * A record that is cut off at the end of the log (the process is killed while appending it) is ignored.
+     */
+    private int replayLog() throws IOException, StorageException {
+        if (! Files.exists(logFilePath)) {
+            return 0;
+        }
+        int numRecords = 0;
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(logFilePath.toFile())))) {
+            while (true) {
+                int recordType = input.read();
+                if (recordType == -1) {
+                    break;
+                }
+                if (recordType == CREATE_RECORD) {
+                    TableInfo tableInfo = decodeCreateRecord(input);
+                    tableInfoMap.put(tableInfo.getTableName(), tableInfo);
+                } else if (recordType == DELETE_RECORD) {
+                    tableInfoMap.remove(input.readUTF());
+                } else {
+                    throw new StorageException(String.format(
+                            "Catalog corrupted: unknown record type %d in %s.", recordType, logFilePath));
+                }
+                numRecords++;
+            }
+        } catch (EOFException e) {
+            // the last record is incomplete, it's rewritten by compactLog
+            numRecords++;
+        }
+        return numRecords;
+    }
+
+    /*
+     * Rewrites the log with one CREATE record for each table in the catalog.
+     * The new log is written to a temporary file first, then moved over the old log.
+     */
+    private synchronized void compactLog() throws IOException {
+        Path tempLogFilePath = Paths.get(logFilePath.toString() + ".tmp");
+        try (FileOutputStream fileOutput = new FileOutputStream(tempLogFilePath.toFile())) {
+            BufferedOutputStream output = new BufferedOutputStream(fileOutput);
+            for (TableInfo tableInfo : tableInfoMap.values()) {
+                output.write(encodeCreateRecord(tableInfo));
+            }
+            output.flush();
+            fileOutput.getFD().sync();
+        }
+        Files.move(tempLogFilePath, logFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void appendToLog(byte[] record) throws IOException {
+        Path logDirectory = logFilePath.toAbsolutePath().getParent();
+        if (logDirectory != null) {
+            Files.createDirectories(logDirectory);
+        }
+        try (FileOutputStream fileOutput = new FileOutputStream(logFilePath.toFile(), true)) {
+            fileOutput.write(record);
+            fileOutput.getFD().sync();
+        }
+    }
+
+    private static byte[] encodeCreateRecord(TableInfo tableInfo) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(CREATE_RECORD);
+        output.writeUTF(tableInfo.getTableName());
+        output.writeUTF(tableInfo.getTableDirectory());
+        output.writeUTF(tableInfo.getLuceneAnalyzerString());
+        List<Attribute> attributes = tableInfo.getTableSchema().getAttributes();
+        output.writeInt(attributes.size());
+        for (Attribute attr : attributes) {
+            output.writeUTF(attr.getAttributeName());
+            output.writeUTF(attr.getAttributeType().name());
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeDeleteRecord(String tableName) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(DELETE_RECORD);
+        output.writeUTF(tableName);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static TableInfo decodeCreateRecord(DataInputStream input) throws IOException, StorageException {
+        String tableName = input.readUTF();
+        String tableDirectory = input.readUTF();
+        String luceneAnalyzerString = input.readUTF();
+        int numAttributes = input.readInt();
+        List<Attribute> attributes = new ArrayList<>();
+        for (int i = 0; i < numAttributes; i++) {
+            String attributeName = input.readUTF();
+            String attributeType = input.readUTF();
+            try {
+                attributes.add(new Attribute(attributeName, AttributeType.valueOf(attributeType)));
+            } catch (IllegalArgumentException e) {
+                throw new StorageException(String.format(
+                        "Catalog corrupted: unknown attribute type %s of table %s.", attributeType, tableName));
+            }
+        }
+        return new TableInfo(tableName, tableDirectory,
+                new Schema(attributes.stream().toArray(Attribute[]::new)), luceneAnalyzerString);
+    }
+
+}
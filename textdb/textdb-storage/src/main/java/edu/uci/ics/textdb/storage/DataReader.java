@@ -4,26 +4,49 @@ import java.io.IOException;
 import java.nio.file.Paths;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
+import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.queries.TermsQuery;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.Directory;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 
 import edu.uci.ics.textdb.api.constants.ErrorMessages;
 import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.dataflow.IOperator;
 import edu.uci.ics.textdb.api.exception.StorageException;
+import edu.uci.ics.textdb.api.field.DoubleField;
 import edu.uci.ics.textdb.api.field.IField;
 import edu.uci.ics.textdb.api.field.ListField;
 import edu.uci.ics.textdb.api.schema.Attribute;
@@ -47,8 +70,44 @@ import edu.uci.ics.textdb.storage.utils.StorageUtils;
  * 
  * The purpose of the "payload" field is to make subsequent keyword match, fuzzy token match, and dictionary match faster,
  * because they don't need to tokenize the tuple every time.
+ * 
+ * The payload is decoded from the BinaryDocValues fields written by DataWriter (see PayloadCodec).
+ * For the indexes written before the payload fields were added, it's built from the term vectors.
+ * 
+ * DataReader streams the matching documents instead of collecting all of them in "open()".
+ * It walks the index segment by segment (one LeafReaderContext at a time), 
+ *   and advances the query's Scorer to the next matching document on every "getNextTuple()" call.
+ * The memory used by a DataReader is therefore constant, regardless of the number of matching documents.
+ * Documents are returned in index order (the order they are stored in the segments).
+ * 
+ * With more than one worker ("setNumWorkers"), the segments are scanned in parallel: 
+ *   every segment is read by a worker thread, which loads the stored fields, decodes the payload,
+ *   and puts the tuples into a bounded queue that "getNextTuple()" takes from.
+ * If "keepOrder" is true (the default), every segment has its own queue, and the queues are consumed 
+ *   in segment order, so the tuples are in index order. Otherwise all the workers share one queue.
+ * 
+ * If the number of tuples needed is known ("setLimit"), DataReader stops after returning that many tuples,
+ *   and the workers of a parallel scan stop producing tuples that will never be consumed.
+ *   
+ * 
+ * In ranked mode ("setTopK"), DataReader only returns the K documents with the highest BM25 scores, 
+ *   in the order of descending scores, and appends their scores as a DOUBLE attribute "_score".
+ * The top K documents are collected in "open()" with a bounded heap of size K, 
+ *   so the memory used doesn't depend on the number of matching documents.
+ * Ranked mode ignores the number of workers.
  *   
  * 
+ * DataReader can read a subset of the table's attributes ("setProjectedAttributeNames"). 
+ * Only the stored fields of these attributes are loaded and parsed, and the payload only contains their spans.
+ * 
+ * DataReader can also read a subset of the documents by their _IDs ("setIdFilter"),
+ *   for example the documents that can be joined with the tuples of another operator.
+ * The _IDs are added to the query as a filter, so the other documents are never loaded.
+ *   
+ * 
+ * DataReader doesn't open the Lucene index by itself. It acquires the table's shared IndexSearcher 
+ *   from RelationManager in "open()" and releases it in "close()".
+ * 
  * DataReader for a specific table is only accessible from RelationManager.
  * 
  * 
@@ -57,17 +116,59 @@ import edu.uci.ics.textdb.storage.utils.StorageUtils;
  */
 public class DataReader implements IOperator {
 
+    // the maximum number of tuples buffered by the workers of a parallel scan
+    public static final int PARALLEL_QUEUE_CAPACITY = 1024;
+    
+    // the element a worker puts into its queue after the last tuple of a segment
+    private static final Object END_OF_SEGMENT = new Object();
+
     private DataStore dataStore;
     private Query query;
+    // the _IDs of the documents to read, null means reading all the documents that match the query
+    private Set<String> idFilter;
+    // the query searched in the index, which is the query restricted to the _IDs of idFilter
+    private Query searchQuery;
     
     private Schema inputSchema;
+    // the attributes of the table that are read, all of them if projectedAttributeNames is null
+    private Schema projectedSchema;
     private Schema outputSchema;
+    // the lower case names of the attributes to read, null means reading all the attributes
+    private Set<String> projectedAttributeNames;
+    // the names of the stored fields to load, null means loading all the stored fields
+    private Set<String> storedFieldNames;
 
     private IndexReader luceneIndexReader;
     private IndexSearcher luceneIndexSearcher;
-    private ScoreDoc[] scoreDocs;
+    private Weight luceneQueryWeight;
+    
+    // the state of the cursor over the matching documents
+    private List<LeafReaderContext> leafContexts;
+    private int leafIndex;
+    private LeafCursor currentLeafCursor;
+    
+    // the top documents of ranked mode, and the index of the next one to return
+    private int topK = 0;
+    private ScoreDoc[] topScoreDocs;
+    private int topScoreDocIndex;
+    // the cursors of the segments, created when the first top document of a segment is returned
+    private LeafCursor[] rankedLeafCursors;
+    
+    // the state of a parallel scan
+    private int numWorkers = 1;
+    private boolean keepOrder = true;
+    private ExecutorService workerPool;
+    // one queue per segment if keepOrder is true, otherwise one queue shared by all the segments
+    private List<BlockingQueue<Object>> tupleQueues;
+    private int queueIndex;
+    private int numFinishedSegments;
+    // the number of tuples produced by all the workers, only used when the order is not kept
+    private AtomicInteger numProducedTuples;
+    private volatile Exception workerException;
+    private volatile boolean isScanClosed;
 
     private int cursor = CLOSED;
+    private int limit = Integer.MAX_VALUE;
 
     private boolean payloadAdded;
 
@@ -91,25 +192,45 @@ public class DataReader implements IOperator {
         if (cursor != CLOSED) {
             return;
         }
+        // the searcher is shared with all the other readers of the same table
+        luceneIndexSearcher = RelationManager.acquireIndexSearcher(this.dataStore.getDataDirectory());
+        luceneIndexReader = luceneIndexSearcher.getIndexReader();
         try {
-            String indexDirectoryStr = this.dataStore.getDataDirectory();
-            Directory indexDirectory = FSDirectory.open(Paths.get(indexDirectoryStr));
-            luceneIndexReader = DirectoryReader.open(indexDirectory);
-            luceneIndexSearcher = new IndexSearcher(luceneIndexReader);
-
-            TopDocs topDocs = luceneIndexSearcher.search(query, Integer.MAX_VALUE);
-            scoreDocs = topDocs.scoreDocs;
+            searchQuery = createSearchQuery();
+            // scores are not needed to iterate the matching documents
+            luceneQueryWeight = luceneIndexSearcher.createNormalizedWeight(searchQuery, false);
+            leafContexts = luceneIndexReader.leaves();
+            leafIndex = 0;
+            currentLeafCursor = null;
 
             inputSchema = this.dataStore.getSchema();
-            if (payloadAdded) {
-                outputSchema = Utils.addAttributeToSchema(inputSchema, SchemaConstants.PAYLOAD_ATTRIBUTE);
+            if (projectedAttributeNames == null) {
+                projectedSchema = inputSchema;
+                storedFieldNames = null;
             } else {
-                outputSchema = inputSchema;
+                projectedSchema = new Schema(inputSchema.getAttributes().stream()
+                        .filter(attr -> projectedAttributeNames.contains(attr.getAttributeName().toLowerCase()))
+                        .toArray(Attribute[]::new));
+                storedFieldNames = projectedSchema.getAttributes().stream()
+                        .map(attr -> attr.getAttributeName()).collect(Collectors.toSet());
+            }
+            outputSchema = projectedSchema;
+            if (payloadAdded) {
+                outputSchema = Utils.addAttributeToSchema(outputSchema, SchemaConstants.PAYLOAD_ATTRIBUTE);
+            }
+            if (isRanked()) {
+                outputSchema = Utils.addAttributeToSchema(outputSchema, SchemaConstants.SCORE_ATTRIBUTE);
+                collectTopScoreDocs();
             }
 
         } catch (IOException e) {
+            releaseIndexSearcher();
             throw new StorageException(e.getMessage(), e);
         }
+        
+        if (! isRanked() && numWorkers > 1 && leafContexts.size() > 1) {
+            startParallelScan();
+        }
 
         cursor = OPENED;
     }
@@ -119,17 +240,27 @@ public class DataReader implements IOperator {
         if (cursor == CLOSED) {
             throw new StorageException(ErrorMessages.OPERATOR_NOT_OPENED);
         }
+        if (cursor >= limit) {
+            return null;
+        }
 
         Tuple resultTuple;
         try {
-            if (cursor >= scoreDocs.length) {
+            if (isRanked()) {
+                resultTuple = nextRankedTuple();
+            } else if (workerPool != null) {
+                resultTuple = nextParallelTuple();
+            } else {
+                resultTuple = nextTuple();
+            }
+            if (resultTuple == null) {
                 return null;
             }
-            int docID = scoreDocs[cursor].doc;
-            resultTuple = constructTuple(docID);
-
         } catch (IOException | ParseException e) {
             throw new StorageException(e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException(e.getMessage(), e);
         }
 
         cursor++;
@@ -139,58 +270,382 @@ public class DataReader implements IOperator {
     @Override
     public void close() throws StorageException {
         cursor = CLOSED;
-        if (luceneIndexReader != null) {
-            try {
-                luceneIndexReader.close();
-                luceneIndexReader = null;
-            } catch (IOException e) {
-                throw new StorageException(e.getMessage(), e);
+        // the workers must stop before the searcher is released
+        stopParallelScan();
+        leafContexts = null;
+        currentLeafCursor = null;
+        topScoreDocs = null;
+        rankedLeafCursors = null;
+        luceneQueryWeight = null;
+        releaseIndexSearcher();
+    }
+    
+    /*
+     * Gives the shared searcher back to RelationManager instead of closing its reader.
+     */
+    private void releaseIndexSearcher() throws StorageException {
+        if (luceneIndexSearcher != null) {
+            IndexSearcher indexSearcher = luceneIndexSearcher;
+            luceneIndexSearcher = null;
+            luceneIndexReader = null;
+            RelationManager.releaseIndexSearcher(this.dataStore.getDataDirectory(), indexSearcher);
+        }
+    }
+
+    /*
+     * Returns the next tuple of a sequential scan, or null if all the segments are exhausted.
+     * Segments are visited in order, and a segment's scorer is only created when the cursor reaches it.
+     */
+    private Tuple nextTuple() throws IOException, ParseException {
+        while (true) {
+            if (currentLeafCursor != null) {
+                int docID = currentLeafCursor.nextDoc();
+                if (docID != DocIdSetIterator.NO_MORE_DOCS) {
+                    return currentLeafCursor.constructTuple(docID);
+                }
+                currentLeafCursor = null;
+            }
+            if (leafIndex >= leafContexts.size()) {
+                return null;
+            }
+            currentLeafCursor = createLeafCursor(leafContexts.get(leafIndex));
+            leafIndex++;
+        }
+    }
+    
+    /*
+     * Adds the _IDs of idFilter to the query as a filter clause, which doesn't change the scores.
+     * The _ID field is indexed as a single term, TermsQuery looks up the postings of the _IDs directly.
+     */
+    private Query createSearchQuery() {
+        if (idFilter == null) {
+            return query;
+        }
+        List<BytesRef> idTerms = idFilter.stream().map(BytesRef::new).collect(Collectors.toList());
+        return new BooleanQuery.Builder()
+                .add(query, BooleanClause.Occur.MUST)
+                .add(new TermsQuery(SchemaConstants._ID, idTerms), BooleanClause.Occur.FILTER)
+                .build();
+    }
+    
+    private boolean isRanked() {
+        return topK > 0;
+    }
+    
+    /*
+     * Collects the top documents of ranked mode. 
+     * TopScoreDocCollector keeps the best documents seen so far in a priority queue of size K (or limit, if it's smaller).
+     * 
+     * The shared searcher is not changed, a searcher with BM25 similarity is created on the same reader. 
+     * The norms written by the default similarity use the same encoding as BM25's.
+     */
+    private void collectTopScoreDocs() throws IOException {
+        IndexSearcher rankingSearcher = new IndexSearcher(luceneIndexReader);
+        rankingSearcher.setSimilarity(new BM25Similarity());
+        TopScoreDocCollector topScoreDocCollector = TopScoreDocCollector.create(Math.min(topK, limit));
+        rankingSearcher.search(searchQuery, topScoreDocCollector);
+        topScoreDocs = topScoreDocCollector.topDocs().scoreDocs;
+        topScoreDocIndex = 0;
+        rankedLeafCursors = new LeafCursor[leafContexts.size()];
+    }
+    
+    /*
+     * Returns the next tuple of ranked mode, or null if all the top documents are returned.
+     */
+    private Tuple nextRankedTuple() throws IOException, ParseException {
+        if (topScoreDocIndex >= topScoreDocs.length) {
+            return null;
+        }
+        ScoreDoc scoreDoc = topScoreDocs[topScoreDocIndex];
+        topScoreDocIndex++;
+        
+        // the doc IDs of the collector are global, find the segment of the document
+        int segmentIndex = ReaderUtil.subIndex(scoreDoc.doc, leafContexts);
+        LeafReaderContext leafContext = leafContexts.get(segmentIndex);
+        if (rankedLeafCursors[segmentIndex] == null) {
+            rankedLeafCursors[segmentIndex] = new LeafCursor(leafContext.reader(), null);
+        }
+        ArrayList<IField> docFields = rankedLeafCursors[segmentIndex].constructFields(scoreDoc.doc - leafContext.docBase);
+        docFields.add(new DoubleField((double) scoreDoc.score));
+        return new Tuple(outputSchema, docFields.stream().toArray(IField[]::new));
+    }
+    
+    /*
+     * Starts one task per segment on a pool of numWorkers threads.
+     * The tasks are submitted in segment order, so a segment is always started before the segments after it.
+     * When the order is kept, this guarantees that the segment being consumed is always being scanned (or done).
+     */
+    private void startParallelScan() {
+        int numSegments = leafContexts.size();
+        tupleQueues = new ArrayList<>();
+        // a queue holds at most (limit + 1) elements: the tuples and END_OF_SEGMENT
+        int totalCapacity = (int) Math.min(PARALLEL_QUEUE_CAPACITY, (long) limit + 1);
+        if (keepOrder) {
+            int queueCapacity = Math.max(1, totalCapacity / numSegments);
+            for (int i = 0; i < numSegments; i++) {
+                tupleQueues.add(new ArrayBlockingQueue<>(queueCapacity));
             }
+        } else {
+            tupleQueues.add(new ArrayBlockingQueue<>(totalCapacity));
+        }
+        queueIndex = 0;
+        numFinishedSegments = 0;
+        numProducedTuples = new AtomicInteger(0);
+        workerException = null;
+        isScanClosed = false;
+        
+        workerPool = Executors.newFixedThreadPool(Math.min(numWorkers, numSegments), runnable -> {
+            Thread thread = new Thread(runnable, "DataReader-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < numSegments; i++) {
+            LeafReaderContext leafContext = leafContexts.get(i);
+            BlockingQueue<Object> tupleQueue = keepOrder ? tupleQueues.get(i) : tupleQueues.get(0);
+            workerPool.execute(() -> scanSegment(leafContext, tupleQueue));
         }
     }
+    
+    /*
+     * The task of a worker: puts the tuples of a segment into the queue, followed by END_OF_SEGMENT.
+     * An exception is passed to the consuming thread through workerException.
+     */
+    private void scanSegment(LeafReaderContext leafContext, BlockingQueue<Object> tupleQueue) {
+        try {
+            LeafCursor leafCursor = createLeafCursor(leafContext);
+            if (leafCursor != null) {
+                int numSegmentTuples = 0;
+                int docID;
+                // a segment never needs to produce more than limit tuples, 
+                //   and neither do all the segments together if the order is not kept
+                while (numSegmentTuples < limit 
+                        && (keepOrder || numProducedTuples.get() < limit)
+                        && (docID = leafCursor.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+                    // a slot of the shared limit is only taken for a document that is found,
+                    //   so the segments without more documents don't use up the limit
+                    if (! keepOrder && numProducedTuples.getAndIncrement() >= limit) {
+                        break;
+                    }
+                    if (! putIntoQueue(tupleQueue, leafCursor.constructTuple(docID))) {
+                        return;
+                    }
+                    numSegmentTuples++;
+                }
+            }
+        } catch (IOException | ParseException | RuntimeException e) {
+            workerException = e;
+        } catch (InterruptedException e) {
+            return;
+        }
+        try {
+            putIntoQueue(tupleQueue, END_OF_SEGMENT);
+        } catch (InterruptedException e) {
+            return;
+        }
+    }
+    
+    /*
+     * Puts an element into a queue, waits while the queue is full.
+     * Returns false if the scan is closed in the meantime.
+     * 
+     * The workers are not interrupted to stop them, because interrupting a thread that reads 
+     *   from an NIO channel closes the channel of the shared index reader.
+     */
+    private boolean putIntoQueue(BlockingQueue<Object> tupleQueue, Object element) throws InterruptedException {
+        while (! tupleQueue.offer(element, 100, TimeUnit.MILLISECONDS)) {
+            if (isScanClosed) {
+                return false;
+            }
+        }
+        return ! isScanClosed;
+    }
+    
+    /*
+     * Returns the next tuple of a parallel scan, or null if all the segments are exhausted.
+     */
+    private Tuple nextParallelTuple() throws InterruptedException, StorageException {
+        while (true) {
+            if (workerException != null) {
+                throw new StorageException(workerException.getMessage(), workerException);
+            }
+            if (keepOrder) {
+                if (queueIndex >= tupleQueues.size()) {
+                    return null;
+                }
+                Object element = tupleQueues.get(queueIndex).take();
+                if (element == END_OF_SEGMENT) {
+                    queueIndex++;
+                    continue;
+                }
+                return (Tuple) element;
+            } else {
+                if (numFinishedSegments >= leafContexts.size()) {
+                    return null;
+                }
+                Object element = tupleQueues.get(0).take();
+                if (element == END_OF_SEGMENT) {
+                    numFinishedSegments++;
+                    continue;
+                }
+                return (Tuple) element;
+            }
+        }
+    }
+    
+    /*
+     * Stops the workers of a parallel scan and waits for them to exit.
+     */
+    private void stopParallelScan() throws StorageException {
+        if (workerPool == null) {
+            return;
+        }
+        isScanClosed = true;
+        workerPool.shutdown();
+        try {
+            workerPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException(e.getMessage(), e);
+        } finally {
+            workerPool = null;
+            tupleQueues = null;
+        }
+    }
+    
+    /*
+     * Creates the cursor over the matching documents of a segment, 
+     *   returns null if no document in this segment matches the query.
+     */
+    private LeafCursor createLeafCursor(LeafReaderContext leafContext) throws IOException {
+        Scorer scorer = luceneQueryWeight.scorer(leafContext);
+        if (scorer == null) {
+            return null;
+        }
+        return new LeafCursor(leafContext.reader(), scorer.iterator());
+    }
+    
+    /*
+     * LeafCursor iterates the matching documents of one segment, and constructs the tuples.
+     * A LeafCursor is only used by one thread, but different LeafCursors can be used by different threads.
+     */
+    private class LeafCursor {
+        private final LeafReader leafReader;
+        private final Bits liveDocs;
+        // null if the cursor is only used to construct tuples (in ranked mode)
+        private final DocIdSetIterator docIterator;
+        // the payload doc values of the segment, the element at position i is for the attribute at position i
+        private final BinaryDocValues[] payloadDocValues;
+        
+        private LeafCursor(LeafReader leafReader, DocIdSetIterator docIterator) throws IOException {
+            this.leafReader = leafReader;
+            this.liveDocs = leafReader.getLiveDocs();
+            this.docIterator = docIterator;
+            this.payloadDocValues = payloadAdded ? getPayloadDocValues() : null;
+        }
+        
+        /*
+         * Returns the segment-local docID of the next live matching document, or NO_MORE_DOCS.
+         */
+        private int nextDoc() throws IOException {
+            int docID;
+            while ((docID = docIterator.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+                // skip the documents that are deleted but not merged away yet
+                if (liveDocs == null || liveDocs.get(docID)) {
+                    return docID;
+                }
+            }
+            return DocIdSetIterator.NO_MORE_DOCS;
+        }
 
-    private Tuple constructTuple(int docID) throws IOException, ParseException {
-        Document luceneDocument = luceneIndexSearcher.doc(docID);
-        ArrayList<IField> docFields = documentToFields(luceneDocument);
+        /*
+         * Constructs a tuple from a document in the segment, docID is segment-local.
+         */
+        private Tuple constructTuple(int docID) throws IOException, ParseException {
+            ArrayList<IField> docFields = constructFields(docID);
+            return new Tuple(outputSchema, docFields.stream().toArray(IField[]::new));
+        }
+        
+        /*
+         * Constructs the fields of the projected attributes and the payload of a document.
+         */
+        private ArrayList<IField> constructFields(int docID) throws IOException, ParseException {
+            Document luceneDocument;
+            if (storedFieldNames == null) {
+                luceneDocument = leafReader.document(docID);
+            } else {
+                // only load the stored fields of the projected attributes
+                DocumentStoredFieldVisitor storedFieldVisitor = new DocumentStoredFieldVisitor(storedFieldNames);
+                leafReader.document(docID, storedFieldVisitor);
+                luceneDocument = storedFieldVisitor.getDocument();
+            }
+            ArrayList<IField> docFields = documentToFields(luceneDocument);
 
-        if (payloadAdded) {
-            ArrayList<Span> payloadSpanList = buildPayloadFromTermVector(docFields, docID);
-            ListField<Span> payloadField = new ListField<Span>(payloadSpanList);
-            docFields.add(payloadField);
+            if (payloadAdded) {
+                ArrayList<Span> payloadSpanList = buildPayload(docFields, docID);
+                ListField<Span> payloadField = new ListField<Span>(payloadSpanList);
+                docFields.add(payloadField);
+            }
+            return docFields;
         }
 
-        Tuple resultTuple = new Tuple(outputSchema, docFields.stream().toArray(IField[]::new));
-        return resultTuple;
-    }
+        private ArrayList<IField> documentToFields(Document luceneDocument) throws ParseException {
+            ArrayList<IField> fields = new ArrayList<>();
+            for (Attribute attr : projectedSchema.getAttributes()) {
+                AttributeType attributeType = attr.getAttributeType();
+                String fieldValue = luceneDocument.get(attr.getAttributeName());
+                fields.add(StorageUtils.getField(attributeType, fieldValue));
+            }
+            return fields;
+        }
 
-    private ArrayList<IField> documentToFields(Document luceneDocument) throws ParseException {
-        ArrayList<IField> fields = new ArrayList<>();
-        for (Attribute attr : inputSchema.getAttributes()) {
-            AttributeType attributeType = attr.getAttributeType();
-            String fieldValue = luceneDocument.get(attr.getAttributeName());
-            fields.add(StorageUtils.getField(attributeType, fieldValue));
+        /*
+         * Gets the payload doc values of all the TEXT attributes in the segment.
+         */
+        private BinaryDocValues[] getPayloadDocValues() throws IOException {
+            List<Attribute> attributes = projectedSchema.getAttributes();
+            BinaryDocValues[] payloadDocValues = new BinaryDocValues[attributes.size()];
+            for (int i = 0; i < attributes.size(); i++) {
+                Attribute attr = attributes.get(i);
+                if (attr.getAttributeType() == AttributeType.TEXT) {
+                    payloadDocValues[i] = leafReader.getBinaryDocValues(
+                            PayloadCodec.getPayloadFieldName(attr.getAttributeName()));
+                }
+            }
+            return payloadDocValues;
         }
-        return fields;
-    }
 
-    private ArrayList<Span> buildPayloadFromTermVector(List<IField> fields, int docID) throws IOException {
-        ArrayList<Span> payloadSpanList = new ArrayList<>();
+        private ArrayList<Span> buildPayload(List<IField> fields, int docID) throws IOException {
+            ArrayList<Span> payloadSpanList = new ArrayList<>();
+
+            List<Attribute> attributes = projectedSchema.getAttributes();
+            for (int i = 0; i < attributes.size(); i++) {
+                Attribute attr = attributes.get(i);
+                // We only store positional information for TEXT fields into
+                // payload.
+                if (attr.getAttributeType() != AttributeType.TEXT) {
+                    continue;
+                }
 
-        for (Attribute attr : inputSchema.getAttributes()) {
-            String attributeName = attr.getAttributeName();
-            AttributeType attributeType = attr.getAttributeType();
+                String attributeName = attr.getAttributeName();
+                String fieldValue = fields.get(i).getValue().toString();
 
-            // We only store positional information for TEXT fields into
-            // payload.
-            if (attributeType != AttributeType.TEXT) {
-                continue;
+                BytesRef encodedTokens = payloadDocValues[i] == null ? null : payloadDocValues[i].get(docID);
+                // a document without the payload field gets an empty value
+                if (encodedTokens != null && encodedTokens.length > 0) {
+                    PayloadCodec.decode(encodedTokens, attributeName, fieldValue, payloadSpanList);
+                } else {
+                    buildPayloadFromTermVector(attributeName, fieldValue, docID, payloadSpanList);
+                }
             }
 
-            String fieldValue = fields.get(inputSchema.getIndex(attributeName)).getValue().toString();
+            return payloadSpanList;
+        }
 
-            Terms termVector = luceneIndexReader.getTermVector(docID, attributeName);
+        private void buildPayloadFromTermVector(String attributeName, String fieldValue, int docID, 
+                List<Span> payloadSpanList) throws IOException {
+            Terms termVector = leafReader.getTermVector(docID, attributeName);
             if (termVector == null) {
-                continue;
+                return;
             }
 
             TermsEnum termsEnum = termVector.iterator();
@@ -215,8 +670,6 @@ public class DataReader implements IOperator {
                 }
             }
         }
-
-        return payloadSpanList;
     }
     
     public boolean isPayloadAdded() {
@@ -227,6 +680,96 @@ public class DataReader implements IOperator {
         this.payloadAdded = payloadAdded;
     }
 
+    /**
+     * Sets the attributes to read, the other attributes of the table are neither loaded nor returned.
+     * The names are matched case-insensitively, and the names that are not in the table are ignored.
+     * It must be set before the DataReader is opened.
+     * 
+     * @param attributeNames, the names of the attributes to read, or null to read all the attributes
+     */
+    public void setProjectedAttributeNames(Collection<String> attributeNames) {
+        if (attributeNames == null) {
+            this.projectedAttributeNames = null;
+        } else {
+            this.projectedAttributeNames = new HashSet<>();
+            for (String attributeName : attributeNames) {
+                this.projectedAttributeNames.add(attributeName.toLowerCase());
+            }
+        }
+    }
+    
+    /**
+     * Sets the number of threads that scan the segments of the index in parallel, the default is 1 (no parallelism).
+     * It must be set before the DataReader is opened.
+     * 
+     * @param numWorkers
+     */
+    public void setNumWorkers(int numWorkers) {
+        this.numWorkers = numWorkers;
+    }
+    
+    public int getNumWorkers() {
+        return this.numWorkers;
+    }
+    
+    /**
+     * Sets if a parallel scan returns the tuples in index order, the default is true.
+     * If it's false, the tuples are returned as soon as any worker produces them.
+     * It must be set before the DataReader is opened.
+     * 
+     * @param keepOrder
+     */
+    public void setKeepOrder(boolean keepOrder) {
+        this.keepOrder = keepOrder;
+    }
+    
+    public boolean isKeepOrder() {
+        return this.keepOrder;
+    }
+    
+    /**
+     * Sets the number of top-scored documents to return in ranked mode, 0 (the default) means not ranked.
+     * It must be set before the DataReader is opened.
+     * 
+     * @param topK
+     */
+    public void setTopK(int topK) {
+        this.topK = topK;
+    }
+    
+    public int getTopK() {
+        return this.topK;
+    }
+    
+    /**
+     * Sets the maximum number of tuples to return, the default is Integer.MAX_VALUE.
+     * It must be set before the DataReader is opened.
+     * 
+     * @param limit
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+    
+    public int getLimit() {
+        return this.limit;
+    }
+    
+    /**
+     * Sets the _IDs of the documents to read, the other documents are skipped in the index
+     *   without loading their stored fields.
+     * It must be set before the DataReader is opened.
+     * 
+     * @param ids, the _IDs of the documents to read, or null to read all the documents that match the query
+     */
+    public void setIdFilter(Collection<String> ids) {
+        this.idFilter = ids == null ? null : new HashSet<>(ids);
+    }
+    
+    public Set<String> getIdFilter() {
+        return this.idFilter;
+    }
+    
     public Schema getOutputSchema() {
         return outputSchema;
     }
@@ -12,11 +12,11 @@ public class DataStore {
         this.schema = schema;
     }
 
-    public void incrementNumDocuments(int incrementBy) {
+    public synchronized void incrementNumDocuments(int incrementBy) {
         numDocuments += incrementBy;
     }
 
-    public int getNumDocuments() {
+    public synchronized int getNumDocuments() {
         return numDocuments;
     }
 
@@ -3,11 +3,21 @@ package edu.uci.ics.textdb.storage;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
@@ -36,6 +46,17 @@ import edu.uci.ics.textdb.storage.utils.StorageUtils;
  *   DataWriter will assign an random generated "_id" field to every tuple
  *   that is being inserted to the table.
  *   
+ *   "insertTuples" inserts a batch of tuples: the schema is validated once per batch, 
+ *   and the Lucene document and fields are reused for all the tuples in the batch.
+ *   It can be called by multiple threads at the same time to feed the shared IndexWriter in parallel.
+ *   
+ *   "addTuple" buffers the tuples into batches of {@code INSERT_BATCH_SIZE}, and "flushTuples" inserts the rest.
+ *   With more than one insert worker, the batches are inserted by a pool of worker threads,
+ *   and the errors of the workers are thrown to the thread that adds or flushes the tuples.
+ *   
+ *   The tokens of every TEXT field (term, position and offsets) are encoded by PayloadCodec 
+ *   and stored in a BinaryDocValues field, so that DataReader can build the payload without term vectors.
+ *   
  * Delete Operations:
  *   DataWriter can handle deletions according to one or more Lucene queries.
  *   It also supports clear all tuples in a table.
@@ -45,6 +66,9 @@ import edu.uci.ics.textdb.storage.utils.StorageUtils;
  *   DataWriter can update the tuple, with the tuple's _id remaining the same.
  *   
  *   
+ * After the changes are committed in "close()", DataWriter refreshes the table's shared searcher in RelationManager,
+ *   so that the DataReaders opened afterwards can see the changes.
+ *   
  * DataWriter for a specific table is only accessible from RelationManager.
  * 
  * 
@@ -53,14 +77,25 @@ import edu.uci.ics.textdb.storage.utils.StorageUtils;
  */
 public class DataWriter {
 
+    public static final int INSERT_BATCH_SIZE = 1000;
+
     private String indexDirectory;
     private Schema schema;
     private DataStore dataStore;
     private Analyzer analyzer;
 
     private IndexWriter luceneIndexWriter;
+    // the size of the RAM buffer before Lucene flushes a segment, Lucene's default is used if it's not set
+    private double ramBufferSizeMB = IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB;
+    
+    private volatile boolean isOpen = false;
     
-    private boolean isOpen = false;
+    // the tuples added by addTuple that are not inserted yet
+    private List<Tuple> currentBatch = new ArrayList<>();
+    private int numInsertWorkers = 1;
+    // the pool of the threads that insert the batches, null if the batches are inserted by the caller
+    private ExecutorService insertWorkerPool;
+    private List<Future<?>> pendingBatches = new ArrayList<>();
 
     /*
      * The package-only level constructor is only accessible inside the storage package.
@@ -87,15 +122,58 @@ public class DataWriter {
             try {
                 Directory directory = FSDirectory.open(Paths.get(this.indexDirectory));
                 IndexWriterConfig conf = new IndexWriterConfig(analyzer);
+                conf.setRAMBufferSizeMB(ramBufferSizeMB);
                 this.luceneIndexWriter = new IndexWriter(directory, conf);
                 this.isOpen = true;
             } catch (IOException e) {
                 throw new StorageException(e.getMessage(), e);
             }
         }
+        if (this.numInsertWorkers > 1 && this.insertWorkerPool == null) {
+            // the bounded queue with the caller-runs policy makes the adding thread
+            //   insert a batch by itself when all the workers are busy, instead of buffering more batches
+            this.insertWorkerPool = new ThreadPoolExecutor(numInsertWorkers, numInsertWorkers, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(numInsertWorkers), new ThreadPoolExecutor.CallerRunsPolicy());
+        }
     }
 
+    /**
+     * Closes the writer and commits the changes.
+     * The tuples added but not flushed are inserted first, and the insert workers are stopped.
+     * If a batch can't be inserted, the changes since the last commit are rolled back instead of committed.
+     * 
+     * @throws StorageException, if a batch can't be inserted, or the writer can't be closed
+     */
     public void close() throws StorageException {
+        StorageException insertException = null;
+        try {
+            flushTuples();
+        } catch (StorageException e) {
+            insertException = e;
+        }
+        if (this.insertWorkerPool != null) {
+            this.insertWorkerPool.shutdown();
+            try {
+                this.insertWorkerPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StorageException(e.getMessage(), e);
+            }
+            this.insertWorkerPool = null;
+        }
+        this.pendingBatches = new ArrayList<>();
+        this.currentBatch = new ArrayList<>();
+        if (this.luceneIndexWriter != null && insertException != null) {
+            try {
+                this.luceneIndexWriter.rollback();
+                this.isOpen = false;
+            } catch (IOException e) {
+                insertException.addSuppressed(e);
+            }
+        }
+        if (insertException != null) {
+            throw insertException;
+        }
         if (this.luceneIndexWriter != null) {
             try {
                 this.luceneIndexWriter.close();
@@ -103,6 +181,8 @@ public class DataWriter {
             } catch (IOException e) {
                 throw new StorageException(e.getMessage(), e);
             }
+            // closing the writer commits the changes, let the table's readers see them
+            RelationManager.refreshIndexSearcher(this.indexDirectory);
         }
     }
 
@@ -118,36 +198,215 @@ public class DataWriter {
         }
     }
 
-    public IDField insertTuple(Tuple tuple) throws StorageException {
-        if (! isOpen) {
-            throw new StorageException(ErrorMessages.OPERATOR_NOT_OPENED);
+    /**
+     * Sets the size of the RAM buffer that Lucene uses before flushing a new segment to the disk.
+     * It must be set before the DataWriter is opened.
+     * 
+     * @param ramBufferSizeMB
+     */
+    public void setRAMBufferSizeMB(double ramBufferSizeMB) {
+        this.ramBufferSizeMB = ramBufferSizeMB;
+    }
+
+    /**
+     * Sets the number of threads that insert the batches of the tuples added by "addTuple", the default is 1,
+     *   which means that the batches are inserted by the thread that adds the tuples.
+     * It must be set before the DataWriter is opened.
+     * 
+     * @param numInsertWorkers
+     * @throws StorageException
+     */
+    public void setNumInsertWorkers(int numInsertWorkers) throws StorageException {
+        if (numInsertWorkers < 1) {
+            throw new StorageException("number of insert workers must be at least 1");
         }
-        try {
-            // tuple must not contain _id field
-            if (tuple.getSchema().containsField(SchemaConstants._ID)) {
-                throw new StorageException("Tuple must not contain _id field. _id must be generated by the system");
+        this.numInsertWorkers = numInsertWorkers;
+    }
+
+    /**
+     * Adds a tuple to the current batch, and inserts the batch once it's full.
+     * The tuples in the last batch are only inserted by "flushTuples".
+     * 
+     * It must be called by one thread at a time.
+     * 
+     * @param tuple, the tuple to insert, it must not contain the _id field
+     * @throws StorageException, if the tuple or a batch inserted by a worker can't be inserted
+     */
+    public void addTuple(Tuple tuple) throws StorageException {
+        currentBatch.add(tuple);
+        if (currentBatch.size() >= INSERT_BATCH_SIZE) {
+            insertCurrentBatch();
+        }
+    }
+
+    /**
+     * Inserts the tuples added by "addTuple" that are not inserted yet, 
+     *   and waits until the insert workers finish all the batches.
+     * 
+     * @throws StorageException, if a batch can't be inserted
+     */
+    public void flushTuples() throws StorageException {
+        insertCurrentBatch();
+        waitForPendingBatches(true);
+    }
+
+    private void insertCurrentBatch() throws StorageException {
+        if (currentBatch.isEmpty()) {
+            return;
+        }
+        List<Tuple> batch = currentBatch;
+        currentBatch = new ArrayList<>();
+
+        if (insertWorkerPool == null) {
+            insertTuples(batch);
+        } else {
+            pendingBatches.add(insertWorkerPool.submit(() -> insertTuples(batch)));
+            // report the errors of the finished batches as early as possible
+            waitForPendingBatches(false);
+        }
+    }
+
+    /*
+     * Removes the finished batches from the pending list, and re-throws the error of a failed batch.
+     * If waitForAll is true, it blocks until all the pending batches are finished.
+     */
+    private void waitForPendingBatches(boolean waitForAll) throws StorageException {
+        Iterator<Future<?>> pendingIterator = pendingBatches.iterator();
+        while (pendingIterator.hasNext()) {
+            Future<?> pendingBatch = pendingIterator.next();
+            if (! waitForAll && ! pendingBatch.isDone()) {
+                continue;
             }
-            
-            // generate a random ID for this tuple
-            IDField idField = new IDField(UUID.randomUUID().toString());
-            Tuple tupleWithID = getTupleWithID(tuple, idField);
-            
-            // make sure the tuple's schema agrees with the table's schema
-            if (! tupleWithID.getSchema().equals(this.schema)) {
-                throw new StorageException("Tuple's schema is not the same as the table's schema");
+            pendingIterator.remove();
+            try {
+                pendingBatch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StorageException(e.getMessage(), e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof StorageException) {
+                    throw (StorageException) e.getCause();
+                }
+                throw new StorageException(e.getCause().getMessage(), e.getCause());
             }
-            
-            Document document = getLuceneDocument(tupleWithID);
-            this.luceneIndexWriter.addDocument(document);
-            this.dataStore.incrementNumDocuments(1);
-            
-            return idField;
+        }
+    }
+
+    public IDField insertTuple(Tuple tuple) throws StorageException {
+        try {
+            return writeTuples(Collections.singletonList(tuple)).get(0);
         } catch (IOException e) {
             close();
             throw new StorageException(e.getMessage(), e);
         }
     }
     
+    /**
+     * Inserts a batch of tuples, and returns the generated IDs in the same order.
+     * 
+     * The tuples' schema is only validated when it changes within the batch (usually once),
+     *   and one Lucene document with one set of Lucene fields is reused for all the tuples.
+     * 
+     * This method is thread-safe, multiple threads can insert different batches at the same time.
+     * Unlike the other write operations, it doesn't close the DataWriter if the batch can't be written,
+     *   since it may run in a worker thread, the caller closes it after the error is reported.
+     * 
+     * @param tuples, the tuples to insert, they must not contain the _id field
+     * @return the list of generated IDs
+     * @throws StorageException
+     */
+    public List<IDField> insertTuples(Iterable<Tuple> tuples) throws StorageException {
+        try {
+            return writeTuples(tuples);
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+    
+    private List<IDField> writeTuples(Iterable<Tuple> tuples) throws StorageException, IOException {
+        if (! isOpen) {
+            throw new StorageException(ErrorMessages.OPERATOR_NOT_OPENED);
+        }
+        List<IDField> idFieldList = new ArrayList<>();
+        
+        Schema validatedSchema = null;
+        List<Attribute> attributes = this.schema.getAttributes();
+        // the reusable document and its fields, the field at position i is for the attribute at position i
+        Document document = null;
+        Field[] luceneFields = null;
+        // the reusable payload fields, the field at position i is for the TEXT attribute at position i
+        BinaryDocValuesField[] payloadFields = null;
+        
+        try {
+            for (Tuple tuple : tuples) {
+                if (tuple.getSchema() != validatedSchema) {
+                    validateTupleSchema(tuple.getSchema());
+                    validatedSchema = tuple.getSchema();
+                }
+                
+                // generate a random ID for this tuple
+                IDField idField = new IDField(UUID.randomUUID().toString());
+                
+                if (document == null) {
+                    document = new Document();
+                    luceneFields = new Field[attributes.size()];
+                    payloadFields = new BinaryDocValuesField[attributes.size()];
+                    for (int i = 0; i < attributes.size(); i++) {
+                        Attribute attr = attributes.get(i);
+                        Object fieldValue = i == 0 ? idField.getValue() : tuple.getField(i - 1).getValue();
+                        luceneFields[i] = (Field) StorageUtils.getLuceneField(
+                                attr.getAttributeType(), attr.getAttributeName(), fieldValue);
+                        document.add(luceneFields[i]);
+                        if (attr.getAttributeType() == AttributeType.TEXT) {
+                            payloadFields[i] = getPayloadField(attr.getAttributeName(), (String) fieldValue);
+                            document.add(payloadFields[i]);
+                        }
+                    }
+                } else {
+                    StorageUtils.setLuceneFieldValue(luceneFields[0], attributes.get(0).getAttributeType(), idField.getValue());
+                    for (int i = 1; i < attributes.size(); i++) {
+                        Attribute attr = attributes.get(i);
+                        Object fieldValue = tuple.getField(i - 1).getValue();
+                        StorageUtils.setLuceneFieldValue(luceneFields[i], attr.getAttributeType(), fieldValue);
+                        if (payloadFields[i] != null) {
+                            payloadFields[i].setBytesValue(
+                                    PayloadCodec.encode(analyzer, attr.getAttributeName(), (String) fieldValue));
+                        }
+                    }
+                }
+                
+                this.luceneIndexWriter.addDocument(document);
+                idFieldList.add(idField);
+            }
+        } finally {
+            this.dataStore.incrementNumDocuments(idFieldList.size());
+        }
+        
+        return idFieldList;
+    }
+    
+    /*
+     * Creates the BinaryDocValues field that stores the encoded tokens of a TEXT field.
+     */
+    private BinaryDocValuesField getPayloadField(String attributeName, String fieldValue) throws IOException {
+        return new BinaryDocValuesField(PayloadCodec.getPayloadFieldName(attributeName), 
+                PayloadCodec.encode(analyzer, attributeName, fieldValue));
+    }
+    
+    /*
+     * Checks if the schema of the tuples to be inserted agrees with the table's schema.
+     */
+    private void validateTupleSchema(Schema tupleSchema) throws StorageException {
+        // tuple must not contain _id field
+        if (tupleSchema.containsField(SchemaConstants._ID)) {
+            throw new StorageException("Tuple must not contain _id field. _id must be generated by the system");
+        }
+        // make sure the tuple's schema agrees with the table's schema
+        if (! Utils.getSchemaWithID(tupleSchema).equals(this.schema)) {
+            throw new StorageException("Tuple's schema is not the same as the table's schema");
+        }
+    }
+    
     /**
      * Deletes a tuple by its ID field.
      * 
@@ -214,7 +473,7 @@ public class DataWriter {
     /*
      * Converts a TextDB tuple to a Lucene document
      */
-    private static Document getLuceneDocument(Tuple tuple) {
+    private Document getLuceneDocument(Tuple tuple) throws IOException {
         List<IField> fields = tuple.getFields();
         List<Attribute> attributes = tuple.getSchema().getAttributes();
         Document doc = new Document();
@@ -223,6 +482,9 @@ public class DataWriter {
             Attribute attr = attributes.get(count);
             AttributeType attributeType = attr.getAttributeType();
             doc.add(StorageUtils.getLuceneField(attributeType, attr.getAttributeName(), field.getValue()));
+            if (attributeType == AttributeType.TEXT) {
+                doc.add(getPayloadField(attr.getAttributeName(), (String) field.getValue()));
+            }
         }
         return doc;
     }
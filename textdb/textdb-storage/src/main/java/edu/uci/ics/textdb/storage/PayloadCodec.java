@@ -0,0 +1,158 @@
+package edu.uci.ics.textdb.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.BytesRef;
+
+import edu.uci.ics.textdb.api.span.Span;
+
+/**
+ * PayloadCodec encodes the tokens of a TEXT field into a compact binary value,
+ *   which is stored in a BinaryDocValues field next to the TEXT field at index time.
+ * DataReader decodes the value sequentially to build the "payload" of a tuple,
+ *   instead of enumerating the term vector of the field.
+ *
+ * Format (Lucene's variable-length ints):
+ *   VInt numTerms, (VInt termLength, UTF-8 bytes) for each distinct term, sorted by the term bytes
+ *   VInt numTokens, (VInt termOrdDelta, VInt position, ZInt startDelta, VInt length) for each token
+ *
+ * The tokens are sorted by (term, position), which is the same order as the term vector.
+ * termOrdDelta is the difference to the previous token's term ordinal (the ordinal before the first token is -1).
+ * The position is the difference to the previous token's position if the term is the same,
+ *   otherwise it's the absolute position.
+ * startDelta is the difference to the previous token's start offset, length is (end - start).
+ *
+ * PayloadCodec is only accessible inside the storage package, it's used by DataWriter and DataReader.
+ *
+ */
+class PayloadCodec {
+
+    private static final String PAYLOAD_FIELD_PREFIX = "_payload_";
+
+    private PayloadCodec() {
+    }
+
+    /**
+     * Gets the name of the BinaryDocValues field that stores the payload of a TEXT attribute.
+     */
+    static String getPayloadFieldName(String attributeName) {
+        return PAYLOAD_FIELD_PREFIX + attributeName;
+    }
+
+    /**
+     * Analyzes a TEXT field value and encodes its tokens.
+     * The positions and offsets are the same as the ones Lucene indexes for a field with a single value.
+     *
+     * @param analyzer, the table's analyzer
+     * @param attributeName
+     * @param fieldValue
+     * @return the encoded tokens
+     * @throws IOException
+     */
+    static BytesRef encode(Analyzer analyzer, String attributeName, String fieldValue) throws IOException {
+        // term -> the tokens of the term, each token is {position, start, end}, in the order of positions
+        TreeMap<BytesRef, List<int[]>> termTokens = new TreeMap<>();
+        int numTokens = 0;
+
+        try (TokenStream tokenStream = analyzer.tokenStream(attributeName, fieldValue)) {
+            CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offsetAttribute = tokenStream.addAttribute(OffsetAttribute.class);
+            PositionIncrementAttribute positionAttribute = tokenStream.addAttribute(PositionIncrementAttribute.class);
+
+            tokenStream.reset();
+            int position = -1;
+            while (tokenStream.incrementToken()) {
+                position += positionAttribute.getPositionIncrement();
+                BytesRef term = new BytesRef(termAttribute);
+                List<int[]> tokens = termTokens.get(term);
+                if (tokens == null) {
+                    tokens = new ArrayList<>();
+                    termTokens.put(term, tokens);
+                }
+                tokens.add(new int[] { position, offsetAttribute.startOffset(), offsetAttribute.endOffset() });
+                numTokens++;
+            }
+            tokenStream.end();
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStreamDataOutput output = new OutputStreamDataOutput(bytes);
+        output.writeVInt(termTokens.size());
+        for (BytesRef term : termTokens.keySet()) {
+            output.writeVInt(term.length);
+            output.writeBytes(term.bytes, term.offset, term.length);
+        }
+
+        output.writeVInt(numTokens);
+        int previousStart = 0;
+        for (List<int[]> tokens : termTokens.values()) {
+            // the first token of every term moves to the next term ordinal and has an absolute position
+            int termOrdDelta = 1;
+            int previousPosition = 0;
+            for (int[] token : tokens) {
+                output.writeVInt(termOrdDelta);
+                output.writeVInt(token[0] - previousPosition);
+                output.writeZInt(token[1] - previousStart);
+                output.writeVInt(token[2] - token[1]);
+                termOrdDelta = 0;
+                previousPosition = token[0];
+                previousStart = token[1];
+            }
+        }
+        output.close();
+
+        return new BytesRef(bytes.toByteArray());
+    }
+
+    /**
+     * Decodes the tokens of a TEXT field and adds a span for each token to the payload list.
+     *
+     * @param encodedTokens, the value encoded by "encode"
+     * @param attributeName
+     * @param fieldValue, the original field value, used to get the original text of the tokens
+     * @param payloadSpanList, the list the spans are added to
+     * @throws IOException
+     */
+    static void decode(BytesRef encodedTokens, String attributeName, String fieldValue, List<Span> payloadSpanList)
+            throws IOException {
+        ByteArrayDataInput input = new ByteArrayDataInput(encodedTokens.bytes, encodedTokens.offset, encodedTokens.length);
+
+        int numTerms = input.readVInt();
+        String[] terms = new String[numTerms];
+        for (int i = 0; i < numTerms; i++) {
+            int termLength = input.readVInt();
+            terms[i] = new String(encodedTokens.bytes, input.getPosition(), termLength, StandardCharsets.UTF_8);
+            input.skipBytes(termLength);
+        }
+
+        int numTokens = input.readVInt();
+        int termOrd = -1;
+        int position = 0;
+        int start = 0;
+        for (int i = 0; i < numTokens; i++) {
+            int termOrdDelta = input.readVInt();
+            if (termOrdDelta > 0) {
+                termOrd += termOrdDelta;
+                position = input.readVInt();
+            } else {
+                position += input.readVInt();
+            }
+            start += input.readZInt();
+            int end = start + input.readVInt();
+            payloadSpanList.add(new Span(attributeName, start, end, terms[termOrd], fieldValue.substring(start, end), position));
+        }
+    }
+
+}
@@ -2,21 +2,27 @@ package edu.uci.ics.textdb.storage;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 
 import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.StorageException;
 import edu.uci.ics.textdb.api.field.IDField;
-import edu.uci.ics.textdb.api.field.IField;
 import edu.uci.ics.textdb.api.schema.Attribute;
 import edu.uci.ics.textdb.api.schema.AttributeType;
 import edu.uci.ics.textdb.api.schema.Schema;
@@ -29,9 +35,20 @@ public class RelationManager {
     
     private static volatile RelationManager singletonRelationManager = null;
     
+    // one shared, reference-counted Lucene searcher for each index directory (table)
+    private static final ConcurrentHashMap<String, TableSearcher> tableSearcherMap = new ConcurrentHashMap<>();
+    
+    // the in-memory system catalog, persisted in a log file
+    private final CatalogManager catalogManager;
+    
     private RelationManager() throws StorageException {
-        if (! checkCatalogExistence()) {
-            initializeCatalog();
+        catalogManager = new CatalogManager(CatalogConstants.CATALOG_LOG_FILE);
+        if (! catalogManager.logExists()) {
+            if (checkCatalogExistence()) {
+                migrateLuceneCatalog();
+            } else {
+                initializeCatalog();
+            }
         }
     }
 
@@ -53,13 +70,7 @@ public class RelationManager {
      * @return
      */
     public boolean checkTableExistence(String tableName) {
-        try {
-            tableName = tableName.toLowerCase();
-            return getTableCatalogTuple(tableName) != null;
-        } catch (StorageException e) {
-            // TODO: change it to textdb runtime exception
-            throw new RuntimeException(e);
-        }
+        return getTableInfo(tableName) != null;
     }
 
     /**
@@ -93,17 +104,14 @@ public class RelationManager {
         }
         
         // check if the indexDirectory overlaps with another table's index directory
-        Query indexDirectoryQuery = new TermQuery(new Term(CatalogConstants.TABLE_DIRECTORY, indexDirectory));
-        DataReader tableCatalogDataReader = new DataReader(CatalogConstants.TABLE_CATALOG_DATASTORE, indexDirectoryQuery);
-        tableCatalogDataReader.setPayloadAdded(false);
-        
-        tableCatalogDataReader.open();
-        Tuple nextTuple = tableCatalogDataReader.getNextTuple();
-        tableCatalogDataReader.close();
+        final String tableDirectory = indexDirectory;
+        CatalogManager.TableInfo overlapTableInfo = catalogManager.getAllTableInfo().stream()
+                .filter(tableInfo -> tableInfo.getTableDirectory().equals(tableDirectory))
+                .findAny().orElse(null);
         
         // if the index directory is already taken by another table, throws an exception
-        if (nextTuple != null) {
-            String overlapTableName = nextTuple.getField(CatalogConstants.TABLE_NAME).getValue().toString();
+        if (overlapTableInfo != null) {
+            String overlapTableName = overlapTableInfo.getTableName();
             throw new StorageException(String.format(
                     "Table %s already takes the index directory %s. Please choose another directory.", 
                     overlapTableName, indexDirectory));
@@ -154,25 +162,12 @@ public class RelationManager {
         dataWriter.open();
         dataWriter.clearData();
         dataWriter.close();
-        StorageUtils.deleteDirectory(getTableDirectory(tableName));
-
-        // generate a query for the table name
-        Query catalogTableNameQuery = new TermQuery(new Term(CatalogConstants.TABLE_NAME, tableName));
+        String tableDirectory = getTableDirectory(tableName);
+        closeIndexSearcher(tableDirectory);
+        StorageUtils.deleteDirectory(tableDirectory);
 
-        // delete the table from table catalog
-        DataWriter tableCatalogWriter = new DataWriter(CatalogConstants.TABLE_CATALOG_DATASTORE, 
-                LuceneAnalyzerConstants.getStandardAnalyzer());
-        tableCatalogWriter.open();
-        tableCatalogWriter.deleteTuple(catalogTableNameQuery);
-        tableCatalogWriter.close();
-                
-        // delete the table from schema catalog
-        DataWriter schemaCatalogWriter = new DataWriter(CatalogConstants.SCHEMA_CATALOG_DATASTORE,
-                LuceneAnalyzerConstants.getStandardAnalyzer());
-        schemaCatalogWriter.open();
-        schemaCatalogWriter.deleteTuple(catalogTableNameQuery);
-        schemaCatalogWriter.close();
-        
+        // delete the table from the catalog
+        catalogManager.removeTable(tableName);
     }
     
     /**
@@ -199,6 +194,46 @@ public class RelationManager {
         return tuple;
     }
     
+    /**
+     * Gets the number of documents (tuples) in a table.
+     * 
+     * @param tableName, the name of the table, case insensitive
+     * @return
+     * @throws StorageException
+     */
+    public int getTableNumDocuments(String tableName) throws StorageException {
+        String tableDirectory = getTableDirectory(tableName);
+        IndexSearcher indexSearcher = acquireIndexSearcher(tableDirectory);
+        try {
+            return indexSearcher.getIndexReader().numDocs();
+        } finally {
+            releaseIndexSearcher(tableDirectory, indexSearcher);
+        }
+    }
+    
+    /**
+     * Gets the number of documents of a table that contain a term in an attribute.
+     * The term is not analyzed, it should be a token generated by the analyzer of the table.
+     * The deleted documents may be counted until the index is merged, so the number is an estimate.
+     * 
+     * @param tableName, the name of the table, case insensitive
+     * @param attributeName
+     * @param term
+     * @return
+     * @throws StorageException
+     */
+    public int getTermDocumentFrequency(String tableName, String attributeName, String term) throws StorageException {
+        String tableDirectory = getTableDirectory(tableName);
+        IndexSearcher indexSearcher = acquireIndexSearcher(tableDirectory);
+        try {
+            return indexSearcher.getIndexReader().docFreq(new Term(attributeName, term));
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        } finally {
+            releaseIndexSearcher(tableDirectory, indexSearcher);
+        }
+    }
+    
     /**
      * Gets the DataWriter of a table. 
      * The DataWriter can be used to insert/delete/update tuples in a table.
@@ -249,17 +284,14 @@ public class RelationManager {
      * @throws StorageException
      */
     public String getTableDirectory(String tableName) throws StorageException {
-        // get the tuples with tableName from the table catalog
-        Tuple tableCatalogTuple = getTableCatalogTuple(tableName);
+        CatalogManager.TableInfo tableInfo = getTableInfo(tableName);
         
-        // if the tuple is not found, then the table name is not found
-        if (tableCatalogTuple == null) {
+        // if the entry is not found, then the table name is not found
+        if (tableInfo == null) {
             throw new StorageException(String.format("The directory for table %s is not found.", tableName));
         }
 
-        // get the directory field
-        IField directoryField = tableCatalogTuple.getField(CatalogConstants.TABLE_DIRECTORY);
-        return directoryField.getValue().toString();
+        return tableInfo.getTableDirectory();
     }
 
     /**
@@ -270,25 +302,14 @@ public class RelationManager {
      * @throws StorageException
      */
     public Schema getTableSchema(String tableName) throws StorageException {
-        // get the tuples with tableName from the schema catalog
-        List<Tuple> tableAttributeTuples = getSchemaCatalogTuples(tableName);
+        CatalogManager.TableInfo tableInfo = getTableInfo(tableName);
 
-        // if the list is empty, then the schema is not found
-        if (tableAttributeTuples.isEmpty()) {
+        // if the entry is not found, then the schema is not found
+        if (tableInfo == null) {
             throw new StorageException(String.format("The schema of table %s is not found.", tableName));
         }
         
-        // convert the unordered list of tuples to an order list of attributes
-        List<Attribute> tableSchemaData = tableAttributeTuples.stream()
-                // sort the tuples based on the attributePosition field.
-                .sorted((tuple1, tuple2) -> Integer.compare((int) tuple1.getField(CatalogConstants.ATTR_POSITION).getValue(), 
-                        (int) tuple2.getField(CatalogConstants.ATTR_POSITION).getValue()))
-                // map one tuple to one attribute
-                .map(tuple -> new Attribute(tuple.getField(CatalogConstants.ATTR_NAME).getValue().toString(),
-                        convertAttributeType(tuple.getField(CatalogConstants.ATTR_TYPE).getValue().toString())))
-                .collect(Collectors.toList());
-        
-        return new Schema(tableSchemaData.stream().toArray(Attribute[]::new));
+        return tableInfo.getTableSchema();
     }
     
     /**
@@ -299,19 +320,14 @@ public class RelationManager {
      * @throws StorageException
      */
     public String getTableAnalyzerString(String tableName) throws StorageException {
-        // get the tuples with tableName from the table catalog
-        Tuple tableCatalogTuple = getTableCatalogTuple(tableName);
+        CatalogManager.TableInfo tableInfo = getTableInfo(tableName);
         
-        // if the tuple is not found, then the table name is not found
-        if (tableCatalogTuple == null) {
+        // if the entry is not found, then the table name is not found
+        if (tableInfo == null) {
             throw new StorageException(String.format("The analyzer for table %s is not found.", tableName));
         }
         
-        // get the lucene analyzer string
-        IField analyzerField = tableCatalogTuple.getField(CatalogConstants.TABLE_LUCENE_ANALYZER);
-        String analyzerString = analyzerField.getValue().toString();
-        
-        return analyzerString;
+        return tableInfo.getLuceneAnalyzerString();
     }
 
     /**
@@ -336,82 +352,180 @@ public class RelationManager {
     }
     
     /*
-     * This is a helper function that writes the table information to 
-     *   the table catalog and the schema catalog.
+     * Acquires the shared IndexSearcher of an index directory. 
+     * The searcher is created the first time the directory is read, and reused by all the DataReaders afterwards.
+     * Every acquired searcher must be given back by calling releaseIndexSearcher.
      */
-    private void writeTableInfoToCatalog(String tableName, String indexDirectory, Schema schema, String luceneAnalyzerString) 
-            throws StorageException {   
-        // write table catalog
-        DataStore tableCatalogStore = new DataStore(CatalogConstants.TABLE_CATALOG_DIRECTORY,
-                CatalogConstants.TABLE_CATALOG_SCHEMA);
-        DataWriter dataWriter = new DataWriter(tableCatalogStore, LuceneAnalyzerConstants.getStandardAnalyzer());
-        dataWriter.open();
-        dataWriter.insertTuple(CatalogConstants.getTableCatalogTuple(tableName, indexDirectory, luceneAnalyzerString));
-        dataWriter.close();
-       
-        // write schema catalog
-        Schema tableSchema = Utils.getSchemaWithID(schema);
-        DataStore schemaCatalogStore = new DataStore(CatalogConstants.SCHEMA_CATALOG_DIRECTORY,
-                CatalogConstants.SCHEMA_CATALOG_SCHEMA);
-        dataWriter = new DataWriter(schemaCatalogStore, LuceneAnalyzerConstants.getStandardAnalyzer());
-        // each attribute in the table schema will be one row in schema catalog
-        dataWriter.open();
-        for (Tuple tuple : CatalogConstants.getSchemaCatalogTuples(tableName, tableSchema)) {
-            dataWriter.insertTuple(tuple);
+    static IndexSearcher acquireIndexSearcher(String indexDirectory) throws StorageException {
+        try {
+            return getTableSearcher(indexDirectory).searcherManager.acquire();
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
         }
-        dataWriter.close();
     }
     
     /*
-     * Gets the a tuple of a table from table catalog.
+     * Releases a searcher acquired by acquireIndexSearcher.
      */
-    private static Tuple getTableCatalogTuple(String tableName) throws StorageException {
-        tableName = tableName.toLowerCase();
+    static void releaseIndexSearcher(String indexDirectory, IndexSearcher indexSearcher) throws StorageException {
+        TableSearcher tableSearcher = tableSearcherMap.get(getSearcherKey(indexDirectory));
+        try {
+            if (tableSearcher != null) {
+                tableSearcher.searcherManager.release(indexSearcher);
+            } else {
+                // the table was deleted while the searcher is in use 
+                indexSearcher.getIndexReader().decRef();
+            }
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+    
+    /*
+     * Makes the changes committed by a DataWriter visible to the DataReaders opened afterwards.
+     * The readers that are already open keep reading the old point-in-time view.
+     */
+    static void refreshIndexSearcher(String indexDirectory) throws StorageException {
+        TableSearcher tableSearcher = tableSearcherMap.get(getSearcherKey(indexDirectory));
+        if (tableSearcher == null) {
+            return;
+        }
+        try {
+            tableSearcher.searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+    
+    /*
+     * Closes the shared searcher of an index directory and its Lucene directory, it's used before the directory is deleted.
+     * Searchers that are still acquired stay valid until they are released.
+     */
+    static void closeIndexSearcher(String indexDirectory) throws StorageException {
+        TableSearcher tableSearcher = tableSearcherMap.remove(getSearcherKey(indexDirectory));
+        if (tableSearcher == null) {
+            return;
+        }
+        try {
+            tableSearcher.close();
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+    
+    private static TableSearcher getTableSearcher(String indexDirectory) throws IOException {
+        String searcherKey = getSearcherKey(indexDirectory);
+        TableSearcher tableSearcher = tableSearcherMap.get(searcherKey);
+        if (tableSearcher != null) {
+            return tableSearcher;
+        }
+        synchronized (tableSearcherMap) {
+            tableSearcher = tableSearcherMap.get(searcherKey);
+            if (tableSearcher == null) {
+                tableSearcher = new TableSearcher(FSDirectory.open(Paths.get(searcherKey)));
+                tableSearcherMap.put(searcherKey, tableSearcher);
+            }
+            return tableSearcher;
+        }
+    }
+    
+    /*
+     * The SearcherManager of a table with the Lucene directory it reads, they are closed together.
+     */
+    private static class TableSearcher {
         
-        Query tableNameQuery = new TermQuery(new Term(CatalogConstants.TABLE_NAME, tableName));
-        DataReader tableCatalogDataReader = new DataReader(CatalogConstants.TABLE_CATALOG_DATASTORE, tableNameQuery);
-        tableCatalogDataReader.setPayloadAdded(false);
+        private final Directory directory;
+        private final SearcherManager searcherManager;
         
-        tableCatalogDataReader.open();
-        List<Tuple> tupleList = new ArrayList<>();
-        Tuple nextTuple;
-        while ((nextTuple = tableCatalogDataReader.getNextTuple()) != null) {
-            tupleList.add(nextTuple);
+        private TableSearcher(Directory directory) throws IOException {
+            this.directory = directory;
+            try {
+                this.searcherManager = new SearcherManager(directory, null);
+            } catch (IOException e) {
+                directory.close();
+                throw e;
+            }
         }
-        tableCatalogDataReader.close();
         
-        if (tupleList.size() == 0) {
-            return null;
-        } else if (tupleList.size() == 1) {
-            return tupleList.get(0);
-        } else {
-            throw new StorageException("Catalog corrupted: duplicate table name found in catalog.");
+        private void close() throws IOException {
+            try {
+                searcherManager.close();
+            } finally {
+                directory.close();
+            }
         }
     }
     
+    private static String getSearcherKey(String indexDirectory) {
+        return Paths.get(indexDirectory).toAbsolutePath().normalize().toString();
+    }
+    
     /*
-     * Gets the tuples of a table from schema catalog.
+     * This is a helper function that writes the table information to the catalog.
      */
-    private static List<Tuple> getSchemaCatalogTuples(String tableName) throws StorageException {
-        tableName = tableName.toLowerCase();
+    private void writeTableInfoToCatalog(String tableName, String indexDirectory, Schema schema, String luceneAnalyzerString) 
+            throws StorageException {   
+        Schema tableSchema = Utils.getSchemaWithID(schema);
+        catalogManager.addTable(new CatalogManager.TableInfo(tableName, indexDirectory, tableSchema, luceneAnalyzerString));
+    }
+    
+    /*
+     * Gets the catalog entry of a table, returns null if the table doesn't exist.
+     */
+    private CatalogManager.TableInfo getTableInfo(String tableName) {
+        return catalogManager.getTableInfo(tableName.toLowerCase());
+    }
+    
+    /*
+     * Reads the table catalog and the schema catalog written by an older version into the catalog log.
+     * After the migration, the Lucene catalog indexes are not read or written anymore.
+     */
+    private void migrateLuceneCatalog() throws StorageException {
+        List<Tuple> tableCatalogTuples = readAllTuples(CatalogConstants.TABLE_CATALOG_DATASTORE);
+        List<Tuple> schemaCatalogTuples = readAllTuples(CatalogConstants.SCHEMA_CATALOG_DATASTORE);
         
-        Query tableNameQuery = new TermQuery(new Term(CatalogConstants.TABLE_NAME, tableName));
-        DataReader schemaCatalogDataReader = new DataReader(CatalogConstants.SCHEMA_CATALOG_DATASTORE, tableNameQuery);  
+        for (Tuple tableCatalogTuple : tableCatalogTuples) {
+            String tableName = tableCatalogTuple.getField(CatalogConstants.TABLE_NAME).getValue().toString();
+            String tableDirectory = tableCatalogTuple.getField(CatalogConstants.TABLE_DIRECTORY).getValue().toString();
+            String luceneAnalyzerString = tableCatalogTuple.getField(CatalogConstants.TABLE_LUCENE_ANALYZER).getValue().toString();
+            
+            // convert the unordered list of tuples to an order list of attributes
+            List<Attribute> tableSchemaData = schemaCatalogTuples.stream()
+                    .filter(tuple -> tuple.getField(CatalogConstants.TABLE_NAME).getValue().toString().equals(tableName))
+                    // sort the tuples based on the attributePosition field.
+                    .sorted((tuple1, tuple2) -> Integer.compare((int) tuple1.getField(CatalogConstants.ATTR_POSITION).getValue(), 
+                            (int) tuple2.getField(CatalogConstants.ATTR_POSITION).getValue()))
+                    // map one tuple to one attribute
+                    .map(tuple -> new Attribute(tuple.getField(CatalogConstants.ATTR_NAME).getValue().toString(),
+                            convertAttributeType(tuple.getField(CatalogConstants.ATTR_TYPE).getValue().toString())))
+                    .collect(Collectors.toList());
+            
+            catalogManager.addTable(new CatalogManager.TableInfo(tableName, tableDirectory, 
+                    new Schema(tableSchemaData.stream().toArray(Attribute[]::new)), luceneAnalyzerString));
+        }
+    }
+    
+    /*
+     * Reads all the tuples of a catalog index.
+     */
+    private static List<Tuple> readAllTuples(DataStore catalogDataStore) throws StorageException {
+        DataReader catalogDataReader = new DataReader(catalogDataStore, new MatchAllDocsQuery());
+        catalogDataReader.setPayloadAdded(false);
         
-        // read the tuples into a list
-        schemaCatalogDataReader.open();    
+        catalogDataReader.open();
         List<Tuple> tupleList = new ArrayList<>();
         Tuple nextTuple;
-        while ((nextTuple = schemaCatalogDataReader.getNextTuple()) != null) {
+        while ((nextTuple = catalogDataReader.getNextTuple()) != null) {
             tupleList.add(nextTuple);
         }
-        schemaCatalogDataReader.close();
+        catalogDataReader.close();
+        closeIndexSearcher(catalogDataStore.getDataDirectory());
         
         return tupleList;
     }
     
     /*
-     * This is a helper function to check if the system catalog tables exist physically on the disk.
+     * This is a helper function to check if the system catalog tables of an older version exist physically on the disk.
      */
     private static boolean checkCatalogExistence() {
         return DataReader.checkIndexExistence(CatalogConstants.TABLE_CATALOG_DIRECTORY)
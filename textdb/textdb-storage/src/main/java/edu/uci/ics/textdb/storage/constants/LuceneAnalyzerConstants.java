@@ -1,6 +1,7 @@
 package edu.uci.ics.textdb.storage.constants;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.cn.smart.SmartChineseAnalyzer;
@@ -20,6 +21,8 @@ import edu.uci.ics.textdb.api.exception.DataFlowException;
  */
 public class LuceneAnalyzerConstants {
     
+    // analyzer string -> the shared analyzer instance
+    private static final ConcurrentHashMap<String, Analyzer> analyzerRegistry = new ConcurrentHashMap<>();
     
     public static String standardAnalyzerString() {
         return "standard";
@@ -40,11 +43,28 @@ public class LuceneAnalyzerConstants {
      *   "n-gram", n represents the number of grams, for example, "3-gram",
      *     same as calling nGramAnalyzerString(3).
      * 
+     * An analyzer is created only once for every analyzer string, and the same instance is returned afterwards.
+     * Lucene analyzers are thread-safe (the token stream components are reused per thread), 
+     *   so the instance can be shared by all the operators and threads, but it must NOT be closed by the caller.
+     * 
      * @param luceneAnalyzerString
      * @return
      * @throws DataFlowException, if the luceneAnalyzerString is invalid
      */
     public static Analyzer getLuceneAnalyzer(String luceneAnalyzerString) throws DataFlowException {
+        Analyzer luceneAnalyzer = analyzerRegistry.get(luceneAnalyzerString);
+        if (luceneAnalyzer == null) {
+            luceneAnalyzer = createLuceneAnalyzer(luceneAnalyzerString);
+            Analyzer existingAnalyzer = analyzerRegistry.putIfAbsent(luceneAnalyzerString, luceneAnalyzer);
+            if (existingAnalyzer != null) {
+                luceneAnalyzer.close();
+                luceneAnalyzer = existingAnalyzer;
+            }
+        }
+        return luceneAnalyzer;
+    }
+    
+    private static Analyzer createLuceneAnalyzer(String luceneAnalyzerString) throws DataFlowException {
         if (luceneAnalyzerString.equals("standard")) {
             return LuceneAnalyzerConstants.getStandardAnalyzer();
         }
@@ -13,6 +13,7 @@ import java.util.Date;
 
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.DateTools.Resolution;
+import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexableField;
@@ -30,6 +31,22 @@ import edu.uci.ics.textdb.api.schema.AttributeType;
 
 public class StorageUtils {
     
+    // By default we enable positional indexing in Lucene so that we can
+    // return information about character offsets and token offsets.
+    // Term vectors are not stored, the payload of a TEXT field is stored 
+    // in a separate BinaryDocValues field by DataWriter.
+    // The field type is frozen and shared by all TEXT fields.
+    private static final org.apache.lucene.document.FieldType TEXT_FIELD_TYPE = createTextFieldType();
+    
+    private static org.apache.lucene.document.FieldType createTextFieldType() {
+        org.apache.lucene.document.FieldType luceneFieldType = new org.apache.lucene.document.FieldType();
+        luceneFieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        luceneFieldType.setStored(true);
+        luceneFieldType.setTokenized(true);
+        luceneFieldType.freeze();
+        return luceneFieldType;
+    }
+    
     public static IField getField(AttributeType attributeType, String fieldValue) throws ParseException {
         IField field = null;
         switch (attributeType) {
@@ -80,20 +97,7 @@ public class StorageUtils {
             luceneField = new org.apache.lucene.document.StringField(attributeName, dateString, Store.YES);
             break;
         case TEXT:
-            // By default we enable positional indexing in Lucene so that we can
-            // return
-            // information about character offsets and token offsets
-            org.apache.lucene.document.FieldType luceneFieldType = new org.apache.lucene.document.FieldType();
-            luceneFieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
-            luceneFieldType.setStored(true);
-            luceneFieldType.setStoreTermVectors(true);
-            luceneFieldType.setStoreTermVectorOffsets(true);
-            luceneFieldType.setStoreTermVectorPayloads(true);
-            luceneFieldType.setStoreTermVectorPositions(true);
-            luceneFieldType.setTokenized(true);
-
-            luceneField = new org.apache.lucene.document.Field(attributeName, (String) fieldValue, luceneFieldType);
-
+            luceneField = new org.apache.lucene.document.Field(attributeName, (String) fieldValue, TEXT_FIELD_TYPE);
             break;
         case LIST:
             // Lucene doesn't have list field
@@ -103,6 +107,37 @@ public class StorageUtils {
         return luceneField;
     }
     
+    /**
+     * Sets a new value to a lucene field created by getLuceneField, 
+     *   so that the same field can be reused for the next document.
+     * 
+     * @param luceneField, a field created by getLuceneField with the same attributeType
+     * @param attributeType
+     * @param fieldValue
+     */
+    public static void setLuceneFieldValue(Field luceneField, AttributeType attributeType, Object fieldValue) {
+        switch (attributeType) {
+        case _ID_TYPE:
+        case STRING:
+        case TEXT:
+            luceneField.setStringValue((String) fieldValue);
+            break;
+        case INTEGER:
+            luceneField.setIntValue((Integer) fieldValue);
+            break;
+        case DOUBLE:
+            luceneField.setDoubleValue((Double) fieldValue);
+            break;
+        case DATE:
+            luceneField.setStringValue(DateTools.dateToString((Date) fieldValue, Resolution.MILLISECOND));
+            break;
+        case LIST:
+            // Lucene doesn't have list field
+            // WARNING! This case should never be reached.
+            break;
+        }
+    }
+    
     public static void deleteDirectory(String indexDir) throws StorageException {
         Path directory = Paths.get(indexDir);
         if (!Files.exists(directory)) {
@@ -0,0 +1,84 @@
+package edu.uci.ics.textdb.storage;
+
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.uci.ics.textdb.api.schema.Attribute;
+import edu.uci.ics.textdb.api.schema.AttributeType;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.utils.Utils;
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+
+public class CatalogManagerTest {
+
+    private Path logFile;
+
+    private static final Schema TEST_SCHEMA = Utils.getSchemaWithID(new Schema(
+            new Attribute("city", AttributeType.STRING), new Attribute("description", AttributeType.TEXT)));
+
+    @Before
+    public void setUp() throws Exception {
+        logFile = Files.createTempFile("catalog_manager_test", ".log");
+        Files.delete(logFile);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        Files.deleteIfExists(logFile);
+    }
+
+    /*
+     * Test that the tables added and removed are restored from the log by a new CatalogManager.
+     */
+    @Test
+    public void testReplayLog() throws Exception {
+        CatalogManager catalogManager = new CatalogManager(logFile.toString());
+        Assert.assertFalse(catalogManager.logExists());
+
+        catalogManager.addTable(new CatalogManager.TableInfo("table1", "/tmp/table1", TEST_SCHEMA,
+                LuceneAnalyzerConstants.standardAnalyzerString()));
+        catalogManager.addTable(new CatalogManager.TableInfo("table2", "/tmp/table2", TEST_SCHEMA,
+                LuceneAnalyzerConstants.nGramAnalyzerString(3)));
+        catalogManager.removeTable("table1");
+
+        CatalogManager reloadedCatalogManager = new CatalogManager(logFile.toString());
+        Assert.assertTrue(reloadedCatalogManager.logExists());
+        Assert.assertNull(reloadedCatalogManager.getTableInfo("table1"));
+
+        CatalogManager.TableInfo tableInfo = reloadedCatalogManager.getTableInfo("table2");
+        Assert.assertEquals("/tmp/table2", tableInfo.getTableDirectory());
+        Assert.assertEquals(TEST_SCHEMA, tableInfo.getTableSchema());
+        Assert.assertEquals(LuceneAnalyzerConstants.nGramAnalyzerString(3), tableInfo.getLuceneAnalyzerString());
+        Assert.assertEquals(1, reloadedCatalogManager.getAllTableInfo().size());
+    }
+
+    /*
+     * Test that a record cut off at the end of the log is ignored, and the log is still usable afterwards.
+     */
+    @Test
+    public void testIncompleteRecord() throws Exception {
+        CatalogManager catalogManager = new CatalogManager(logFile.toString());
+        catalogManager.addTable(new CatalogManager.TableInfo("table1", "/tmp/table1", TEST_SCHEMA,
+                LuceneAnalyzerConstants.standardAnalyzerString()));
+
+        // append the beginning of a CREATE record
+        try (FileOutputStream output = new FileOutputStream(logFile.toFile(), true)) {
+            output.write(new byte[] {'C', 0, 6, 't', 'a'});
+        }
+
+        CatalogManager reloadedCatalogManager = new CatalogManager(logFile.toString());
+        Assert.assertNotNull(reloadedCatalogManager.getTableInfo("table1"));
+        Assert.assertEquals(1, reloadedCatalogManager.getAllTableInfo().size());
+
+        reloadedCatalogManager.addTable(new CatalogManager.TableInfo("table2", "/tmp/table2", TEST_SCHEMA,
+                LuceneAnalyzerConstants.standardAnalyzerString()));
+        Assert.assertEquals(2, new CatalogManager(logFile.toString()).getAllTableInfo().size());
+    }
+
+}
@@ -1,9 +1,17 @@
 package edu.uci.ics.textdb.storage;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TermQuery;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -11,7 +19,13 @@ import org.junit.Test;
 
 import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.constants.TestConstants;
+import edu.uci.ics.textdb.api.exception.StorageException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.DoubleField;
+import edu.uci.ics.textdb.api.field.IDField;
+import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.Utils;
 import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
@@ -19,6 +33,9 @@ import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
 public class DataWriterReaderTest {
     
     public static final String PEOPLE_TABLE = "data_writer_reader_test_people";
+    public static final String SEGMENTS_TABLE = "data_writer_reader_test_segments";
+    public static final String BULK_TABLE = "data_writer_reader_test_bulk";
+    public static final String PARALLEL_TABLE = "data_writer_reader_test_parallel";
 
     @BeforeClass
     public static void setUp() throws TextDBException {
@@ -60,6 +77,448 @@ public class DataWriterReaderTest {
         Assert.assertTrue(equals);
     }
 
+    /*
+     * Writes the tuples in two writer sessions so that the index has more than one segment,
+     *   then deletes one tuple, and checks that the reader walks all segments and skips the deleted tuple.
+     */
+    @Test
+    public void testReadMultipleSegmentsWithDeletion() throws Exception {
+        RelationManager relationManager = RelationManager.getRelationManager();
+        relationManager.createTable(SEGMENTS_TABLE, "../index/test_tables/" + SEGMENTS_TABLE, 
+                TestConstants.SCHEMA_PEOPLE, LuceneAnalyzerConstants.standardAnalyzerString());
+        
+        List<Tuple> peopleTuples = TestConstants.getSamplePeopleTuples();
+        List<IDField> idFields = new ArrayList<>();
+        for (List<Tuple> tupleBatch : Arrays.asList(peopleTuples.subList(0, 3), peopleTuples.subList(3, peopleTuples.size()))) {
+            DataWriter dataWriter = relationManager.getTableDataWriter(SEGMENTS_TABLE);
+            dataWriter.open();
+            for (Tuple tuple : tupleBatch) {
+                idFields.add(dataWriter.insertTuple(tuple));
+            }
+            dataWriter.close();
+        }
+        
+        // delete the first tuple ("Tall Angry")
+        DataWriter dataWriter = relationManager.getTableDataWriter(SEGMENTS_TABLE);
+        dataWriter.open();
+        dataWriter.deleteTupleByID(idFields.get(0));
+        dataWriter.close();
+        
+        DataReader dataReader = relationManager.getTableDataReader(
+                SEGMENTS_TABLE, new TermQuery(new Term(TestConstants.DESCRIPTION, "angry")));
+        dataReader.setPayloadAdded(true);
+        
+        Tuple nextTuple = null;
+        List<Tuple> returnedTuples = new ArrayList<Tuple>();
+        
+        dataReader.open();
+        while ((nextTuple = dataReader.getNextTuple()) != null) {
+            returnedTuples.add(nextTuple);
+        }
+        dataReader.close();
+        
+        relationManager.deleteTable(SEGMENTS_TABLE);
+        
+        List<Tuple> expectedTuples = Arrays.asList(peopleTuples.get(2), peopleTuples.get(3), peopleTuples.get(5));
+        Assert.assertTrue(containsAllResults(expectedTuples, returnedTuples));
+    }
+
+    /*
+     * Inserts batches of tuples from multiple threads into the same DataWriter,
+     *   and checks that all the tuples can be read back.
+     */
+    @Test
+    public void testInsertTuplesInParallel() throws Exception {
+        RelationManager relationManager = RelationManager.getRelationManager();
+        relationManager.createTable(BULK_TABLE, "../index/test_tables/" + BULK_TABLE, 
+                TestConstants.SCHEMA_PEOPLE, LuceneAnalyzerConstants.standardAnalyzerString());
+        
+        int numThreads = 4;
+        int numBatches = 10;
+        DataWriter dataWriter = relationManager.getTableDataWriter(BULK_TABLE);
+        dataWriter.setRAMBufferSizeMB(32);
+        dataWriter.open();
+        
+        List<Tuple> expectedTuples = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        List<IDField> idFields = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < numThreads; i++) {
+            List<Tuple> batch = new ArrayList<>();
+            for (int j = 0; j < numBatches; j++) {
+                batch.addAll(TestConstants.getSamplePeopleTuples());
+            }
+            expectedTuples.addAll(batch);
+            threads.add(new Thread(() -> idFields.addAll(dataWriter.insertTuples(batch))));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        dataWriter.close();
+        
+        DataReader dataReader = relationManager.getTableDataReader(BULK_TABLE, new MatchAllDocsQuery());
+        Tuple nextTuple = null;
+        List<Tuple> returnedTuples = new ArrayList<Tuple>();
+        dataReader.open();
+        while ((nextTuple = dataReader.getNextTuple()) != null) {
+            returnedTuples.add(nextTuple);
+        }
+        dataReader.close();
+        
+        relationManager.deleteTable(BULK_TABLE);
+        
+        Assert.assertEquals(expectedTuples.size(), idFields.size());
+        Assert.assertEquals(expectedTuples.size(), new HashSet<>(idFields).size());
+        Assert.assertEquals(expectedTuples.size(), returnedTuples.size());
+        Assert.assertTrue(containsAllResults(expectedTuples, returnedTuples));
+    }
+
+    /*
+     * Adds the tuples one by one to a DataWriter with several insert workers, 
+     *   which insert the batches in parallel, and checks that all the tuples can be read back.
+     * The error of a batch inserted by a worker is thrown when the tuples are flushed.
+     */
+    @Test
+    public void testAddTuplesWithInsertWorkers() throws Exception {
+        RelationManager relationManager = RelationManager.getRelationManager();
+        relationManager.createTable(BULK_TABLE, "../index/test_tables/" + BULK_TABLE, 
+                TestConstants.SCHEMA_PEOPLE, LuceneAnalyzerConstants.standardAnalyzerString());
+        
+        DataWriter dataWriter = relationManager.getTableDataWriter(BULK_TABLE);
+        dataWriter.setNumInsertWorkers(3);
+        dataWriter.open();
+        List<Tuple> expectedTuples = new ArrayList<>();
+        while (expectedTuples.size() < 5 * DataWriter.INSERT_BATCH_SIZE / 2) {
+            for (Tuple tuple : TestConstants.getSamplePeopleTuples()) {
+                dataWriter.addTuple(tuple);
+                expectedTuples.add(tuple);
+            }
+        }
+        dataWriter.flushTuples();
+        dataWriter.close();
+        
+        List<Tuple> returnedTuples = readAllTuples(relationManager.getTableDataReader(BULK_TABLE, new MatchAllDocsQuery()));
+        
+        // a tuple read from the table contains the _id field, so it can't be inserted
+        dataWriter.open();
+        dataWriter.addTuple(TestConstants.getSamplePeopleTuples().get(0));
+        dataWriter.addTuple(returnedTuples.get(0));
+        StorageException flushException = null;
+        try {
+            dataWriter.flushTuples();
+        } catch (StorageException e) {
+            flushException = e;
+        }
+        dataWriter.close();
+        
+        relationManager.deleteTable(BULK_TABLE);
+        
+        Assert.assertEquals(expectedTuples.size(), returnedTuples.size());
+        Assert.assertTrue(containsAllResults(expectedTuples, returnedTuples));
+        Assert.assertNotNull(flushException);
+    }
+
+    /*
+     * Closes the writer without flushing the added tuples: they are inserted by close,
+     *   and if a batch fails, close throws and the changes are rolled back.
+     */
+    @Test
+    public void testCloseWithAddedTuples() throws Exception {
+        RelationManager relationManager = RelationManager.getRelationManager();
+        relationManager.createTable(BULK_TABLE, "../index/test_tables/" + BULK_TABLE, 
+                TestConstants.SCHEMA_PEOPLE, LuceneAnalyzerConstants.standardAnalyzerString());
+        
+        DataWriter dataWriter = relationManager.getTableDataWriter(BULK_TABLE);
+        dataWriter.setNumInsertWorkers(3);
+        dataWriter.open();
+        List<Tuple> expectedTuples = new ArrayList<>();
+        while (expectedTuples.size() < 5 * DataWriter.INSERT_BATCH_SIZE / 2) {
+            for (Tuple tuple : TestConstants.getSamplePeopleTuples()) {
+                dataWriter.addTuple(tuple);
+                expectedTuples.add(tuple);
+            }
+        }
+        dataWriter.close();
+        
+        List<Tuple> returnedTuples = readAllTuples(relationManager.getTableDataReader(BULK_TABLE, new MatchAllDocsQuery()));
+        
+        // a tuple read from the table contains the _id field, so it can't be inserted
+        dataWriter.open();
+        for (int i = 0; i < DataWriter.INSERT_BATCH_SIZE; i++) {
+            dataWriter.addTuple(TestConstants.getSamplePeopleTuples().get(0));
+        }
+        dataWriter.addTuple(returnedTuples.get(0));
+        StorageException closeException = null;
+        try {
+            dataWriter.close();
+        } catch (StorageException e) {
+            closeException = e;
+        }
+        
+        List<Tuple> rolledBackTuples = readAllTuples(relationManager.getTableDataReader(BULK_TABLE, new MatchAllDocsQuery()));
+        
+        relationManager.deleteTable(BULK_TABLE);
+        
+        Assert.assertEquals(expectedTuples.size(), returnedTuples.size());
+        Assert.assertTrue(containsAllResults(expectedTuples, returnedTuples));
+        Assert.assertNotNull(closeException);
+        Assert.assertEquals(expectedTuples.size(), rolledBackTuples.size());
+    }
+
+    /*
+     * Writes the tuples in several writer sessions so that the index has several segments,
+     *   then scans the table in parallel, with and without keeping the index order.
+     */
+    @Test
+    public void testParallelScan() throws Exception {
+        RelationManager relationManager = RelationManager.getRelationManager();
+        relationManager.createTable(PARALLEL_TABLE, "../index/test_tables/" + PARALLEL_TABLE, 
+                TestConstants.SCHEMA_PEOPLE, LuceneAnalyzerConstants.standardAnalyzerString());
+        for (int i = 0; i < 5; i++) {
+            DataWriter dataWriter = relationManager.getTableDataWriter(PARALLEL_TABLE);
+            dataWriter.open();
+            for (int j = 0; j < 100; j++) {
+                dataWriter.insertTuples(TestConstants.getSamplePeopleTuples());
+            }
+            dataWriter.close();
+        }
+        
+        List<Tuple> sequentialTuples = readAllTuples(relationManager.getTableDataReader(PARALLEL_TABLE, new MatchAllDocsQuery()));
+        
+        DataReader orderedDataReader = relationManager.getTableDataReader(PARALLEL_TABLE, new MatchAllDocsQuery());
+        orderedDataReader.setPayloadAdded(true);
+        orderedDataReader.setNumWorkers(3);
+        List<Tuple> orderedTuples = readAllTuples(orderedDataReader);
+        
+        DataReader unorderedDataReader = relationManager.getTableDataReader(PARALLEL_TABLE, new MatchAllDocsQuery());
+        unorderedDataReader.setNumWorkers(3);
+        unorderedDataReader.setKeepOrder(false);
+        List<Tuple> unorderedTuples = readAllTuples(unorderedDataReader);
+        
+        DataReader limitedOrderedDataReader = relationManager.getTableDataReader(PARALLEL_TABLE, new MatchAllDocsQuery());
+        limitedOrderedDataReader.setNumWorkers(3);
+        limitedOrderedDataReader.setLimit(10);
+        List<Tuple> limitedOrderedTuples = readAllTuples(limitedOrderedDataReader);
+        
+        DataReader limitedUnorderedDataReader = relationManager.getTableDataReader(PARALLEL_TABLE, new MatchAllDocsQuery());
+        limitedUnorderedDataReader.setNumWorkers(3);
+        limitedUnorderedDataReader.setKeepOrder(false);
+        limitedUnorderedDataReader.setLimit(10);
+        List<Tuple> limitedUnorderedTuples = readAllTuples(limitedUnorderedDataReader);
+        
+        // closing a parallel scan before all the tuples are consumed stops the workers
+        DataReader closedDataReader = relationManager.getTableDataReader(PARALLEL_TABLE, new MatchAllDocsQuery());
+        closedDataReader.setNumWorkers(3);
+        closedDataReader.open();
+        Assert.assertNotNull(closedDataReader.getNextTuple());
+        closedDataReader.close();
+        
+        relationManager.deleteTable(PARALLEL_TABLE);
+        
+        Assert.assertEquals(3000, sequentialTuples.size());
+        Assert.assertEquals(
+                sequentialTuples.stream().map(tuple -> tuple.getField(SchemaConstants._ID)).collect(Collectors.toList()),
+                orderedTuples.stream().map(tuple -> tuple.getField(SchemaConstants._ID)).collect(Collectors.toList()));
+        Assert.assertTrue(orderedTuples.stream().allMatch(tuple -> tuple.getSchema().containsField(SchemaConstants.PAYLOAD)));
+        Assert.assertEquals(new HashSet<>(sequentialTuples), new HashSet<>(unorderedTuples));
+        Assert.assertEquals(
+                sequentialTuples.subList(0, 10).stream().map(tuple -> tuple.getField(SchemaConstants._ID)).collect(Collectors.toList()),
+                limitedOrderedTuples.stream().map(tuple -> tuple.getField(SchemaConstants._ID)).collect(Collectors.toList()));
+        Assert.assertEquals(10, limitedUnorderedTuples.size());
+        Assert.assertTrue(new HashSet<>(sequentialTuples).containsAll(limitedUnorderedTuples));
+    }
+    
+    /*
+     * Writes many small segments, and scans them in parallel without keeping the order,
+     *   with a limit close to the number of matching documents.
+     * The segments that run out of documents must not use up the limit.
+     */
+    @Test
+    public void testUnorderedParallelScanLimitWithSmallSegments() throws Exception {
+        RelationManager relationManager = RelationManager.getRelationManager();
+        relationManager.createTable(PARALLEL_TABLE, "../index/test_tables/" + PARALLEL_TABLE, 
+                TestConstants.SCHEMA_PEOPLE, LuceneAnalyzerConstants.standardAnalyzerString());
+        for (int i = 0; i < 8; i++) {
+            DataWriter dataWriter = relationManager.getTableDataWriter(PARALLEL_TABLE);
+            dataWriter.open();
+            dataWriter.insertTuples(TestConstants.getSamplePeopleTuples());
+            dataWriter.close();
+        }
+        
+        // 2 of the sample people match "tall" in every segment
+        TermQuery query = new TermQuery(new Term(TestConstants.DESCRIPTION, "tall"));
+        int numMatchingTuples = readAllTuples(relationManager.getTableDataReader(PARALLEL_TABLE, query)).size();
+        
+        List<Integer> limitedTupleCounts = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            DataReader limitedDataReader = relationManager.getTableDataReader(PARALLEL_TABLE, query);
+            limitedDataReader.setNumWorkers(4);
+            limitedDataReader.setKeepOrder(false);
+            limitedDataReader.setLimit(numMatchingTuples - 1);
+            limitedTupleCounts.add(readAllTuples(limitedDataReader).size());
+        }
+        
+        relationManager.deleteTable(PARALLEL_TABLE);
+        
+        Assert.assertEquals(16, numMatchingTuples);
+        Assert.assertEquals(Collections.nCopies(20, numMatchingTuples - 1), limitedTupleCounts);
+    }
+    
+    /*
+     * Reads the top-scored documents in ranked mode, the tuples are in the order of descending scores.
+     */
+    @Test
+    public void testReadRankedTopK() throws Exception {
+        BooleanQuery query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(TestConstants.DESCRIPTION, "tall")), Occur.SHOULD)
+                .add(new TermQuery(new Term(TestConstants.DESCRIPTION, "angry")), Occur.SHOULD)
+                .build();
+        
+        DataReader allRankedDataReader = RelationManager.getRelationManager().getTableDataReader(PEOPLE_TABLE, query);
+        allRankedDataReader.setTopK(100);
+        List<Tuple> allRankedTuples = readAllTuples(allRankedDataReader);
+        
+        DataReader topKDataReader = RelationManager.getRelationManager().getTableDataReader(PEOPLE_TABLE, query);
+        topKDataReader.setTopK(2);
+        List<Tuple> topKTuples = readAllTuples(topKDataReader);
+        
+        // "Tall Angry" matches both terms, the other 4 documents match one term
+        Assert.assertEquals(5, allRankedTuples.size());
+        Assert.assertEquals("Tall Angry", allRankedTuples.get(0).getField(TestConstants.DESCRIPTION).getValue());
+        for (int i = 1; i < allRankedTuples.size(); i++) {
+            Double previousScore = allRankedTuples.get(i - 1).getField(SchemaConstants.SCORE, DoubleField.class).getValue();
+            Double score = allRankedTuples.get(i).getField(SchemaConstants.SCORE, DoubleField.class).getValue();
+            Assert.assertTrue(previousScore >= score);
+        }
+        Assert.assertEquals(allRankedTuples.subList(0, 2), topKTuples);
+    }
+    
+    /*
+     * Reads the table with a limit, the DataReader stops after returning the first "limit" tuples.
+     */
+    @Test
+    public void testReadWithLimit() throws Exception {
+        List<Tuple> allTuples = readAllTuples(
+                RelationManager.getRelationManager().getTableDataReader(PEOPLE_TABLE, new MatchAllDocsQuery()));
+        
+        DataReader dataReader = RelationManager.getRelationManager().getTableDataReader(PEOPLE_TABLE, new MatchAllDocsQuery());
+        dataReader.setLimit(2);
+        List<Tuple> limitedTuples = readAllTuples(dataReader);
+        
+        Assert.assertEquals(allTuples.subList(0, 2), limitedTuples);
+    }
+    
+    private static List<Tuple> readAllTuples(DataReader dataReader) throws TextDBException {
+        Tuple nextTuple = null;
+        List<Tuple> returnedTuples = new ArrayList<Tuple>();
+        dataReader.open();
+        while ((nextTuple = dataReader.getNextTuple()) != null) {
+            returnedTuples.add(nextTuple);
+        }
+        dataReader.close();
+        return returnedTuples;
+    }
+
+    /*
+     * Reads a tuple with the payload, and checks the spans decoded from the payload doc values.
+     * The spans are in the same order as the term vector: by the analyzed term, then by the position.
+     */
+    @Test
+    public void testReadPayload() throws Exception {
+        DataReader dataReader = RelationManager.getRelationManager().getTableDataReader(
+                PEOPLE_TABLE, new TermQuery(new Term(TestConstants.DESCRIPTION, "clooney")));
+        dataReader.setPayloadAdded(true);
+        
+        dataReader.open();
+        Tuple tuple = dataReader.getNextTuple();
+        Assert.assertNull(dataReader.getNextTuple());
+        dataReader.close();
+        
+        // "Lin Clooney is Short and lin clooney is Angry", the stop words "is" and "and" are removed
+        List<Span> expectedPayload = Arrays.asList(
+                new Span(TestConstants.DESCRIPTION, 40, 45, "angry", "Angry", 8),
+                new Span(TestConstants.DESCRIPTION, 4, 11, "clooney", "Clooney", 1),
+                new Span(TestConstants.DESCRIPTION, 29, 36, "clooney", "clooney", 6),
+                new Span(TestConstants.DESCRIPTION, 0, 3, "lin", "Lin", 0),
+                new Span(TestConstants.DESCRIPTION, 25, 28, "lin", "lin", 5),
+                new Span(TestConstants.DESCRIPTION, 15, 20, "short", "Short", 3));
+        ListField<Span> payloadField = tuple.getField(SchemaConstants.PAYLOAD);
+        Assert.assertEquals(expectedPayload, payloadField.getValue());
+    }
+
+    /*
+     * Reads only the _id and description attributes, and checks that the other attributes are not returned.
+     */
+    @Test
+    public void testReadProjectedAttributes() throws Exception {
+        DataReader dataReader = RelationManager.getRelationManager().getTableDataReader(
+                PEOPLE_TABLE, new MatchAllDocsQuery());
+        dataReader.setPayloadAdded(true);
+        dataReader.setProjectedAttributeNames(Arrays.asList(SchemaConstants._ID, TestConstants.DESCRIPTION.toUpperCase()));
+        
+        Tuple nextTuple = null;
+        List<Tuple> returnedTuples = new ArrayList<Tuple>();
+        dataReader.open();
+        while ((nextTuple = dataReader.getNextTuple()) != null) {
+            returnedTuples.add(nextTuple);
+        }
+        dataReader.close();
+        
+        Schema expectedSchema = new Schema(SchemaConstants._ID_ATTRIBUTE, 
+                TestConstants.SCHEMA_PEOPLE.getAttribute(TestConstants.DESCRIPTION), SchemaConstants.PAYLOAD_ATTRIBUTE);
+        Assert.assertEquals(expectedSchema, dataReader.getOutputSchema());
+        
+        List<Tuple> expectedTuples = TestConstants.getSamplePeopleTuples();
+        Assert.assertEquals(expectedTuples.size(), returnedTuples.size());
+        for (Tuple tuple : returnedTuples) {
+            Assert.assertEquals(expectedSchema, tuple.getSchema());
+            ListField<Span> payloadField = tuple.getField(SchemaConstants.PAYLOAD);
+            Assert.assertTrue(payloadField.getValue().stream()
+                    .allMatch(span -> span.getAttributeName().equals(TestConstants.DESCRIPTION)));
+        }
+        Assert.assertTrue(expectedTuples.stream().map(tuple -> tuple.getField(TestConstants.DESCRIPTION)).collect(Collectors.toList())
+                .containsAll(returnedTuples.stream().map(tuple -> tuple.getField(TestConstants.DESCRIPTION)).collect(Collectors.toList())));
+    }
+
+    /*
+     * Reads the documents of a query restricted to some _IDs, 
+     *   including an _ID of a document that doesn't match the query and an _ID that doesn't exist.
+     */
+    @Test
+    public void testReadFilteredIds() throws Exception {
+        DataReader allReader = RelationManager.getRelationManager().getTableDataReader(
+                PEOPLE_TABLE, new MatchAllDocsQuery());
+        List<String> allIds = new ArrayList<>();
+        Tuple nextTuple = null;
+        allReader.open();
+        while ((nextTuple = allReader.getNextTuple()) != null) {
+            allIds.add(nextTuple.getField(SchemaConstants._ID).getValue().toString());
+        }
+        allReader.close();
+        
+        List<String> filteredIds = Arrays.asList(allIds.get(0), allIds.get(2), "not an id");
+        
+        DataReader dataReader = RelationManager.getRelationManager().getTableDataReader(
+                PEOPLE_TABLE, new MatchAllDocsQuery());
+        dataReader.setIdFilter(filteredIds);
+        List<String> returnedIds = new ArrayList<>();
+        dataReader.open();
+        while ((nextTuple = dataReader.getNextTuple()) != null) {
+            returnedIds.add(nextTuple.getField(SchemaConstants._ID).getValue().toString());
+        }
+        dataReader.close();
+        
+        Assert.assertEquals(Arrays.asList(allIds.get(0), allIds.get(2)), returnedIds);
+        
+        // no document is read with an empty filter
+        dataReader.setIdFilter(Collections.emptyList());
+        dataReader.open();
+        Assert.assertNull(dataReader.getNextTuple());
+        dataReader.close();
+    }
+
     public static boolean containsAllResults(List<Tuple> expectedResults, List<Tuple> exactResults) {
         expectedResults = Utils.removeFields(expectedResults, SchemaConstants._ID, SchemaConstants.PAYLOAD);
         exactResults = Utils.removeFields(exactResults, SchemaConstants._ID, SchemaConstants.PAYLOAD);
@@ -397,4 +397,52 @@ public class RelationManagerTest {
     }
     
     
+    /*
+     * Test that the readers of a table share the searcher, an open reader keeps its point-in-time view, 
+     *   and a reader opened after the DataWriter is closed sees the new tuples.
+     */
+    @Test
+    public void test17() throws Exception {
+        String tableName = "relation_manager_test_table_17";
+        String tableDirectory = "./index/test_table/relation_manager_test_table_17";
+        Schema tableSchema = new Schema(new Attribute("content", AttributeType.STRING));
+        
+        relationManager.deleteTable(tableName);
+        relationManager.createTable(
+                tableName, tableDirectory, tableSchema, LuceneAnalyzerConstants.standardAnalyzerString());
+        
+        DataWriter dataWriter = relationManager.getTableDataWriter(tableName);
+        dataWriter.open();
+        dataWriter.insertTuple(new Tuple(tableSchema, new StringField("test")));
+        dataWriter.close();
+        
+        Query testQuery = new TermQuery(new Term("content", "test"));
+        DataReader oldReader = relationManager.getTableDataReader(tableName, testQuery);
+        oldReader.open();
+        
+        dataWriter.open();
+        dataWriter.insertTuple(new Tuple(tableSchema, new StringField("test")));
+        dataWriter.close();
+        
+        DataReader newReader = relationManager.getTableDataReader(tableName, testQuery);
+        newReader.open();
+        
+        int oldReaderCounter = 0;
+        while (oldReader.getNextTuple() != null) {
+            oldReaderCounter++;
+        }
+        oldReader.close();
+        
+        int newReaderCounter = 0;
+        while (newReader.getNextTuple() != null) {
+            newReaderCounter++;
+        }
+        newReader.close();
+        
+        Assert.assertEquals(1, oldReaderCounter);
+        Assert.assertEquals(2, newReaderCounter);
+        
+        relationManager.deleteTable(tableName);
+    }
+    
 }